@@ -0,0 +1,278 @@
+package com.borsibaar.benchmark;
+
+import com.borsibaar.BorsibaarApplication;
+import com.borsibaar.entity.BarStation;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.entity.SalesRollup;
+import com.borsibaar.entity.User;
+import com.borsibaar.repository.BarStationRepository;
+import com.borsibaar.repository.CategoryRepository;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.repository.SalesRollupRepository;
+import com.borsibaar.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Boots the backend against a seeded database and shares it between benchmark
+ * threads. Uses in-memory H2 by default; pass {@code -Dbench.jdbc-url} (plus
+ * {@code bench.username} / {@code bench.password}) to run against a scratch
+ * PostgreSQL database instead, which is truncated and migrated with Liquibase.
+ * The price correction job only runs on PostgreSQL. The connection pool has
+ * {@code -Dbench.pool-size} connections (10, Hikari's default) in every mode.
+ */
+@State(Scope.Benchmark)
+public class BackendState {
+
+    private static final BigDecimal BASE_PRICE = new BigDecimal("3.00");
+    private static final BigDecimal MAX_PRICE = new BigDecimal("9.00");
+    private static final BigDecimal MIN_PRICE = new BigDecimal("1.50");
+    private static final int SEED_CHUNK = 5_000;
+
+    @Param("4")
+    public int organizations;
+
+    @Param("200")
+    public int products;
+
+    @Param("50000")
+    public int transactions;
+
+    @Param("8")
+    public int stations;
+
+    @Param("true")
+    public boolean writeBehind;
+
+    @Param("row")
+    public String priceCorrectionMode;
+
+    @Param("false")
+    public boolean virtualThreads;
+
+    public ConfigurableApplicationContext context;
+    public boolean postgres;
+    public int port;
+    public Long[] organizationIds;
+    public Long[][] productIds;
+    public UUID[][] userIds;
+    public Long[][] stationIds;
+
+    @Setup(Level.Trial)
+    public void start() {
+        String jdbcUrl = System.getProperty("bench.jdbc-url");
+        postgres = jdbcUrl != null;
+
+        Properties properties = new Properties();
+        properties.put("server.port", "0");
+        properties.put("logging.level.root", "WARN");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("jwt.secret", "Oykb0ZqpiNijNS7OzctgiZ/EFsQb2jaQzf9F3mxyQts=");
+        properties.put("spring.security.oauth2.client.registration.google.client-id", "benchmark");
+        properties.put("spring.security.oauth2.client.registration.google.client-secret", "benchmark");
+        // Benchmarks drive the job themselves
+        properties.put("app.price-correction.cron", "-");
+        properties.put("app.price-correction.mode", priceCorrectionMode);
+        properties.put("app.price-engine.write-behind", String.valueOf(writeBehind));
+        properties.put("spring.threads.virtual.enabled", String.valueOf(virtualThreads));
+        properties.put("spring.datasource.hikari.maximum-pool-size", System.getProperty("bench.pool-size", "10"));
+        if (postgres) {
+            properties.put("spring.datasource.url", jdbcUrl);
+            properties.put("spring.datasource.username", System.getProperty("bench.username", "postgres"));
+            properties.put("spring.datasource.password", System.getProperty("bench.password", "postgres"));
+            properties.put("spring.datasource.driverClassName", "org.postgresql.Driver");
+            properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+            properties.put("spring.jpa.hibernate.ddl-auto", "none");
+            properties.put("spring.liquibase.enabled", "true");
+            properties.put("spring.liquibase.change-log", "classpath:db/changelog/db.changelog-master.yaml");
+        } else {
+            properties.put("spring.datasource.url",
+                    "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+            properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        }
+
+        // Command line arguments, so they win over application.properties
+        String[] args = properties.entrySet().stream()
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(BorsibaarApplication.class);
+        if (!postgres) {
+            builder.sources(H2Overrides.class);
+        }
+        context = builder.run(args);
+        port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+
+        if (postgres) {
+            context.getBean(JdbcTemplate.class).execute("""
+                    TRUNCATE inventory_transactions, sales_rollups, inventory, products, categories,
+                             user_bar_stations, bar_stations, users, organizations RESTART IDENTITY CASCADE
+                    """);
+        }
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    private void seed() {
+        SplittableRandom random = new SplittableRandom(42);
+        TransactionTemplate tx = bean(TransactionTemplate.class);
+        int productsPerOrganization = Math.max(1, products / organizations);
+        int usersPerOrganization = Math.max(1, stations);
+
+        organizationIds = new Long[organizations];
+        productIds = new Long[organizations][productsPerOrganization];
+        userIds = new UUID[organizations][usersPerOrganization];
+        stationIds = new Long[organizations][stations];
+        Map<Long, Inventory> inventoryByProduct = new HashMap<>();
+
+        tx.executeWithoutResult(status -> {
+            for (int o = 0; o < organizations; o++) {
+                Organization organization = new Organization();
+                organization.setName("Benchmark bar " + o);
+                organization.setPriceIncreaseStep(new BigDecimal("0.10"));
+                organization.setPriceDecreaseStep(new BigDecimal("0.05"));
+                organization.setCreatedAt(OffsetDateTime.now());
+                Long organizationId = bean(OrganizationRepository.class).save(organization).getId();
+                organizationIds[o] = organizationId;
+
+                Category category = new Category();
+                category.setOrganizationId(organizationId);
+                category.setName("Drinks");
+                category.setDynamicPricing(true);
+                Long categoryId = bean(CategoryRepository.class).save(category).getId();
+
+                for (int p = 0; p < productsPerOrganization; p++) {
+                    Product product = new Product();
+                    product.setOrganizationId(organizationId);
+                    product.setCategoryId(categoryId);
+                    product.setName("Product " + o + "-" + p);
+                    product.setBasePrice(BASE_PRICE);
+                    product.setMinPrice(MIN_PRICE);
+                    product.setMaxPrice(MAX_PRICE);
+                    product.setActive(true);
+                    product.setCreatedAt(OffsetDateTime.now());
+                    product = bean(ProductRepository.class).save(product);
+                    productIds[o][p] = product.getId();
+
+                    Inventory inventory = bean(InventoryRepository.class).save(
+                            new Inventory(organizationId, product, new BigDecimal("1000000000"), BASE_PRICE));
+                    inventoryByProduct.put(product.getId(), inventory);
+                }
+
+                for (int s = 0; s < stations; s++) {
+                    BarStation station = BarStation.builder()
+                            .organizationId(organizationId)
+                            .name("Station " + s)
+                            .build();
+                    stationIds[o][s] = bean(BarStationRepository.class).save(station).getId();
+                }
+
+                for (int u = 0; u < usersPerOrganization; u++) {
+                    User user = User.builder()
+                            .organizationId(organizationId)
+                            .name("Bartender " + o + "-" + u)
+                            .email("bartender-" + o + "-" + u + "@benchmark.local")
+                            .build();
+                    userIds[o][u] = bean(UserRepository.class).save(user).getId();
+                }
+            }
+        });
+
+        // Historical sales, spread over the last week but never in the last minute
+        OffsetDateTime now = OffsetDateTime.now();
+        Map<String, SalesRollup> rollups = new HashMap<>();
+        for (int offset = 0; offset < transactions; offset += SEED_CHUNK) {
+            int chunk = Math.min(SEED_CHUNK, transactions - offset);
+            int first = offset;
+            tx.executeWithoutResult(status -> {
+                List<InventoryTransaction> rows = new ArrayList<>(chunk);
+                for (int i = 0; i < chunk; i++) {
+                    int o = random.nextInt(organizations);
+                    Long productId = productIds[o][random.nextInt(productsPerOrganization)];
+                    UUID userId = userIds[o][random.nextInt(usersPerOrganization)];
+                    Long stationId = stationIds[o][random.nextInt(stations)];
+                    OffsetDateTime soldAt = now.minusMinutes(2 + random.nextInt(7 * 24 * 60));
+                    BigDecimal quantity = BigDecimal.valueOf(1 + random.nextInt(3));
+
+                    InventoryTransaction transaction = new InventoryTransaction();
+                    transaction.setInventory(inventoryByProduct.get(productId));
+                    transaction.setTransactionType("SALE");
+                    transaction.setQuantityChange(quantity.negate());
+                    transaction.setQuantityBefore(BigDecimal.ZERO);
+                    transaction.setQuantityAfter(BigDecimal.ZERO);
+                    transaction.setPriceBefore(BASE_PRICE);
+                    transaction.setPriceAfter(BASE_PRICE);
+                    transaction.setReferenceId("SEED-" + (first + i));
+                    transaction.setCreatedBy(userId);
+                    transaction.setBarStationId(stationId);
+                    transaction.setCreatedAt(soldAt);
+                    rows.add(transaction);
+
+                    OffsetDateTime bucket = soldAt.truncatedTo(ChronoUnit.MINUTES);
+                    SalesRollup rollup = rollups.computeIfAbsent(
+                            organizationIds[o] + "/" + userId + "/" + stationId + "/" + productId + "/" + bucket,
+                            key -> newRollup(organizationIds[o], userId, stationId, productId, bucket));
+                    rollup.setSaleCount(rollup.getSaleCount() + 1);
+                    rollup.setQuantitySold(rollup.getQuantitySold().add(quantity));
+                }
+                bean(InventoryTransactionRepository.class).saveAll(rows);
+                bean(EntityManager.class).flush();
+                bean(EntityManager.class).clear();
+            });
+        }
+
+        List<SalesRollup> allRollups = new ArrayList<>(rollups.values());
+        for (int offset = 0; offset < allRollups.size(); offset += SEED_CHUNK) {
+            List<SalesRollup> chunk = allRollups.subList(offset, Math.min(allRollups.size(), offset + SEED_CHUNK));
+            tx.executeWithoutResult(status -> bean(SalesRollupRepository.class).saveAll(chunk));
+        }
+    }
+
+    private static SalesRollup newRollup(Long organizationId, UUID userId, Long stationId, Long productId,
+            OffsetDateTime bucket) {
+        SalesRollup rollup = new SalesRollup();
+        rollup.setOrganizationId(organizationId);
+        rollup.setUserId(userId);
+        rollup.setBarStationId(stationId);
+        rollup.setProductId(productId);
+        rollup.setBucketStart(bucket);
+        rollup.setQuantitySold(BigDecimal.ZERO);
+        return rollup;
+    }
+}
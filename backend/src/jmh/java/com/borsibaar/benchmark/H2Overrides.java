@@ -0,0 +1,142 @@
+package com.borsibaar.benchmark;
+
+import com.borsibaar.repository.InventoryJdbcRepository;
+import com.borsibaar.repository.PriceCandleJdbcRepository;
+import com.borsibaar.repository.SalesRollupJdbcRepository;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Only registered when benchmarking on H2, which has no INSERT ... ON CONFLICT
+ * or DISTINCT ON.
+ * Deliberately not a {@code @Configuration} so component scanning ignores it.
+ */
+class H2Overrides {
+
+    @Bean
+    @Primary
+    SalesRollupJdbcRepository h2SalesRollupJdbcRepository(JdbcTemplate jdbcTemplate) {
+        return new H2SalesRollupJdbcRepository(jdbcTemplate);
+    }
+
+    @Bean
+    @Primary
+    PriceCandleJdbcRepository h2PriceCandleJdbcRepository(JdbcTemplate jdbcTemplate) {
+        return new H2PriceCandleJdbcRepository(jdbcTemplate);
+    }
+
+    // The database is created empty on every run, so there is nothing to repair
+    @Bean
+    @Primary
+    InventoryJdbcRepository h2InventoryJdbcRepository(JdbcTemplate jdbcTemplate) {
+        return new InventoryJdbcRepository(jdbcTemplate) {
+            @Override
+            public int repairFromLedger() {
+                return 0;
+            }
+        };
+    }
+
+    static class H2SalesRollupJdbcRepository extends SalesRollupJdbcRepository {
+
+        private static final String MERGE_SQL = """
+                MERGE INTO sales_rollups r
+                USING (VALUES (CAST(? AS BIGINT), CAST(? AS UUID), CAST(? AS BIGINT), CAST(? AS BIGINT),
+                               CAST(? AS TIMESTAMP WITH TIME ZONE), CAST(? AS BIGINT), CAST(? AS NUMERIC(19, 4))))
+                    AS s(organization_id, user_id, bar_station_id, product_id, bucket_start, sale_count,
+                         quantity_sold)
+                ON r.organization_id = s.organization_id
+                AND r.user_id IS NOT DISTINCT FROM s.user_id
+                AND r.bar_station_id IS NOT DISTINCT FROM s.bar_station_id
+                AND r.product_id = s.product_id
+                AND r.bucket_start = s.bucket_start
+                WHEN MATCHED THEN UPDATE SET sale_count = r.sale_count + s.sale_count,
+                                             quantity_sold = r.quantity_sold + s.quantity_sold
+                WHEN NOT MATCHED THEN INSERT
+                    (organization_id, user_id, bar_station_id, product_id, bucket_start, sale_count, quantity_sold)
+                    VALUES (s.organization_id, s.user_id, s.bar_station_id, s.product_id, s.bucket_start,
+                            s.sale_count, s.quantity_sold)
+                """;
+
+        private static final int[] MERGE_TYPES = {
+                Types.BIGINT, Types.OTHER, Types.BIGINT, Types.BIGINT,
+                Types.TIMESTAMP_WITH_TIMEZONE, Types.BIGINT, Types.NUMERIC };
+
+        private final JdbcTemplate jdbcTemplate;
+
+        H2SalesRollupJdbcRepository(JdbcTemplate jdbcTemplate) {
+            super(jdbcTemplate);
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @Override
+        public void upsert(List<RollupDelta> deltas) {
+            if (deltas.isEmpty()) {
+                return;
+            }
+            List<Object[]> args = deltas.stream()
+                    .map(d -> new Object[] {
+                            d.organizationId(), d.userId(), d.barStationId(), d.productId(),
+                            d.bucketStart(), d.saleCount(), d.quantitySold() })
+                    .toList();
+            jdbcTemplate.batchUpdate(MERGE_SQL, args, MERGE_TYPES);
+        }
+    }
+
+    static class H2PriceCandleJdbcRepository extends PriceCandleJdbcRepository {
+
+        private static final String MERGE_SQL = """
+                MERGE INTO price_candles c
+                USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS TIMESTAMP WITH TIME ZONE),
+                               CAST(? AS NUMERIC(19, 4)), CAST(? AS NUMERIC(19, 4)), CAST(? AS NUMERIC(19, 4)),
+                               CAST(? AS NUMERIC(19, 4)), CAST(? AS NUMERIC(19, 4)),
+                               CAST(? AS TIMESTAMP WITH TIME ZONE), CAST(? AS TIMESTAMP WITH TIME ZONE)))
+                    AS s(organization_id, product_id, bucket_start, open_price, high_price, low_price, close_price,
+                         volume, opened_at, closed_at)
+                ON c.product_id = s.product_id
+                AND c.bucket_start = s.bucket_start
+                WHEN MATCHED THEN UPDATE SET
+                    open_price = CASE WHEN s.opened_at < c.opened_at THEN s.open_price ELSE c.open_price END,
+                    opened_at = LEAST(c.opened_at, s.opened_at),
+                    high_price = GREATEST(c.high_price, s.high_price),
+                    low_price = LEAST(c.low_price, s.low_price),
+                    close_price = CASE WHEN s.closed_at >= c.closed_at THEN s.close_price ELSE c.close_price END,
+                    closed_at = GREATEST(c.closed_at, s.closed_at),
+                    volume = c.volume + s.volume
+                WHEN NOT MATCHED THEN INSERT
+                    (organization_id, product_id, bucket_start, open_price, high_price, low_price, close_price,
+                     volume, opened_at, closed_at)
+                    VALUES (s.organization_id, s.product_id, s.bucket_start, s.open_price, s.high_price,
+                            s.low_price, s.close_price, s.volume, s.opened_at, s.closed_at)
+                """;
+
+        private static final int[] MERGE_TYPES = {
+                Types.BIGINT, Types.BIGINT, Types.TIMESTAMP_WITH_TIMEZONE, Types.NUMERIC, Types.NUMERIC,
+                Types.NUMERIC, Types.NUMERIC, Types.NUMERIC, Types.TIMESTAMP_WITH_TIMEZONE,
+                Types.TIMESTAMP_WITH_TIMEZONE };
+
+        private final JdbcTemplate jdbcTemplate;
+
+        H2PriceCandleJdbcRepository(JdbcTemplate jdbcTemplate) {
+            super(jdbcTemplate);
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @Override
+        public void upsert(List<CandleTick> ticks) {
+            if (ticks.isEmpty()) {
+                return;
+            }
+            List<Object[]> args = ticks.stream()
+                    .map(t -> new Object[] {
+                            t.organizationId(), t.productId(), t.bucketStart(), t.open(), t.high(), t.low(),
+                            t.close(), t.volume(), t.openedAt(), t.closedAt() })
+                    .toList();
+            jdbcTemplate.batchUpdate(MERGE_SQL, args, MERGE_TYPES);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.borsibaar.benchmark;
+
+import com.borsibaar.dto.InventoryResponseDto;
+import com.borsibaar.dto.StationSalesStatsResponseDto;
+import com.borsibaar.dto.UserSalesStatsResponseDto;
+import com.borsibaar.service.InventoryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths polled by the price board and the statistics page.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class InventoryQueryBenchmark {
+
+    @State(Scope.Thread)
+    public static class Reader {
+        private final SplittableRandom random = new SplittableRandom();
+        InventoryService inventoryService;
+
+        @Setup(Level.Trial)
+        public void setUp(BackendState backend) {
+            inventoryService = backend.bean(InventoryService.class);
+        }
+
+        Long organizationId(BackendState backend) {
+            return backend.organizationIds[random.nextInt(backend.organizationIds.length)];
+        }
+    }
+
+    @Benchmark
+    public List<InventoryResponseDto> getByOrganization(BackendState backend, Reader reader) {
+        return reader.inventoryService.getByOrganization(reader.organizationId(backend), null);
+    }
+
+    @Benchmark
+    public List<UserSalesStatsResponseDto> getUserSalesStats(BackendState backend, Reader reader) {
+        return reader.inventoryService.getUserSalesStats(reader.organizationId(backend));
+    }
+
+    @Benchmark
+    public List<StationSalesStatsResponseDto> getStationSalesStats(BackendState backend, Reader reader) {
+        return reader.inventoryService.getStationSalesStats(reader.organizationId(backend));
+    }
+}
@@ -0,0 +1,104 @@
+package com.borsibaar.benchmark;
+
+import com.borsibaar.service.JwtService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * POS terminals selling over HTTP, through Tomcat, security and the JSON
+ * layers. Each benchmark thread is one terminal of one bar. Compare request
+ * threading with {@code -p virtualThreads=false,true}; the sample-time mode
+ * reports p99. Platform threads top out at Tomcat's 200 workers, so raise the
+ * terminal count with {@code -t} to see the difference.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(64)
+public class PosLoadBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        HttpClient client;
+        URI salesUri;
+        String[][] cookies;
+
+        @Setup(Level.Trial)
+        public void setUp(BackendState backend) {
+            client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            salesUri = URI.create("http://localhost:" + backend.port + "/api/sales");
+
+            JwtService jwtService = backend.bean(JwtService.class);
+            cookies = new String[backend.organizationIds.length][];
+            for (int o = 0; o < cookies.length; o++) {
+                cookies[o] = new String[backend.userIds[o].length];
+                for (int u = 0; u < cookies[o].length; u++) {
+                    // Same addresses as the users seeded by BackendState
+                    cookies[o][u] = "jwt=" + jwtService.generateToken("bartender-" + o + "-" + u + "@benchmark.local");
+                }
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Terminal {
+        private final SplittableRandom random = new SplittableRandom();
+        int organization;
+        String cookie;
+        Long stationId;
+
+        @Setup(Level.Trial)
+        public void setUp(BackendState backend, Server server, ThreadParams thread) {
+            organization = thread.getThreadIndex() % backend.organizationIds.length;
+            int user = thread.getThreadIndex() / backend.organizationIds.length;
+            cookie = server.cookies[organization][user % server.cookies[organization].length];
+            stationId = backend.stationIds[organization][user % backend.stationIds[organization].length];
+        }
+    }
+
+    @Benchmark
+    public int processSale(BackendState backend, Server server, Terminal terminal)
+            throws IOException, InterruptedException {
+        Long[] products = backend.productIds[terminal.organization];
+        int lines = 1 + terminal.random.nextInt(3);
+        StringBuilder items = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) {
+                items.append(',');
+            }
+            items.append("{\"productId\":").append(products[terminal.random.nextInt(products.length)])
+                    .append(",\"quantity\":1}");
+        }
+        String body = "{\"items\":[" + items + "],\"barStationId\":" + terminal.stationId + "}";
+
+        HttpRequest request = HttpRequest.newBuilder(server.salesUri)
+                .header("Content-Type", "application/json")
+                .header("Cookie", terminal.cookie)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = server.client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("Sale failed with " + response.statusCode() + ": " + response.body());
+        }
+        return response.statusCode();
+    }
+}
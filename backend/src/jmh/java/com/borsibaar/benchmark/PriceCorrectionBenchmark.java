@@ -0,0 +1,70 @@
+package com.borsibaar.benchmark;
+
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.dto.SaleRequestDto;
+import com.borsibaar.jobs.PriceCorrectionJob;
+import com.borsibaar.service.PriceEngine;
+import com.borsibaar.service.SalesService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One tick of the price correction job. Before every tick the prices are reset
+ * and each bar sells one product, so every other product of every bar decays.
+ * Both modes use PostgreSQL-only SQL, so this needs {@code -Dbench.jdbc-url};
+ * use -p priceCorrectionMode=bulk to compare against row mode.
+ */
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PriceCorrectionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Tick {
+        PriceCorrectionJob job;
+
+        @Setup(Level.Trial)
+        public void setUp(BackendState backend) {
+            if (!backend.postgres) {
+                throw new IllegalStateException("PriceCorrectionBenchmark needs PostgreSQL, pass -Dbench.jdbc-url");
+            }
+            job = backend.bean(PriceCorrectionJob.class);
+        }
+
+        @Setup(Level.Invocation)
+        public void prepare(BackendState backend) {
+            backend.bean(JdbcTemplate.class).update("""
+                    UPDATE inventory SET adjusted_price = 3.00
+                    """);
+            PriceEngine priceEngine = backend.bean(PriceEngine.class);
+            for (Long[] products : backend.productIds) {
+                for (Long productId : products) {
+                    priceEngine.invalidate(productId);
+                }
+            }
+            SalesService salesService = backend.bean(SalesService.class);
+            for (int o = 0; o < backend.organizationIds.length; o++) {
+                salesService.processSale(
+                        new SaleRequestDto(List.of(new SaleItemRequestDto(backend.productIds[o][0], BigDecimal.ONE)),
+                                null, null),
+                        UUID.randomUUID(), backend.organizationIds[o]);
+            }
+        }
+    }
+
+    @Benchmark
+    public void adjustPrices(Tick tick) {
+        tick.job.adjustPrices();
+    }
+}
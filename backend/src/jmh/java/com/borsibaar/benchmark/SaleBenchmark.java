@@ -0,0 +1,60 @@
+package com.borsibaar.benchmark;
+
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.dto.SaleRequestDto;
+import com.borsibaar.dto.SaleResponseDto;
+import com.borsibaar.service.SalesService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * POS sales of one to three lines against random products of a random bar.
+ * Run with -t to see how sales on the same products contend.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class SaleBenchmark {
+
+    @State(Scope.Thread)
+    public static class Cashier {
+        private final SplittableRandom random = new SplittableRandom();
+        SalesService salesService;
+
+        @Setup(Level.Trial)
+        public void setUp(BackendState backend) {
+            salesService = backend.bean(SalesService.class);
+        }
+    }
+
+    @Benchmark
+    public SaleResponseDto processSale(BackendState backend, Cashier cashier) {
+        SplittableRandom random = cashier.random;
+        int o = random.nextInt(backend.organizationIds.length);
+        Long[] products = backend.productIds[o];
+
+        int lines = 1 + random.nextInt(3);
+        List<SaleItemRequestDto> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            items.add(new SaleItemRequestDto(products[random.nextInt(products.length)], BigDecimal.ONE));
+        }
+        Long stationId = backend.stationIds[o][random.nextInt(backend.stationIds[o].length)];
+        SaleRequestDto request = new SaleRequestDto(items, null, stationId);
+
+        return cashier.salesService.processSale(request,
+                backend.userIds[o][random.nextInt(backend.userIds[o].length)], backend.organizationIds[o]);
+    }
+}
@@ -0,0 +1,114 @@
+package com.borsibaar.benchmark;
+
+import com.borsibaar.util.FixedPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The arithmetic of a three-line sale as the price engine does it under its
+ * stripe locks: stock check and decrement, price step against the maximum,
+ * line totals and the sale total. Compares the BigDecimal version it replaced
+ * with the {@link FixedPoint} one. No Spring context needed; add -prof gc for
+ * the allocation rate:
+ * <pre>
+ *   mvn -Pbenchmark test-compile exec:exec -Djmh.args="SaleComputationBenchmark -prof gc"
+ * </pre>
+ * Stock is topped up once it runs low so every sale goes through.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SaleComputationBenchmark {
+
+    private static final int LINES = 3;
+
+    private final BigDecimal[] quantities = new BigDecimal[LINES];
+    private final BigDecimal[] prices = new BigDecimal[LINES];
+    private final BigDecimal[] sold = new BigDecimal[LINES];
+    private BigDecimal step;
+    private BigDecimal maxPrice;
+    private BigDecimal restock;
+
+    private final long[] quantityUnits = new long[LINES];
+    private final long[] priceUnits = new long[LINES];
+    private final long[] soldUnits = new long[LINES];
+    private long stepUnits;
+    private long maxPriceUnits;
+    private long restockUnits;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        step = new BigDecimal("0.1000");
+        maxPrice = new BigDecimal("9.0000");
+        restock = new BigDecimal("1000000.0000");
+        for (int i = 0; i < LINES; i++) {
+            quantities[i] = restock;
+            prices[i] = new BigDecimal("3.0000");
+            sold[i] = new BigDecimal("1.0000").add(BigDecimal.valueOf(i));
+        }
+        stepUnits = FixedPoint.of(step);
+        maxPriceUnits = FixedPoint.of(maxPrice);
+        restockUnits = FixedPoint.of(restock);
+        for (int i = 0; i < LINES; i++) {
+            quantityUnits[i] = FixedPoint.of(quantities[i]);
+            priceUnits[i] = FixedPoint.of(prices[i]);
+            soldUnits[i] = FixedPoint.of(sold[i]);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < LINES; i++) {
+            BigDecimal quantityAfter = quantities[i].subtract(sold[i]);
+            if (quantityAfter.compareTo(BigDecimal.ZERO) < 0) {
+                quantityAfter = restock;
+            }
+            BigDecimal priceBefore = prices[i];
+            BigDecimal priceAfter = priceBefore.add(step);
+            if (priceAfter.compareTo(maxPrice) > 0) {
+                // Back to the start so the step keeps applying
+                priceAfter = priceBefore.subtract(maxPrice).add(step);
+            }
+            quantities[i] = quantityAfter;
+            prices[i] = priceAfter;
+            total = total.add(priceBefore.multiply(sold[i]));
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long fixedPoint() {
+        long total = 0;
+        for (int i = 0; i < LINES; i++) {
+            long quantityAfter = FixedPoint.subtract(quantityUnits[i], soldUnits[i]);
+            if (quantityAfter < 0) {
+                quantityAfter = restockUnits;
+            }
+            long priceBefore = priceUnits[i];
+            long priceAfter = FixedPoint.add(priceBefore, stepUnits);
+            if (priceAfter > maxPriceUnits) {
+                priceAfter = FixedPoint.add(FixedPoint.subtract(priceBefore, maxPriceUnits), stepUnits);
+            }
+            quantityUnits[i] = quantityAfter;
+            priceUnits[i] = priceAfter;
+            total = FixedPoint.add(total, FixedPoint.multiply(priceBefore, soldUnits[i]));
+        }
+        return total;
+    }
+}
@@ -0,0 +1,55 @@
+package com.borsibaar.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Caches of reference data that rarely changes: products, categories,
+ * organizations and bar stations. Each cache has its own size and TTL
+ * ({@code app.cache.<name>.max-size} and {@code .ttl}) and records hit and miss
+ * counts, published as the {@code cache.gets} metric.
+ *
+ * <p>The services that change an entity evict it. Puts and evictions made inside
+ * a transaction are applied once it commits, so a rolled-back change never
+ * evicts and a reader never caches a row another transaction is about to
+ * replace. A reader that loaded just before such a commit can still put the old
+ * value back; the TTL bounds how long that lasts.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String PRODUCTS = "products";
+    public static final String CATEGORIES = "categories";
+    public static final String ORGANIZATIONS = "organizations";
+    public static final String BAR_STATIONS = "barStations";
+
+    private static final List<String> CACHE_NAMES = List.of(PRODUCTS, CATEGORIES, ORGANIZATIONS, BAR_STATIONS);
+
+    @Bean
+    public CacheManager cacheManager(Environment environment) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        // Only the caches below; a typo in a cache name fails instead of creating one
+        cacheManager.setCacheNames(List.of());
+        for (String name : CACHE_NAMES) {
+            Duration ttl = environment.getProperty("app.cache." + name + ".ttl", Duration.class,
+                    Duration.ofMinutes(10));
+            long maxSize = environment.getProperty("app.cache." + name + ".max-size", Long.class, 10_000L);
+            cacheManager.registerCustomCache(name, Caffeine.newBuilder()
+                    .expireAfterWrite(ttl)
+                    .maximumSize(maxSize)
+                    .recordStats()
+                    .build());
+        }
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
@@ -1,9 +1,11 @@
 package com.borsibaar.config;
 
 import com.borsibaar.entity.User;
-import com.borsibaar.repository.UserRepository;
 import com.borsibaar.service.JwtService;
+import com.borsibaar.service.PrincipalCache;
 import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
@@ -33,7 +35,8 @@ import java.util.Optional;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
-    private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
+    private final MeterRegistry meterRegistry;
 
     @Override
     protected void doFilterInternal(
@@ -61,17 +64,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
+        // Token check and principal lookup, timed as jwt.authentication by outcome
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "invalid";
         try {
             // Parse and validate JWT token
             Claims claims = jwtService.parseToken(token);
             String email = claims.getSubject();
 
-            // Load user from database and set JWT authentication
+            // Load user (cached, see PrincipalCache) and set JWT authentication
             // This replaces any existing OAuth2 session authentication
             if (email != null) {
-                // Use findByEmailWithRole to eagerly fetch role and avoid
-                // LazyInitializationException
-                Optional<User> userOptional = userRepository.findByEmailWithRole(email);
+                // The cache loads with findByEmailWithRole to eagerly fetch role and
+                // avoid LazyInitializationException
+                Optional<User> userOptional = principalCache.findByEmail(email);
 
                 if (userOptional.isPresent()) {
                     User user = userOptional.get();
@@ -90,8 +96,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     // Set authentication in SecurityContext (replaces OAuth2 authentication if
                     // present)
                     SecurityContextHolder.getContext().setAuthentication(authToken);
+                    outcome = "authenticated";
                     logger.debug("JWT authentication set in SecurityContext for user: " + email);
                 } else {
+                    outcome = "unknown_user";
                     logger.warn("User not found in database for email: " + email);
                 }
             }
@@ -99,6 +107,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             // If token is invalid, log and continue without authentication
             // Spring Security will handle the 401/403 response
             logger.warn("JWT token validation failed: " + e.getMessage(), e);
+        } finally {
+            sample.stop(Timer.builder("jwt.authentication")
+                    .description("JWT cookie validation and principal lookup")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
         }
 
         // Continue filter chain
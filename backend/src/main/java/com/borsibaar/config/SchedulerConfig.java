@@ -1,17 +1,41 @@
 package com.borsibaar.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 @Configuration
 public class SchedulerConfig {
 
+    /**
+     * Two threads, so a price correction run waiting on its organizations does
+     * not hold up the price engine flush; the organizations themselves run on
+     * the job's own pool.
+     */
     @Bean
+    @ConditionalOnThreading(Threading.PLATFORM)
     public ThreadPoolTaskScheduler taskScheduler() {
         ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
-        scheduler.setPoolSize(1);
+        scheduler.setPoolSize(2);
         scheduler.setThreadNamePrefix("scheduler-");
         return scheduler;
     }
-}
\ No newline at end of file
+
+    /**
+     * With spring.threads.virtual.enabled (the virtual-threads profile) every run
+     * gets its own virtual thread, so a slow price correction no longer holds up
+     * the price engine flush. Fixed-delay and cron tasks still never overlap
+     * themselves.
+     */
+    @Bean(name = "taskScheduler")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SimpleAsyncTaskScheduler virtualThreadTaskScheduler() {
+        SimpleAsyncTaskScheduler scheduler = new SimpleAsyncTaskScheduler();
+        scheduler.setVirtualThreads(true);
+        scheduler.setThreadNamePrefix("scheduler-");
+        return scheduler;
+    }
+}
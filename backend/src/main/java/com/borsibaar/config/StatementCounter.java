@@ -0,0 +1,45 @@
+package com.borsibaar.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread between
+ * {@link #start()} and {@link #stop()}; see {@link StatementCountFilter}.
+ * Statements sent through JdbcTemplate are not seen. A JDBC batch is prepared
+ * once, so it counts as one.
+ */
+@Component
+public class StatementCounter implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private final ThreadLocal<int[]> count = new ThreadLocal<>();
+
+    public void start() {
+        count.set(new int[1]);
+    }
+
+    /** Statements since {@link #start()}, or zero if counting was not started. */
+    public int stop() {
+        int[] counted = count.get();
+        count.remove();
+        return counted == null ? 0 : counted[0];
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] counted = count.get();
+        if (counted != null) {
+            counted[0]++;
+        }
+        return sql;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+}
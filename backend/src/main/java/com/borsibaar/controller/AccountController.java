@@ -4,6 +4,7 @@ import com.borsibaar.entity.Role;
 import com.borsibaar.entity.User;
 import com.borsibaar.repository.RoleRepository;
 import com.borsibaar.repository.UserRepository;
+import com.borsibaar.service.PrincipalCache;
 import com.borsibaar.util.SecurityUtils;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.RequiredArgsConstructor;
@@ -18,6 +19,7 @@ import org.springframework.web.server.ResponseStatusException;
 public class AccountController {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
+    private final PrincipalCache principalCache;
 
     @Schema(description = "Current user information")
     public record MeResponse(
@@ -73,7 +75,12 @@ public class AccountController {
                 return ResponseEntity.badRequest().build();
 
             // Allow users without organization (that's the point of onboarding)
-            User user = SecurityUtils.getCurrentUser(false);
+            User principal = SecurityUtils.getCurrentUser(false);
+            // The principal may be PrincipalCache's instance, shared with other requests:
+            // change this transaction's own copy of the row and evict the cached one
+            User user = userRepository.findById(principal.getId())
+                    .orElseThrow(() -> new ResponseStatusException(
+                            org.springframework.http.HttpStatus.NOT_FOUND, "User not found"));
 
             Role adminRole = roleRepository.findByName("ADMIN")
                     .orElseThrow(() -> new IllegalArgumentException("Admin role ADMIN not found"));
@@ -86,6 +93,7 @@ public class AccountController {
                 }
                 user.setOrganizationId(req.organizationId());
                 userRepository.save(user);
+                principalCache.evict(user.getEmail());
             }
 
             // If later you add orgId to JWT, re-issue token here.
@@ -4,12 +4,15 @@ import com.borsibaar.dto.BarStationRequestDto;
 import com.borsibaar.dto.BarStationResponseDto;
 import com.borsibaar.entity.User;
 import com.borsibaar.service.BarStationService;
+import com.borsibaar.service.OrganizationVersions;
+import com.borsibaar.service.OrganizationVersions.Resource;
 import com.borsibaar.util.SecurityUtils;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -19,20 +22,29 @@ import java.util.List;
 public class BarStationController {
 
     private final BarStationService barStationService;
+    private final OrganizationVersions organizationVersions;
 
     @GetMapping
-    public ResponseEntity<List<BarStationResponseDto>> getAllStations() {
+    public ResponseEntity<List<BarStationResponseDto>> getAllStations(WebRequest webRequest) {
         User user = SecurityUtils.getCurrentUser();
         SecurityUtils.requireAdminRole(user);
-        
+        if (webRequest.checkNotModified(organizationVersions.etag(user.getOrganizationId(), Resource.BAR_STATIONS,
+                Resource.USERS))) {
+            return null;
+        }
+
         List<BarStationResponseDto> stations = barStationService.getAllStations(user.getOrganizationId());
         return ResponseEntity.ok(stations);
     }
 
     @GetMapping("/user")
-    public ResponseEntity<List<BarStationResponseDto>> getUserStations() {
+    public ResponseEntity<List<BarStationResponseDto>> getUserStations(WebRequest webRequest) {
         User user = SecurityUtils.getCurrentUser();
-        
+        if (webRequest.checkNotModified(organizationVersions.userEtag(user.getOrganizationId(), user.getId(),
+                Resource.BAR_STATIONS, Resource.USERS))) {
+            return null;
+        }
+
         List<BarStationResponseDto> stations = barStationService.getUserStations(user.getId(), user.getOrganizationId());
         return ResponseEntity.ok(stations);
     }
@@ -4,10 +4,13 @@ import com.borsibaar.dto.CategoryRequestDto;
 import com.borsibaar.dto.CategoryResponseDto;
 import com.borsibaar.entity.User;
 import com.borsibaar.service.CategoryService;
+import com.borsibaar.service.OrganizationVersions;
+import com.borsibaar.service.OrganizationVersions.Resource;
 import com.borsibaar.util.SecurityUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -16,6 +19,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class CategoryController {
     private final CategoryService categoryService;
+    private final OrganizationVersions organizationVersions;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -25,7 +29,8 @@ public class CategoryController {
     }
 
     @GetMapping
-    public List<CategoryResponseDto> getAll(@RequestParam(required = false) Long organizationId) {
+    public List<CategoryResponseDto> getAll(@RequestParam(required = false) Long organizationId,
+            WebRequest webRequest) {
         // If organizationId is provided, use it (for public access)
         // Otherwise, get from authenticated user
         Long orgId;
@@ -35,6 +40,9 @@ public class CategoryController {
             User user = SecurityUtils.getCurrentUser();
             orgId = user.getOrganizationId();
         }
+        if (webRequest.checkNotModified(organizationVersions.etag(orgId, Resource.CATEGORIES))) {
+            return null;
+        }
         return categoryService.getAllByOrg(orgId);
     }
 
@@ -3,13 +3,24 @@ package com.borsibaar.controller;
 import com.borsibaar.dto.*;
 import com.borsibaar.entity.User;
 import com.borsibaar.service.InventoryService;
+import com.borsibaar.service.OptimisticRetry;
+import com.borsibaar.service.OrganizationVersions;
+import com.borsibaar.service.OrganizationVersions.Resource;
+import com.borsibaar.service.PriceCandleService;
+import com.borsibaar.service.PriceFeedService;
 import com.borsibaar.util.SecurityUtils;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 
 @Slf4j
@@ -19,11 +30,16 @@ import java.util.List;
 public class InventoryController {
 
     private final InventoryService inventoryService;
+    private final PriceFeedService priceFeedService;
+    private final OptimisticRetry optimisticRetry;
+    private final PriceCandleService priceCandleService;
+    private final OrganizationVersions organizationVersions;
 
     @GetMapping
     public List<InventoryResponseDto> getOrganizationInventory(
             @RequestParam(required = false) Long categoryId,
-            @RequestParam(required = false) Long organizationId) {
+            @RequestParam(required = false) Long organizationId,
+            WebRequest webRequest) {
         // If organizationId is provided, use it (for public access)
         // Otherwise, get from authenticated user
         Long orgId;
@@ -33,9 +49,61 @@ public class InventoryController {
             User user = SecurityUtils.getCurrentUser();
             orgId = user.getOrganizationId();
         }
+        // Tag taken before loading, so a change racing the load leaves the tag stale, not the data
+        if (webRequest.checkNotModified(organizationVersions.etag(orgId, Resource.INVENTORY))) {
+            return null;
+        }
         return inventoryService.getByOrganization(orgId, categoryId);
     }
 
+    @GetMapping("/board")
+    public List<BoardCategoryDto> getBoard(@RequestParam(required = false) Long organizationId,
+            WebRequest webRequest) {
+        // Same public access rules as the inventory list
+        Long orgId;
+        if (organizationId != null) {
+            orgId = organizationId;
+        } else {
+            User user = SecurityUtils.getCurrentUser();
+            orgId = user.getOrganizationId();
+        }
+        if (webRequest.checkNotModified(organizationVersions.etag(orgId, Resource.INVENTORY))) {
+            return null;
+        }
+        return inventoryService.getBoard(orgId);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamInventoryUpdates(@RequestParam(required = false) Long organizationId) {
+        // Same public access rules as the inventory list
+        Long orgId;
+        if (organizationId != null) {
+            orgId = organizationId;
+        } else {
+            User user = SecurityUtils.getCurrentUser();
+            orgId = user.getOrganizationId();
+        }
+        return priceFeedService.subscribe(orgId);
+    }
+
+    @GetMapping("/price-candles")
+    public List<PriceSeriesDto> getPriceCandles(
+            @RequestParam List<Long> productIds,
+            @RequestParam(defaultValue = "1m") String interval,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(required = false) Long organizationId) {
+        // Same public access rules as the inventory list
+        Long orgId;
+        if (organizationId != null) {
+            orgId = organizationId;
+        } else {
+            User user = SecurityUtils.getCurrentUser();
+            orgId = user.getOrganizationId();
+        }
+        return priceCandleService.getSeries(orgId, productIds, interval, from, to);
+    }
+
     @GetMapping("/product/{productId}")
     public InventoryResponseDto getProductInventory(@PathVariable Long productId) {
         User user = SecurityUtils.getCurrentUser();
@@ -48,36 +116,61 @@ public class InventoryController {
         User user = SecurityUtils.getCurrentUser();
         log.debug("Adding stock - productId: {}, quantity: {}", request.productId(), request.quantity());
 
-        return inventoryService.addStock(request, user.getId(), user.getOrganizationId());
+        return optimisticRetry.run(() -> inventoryService.addStock(request, user.getId(), user.getOrganizationId()));
     }
 
     @PostMapping("/remove")
     public InventoryResponseDto removeStock(@RequestBody @Valid RemoveStockRequestDto request) {
         User user = SecurityUtils.getCurrentUser();
-        return inventoryService.removeStock(request, user.getId(), user.getOrganizationId());
+        return optimisticRetry.run(
+                () -> inventoryService.removeStock(request, user.getId(), user.getOrganizationId()));
     }
 
     @PostMapping("/adjust")
     public InventoryResponseDto adjustStock(@RequestBody @Valid AdjustStockRequestDto request) {
         User user = SecurityUtils.getCurrentUser();
-        return inventoryService.adjustStock(request, user.getId(), user.getOrganizationId());
+        return optimisticRetry.run(
+                () -> inventoryService.adjustStock(request, user.getId(), user.getOrganizationId()));
     }
 
-    @GetMapping("/product/{productId}/history")
-    public List<InventoryTransactionResponseDto> getTransactionHistory(@PathVariable Long productId) {
+    @GetMapping(value = "/product/{productId}/history", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody getTransactionHistory(
+            @PathVariable Long productId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to) {
         User user = SecurityUtils.getCurrentUser();
-        return inventoryService.getTransactionHistory(productId, user.getOrganizationId());
+        return inventoryService.streamTransactionHistory(productId, user.getOrganizationId(), from, to);
+    }
+
+    @GetMapping("/product/{productId}/history/page")
+    public InventoryTransactionPageDto getTransactionHistoryPage(
+            @PathVariable Long productId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        User user = SecurityUtils.getCurrentUser();
+        return inventoryService.getTransactionHistoryPage(productId, user.getOrganizationId(), from, to, cursor,
+                limit);
     }
 
     @GetMapping("/sales-stats")
-    public List<UserSalesStatsResponseDto> getUserSalesStats() {
+    public List<UserSalesStatsResponseDto> getUserSalesStats(WebRequest webRequest) {
         User user = SecurityUtils.getCurrentUser();
+        if (webRequest.checkNotModified(organizationVersions.etag(user.getOrganizationId(), Resource.SALES,
+                Resource.BAR_STATIONS, Resource.USERS))) {
+            return null;
+        }
         return inventoryService.getUserSalesStats(user.getOrganizationId());
     }
 
     @GetMapping("/station-sales-stats")
-    public List<StationSalesStatsResponseDto> getStationSalesStats() {
+    public List<StationSalesStatsResponseDto> getStationSalesStats(WebRequest webRequest) {
         User user = SecurityUtils.getCurrentUser();
+        if (webRequest.checkNotModified(organizationVersions.etag(user.getOrganizationId(), Resource.SALES,
+                Resource.BAR_STATIONS))) {
+            return null;
+        }
         return inventoryService.getStationSalesStats(user.getOrganizationId());
     }
 }
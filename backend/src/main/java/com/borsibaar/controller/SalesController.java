@@ -3,12 +3,15 @@ package com.borsibaar.controller;
 import com.borsibaar.dto.SaleRequestDto;
 import com.borsibaar.dto.SaleResponseDto;
 import com.borsibaar.entity.User;
+import com.borsibaar.service.OptimisticRetry;
 import com.borsibaar.service.SalesService;
 import com.borsibaar.util.SecurityUtils;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 @RestController
 @RequestMapping("/api/sales")
@@ -16,11 +19,27 @@ import org.springframework.web.bind.annotation.*;
 public class SalesController {
 
     private final SalesService salesService;
+    private final OptimisticRetry optimisticRetry;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public SaleResponseDto processSale(@RequestBody @Valid SaleRequestDto request) {
+    public SaleResponseDto processSale(@RequestBody @Valid SaleRequestDto request,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
         User user = SecurityUtils.getCurrentUser();
-        return salesService.processSale(request, user.getId(), user.getOrganizationId());
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > 100)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key must be 1 to 100 characters");
+        }
+        try {
+            return optimisticRetry.run(() ->
+                    salesService.processSale(request, user.getId(), user.getOrganizationId(), idempotencyKey));
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent retry with the same key committed first: answer with its sale
+            if (idempotencyKey == null) {
+                throw e;
+            }
+            return salesService.findPreviousSale(user.getOrganizationId(), idempotencyKey, request)
+                    .orElseThrow(() -> e);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.borsibaar.dto;
+
+import java.util.List;
+
+public record BoardCategoryDto(
+                Long categoryId,
+                String categoryName,
+                List<InventoryResponseDto> products) {
+}
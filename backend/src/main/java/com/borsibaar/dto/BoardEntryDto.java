@@ -0,0 +1,21 @@
+package com.borsibaar.dto;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * One product on the price board with the category it is listed under.
+ */
+public record BoardEntryDto(
+        Long categoryId,
+        String categoryName,
+        InventoryResponseDto product) {
+
+    // Used by the JPQL projection in InventoryRepository
+    public BoardEntryDto(Long categoryId, String categoryName, Long id, Long organizationId, Long productId,
+            String productName, BigDecimal quantity, BigDecimal unitPrice, String description, BigDecimal basePrice,
+            BigDecimal minPrice, BigDecimal maxPrice, OffsetDateTime updatedAt) {
+        this(categoryId, categoryName, new InventoryResponseDto(id, organizationId, productId, productName, quantity,
+                unitPrice, description, basePrice, minPrice, maxPrice, updatedAt));
+    }
+}
@@ -1,6 +1,8 @@
 package com.borsibaar.dto;
 
 import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
 
 public record InventoryResponseDto(
         Long id,
@@ -14,4 +16,12 @@ public record InventoryResponseDto(
         BigDecimal minPrice,
         BigDecimal maxPrice,
         String updatedAt) {
+
+    // Used by the JPQL projection in InventoryRepository
+    public InventoryResponseDto(Long id, Long organizationId, Long productId, String productName,
+            BigDecimal quantity, BigDecimal unitPrice, String description, BigDecimal basePrice,
+            BigDecimal minPrice, BigDecimal maxPrice, OffsetDateTime updatedAt) {
+        this(id, organizationId, productId, productName, quantity, unitPrice, description, basePrice, minPrice,
+                maxPrice, updatedAt != null ? updatedAt.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME) : null);
+    }
 }
@@ -0,0 +1,8 @@
+package com.borsibaar.dto;
+
+import java.util.List;
+
+public record InventoryTransactionPageDto(
+                List<InventoryTransactionResponseDto> items,
+                String nextCursor) {
+}
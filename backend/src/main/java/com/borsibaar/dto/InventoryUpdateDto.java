@@ -0,0 +1,12 @@
+package com.borsibaar.dto;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+public record InventoryUpdateDto(
+        Long inventoryId,
+        Long productId,
+        BigDecimal quantity,
+        BigDecimal unitPrice,
+        OffsetDateTime updatedAt) {
+}
@@ -0,0 +1,13 @@
+package com.borsibaar.dto;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+public record PriceCandleDto(
+                OffsetDateTime bucketStart,
+                BigDecimal open,
+                BigDecimal high,
+                BigDecimal low,
+                BigDecimal close,
+                BigDecimal volume) {
+}
@@ -0,0 +1,18 @@
+package com.borsibaar.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * The product fields the stock endpoints need, without the entity graph, so it
+ * can be cached across requests.
+ */
+public record ProductReferenceDto(
+        Long id,
+        Long organizationId,
+        String name,
+        String description,
+        BigDecimal basePrice,
+        BigDecimal minPrice,
+        BigDecimal maxPrice,
+        boolean active) {
+}
@@ -44,6 +44,14 @@ public class Inventory {
     @Column(name = "adjusted_price", precision = 19, scale = 4)
     private BigDecimal adjustedPrice;
 
+    /**
+     * Bumped by every write, including the JDBC writes of the price engine and the
+     * price correction job, so entity updates fail instead of overwriting them.
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @OneToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "product_id")
     private Product product;
@@ -17,8 +17,12 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 public class InventoryTransaction {
+    // Sequence with allocationSize 50 (pooled-lo, see application.properties) so ledger
+    // inserts can be batched; IDENTITY forces one INSERT per row
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_transactions_seq")
+    @SequenceGenerator(name = "inventory_transactions_seq", sequenceName = "inventory_transactions_seq",
+            allocationSize = 50)
     private Long id;
 
     @Column(name = "inventory_id", nullable = false, insertable = false, updatable = false)
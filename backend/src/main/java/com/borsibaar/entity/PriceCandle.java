@@ -0,0 +1,57 @@
+package com.borsibaar.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Open, high, low and close price of one product over a 10 second bucket, plus
+ * the quantity sold in it. Maintained on write by
+ * {@link com.borsibaar.service.PriceCandleService}; longer intervals are merged
+ * from these when read.
+ */
+@Entity
+@Table(name = "price_candles")
+@Getter
+@Setter
+@NoArgsConstructor
+public class PriceCandle {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "organization_id", nullable = false)
+    private Long organizationId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "bucket_start", nullable = false)
+    private OffsetDateTime bucketStart;
+
+    @Column(name = "open_price", nullable = false, precision = 19, scale = 4)
+    private BigDecimal openPrice;
+
+    @Column(name = "high_price", nullable = false, precision = 19, scale = 4)
+    private BigDecimal highPrice;
+
+    @Column(name = "low_price", nullable = false, precision = 19, scale = 4)
+    private BigDecimal lowPrice;
+
+    @Column(name = "close_price", nullable = false, precision = 19, scale = 4)
+    private BigDecimal closePrice;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal volume;
+
+    // When the open and close prices were set; concurrent writers only move them outward
+    @Column(name = "opened_at", nullable = false)
+    private OffsetDateTime openedAt;
+
+    @Column(name = "closed_at", nullable = false)
+    private OffsetDateTime closedAt;
+}
@@ -0,0 +1,44 @@
+package com.borsibaar.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+
+/**
+ * A sale submitted with an idempotency key. The row is claimed before the sale
+ * is processed and holds the response, so a retried request gets the original
+ * answer instead of selling twice.
+ */
+@Entity
+@Table(name = "sale_requests")
+@Getter
+@Setter
+@NoArgsConstructor
+public class SaleRequest {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "organization_id", nullable = false)
+    private Long organizationId;
+
+    @Column(name = "idempotency_key", nullable = false, length = 100)
+    private String idempotencyKey;
+
+    @Column(name = "sale_id", nullable = false, length = 100)
+    private String saleId;
+
+    /** SHA-256 of the request, hex; null on rows claimed before it was stored. */
+    @Column(name = "request_hash", length = 64)
+    private String requestHash;
+
+    /** The SaleResponseDto as JSON. */
+    @Column(name = "response", columnDefinition = "TEXT")
+    private String response;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+}
@@ -0,0 +1,51 @@
+package com.borsibaar.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Pre-aggregated sales per organization, user, bar station, product and minute.
+ * Maintained on write by {@link com.borsibaar.service.SalesRollupService} so the
+ * sales statistics do not have to scan the transaction ledger.
+ */
+@Entity
+@Table(name = "sales_rollups")
+@Getter
+@Setter
+@NoArgsConstructor
+public class SalesRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "organization_id", nullable = false)
+    private Long organizationId;
+
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Column(name = "bar_station_id")
+    private Long barStationId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "bucket_start", nullable = false)
+    private OffsetDateTime bucketStart;
+
+    /**
+     * Number of distinct sales counted in this bucket. A sale is counted once, on
+     * the bucket of its first line, so summing across products stays exact.
+     */
+    @Column(name = "sale_count", nullable = false)
+    private long saleCount;
+
+    @Column(name = "quantity_sold", nullable = false, precision = 19, scale = 4)
+    private BigDecimal quantitySold;
+}
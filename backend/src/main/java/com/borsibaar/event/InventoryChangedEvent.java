@@ -0,0 +1,13 @@
+package com.borsibaar.event;
+
+import com.borsibaar.dto.InventoryUpdateDto;
+
+import java.util.List;
+
+/**
+ * Published whenever price or quantity of one or more inventory rows of an
+ * organization changes. Listeners that push data to clients should only react
+ * after the surrounding transaction has committed.
+ */
+public record InventoryChangedEvent(Long organizationId, List<InventoryUpdateDto> updates) {
+}
@@ -0,0 +1,12 @@
+package com.borsibaar.event;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Published with every sale, next to its {@link InventoryChangedEvent}. Carries
+ * the inventory rows whose price moves with sales; the price decay timers of
+ * those are re-armed once the sale has committed.
+ */
+public record ProductsSoldEvent(Long organizationId, OffsetDateTime soldAt, List<Long> dynamicPricingInventoryIds) {
+}
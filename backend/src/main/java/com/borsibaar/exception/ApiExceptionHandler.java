@@ -4,6 +4,7 @@ import io.swagger.v3.oas.annotations.Hidden;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.ConstraintViolationException;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
 import org.springframework.web.ErrorResponseException;
@@ -114,6 +115,17 @@ public class ApiExceptionHandler {
                                 request.getRequestURI());
         }
 
+        @Hidden
+        @ExceptionHandler(OptimisticLockingFailureException.class)
+        public ProblemDetail handleOptimisticLocking(OptimisticLockingFailureException exception,
+                        HttpServletRequest request) {
+                return buildProblemDetail(
+                                HttpStatus.CONFLICT,
+                                "Concurrent update",
+                                "The resource was changed by another request, please try again.",
+                                request.getRequestURI());
+        }
+
         @Hidden
         @ExceptionHandler(ResponseStatusException.class)
         public ProblemDetail handleResponseStatus(ResponseStatusException exception,
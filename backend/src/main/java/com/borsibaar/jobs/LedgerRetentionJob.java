@@ -0,0 +1,73 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.repository.LedgerPartitionJdbcRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Keeps the monthly partitions of inventory_transactions ahead of the clock and
+ * archives the months that are past retention, so the live ledger (and every
+ * query on it) only ever spans the last {@code app.ledger.retention-months}.
+ * Sales stats read the rollups and are unaffected; transaction history older
+ * than that is only in ledger_archive.
+ */
+@Slf4j
+@Service
+public class LedgerRetentionJob {
+
+    // A missed run or two still leaves the coming month in place
+    private static final int MONTHS_AHEAD = 2;
+
+    private final LedgerPartitionJdbcRepository ledgerPartitionJdbcRepository;
+    private final boolean enabled;
+    private final int retentionMonths;
+
+    public LedgerRetentionJob(LedgerPartitionJdbcRepository ledgerPartitionJdbcRepository,
+            @Value("${app.ledger.partitioned:false}") boolean enabled,
+            @Value("${app.ledger.retention-months:0}") int retentionMonths) {
+        this.ledgerPartitionJdbcRepository = ledgerPartitionJdbcRepository;
+        this.enabled = enabled;
+        this.retentionMonths = retentionMonths;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.ledger.cron:0 30 5 * * *}", zone = "UTC")
+    public void maintainPartitions() {
+        maintainPartitions(YearMonth.now(ZoneOffset.UTC));
+    }
+
+    void maintainPartitions(YearMonth current) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            for (int i = 0; i <= MONTHS_AHEAD; i++) {
+                ledgerPartitionJdbcRepository.createMonth(current.plusMonths(i));
+            }
+            // Zero keeps everything
+            if (retentionMonths <= 0) {
+                return;
+            }
+            YearMonth oldestKept = current.minusMonths(retentionMonths - 1L);
+            List<YearMonth> expired = ledgerPartitionJdbcRepository.findMonths().stream()
+                    .filter(month -> month.isBefore(oldestKept))
+                    .sorted()
+                    .toList();
+            for (YearMonth month : expired) {
+                ledgerPartitionJdbcRepository.archiveMonth(month);
+                log.info("Archived inventory transactions of {} to ledger_archive", month);
+            }
+        } catch (DataAccessException e) {
+            log.error("Could not maintain inventory transaction partitions", e);
+        }
+    }
+}
@@ -1,47 +1,319 @@
 package com.borsibaar.jobs;
 
+import com.borsibaar.dto.InventoryUpdateDto;
 import com.borsibaar.entity.Inventory;
 import com.borsibaar.entity.InventoryTransaction;
 import com.borsibaar.entity.Product;
+import com.borsibaar.event.InventoryChangedEvent;
 import com.borsibaar.repository.*;
+import com.borsibaar.repository.PriceCorrectionJdbcRepository.PriceDecay;
+import com.borsibaar.service.LedgerAppender;
+import com.borsibaar.service.PriceCandleService;
+import com.borsibaar.service.PriceCandleService.PriceMove;
+import com.borsibaar.service.PriceEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Lowers the prices of idle dynamic-pricing products, once a minute (the cron
+ * run) or per product when its decay timer runs out ({@link PriceDecayScheduler}).
+ *
+ * <p>Either way the work is split by organization, and the organizations run
+ * in parallel on a pool of {@code app.price-correction.parallelism} threads, so
+ * one busy bar does not hold up everyone else's price drops. Each partition
+ * has {@code app.price-correction.partition-timeout}: its transaction times out
+ * after that, which cancels its statements and rolls it back, and the run stops
+ * waiting for it. A cron run that finds the previous one still going is
+ * skipped; the decay timers call in from a single thread.
+ */
 @Slf4j
 @Service
 public class PriceCorrectionJob {
 
     private final InventoryRepository inventoryRepository;
-    private final InventoryTransactionRepository inventoryTransactionRepository;
+    private final LedgerAppender ledgerAppender;
     private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PriceEngine priceEngine;
+    private final PriceCorrectionJdbcRepository priceCorrectionJdbcRepository;
+    private final PriceCandleService priceCandleService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean bulkMode;
+    private final boolean decayTimers;
+    private final int parallelism;
+    private final Duration partitionTimeout;
+    private final ExecutorService partitions;
+    private final ReentrantLock runLock = new ReentrantLock();
+    private final Timer runTimer;
+    private final DistributionSummary productsUpdated;
+    private final Timer expiryTimer;
+    private final DistributionSummary expiryProductsUpdated;
+    private final Counter skippedRuns;
+    private final Counter partitionTimeouts;
 
     public PriceCorrectionJob(InventoryRepository inventoryRepository,
-            InventoryTransactionRepository inventoryTransactionRepository,
-            ProductRepository productRepository) {
+            LedgerAppender ledgerAppender,
+            ProductRepository productRepository,
+            ApplicationEventPublisher eventPublisher,
+            PriceEngine priceEngine,
+            PriceCorrectionJdbcRepository priceCorrectionJdbcRepository,
+            PriceCandleService priceCandleService,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.price-correction.mode:bulk}") String mode,
+            @Value("${app.price-correction.decay-timers:true}") boolean decayTimers,
+            @Value("${app.price-correction.parallelism:4}") int parallelism,
+            @Value("${app.price-correction.partition-timeout:10s}") Duration partitionTimeout) {
         this.inventoryRepository = inventoryRepository;
-        this.inventoryTransactionRepository = inventoryTransactionRepository;
+        this.ledgerAppender = ledgerAppender;
         this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+        this.priceEngine = priceEngine;
+        this.priceCorrectionJdbcRepository = priceCorrectionJdbcRepository;
+        this.priceCandleService = priceCandleService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setTimeout((int) Math.max(1, partitionTimeout.toSeconds()));
+        this.bulkMode = "bulk".equalsIgnoreCase(mode);
+        this.decayTimers = decayTimers;
+        this.parallelism = parallelism;
+        this.partitionTimeout = partitionTimeout;
+        AtomicInteger threads = new AtomicInteger();
+        this.partitions = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "price-correction-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        String modeTag = bulkMode ? "bulk" : "row";
+        this.runTimer = Timer.builder("price.correction")
+                .description("Runs of the price reduction job")
+                .tag("mode", modeTag)
+                .register(meterRegistry);
+        this.productsUpdated = DistributionSummary.builder("price.correction.products")
+                .description("Products repriced per run of the price reduction job")
+                .tag("mode", modeTag)
+                .register(meterRegistry);
+        this.expiryTimer = Timer.builder("price.correction")
+                .description("Runs of the price reduction job")
+                .tag("mode", "timers")
+                .register(meterRegistry);
+        this.expiryProductsUpdated = DistributionSummary.builder("price.correction.products")
+                .description("Products repriced per run of the price reduction job")
+                .tag("mode", "timers")
+                .register(meterRegistry);
+        this.skippedRuns = Counter.builder("price.correction.skipped")
+                .description("Runs skipped because the previous one was still going")
+                .register(meterRegistry);
+        this.partitionTimeouts = Counter.builder("price.correction.timeouts")
+                .description("Organizations whose price reduction ran out of time")
+                .register(meterRegistry);
     }
 
-    @Scheduled(cron = "0 * * * * *")
+    @PreDestroy
+    void shutdown() {
+        partitions.shutdownNow();
+    }
+
+    @Scheduled(cron = "${app.price-correction.cron:0 * * * * *}")
     public void adjustPrices() {
-        log.debug("Running price reduction job");
+        if (decayTimers) {
+            // PriceDecayScheduler decays each product when its own timer runs out
+            return;
+        }
+        if (!runLock.tryLock()) {
+            log.warn("Skipping price reduction job, the previous run is still going");
+            skippedRuns.increment();
+            return;
+        }
+        try {
+            log.debug("Running price reduction job");
+            long started = System.nanoTime();
+            // Get buffered sales into the inventory rows before reading them
+            priceEngine.flush();
+
+            int updatedCount = bulkMode ? adjustPricesBulk() : adjustPricesRowByRow();
+
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+            runTimer.record(elapsed);
+            productsUpdated.record(updatedCount);
+            long elapsedMs = elapsed.toMillis();
+            log.info("Price reduction job completed in {} ms ({} mode). Updated prices of {} products.",
+                    elapsedMs, bulkMode ? "bulk" : "row", updatedCount);
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    /**
+     * One UPDATE ... RETURNING and one batched ledger insert per organization, each
+     * organization in its own transaction.
+     */
+    private int adjustPricesBulk() {
+        OffsetDateTime now = OffsetDateTime.now();
+        OffsetDateTime since = now.minusMinutes(1);
+        String referenceId = "REDUCE-" + System.currentTimeMillis();
+
+        List<Long> organizationIds = priceCorrectionJdbcRepository.findOrganizationsWithSalesSince(since);
+        return runPartitioned(organizationIds,
+                organizationId -> decayOrganization(organizationId, null, since, now, referenceId))
+                .values().stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * Decays the given inventory rows of each organization if they have not sold
+     * within {@code idle} of {@code now}; used by {@link PriceDecayScheduler} when
+     * their timers run out. Same rules, transactions and side effects as a bulk
+     * run.
+     *
+     * @return the price changes per organization; an organization whose decay
+     *         failed or timed out is left out
+     */
+    public Map<Long, List<PriceDecay>> decayExpired(Map<Long, List<Long>> inventoryIdsByOrganization,
+            OffsetDateTime now, Duration idle) {
+        long started = System.nanoTime();
+        priceEngine.flush();
+        OffsetDateTime since = now.minus(idle);
+        String referenceId = "REDUCE-" + System.currentTimeMillis();
+
+        Map<Long, List<PriceDecay>> decaysByOrganization = runPartitioned(inventoryIdsByOrganization.keySet(),
+                organizationId -> decayOrganization(organizationId, inventoryIdsByOrganization.get(organizationId),
+                        since, now, referenceId));
+
+        expiryTimer.record(Duration.ofNanos(System.nanoTime() - started));
+        expiryProductsUpdated.record(decaysByOrganization.values().stream().mapToInt(List::size).sum());
+        return decaysByOrganization;
+    }
+
+    /**
+     * Lowers the organization's idle prices (only those of {@code inventoryIds}
+     * unless null) in its own transaction and publishes the changes.
+     *
+     * @return the changed rows, or null if the decay failed
+     */
+    private List<PriceDecay> decayOrganization(Long organizationId, Collection<Long> inventoryIds,
+            OffsetDateTime since, OffsetDateTime now, String referenceId) {
+        List<PriceDecay> decays;
+        try {
+            decays = transactionTemplate.execute(status -> {
+                // Write out buffered sales before the rows are decayed, or their absolute
+                // prices would land on top of it; the cached prices are dropped again on commit
+                if (inventoryIds == null) {
+                    priceEngine.invalidateOrganization(organizationId);
+                } else {
+                    priceEngine.invalidateInventories(inventoryIds);
+                }
+                List<PriceDecay> changed = inventoryIds == null
+                        ? priceCorrectionJdbcRepository.decayIdlePrices(organizationId, since, now)
+                        : priceCorrectionJdbcRepository.decayIdlePrices(organizationId, inventoryIds, since, now);
+                priceCorrectionJdbcRepository.insertAdjustments(changed, referenceId, "PriceCorrectionJob", now);
+                priceCandleService.record(organizationId, now, changed.stream()
+                        .map(decay -> new PriceMove(decay.productId(), decay.priceBefore(), decay.priceAfter(),
+                                BigDecimal.ZERO))
+                        .toList());
+                return changed;
+            });
+        } catch (RuntimeException e) {
+            log.error("Price reduction failed for organization {}", organizationId, e);
+            return null;
+        }
+        if (decays == null || decays.isEmpty()) {
+            return List.of();
+        }
+
+        eventPublisher.publishEvent(new InventoryChangedEvent(organizationId, decays.stream()
+                .map(decay -> new InventoryUpdateDto(decay.inventoryId(), decay.productId(), decay.quantity(),
+                        decay.priceAfter(), now))
+                .toList()));
+        return decays;
+    }
+
+    private int adjustPricesRowByRow() {
         List<Product> inactiveProducts = productRepository.findByActiveOrgAndInactiveSalesLastMinute();
 
         if (inactiveProducts.isEmpty()) {
             log.debug("No product prices to update automatically");
-            return;
+            return 0;
+        }
+
+        Map<Long, List<Product>> productsByOrganization = inactiveProducts.stream()
+                .collect(Collectors.groupingBy(Product::getOrganizationId, LinkedHashMap::new, Collectors.toList()));
+        return runPartitioned(productsByOrganization.keySet(),
+                organizationId -> adjustOrganizationRowByRow(organizationId, productsByOrganization.get(organizationId)))
+                .values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Lowers the organization's prices product by product, in one transaction
+     * like a bulk partition, so a failed or timed out organization leaves neither
+     * prices nor ledger rows behind.
+     *
+     * @return the number of changed prices, or null if the organization failed
+     */
+    private Integer adjustOrganizationRowByRow(Long organizationId, List<Product> products) {
+        List<InventoryUpdateDto> updates;
+        try {
+            updates = transactionTemplate.execute(status -> adjustRowByRow(organizationId, products));
+        } catch (RuntimeException e) {
+            log.error("Price reduction failed for organization {}", organizationId, e);
+            return null;
+        }
+        if (updates == null || updates.isEmpty()) {
+            return 0;
         }
+        eventPublisher.publishEvent(new InventoryChangedEvent(organizationId, updates));
+        return updates.size();
+    }
 
-        int updatedCount = 0;
-        for (Product product : inactiveProducts) {
-            Inventory inventory = Optional.ofNullable(product.getInventory())
+    /**
+     * Locks the rows in id order, the order every other inventory writer uses,
+     * and prices each from what it holds once locked, so a concurrent sale or
+     * restock is waited for rather than lost. The products are invalidated
+     * before the first row is locked: invalidating takes the product's stripe,
+     * which a write-through sale holds while it waits on its rows.
+     */
+    private List<InventoryUpdateDto> adjustRowByRow(Long organizationId, List<Product> products) {
+        List<Product> inLockOrder = products.stream()
+                .sorted(Comparator.comparing(
+                        (Product product) -> product.getInventory() != null ? product.getInventory().getId() : null,
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+        // Write out buffered sales before the rows are locked; the cached prices are dropped again on commit
+        inLockOrder.forEach(product -> priceEngine.invalidate(product.getId()));
+        List<InventoryUpdateDto> updates = new ArrayList<>();
+        for (Product product : inLockOrder) {
+            Inventory inventory = inventoryRepository
+                    .findForUpdateByOrganizationIdAndProductId(organizationId, product.getId())
                     .orElseGet(() -> {
                         Inventory newInv = new Inventory();
                         newInv.setOrganizationId(product.getOrganizationId());
@@ -83,10 +355,54 @@ public class PriceCorrectionJob {
             transaction.setNotes("PriceCorrectionJob");
             transaction.setCreatedBy(null);
             transaction.setCreatedAt(OffsetDateTime.now());
-            inventoryTransactionRepository.save(transaction);
+            ledgerAppender.append(transaction);
+            priceCandleService.record(product.getOrganizationId(), transaction.getCreatedAt(),
+                    List.of(new PriceMove(product.getId(), currentPrice, newPrice, BigDecimal.ZERO)));
 
-            updatedCount++;
+            updates.add(new InventoryUpdateDto(inventory.getId(), product.getId(), inventory.getQuantity(),
+                    newPrice, inventory.getUpdatedAt()));
+        }
+        return updates;
+    }
+
+    /**
+     * Runs {@code work} for every organization on the partition pool and waits
+     * for all of them. Partitions beyond the pool size queue, so a partition may
+     * finish as late as one timeout per round of {@code parallelism}; whatever
+     * is still running then is cancelled.
+     *
+     * @return the results per organization; failed (null) and timed out
+     *         partitions are left out
+     */
+    private <T> Map<Long, T> runPartitioned(Collection<Long> organizationIds, Function<Long, T> work) {
+        Map<Long, Future<T>> futures = new LinkedHashMap<>();
+        for (Long organizationId : organizationIds) {
+            futures.put(organizationId, partitions.submit(() -> work.apply(organizationId)));
+        }
+        long rounds = Math.ceilDiv(futures.size(), parallelism);
+        long deadline = System.nanoTime() + partitionTimeout.toNanos() * rounds;
+
+        Map<Long, T> results = new HashMap<>();
+        for (Map.Entry<Long, Future<T>> entry : futures.entrySet()) {
+            Long organizationId = entry.getKey();
+            Future<T> future = entry.getValue();
+            try {
+                T result = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (result != null) {
+                    results.put(organizationId, result);
+                }
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                partitionTimeouts.increment();
+                log.error("Price reduction for organization {} did not finish in time", organizationId);
+            } catch (ExecutionException e) {
+                log.error("Price reduction failed for organization {}", organizationId, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(pending -> pending.cancel(true));
+                break;
+            }
         }
-        log.info("Price reduction job completed. Updated prices of {} products.", updatedCount);
+        return results;
     }
 }
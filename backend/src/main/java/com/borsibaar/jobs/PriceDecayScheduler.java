@@ -0,0 +1,329 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.event.ProductsSoldEvent;
+import com.borsibaar.repository.PriceCorrectionJdbcRepository;
+import com.borsibaar.repository.PriceCorrectionJdbcRepository.LatestSale;
+import com.borsibaar.repository.PriceCorrectionJdbcRepository.PriceDecay;
+import com.borsibaar.util.TimerWheel;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Event-driven price decay, replacing the price correction job's scan of the
+ * ledger once a minute. Every committed sale of a dynamic-pricing product
+ * (re)arms a timer for its inventory row; when the row has been idle for
+ * {@code app.price-correction.idle} the timer runs out and the price drops one
+ * step right away, through {@link PriceCorrectionJob#decayExpired}, and the timer
+ * is armed again for the next step. The cost follows the products that actually
+ * sell, and a decay lands on the idle mark instead of up to a minute after it.
+ *
+ * <p>The rules are the scan's: prices only decay while the organization is open,
+ * i.e. it sold anything within the idle period. Timers of a closed organization
+ * are parked until its next sale, which decays them at once. A timer is dropped
+ * once its product reaches the minimum price or stops being dynamically priced;
+ * its next sale arms it again.
+ *
+ * <p>The timers live in a {@link TimerWheel} owned by the {@code price-decay}
+ * thread. A sale only moves a timer's deadline, or queues a new one for that
+ * thread; a timer whose deadline moved goes back into the wheel when it comes
+ * out. On startup the timers are rebuilt from each dynamic-pricing row's latest
+ * sale; rows that never sold wait for their organization's next sale. Like the
+ * price engine this assumes a single backend instance.
+ */
+@Slf4j
+@Service
+public class PriceDecayScheduler {
+
+    private final PriceCorrectionJob priceCorrectionJob;
+    private final PriceCorrectionJdbcRepository priceCorrectionJdbcRepository;
+    private final boolean enabled;
+    private final Duration idle;
+    private final long idleMillis;
+    private final long tickMillis;
+
+    // By inventory id, armed or parked
+    private final Map<Long, DecayTimer> timers = new ConcurrentHashMap<>();
+    private final Map<Long, Long> lastSaleByOrganization = new ConcurrentHashMap<>();
+    // Armed by sales, for the ticker to put into the wheel
+    private final Queue<DecayTimer> armed = new ConcurrentLinkedQueue<>();
+    // Owned by the ticker thread, like the wheel (null until the timers are rebuilt)
+    private final Map<Long, List<DecayTimer>> parkedByOrganization = new HashMap<>();
+    private TimerWheel<DecayTimer> wheel;
+    private volatile boolean running;
+    private Thread ticker;
+
+    public PriceDecayScheduler(PriceCorrectionJob priceCorrectionJob,
+            PriceCorrectionJdbcRepository priceCorrectionJdbcRepository,
+            MeterRegistry meterRegistry,
+            @Value("${app.price-correction.decay-timers:true}") boolean enabled,
+            @Value("${app.price-correction.idle:60s}") Duration idle,
+            @Value("${app.price-correction.tick:100ms}") Duration tick) {
+        this.priceCorrectionJob = priceCorrectionJob;
+        this.priceCorrectionJdbcRepository = priceCorrectionJdbcRepository;
+        this.enabled = enabled;
+        this.idle = idle;
+        this.idleMillis = idle.toMillis();
+        this.tickMillis = tick.toMillis();
+        Gauge.builder("price.decay.timers", timers, Map::size)
+                .description("Inventory rows with an armed or parked price decay timer")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        ticker = new Thread(this::run, "price-decay");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (ticker == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(ticker);
+        try {
+            ticker.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductsSold(ProductsSoldEvent event) {
+        if (!enabled) {
+            return;
+        }
+        long soldAt = event.soldAt().toInstant().toEpochMilli();
+        lastSaleByOrganization.merge(event.organizationId(), soldAt, Math::max);
+        long deadline = deadlineAfter(soldAt);
+        for (Long inventoryId : event.dynamicPricingInventoryIds()) {
+            arm(inventoryId, event.organizationId(), deadline);
+        }
+    }
+
+    int timerCount() {
+        return timers.size();
+    }
+
+    /**
+     * Starts the wheel at {@code nowMillis} and arms a timer for every
+     * dynamic-pricing row from its latest sale; those already past their
+     * deadline run out on the first tick. Runs on the ticker before its first
+     * tick.
+     */
+    void rebuild(long nowMillis) {
+        wheel = new TimerWheel<>(tickMillis, nowMillis);
+        List<LatestSale> latestSales;
+        try {
+            latestSales = priceCorrectionJdbcRepository.findLatestSales();
+        } catch (DataAccessException e) {
+            log.error("Could not rebuild price decay timers from the ledger; sales arm them again", e);
+            return;
+        }
+        for (LatestSale sale : latestSales) {
+            if (sale.lastSaleAt() == null) {
+                DecayTimer timer = timers.computeIfAbsent(sale.inventoryId(),
+                        id -> new DecayTimer(id, sale.organizationId()));
+                parkedByOrganization.computeIfAbsent(sale.organizationId(), id -> new ArrayList<>()).add(timer);
+                continue;
+            }
+            long soldAt = sale.lastSaleAt().toInstant().toEpochMilli();
+            lastSaleByOrganization.merge(sale.organizationId(), soldAt, Math::max);
+            arm(sale.inventoryId(), sale.organizationId(), deadlineAfter(soldAt));
+        }
+        log.info("Rebuilt {} price decay timers from the ledger", latestSales.size());
+    }
+
+    /**
+     * Moves the wheel to {@code nowMillis} and decays the rows whose timers ran
+     * out, all organizations in one call.
+     */
+    void tick(long nowMillis) {
+        for (DecayTimer timer; (timer = armed.poll()) != null; ) {
+            wheel.schedule(timer, timer.deadline);
+        }
+        releaseParked(nowMillis);
+
+        Map<Long, List<DecayTimer>> expiredByOrganization = new HashMap<>();
+        wheel.advance(nowMillis, timer -> {
+            if (timer.deadline > nowMillis) {
+                // Sold again while it waited
+                wheel.schedule(timer, timer.deadline);
+            } else {
+                expiredByOrganization.computeIfAbsent(timer.organizationId, id -> new ArrayList<>()).add(timer);
+            }
+        });
+
+        Map<Long, List<Long>> decaying = new HashMap<>();
+        expiredByOrganization.forEach((organizationId, expired) -> {
+            if (isOpen(organizationId, nowMillis)) {
+                decaying.put(organizationId, expired.stream().map(timer -> timer.inventoryId).toList());
+            } else {
+                expired.forEach(timer -> park(timer, nowMillis));
+            }
+        });
+        if (decaying.isEmpty()) {
+            return;
+        }
+
+        OffsetDateTime now = OffsetDateTime.ofInstant(Instant.ofEpochMilli(nowMillis), ZoneId.systemDefault());
+        Map<Long, List<PriceDecay>> decaysByOrganization;
+        try {
+            decaysByOrganization = priceCorrectionJob.decayExpired(decaying, now, idle);
+        } catch (RuntimeException e) {
+            log.error("Price decay of {} organizations failed", decaying.size(), e);
+            decaysByOrganization = Map.of();
+        }
+        long next = nowMillis + idleMillis;
+        for (Long organizationId : decaying.keySet()) {
+            List<PriceDecay> decays = decaysByOrganization.get(organizationId);
+            Set<Long> decayed = decays == null ? null
+                    : decays.stream().map(PriceDecay::inventoryId).collect(Collectors.toSet());
+            for (DecayTimer timer : expiredByOrganization.get(organizationId)) {
+                if (decayed == null || decayed.contains(timer.inventoryId)) {
+                    // Next step, or another try after a failure
+                    rearm(timer, next);
+                } else {
+                    // At its minimum price or no longer dynamically priced
+                    retire(timer, nowMillis);
+                }
+            }
+        }
+    }
+
+    private void run() {
+        rebuild(System.currentTimeMillis());
+        while (running) {
+            try {
+                tick(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                log.error("Price decay tick failed", e);
+            }
+            LockSupport.parkNanos(Duration.ofMillis(tickMillis).toNanos());
+        }
+    }
+
+    // The sale is outside the idle window (created_at >= now - idle) from the next millisecond on
+    private long deadlineAfter(long soldAtMillis) {
+        return soldAtMillis + idleMillis + 1;
+    }
+
+    private boolean isOpen(Long organizationId, long nowMillis) {
+        Long lastSale = lastSaleByOrganization.get(organizationId);
+        return lastSale != null && lastSale >= nowMillis - idleMillis;
+    }
+
+    /**
+     * Timer fields change under the map's lock for the row, so a sale arming a
+     * timer never races the ticker parking or dropping it.
+     */
+    private void arm(Long inventoryId, Long organizationId, long deadline) {
+        timers.compute(inventoryId, (id, timer) -> {
+            if (timer == null) {
+                timer = new DecayTimer(id, organizationId);
+            }
+            timer.deadline = Math.max(timer.deadline, deadline);
+            if (!timer.scheduled) {
+                timer.scheduled = true;
+                armed.add(timer);
+            }
+            return timer;
+        });
+    }
+
+    private void rearm(DecayTimer timer, long deadline) {
+        timers.computeIfPresent(timer.inventoryId, (id, current) -> {
+            current.deadline = Math.max(current.deadline, deadline);
+            wheel.schedule(current, current.deadline);
+            return current;
+        });
+    }
+
+    private void retire(DecayTimer timer, long nowMillis) {
+        timers.computeIfPresent(timer.inventoryId, (id, current) -> {
+            if (current.deadline > nowMillis) {
+                wheel.schedule(current, current.deadline);
+                return current;
+            }
+            return null;
+        });
+    }
+
+    private void park(DecayTimer timer, long nowMillis) {
+        timers.computeIfPresent(timer.inventoryId, (id, current) -> {
+            if (current.deadline > nowMillis) {
+                wheel.schedule(current, current.deadline);
+            } else {
+                current.scheduled = false;
+                parkedByOrganization.computeIfAbsent(current.organizationId, key -> new ArrayList<>()).add(current);
+            }
+            return current;
+        });
+    }
+
+    /**
+     * A sale reopened the organization. Its parked rows have been idle all along
+     * and decay on this tick, as they would have on the scan's next run.
+     */
+    private void releaseParked(long nowMillis) {
+        parkedByOrganization.entrySet().removeIf(entry -> {
+            if (!isOpen(entry.getKey(), nowMillis)) {
+                return false;
+            }
+            entry.getValue().forEach(timer -> timers.computeIfPresent(timer.inventoryId, (id, current) -> {
+                // Already back in the wheel if it sold itself
+                if (!current.scheduled) {
+                    current.scheduled = true;
+                    wheel.schedule(current, current.deadline);
+                }
+                return current;
+            }));
+            return true;
+        });
+    }
+
+    private static final class DecayTimer {
+
+        private final Long inventoryId;
+        private final Long organizationId;
+        // Read by the ticker outside the map's lock
+        private volatile long deadline;
+        // In the wheel or on its way there, as opposed to parked
+        private boolean scheduled;
+
+        private DecayTimer(Long inventoryId, Long organizationId) {
+            this.inventoryId = inventoryId;
+            this.organizationId = organizationId;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.repository.SaleRequestRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+/**
+ * Deletes idempotency keys of sales older than {@code app.sale-requests.retention}.
+ * A client only retries a sale while its cart is still on screen, so a key
+ * past retention is never sent again; a request with such a key would be
+ * processed as a new sale.
+ */
+@Slf4j
+@Service
+public class SaleRequestRetentionJob {
+
+    private final SaleRequestRepository saleRequestRepository;
+    private final Duration retention;
+
+    public SaleRequestRetentionJob(SaleRequestRepository saleRequestRepository,
+            @Value("${app.sale-requests.retention:24h}") Duration retention) {
+        this.saleRequestRepository = saleRequestRepository;
+        this.retention = retention;
+    }
+
+    @Scheduled(cron = "${app.sale-requests.cron:0 15 * * * *}")
+    public void deleteExpired() {
+        deleteExpired(OffsetDateTime.now());
+    }
+
+    void deleteExpired(OffsetDateTime now) {
+        try {
+            int deleted = saleRequestRepository.deleteCreatedBefore(now.minus(retention));
+            if (deleted > 0) {
+                log.info("Deleted {} idempotency keys of sales older than {}", deleted, retention);
+            }
+        } catch (DataAccessException e) {
+            log.error("Could not delete expired sale idempotency keys", e);
+        }
+    }
+}
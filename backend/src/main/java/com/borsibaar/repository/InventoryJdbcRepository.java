@@ -0,0 +1,182 @@
+package com.borsibaar.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write side used by the price engine. Stock is applied as a delta so a batched
+ * write never overwrites a stock change made through the inventory endpoints in
+ * the meantime. Batches update their rows in id order, the same order the price
+ * correction job locks them in, so two writers never wait on each other's rows
+ * crosswise.
+ */
+@Repository
+@RequiredArgsConstructor
+public class InventoryJdbcRepository {
+
+    private static final String APPLY_SQL = """
+            UPDATE inventory
+            SET quantity = quantity + ?, adjusted_price = ?, updated_at = ?, version = version + 1
+            WHERE id = ?
+            """;
+
+    private static final int[] APPLY_TYPES = {
+            Types.NUMERIC, Types.NUMERIC, Types.TIMESTAMP_WITH_TIMEZONE, Types.BIGINT };
+
+    private static final String APPLY_VERSIONED_SQL = """
+            UPDATE inventory
+            SET quantity = quantity + ?, adjusted_price = ?, updated_at = ?, version = version + 1
+            WHERE id = ?
+            AND version = ?
+            """;
+
+    private static final int[] APPLY_VERSIONED_TYPES = {
+            Types.NUMERIC, Types.NUMERIC, Types.TIMESTAMP_WITH_TIMEZONE, Types.BIGINT, Types.BIGINT };
+
+    private static final String STOCKS_SQL = """
+            SELECT id, quantity, adjusted_price, updated_at, version
+            FROM inventory
+            WHERE id IN (%s)
+            """;
+
+    private static final String LOCK_STOCKS_SQL = """
+            SELECT id, quantity, adjusted_price, updated_at, version
+            FROM inventory
+            WHERE id IN (%s)
+            ORDER BY id
+            FOR UPDATE
+            """;
+
+    // Latest ledger row per inventory wins wherever it is newer than the row itself. Rows older
+    // than every inventory row cannot win, and the bound lets PostgreSQL skip their partitions.
+    private static final String REPAIR_SQL = """
+            UPDATE inventory i
+            SET quantity = t.quantity_after, adjusted_price = t.price_after, updated_at = t.created_at,
+                version = i.version + 1
+            FROM (SELECT DISTINCT ON (inventory_id) inventory_id, quantity_after, price_after, created_at
+                  FROM inventory_transactions
+                  WHERE created_at > (SELECT MIN(updated_at) FROM inventory)
+                  ORDER BY inventory_id, created_at DESC, id DESC) t
+            WHERE t.inventory_id = i.id
+            AND t.created_at > i.updated_at
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void apply(List<InventoryChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = inIdOrder(changes).stream()
+                .map(c -> new Object[] { c.quantityDelta(), c.adjustedPrice(), c.updatedAt(), c.inventoryId() })
+                .toList();
+        jdbcTemplate.batchUpdate(APPLY_SQL, args, APPLY_TYPES);
+    }
+
+    /**
+     * Like {@link #apply}, but each change only applies to the row version it
+     * expects. Changes to the same row must be in version order.
+     *
+     * @throws OptimisticLockingFailureException if a row was changed by someone else
+     */
+    public void applyVersioned(List<InventoryChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<InventoryChange> ordered = inIdOrder(changes);
+        List<Object[]> args = ordered.stream()
+                .map(c -> new Object[] {
+                        c.quantityDelta(), c.adjustedPrice(), c.updatedAt(), c.inventoryId(), c.expectedVersion() })
+                .toList();
+        int[] counts = jdbcTemplate.batchUpdate(APPLY_VERSIONED_SQL, args, APPLY_VERSIONED_TYPES);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                throw new OptimisticLockingFailureException(
+                        "Inventory " + ordered.get(i).inventoryId() + " was changed concurrently");
+            }
+        }
+    }
+
+    /**
+     * Current stock, price and version of the rows, by inventory id; missing rows
+     * are left out. Read with plain JDBC because the caller's persistence context
+     * may still hold the entities as they were loaded earlier in the same
+     * transaction.
+     */
+    public Map<Long, Stock> findStocks(Collection<Long> inventoryIds) {
+        return queryStocks(STOCKS_SQL, inventoryIds);
+    }
+
+    /**
+     * Like {@link #findStocks}, but locks the rows in id order until the caller's
+     * transaction completes, so nobody else can change them in between.
+     */
+    public Map<Long, Stock> lockStocks(Collection<Long> inventoryIds) {
+        return queryStocks(LOCK_STOCKS_SQL, inventoryIds);
+    }
+
+    /**
+     * Brings inventory rows back in line with the transaction ledger, for writes
+     * that were still buffered when the application stopped.
+     *
+     * @return number of repaired rows
+     */
+    public int repairFromLedger() {
+        return jdbcTemplate.update(REPAIR_SQL);
+    }
+
+    private Map<Long, Stock> queryStocks(String sql, Collection<Long> inventoryIds) {
+        Map<Long, Stock> stocks = new HashMap<>();
+        if (inventoryIds.isEmpty()) {
+            return stocks;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(inventoryIds.size(), "?"));
+        jdbcTemplate.query(sql.formatted(placeholders), rs -> {
+            stocks.put(rs.getLong("id"), new Stock(
+                    rs.getBigDecimal("quantity"),
+                    rs.getBigDecimal("adjusted_price"),
+                    rs.getObject("updated_at", OffsetDateTime.class),
+                    rs.getLong("version")));
+        }, inventoryIds.toArray());
+        return stocks;
+    }
+
+    // Stable, so changes to one row keep their version order
+    private static List<InventoryChange> inIdOrder(List<InventoryChange> changes) {
+        return changes.stream()
+                .sorted(Comparator.comparing(InventoryChange::inventoryId))
+                .toList();
+    }
+
+    public record Stock(BigDecimal quantity, BigDecimal adjustedPrice, OffsetDateTime updatedAt, long version) {
+    }
+
+    /**
+     * @param expectedVersion row version the change was computed against; only
+     *                        used by {@link #applyVersioned}
+     */
+    public record InventoryChange(
+            Long inventoryId,
+            BigDecimal quantityDelta,
+            BigDecimal adjustedPrice,
+            OffsetDateTime updatedAt,
+            Long expectedVersion) {
+
+        public InventoryChange(Long inventoryId, BigDecimal quantityDelta, BigDecimal adjustedPrice,
+                OffsetDateTime updatedAt) {
+            this(inventoryId, quantityDelta, adjustedPrice, updatedAt, null);
+        }
+    }
+}
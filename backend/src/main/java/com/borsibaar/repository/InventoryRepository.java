@@ -1,7 +1,11 @@
 package com.borsibaar.repository;
 
+import com.borsibaar.dto.BoardEntryDto;
+import com.borsibaar.dto.InventoryResponseDto;
 import com.borsibaar.entity.Inventory;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -13,12 +17,40 @@ import java.util.Optional;
 public interface InventoryRepository extends JpaRepository<Inventory, Long> {
     Optional<Inventory> findByOrganizationIdAndProductId(Long organizationId, Long productId);
 
+    // Stock edits hold the row until commit, so a stream of sales cannot keep failing their version check
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Inventory> findForUpdateByOrganizationIdAndProductId(Long organizationId, Long productId);
+
     List<Inventory> findByOrganizationId(Long organizationId);
 
-    @Query("SELECT i FROM Inventory i JOIN Product p ON i.productId = p.id " +
-            "WHERE i.organizationId = :organizationId AND p.categoryId = :categoryId")
-    List<Inventory> findByOrganizationIdAndCategoryId(@Param("organizationId") Long organizationId,
-            @Param("categoryId") Long categoryId);
+    // History reads only need the key, not the row and its eagerly loaded product
+    @Query("SELECT i.id FROM Inventory i WHERE i.organizationId = :organizationId AND i.productId = :productId")
+    Optional<Long> findIdByOrganizationIdAndProductId(@Param("organizationId") Long organizationId,
+            @Param("productId") Long productId);
+
+    // Read model for the POS and the price board: one query, active products only, sorted by name
+    String ACTIVE_VIEW_SELECT = "SELECT new com.borsibaar.dto.InventoryResponseDto(" +
+            "i.id, i.organizationId, p.id, p.name, i.quantity, COALESCE(i.adjustedPrice, p.basePrice), " +
+            "p.description, p.basePrice, p.minPrice, p.maxPrice, i.updatedAt) " +
+            "FROM Inventory i JOIN i.product p " +
+            "WHERE i.organizationId = :organizationId AND p.isActive = true ";
+
+    @Query(ACTIVE_VIEW_SELECT + "ORDER BY p.name")
+    List<InventoryResponseDto> findActiveViewsByOrganizationId(@Param("organizationId") Long organizationId);
+
+    @Query(ACTIVE_VIEW_SELECT + "AND p.categoryId = :categoryId ORDER BY p.name")
+    List<InventoryResponseDto> findActiveViewsByOrganizationIdAndCategoryId(
+            @Param("organizationId") Long organizationId, @Param("categoryId") Long categoryId);
+
+    // The whole price board in one query, grouped by sorting on category first
+    @Query("SELECT new com.borsibaar.dto.BoardEntryDto(" +
+            "c.id, c.name, i.id, i.organizationId, p.id, p.name, i.quantity, " +
+            "COALESCE(i.adjustedPrice, p.basePrice), p.description, p.basePrice, p.minPrice, p.maxPrice, " +
+            "i.updatedAt) " +
+            "FROM Inventory i JOIN i.product p JOIN p.category c " +
+            "WHERE i.organizationId = :organizationId AND p.isActive = true " +
+            "ORDER BY c.name, c.id, p.name")
+    List<BoardEntryDto> findBoardEntriesByOrganizationId(@Param("organizationId") Long organizationId);
 
     boolean existsByProductId(Long productId);
 }
@@ -0,0 +1,130 @@
+package com.borsibaar.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Read side of the transaction ledger. History is read newest first in
+ * (created_at, id) order, which idx_inventory_trans_history serves without a
+ * sort, so a page deep into a long ledger costs the same as the first one.
+ */
+@Repository
+@RequiredArgsConstructor
+public class InventoryTransactionJdbcRepository {
+
+    private static final String HISTORY_SQL = """
+            SELECT it.id, it.inventory_id, it.transaction_type, it.quantity_change, it.quantity_before,
+                   it.quantity_after, it.price_before, it.price_after, it.reference_id, it.notes,
+                   it.created_by, u.name AS created_by_name, u.email AS created_by_email, it.created_at
+            FROM inventory_transactions it
+            LEFT JOIN users u ON u.id = it.created_by
+            WHERE it.inventory_id = ?
+            """;
+
+    private static final String NEWEST_FIRST = " ORDER BY it.created_at DESC, it.id DESC";
+
+    // Rows per round trip while streaming; PostgreSQL only uses a cursor inside a transaction
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private static final RowMapper<TransactionRow> ROW_MAPPER = (rs, rowNum) -> new TransactionRow(
+            rs.getLong("id"),
+            rs.getLong("inventory_id"),
+            rs.getString("transaction_type"),
+            rs.getBigDecimal("quantity_change"),
+            rs.getBigDecimal("quantity_before"),
+            rs.getBigDecimal("quantity_after"),
+            rs.getBigDecimal("price_before"),
+            rs.getBigDecimal("price_after"),
+            rs.getString("reference_id"),
+            rs.getString("notes"),
+            rs.getObject("created_by", UUID.class),
+            rs.getString("created_by_name"),
+            rs.getString("created_by_email"),
+            rs.getObject("created_at", OffsetDateTime.class));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Up to {@code limit} rows older than {@code after} (or the newest rows if it
+     * is null), newest first. {@code from} is inclusive, {@code to} exclusive;
+     * either may be null.
+     */
+    public List<TransactionRow> findPage(Long inventoryId, OffsetDateTime from, OffsetDateTime to,
+            Cursor after, int limit) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = historySql(inventoryId, from, to, args);
+        if (after != null) {
+            sql.append(" AND (it.created_at, it.id) < (?, ?)");
+            args.add(after.createdAt());
+            args.add(after.id());
+        }
+        sql.append(NEWEST_FIRST).append(" LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), ROW_MAPPER, args.toArray());
+    }
+
+    /**
+     * Hands every row in the range to {@code action}, newest first, as it is
+     * fetched. Call inside a transaction so PostgreSQL fetches in batches
+     * instead of buffering the whole result.
+     */
+    public void stream(Long inventoryId, OffsetDateTime from, OffsetDateTime to, Consumer<TransactionRow> action) {
+        List<Object> args = new ArrayList<>();
+        String sql = historySql(inventoryId, from, to, args).append(NEWEST_FIRST).toString();
+        RowCallbackHandler handler = rs -> action.accept(ROW_MAPPER.mapRow(rs, rs.getRow()));
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            new ArgumentPreparedStatementSetter(args.toArray()).setValues(statement);
+            return statement;
+        }, handler);
+    }
+
+    private static StringBuilder historySql(Long inventoryId, OffsetDateTime from, OffsetDateTime to,
+            List<Object> args) {
+        StringBuilder sql = new StringBuilder(HISTORY_SQL);
+        args.add(inventoryId);
+        if (from != null) {
+            sql.append(" AND it.created_at >= ?");
+            args.add(from);
+        }
+        if (to != null) {
+            sql.append(" AND it.created_at < ?");
+            args.add(to);
+        }
+        return sql;
+    }
+
+    /** Position of the last row of a page; the next page starts just after it. */
+    public record Cursor(OffsetDateTime createdAt, Long id) {
+    }
+
+    public record TransactionRow(
+            Long id,
+            Long inventoryId,
+            String transactionType,
+            BigDecimal quantityChange,
+            BigDecimal quantityBefore,
+            BigDecimal quantityAfter,
+            BigDecimal priceBefore,
+            BigDecimal priceAfter,
+            String referenceId,
+            String notes,
+            UUID createdBy,
+            String createdByName,
+            String createdByEmail,
+            OffsetDateTime createdAt) {
+    }
+}
@@ -3,29 +3,20 @@ package com.borsibaar.repository;
 import com.borsibaar.entity.InventoryTransaction;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface InventoryTransactionRepository extends JpaRepository<InventoryTransaction, Long> {
 
-    List<InventoryTransaction> findByInventoryIdOrderByCreatedAtDesc(Long inventoryId);
-
     Optional<InventoryTransaction> findFirstByInventoryIdOrderByCreatedAtDesc(Long inventoryId);
 
-    List<InventoryTransaction> findByReferenceId(String referenceId);
-
-    @Query("""
-            SELECT it FROM InventoryTransaction it
-            JOIN Inventory i ON it.inventoryId = i.id
-            WHERE i.organizationId = :organizationId
-            AND it.transactionType = 'SALE'
-            ORDER BY it.createdAt DESC
-            """)
-    List<InventoryTransaction> findSaleTransactionsByOrganizationId(@Param("organizationId") Long organizationId);
+    // Bounded by time so only the partitions of the sale's month are read
+    List<InventoryTransaction> findByReferenceIdAndCreatedAtBetween(String referenceId, OffsetDateTime from,
+            OffsetDateTime to);
 
     @Query(value = """
               SELECT DISTINCT i.organizationId
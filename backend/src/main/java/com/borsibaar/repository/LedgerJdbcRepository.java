@@ -0,0 +1,103 @@
+package com.borsibaar.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Write side of the transaction ledger used by the write-behind appender. Rows
+ * go in as multi-row INSERTs, and the journal sequence of the last row written
+ * is stored in the same transaction, so replaying the journal after a crash
+ * never writes a row twice.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LedgerJdbcRepository {
+
+    // IDs come from the column default, as in the price correction job's bulk insert
+    private static final String INSERT_SQL = """
+            INSERT INTO inventory_transactions (inventory_id, transaction_type, quantity_change, quantity_before,
+                quantity_after, price_before, price_after, reference_id, notes, created_by, bar_station_id, created_at)
+            VALUES %s
+            """;
+
+    private static final String ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // 12 parameters a row, well below PostgreSQL's 65535 per statement
+    private static final int MAX_ROWS_PER_INSERT = 1000;
+
+    private static final String CHECKPOINT_SQL = "SELECT last_sequence FROM ledger_checkpoint WHERE id = 1";
+
+    private static final String ADVANCE_CHECKPOINT_SQL = """
+            UPDATE ledger_checkpoint
+            SET last_sequence = ?
+            WHERE id = 1
+            AND last_sequence < ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Journal sequence of the last entry known to be in the ledger. */
+    public long findCheckpoint() {
+        Long checkpoint = jdbcTemplate.queryForObject(CHECKPOINT_SQL, Long.class);
+        return checkpoint != null ? checkpoint : 0L;
+    }
+
+    /**
+     * Inserts the entries in order and moves the checkpoint up to
+     * {@code lastSequence}, all or nothing.
+     */
+    @Transactional
+    public void insertAll(List<LedgerEntry> entries, long lastSequence) {
+        insertAll(entries);
+        jdbcTemplate.update(ADVANCE_CHECKPOINT_SQL, lastSequence, lastSequence);
+    }
+
+    /** Inserts entries that never went through the journal. */
+    @Transactional
+    public void insertAll(List<LedgerEntry> entries) {
+        for (int from = 0; from < entries.size(); from += MAX_ROWS_PER_INSERT) {
+            List<LedgerEntry> chunk = entries.subList(from, Math.min(from + MAX_ROWS_PER_INSERT, entries.size()));
+            List<Object> args = new ArrayList<>(chunk.size() * 12);
+            for (LedgerEntry entry : chunk) {
+                args.add(entry.inventoryId());
+                args.add(entry.transactionType());
+                args.add(entry.quantityChange());
+                args.add(entry.quantityBefore());
+                args.add(entry.quantityAfter());
+                args.add(entry.priceBefore());
+                args.add(entry.priceAfter());
+                args.add(entry.referenceId());
+                args.add(entry.notes());
+                args.add(entry.createdBy());
+                args.add(entry.barStationId());
+                args.add(entry.createdAt());
+            }
+            String rows = String.join(", ", Collections.nCopies(chunk.size(), ROW));
+            jdbcTemplate.update(INSERT_SQL.formatted(rows), args.toArray());
+        }
+    }
+
+    public record LedgerEntry(
+            Long inventoryId,
+            String transactionType,
+            BigDecimal quantityChange,
+            BigDecimal quantityBefore,
+            BigDecimal quantityAfter,
+            BigDecimal priceBefore,
+            BigDecimal priceAfter,
+            String referenceId,
+            String notes,
+            UUID createdBy,
+            Long barStationId,
+            OffsetDateTime createdAt) {
+    }
+}
@@ -0,0 +1,95 @@
+package com.borsibaar.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Monthly partitions of inventory_transactions (PostgreSQL only). Each UTC month
+ * is a partition named {@code inventory_transactions_yYYYYmMM}; months past the
+ * retention are detached and moved to the ledger_archive schema, where they
+ * stay queryable but no longer take part in any query on the ledger.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LedgerPartitionJdbcRepository {
+
+    private static final String PREFIX = "inventory_transactions_";
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("'y'uuuu'm'MM");
+
+    private static final String PARTITIONS_SQL = """
+            SELECT c.relname
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            JOIN pg_class p ON p.oid = i.inhparent
+            JOIN pg_namespace n ON n.oid = p.relnamespace
+            WHERE p.relname = 'inventory_transactions'
+            AND n.nspname = current_schema()
+            """;
+
+    // Secondary indexes of a detached month only served live queries
+    private static final String ARCHIVE_INDEXES_SQL = """
+            SELECT ic.relname
+            FROM pg_index x
+            JOIN pg_class ic ON ic.oid = x.indexrelid
+            JOIN pg_class tc ON tc.oid = x.indrelid
+            JOIN pg_namespace n ON n.oid = tc.relnamespace
+            WHERE n.nspname = 'ledger_archive'
+            AND tc.relname = ?
+            AND NOT x.indisprimary
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Months that currently have a partition, in no particular order. */
+    public List<YearMonth> findMonths() {
+        return jdbcTemplate.queryForList(PARTITIONS_SQL, String.class).stream()
+                .map(LedgerPartitionJdbcRepository::monthOf)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /** Creates the partition for {@code month} unless it already exists. */
+    public void createMonth(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month)
+                + " PARTITION OF inventory_transactions FOR VALUES FROM ('" + month.atDay(1) + " 00:00:00+00')"
+                + " TO ('" + month.plusMonths(1).atDay(1) + " 00:00:00+00')");
+    }
+
+    /**
+     * Detaches the partition of {@code month} and moves it to ledger_archive.
+     * Takes a short exclusive lock on inventory_transactions.
+     */
+    @Transactional
+    public void archiveMonth(YearMonth month) {
+        String partition = partitionName(month);
+        jdbcTemplate.execute("ALTER TABLE inventory_transactions DETACH PARTITION " + partition);
+        jdbcTemplate.execute("ALTER TABLE " + partition + " SET SCHEMA ledger_archive");
+        for (String index : jdbcTemplate.queryForList(ARCHIVE_INDEXES_SQL, String.class, partition)) {
+            jdbcTemplate.execute("DROP INDEX ledger_archive.\"" + index + "\"");
+        }
+    }
+
+    public static String partitionName(YearMonth month) {
+        return PREFIX + MONTH_SUFFIX.format(month);
+    }
+
+    // Null for the default partition and anything else not named after a month
+    private static YearMonth monthOf(String partition) {
+        if (!partition.startsWith(PREFIX)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partition.substring(PREFIX.length()), MONTH_SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.borsibaar.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Write side of the price candles. Uses a PostgreSQL upsert so writers landing
+ * in the same bucket merge into the row; open and close only move if the
+ * incoming tick is earlier or later than what the row already has, whatever
+ * order the transactions commit in. A batch upserts its rows in product order,
+ * so two writers touching the same candles never lock them crosswise.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PriceCandleJdbcRepository {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO price_candles
+                (organization_id, product_id, bucket_start, open_price, high_price, low_price, close_price,
+                 volume, opened_at, closed_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (product_id, bucket_start)
+            DO UPDATE SET open_price = CASE WHEN EXCLUDED.opened_at < price_candles.opened_at
+                                            THEN EXCLUDED.open_price ELSE price_candles.open_price END,
+                          opened_at = LEAST(price_candles.opened_at, EXCLUDED.opened_at),
+                          high_price = GREATEST(price_candles.high_price, EXCLUDED.high_price),
+                          low_price = LEAST(price_candles.low_price, EXCLUDED.low_price),
+                          close_price = CASE WHEN EXCLUDED.closed_at >= price_candles.closed_at
+                                             THEN EXCLUDED.close_price ELSE price_candles.close_price END,
+                          closed_at = GREATEST(price_candles.closed_at, EXCLUDED.closed_at),
+                          volume = price_candles.volume + EXCLUDED.volume
+            """;
+
+    private static final int[] UPSERT_TYPES = {
+            Types.BIGINT, Types.BIGINT, Types.TIMESTAMP_WITH_TIMEZONE, Types.NUMERIC, Types.NUMERIC,
+            Types.NUMERIC, Types.NUMERIC, Types.NUMERIC, Types.TIMESTAMP_WITH_TIMEZONE,
+            Types.TIMESTAMP_WITH_TIMEZONE };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void upsert(List<CandleTick> ticks) {
+        if (ticks.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = ticks.stream()
+                .sorted(Comparator.comparing(CandleTick::productId).thenComparing(CandleTick::bucketStart))
+                .map(t -> new Object[] {
+                        t.organizationId(), t.productId(), t.bucketStart(), t.open(), t.high(), t.low(),
+                        t.close(), t.volume(), t.openedAt(), t.closedAt() })
+                .toList();
+        jdbcTemplate.batchUpdate(UPSERT_SQL, args, UPSERT_TYPES);
+    }
+
+    /** Price moves of one product within one bucket, made between two instants. */
+    public record CandleTick(
+            Long organizationId,
+            Long productId,
+            OffsetDateTime bucketStart,
+            BigDecimal open,
+            BigDecimal high,
+            BigDecimal low,
+            BigDecimal close,
+            BigDecimal volume,
+            OffsetDateTime openedAt,
+            OffsetDateTime closedAt) {
+
+        /**
+         * Both ticks of the same candle in one, the way the upsert merges them
+         * into the row; on equal instants {@code next} closes it.
+         */
+        public CandleTick merge(CandleTick next) {
+            boolean opensEarlier = next.openedAt().isBefore(openedAt);
+            boolean closesLater = !next.closedAt().isBefore(closedAt);
+            return new CandleTick(organizationId, productId, bucketStart,
+                    opensEarlier ? next.open() : open,
+                    high.max(next.high()),
+                    low.min(next.low()),
+                    closesLater ? next.close() : close,
+                    volume.add(next.volume()),
+                    opensEarlier ? next.openedAt() : openedAt,
+                    closesLater ? next.closedAt() : closedAt);
+        }
+    }
+}
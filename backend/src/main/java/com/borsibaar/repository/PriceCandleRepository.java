@@ -0,0 +1,28 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.PriceCandle;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PriceCandleRepository extends JpaRepository<PriceCandle, Long> {
+
+    @Query("""
+            SELECT c FROM PriceCandle c
+            WHERE c.organizationId = :organizationId
+            AND c.productId IN :productIds
+            AND c.bucketStart >= :from
+            AND c.bucketStart < :to
+            ORDER BY c.productId, c.bucketStart
+            """)
+    List<PriceCandle> findRange(@Param("organizationId") Long organizationId,
+            @Param("productIds") Collection<Long> productIds,
+            @Param("from") OffsetDateTime from,
+            @Param("to") OffsetDateTime to);
+}
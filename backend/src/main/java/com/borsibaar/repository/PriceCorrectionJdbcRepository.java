@@ -0,0 +1,182 @@
+package com.borsibaar.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Set-based price decay for the bulk mode of the price correction job. Applies
+ * the same rules as the row-by-row mode: dynamic-pricing products without a sale
+ * since the cutoff, in an organization that did sell something, drop one
+ * decrease step, clamped to the product's min price (or the step itself). The
+ * price decay timers use the same statement for the rows whose timers ran out.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PriceCorrectionJdbcRepository {
+
+    // Package-private for SaleWindowQueryPlanTest
+    static final String ACTIVE_ORGANIZATIONS_SQL = """
+            SELECT DISTINCT i.organization_id
+            FROM inventory_transactions it
+            JOIN inventory i ON i.id = it.inventory_id
+            WHERE it.transaction_type = 'SALE'
+            AND it.created_at >= ?
+            """;
+
+    // Optionally narrowed to some inventory rows of the organization
+    private static final String DECAY_TEMPLATE = """
+            WITH candidates AS (
+                SELECT inv.id AS inventory_id,
+                       COALESCE(inv.adjusted_price, p.base_price) AS price_before,
+                       GREATEST(COALESCE(inv.adjusted_price, p.base_price) - o.price_decrease_step,
+                                COALESCE(p.min_price, o.price_decrease_step)) AS price_after
+                FROM inventory inv
+                JOIN products p ON p.id = inv.product_id
+                JOIN categories cat ON cat.id = p.category_id
+                JOIN organizations o ON o.id = p.organization_id
+                WHERE inv.organization_id = ?
+                %s
+                AND cat.dynamic_pricing = TRUE
+                AND NOT EXISTS (
+                    SELECT 1
+                    FROM inventory_transactions it
+                    WHERE it.inventory_id = inv.id
+                    AND it.transaction_type = 'SALE'
+                    AND it.created_at >= ?
+                )
+                -- Same row order as the price engine's batched writes
+                ORDER BY inv.id
+                FOR UPDATE OF inv
+            )
+            UPDATE inventory inv
+            SET adjusted_price = c.price_after, updated_at = ?, version = inv.version + 1
+            FROM candidates c
+            WHERE inv.id = c.inventory_id
+            AND c.price_after <> c.price_before
+            RETURNING inv.id, inv.product_id, inv.quantity, c.price_before, c.price_after
+            """;
+
+    static final String DECAY_SQL = decaySql("");
+
+    // Latest sale per dynamic-pricing inventory row, one index probe each
+    static final String LATEST_SALES_SQL = """
+            SELECT inv.id AS inventory_id, inv.organization_id, last_sale.created_at AS last_sale_at
+            FROM inventory inv
+            JOIN products p ON p.id = inv.product_id
+            JOIN categories cat ON cat.id = p.category_id
+            LEFT JOIN LATERAL (
+                SELECT it.created_at
+                FROM inventory_transactions it
+                WHERE it.inventory_id = inv.id
+                AND it.transaction_type = 'SALE'
+                ORDER BY it.created_at DESC
+                LIMIT 1
+            ) last_sale ON TRUE
+            WHERE cat.dynamic_pricing = TRUE
+            """;
+
+    private static final String INSERT_ADJUSTMENT_SQL = """
+            INSERT INTO inventory_transactions
+                (inventory_id, transaction_type, quantity_change, quantity_before, quantity_after,
+                 price_before, price_after, reference_id, notes, created_at)
+            VALUES (?, 'ADJUSTMENT', 0, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final int[] INSERT_ADJUSTMENT_TYPES = {
+            Types.BIGINT, Types.NUMERIC, Types.NUMERIC, Types.NUMERIC, Types.NUMERIC,
+            Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP_WITH_TIMEZONE };
+
+    private static final RowMapper<PriceDecay> PRICE_DECAY_MAPPER = (rs, rowNum) -> new PriceDecay(
+            rs.getLong("id"),
+            rs.getLong("product_id"),
+            rs.getBigDecimal("quantity"),
+            rs.getBigDecimal("price_before"),
+            rs.getBigDecimal("price_after"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Organizations with at least one sale since the cutoff. Prices only decay
+     * while the bar is open.
+     */
+    public List<Long> findOrganizationsWithSalesSince(OffsetDateTime since) {
+        return jdbcTemplate.queryForList(ACTIVE_ORGANIZATIONS_SQL, Long.class, since);
+    }
+
+    /**
+     * Lowers the prices of the organization's idle products in one statement.
+     *
+     * @return the rows that actually changed price
+     */
+    public List<PriceDecay> decayIdlePrices(Long organizationId, OffsetDateTime since, OffsetDateTime now) {
+        return jdbcTemplate.query(DECAY_SQL, PRICE_DECAY_MAPPER, organizationId, since, now);
+    }
+
+    /**
+     * Like {@link #decayIdlePrices(Long, OffsetDateTime, OffsetDateTime)}, limited
+     * to the given inventory rows of the organization.
+     */
+    public List<PriceDecay> decayIdlePrices(Long organizationId, Collection<Long> inventoryIds,
+            OffsetDateTime since, OffsetDateTime now) {
+        if (inventoryIds.isEmpty()) {
+            return List.of();
+        }
+        String placeholders = String.join(", ", Collections.nCopies(inventoryIds.size(), "?"));
+        String sql = decaySql("AND inv.id IN (" + placeholders + ")");
+        List<Object> args = new ArrayList<>(inventoryIds.size() + 3);
+        args.add(organizationId);
+        args.addAll(inventoryIds);
+        args.add(since);
+        args.add(now);
+        return jdbcTemplate.query(sql, PRICE_DECAY_MAPPER, args.toArray());
+    }
+
+    /**
+     * Every dynamic-pricing inventory row with the time of its latest sale, null
+     * if it never sold.
+     */
+    public List<LatestSale> findLatestSales() {
+        return jdbcTemplate.query(LATEST_SALES_SQL,
+                (rs, rowNum) -> new LatestSale(
+                        rs.getLong("inventory_id"),
+                        rs.getLong("organization_id"),
+                        rs.getObject("last_sale_at", OffsetDateTime.class)));
+    }
+
+    public void insertAdjustments(List<PriceDecay> decays, String referenceId, String notes, OffsetDateTime now) {
+        if (decays.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = decays.stream()
+                .map(d -> new Object[] {
+                        d.inventoryId(), d.quantity(), d.quantity(), d.priceBefore(), d.priceAfter(),
+                        referenceId, notes, now })
+                .toList();
+        jdbcTemplate.batchUpdate(INSERT_ADJUSTMENT_SQL, args, INSERT_ADJUSTMENT_TYPES);
+    }
+
+    private static String decaySql(String inventoryFilter) {
+        return DECAY_TEMPLATE.formatted(inventoryFilter);
+    }
+
+    public record LatestSale(Long inventoryId, Long organizationId, OffsetDateTime lastSaleAt) {
+    }
+
+    public record PriceDecay(
+            Long inventoryId,
+            Long productId,
+            BigDecimal quantity,
+            BigDecimal priceBefore,
+            BigDecimal priceAfter) {
+    }
+}
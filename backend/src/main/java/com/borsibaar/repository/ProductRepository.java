@@ -1,14 +1,31 @@
 package com.borsibaar.repository;
 
+import com.borsibaar.config.CacheConfig;
+import com.borsibaar.dto.ProductReferenceDto;
 import com.borsibaar.entity.Product;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
   boolean existsByOrganizationIdAndNameIgnoreCase(Long organizationId, String name);
 
+  // Evicted by ProductService when a product is deleted; unknown ids are not cached
+  @Cacheable(cacheNames = CacheConfig.PRODUCTS, key = "#p0", unless = "#result == null")
+  @Query("SELECT new com.borsibaar.dto.ProductReferenceDto(p.id, p.organizationId, p.name, p.description, " +
+          "p.basePrice, p.minPrice, p.maxPrice, p.isActive) FROM Product p WHERE p.id = :id")
+  Optional<ProductReferenceDto> findReferenceById(@Param("id") Long id);
+
+  // Products of a sale basket with everything the price engine reads, in one query
+  @Query("SELECT p FROM Product p LEFT JOIN FETCH p.inventory LEFT JOIN FETCH p.category " +
+          "LEFT JOIN FETCH p.organization WHERE p.id IN :ids")
+  List<Product> findAllForSale(@Param("ids") Collection<Long> ids);
+
   @Query(value = """
         SELECT DISTINCT p.*
         FROM products p
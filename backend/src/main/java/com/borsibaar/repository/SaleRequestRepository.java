@@ -0,0 +1,23 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.SaleRequest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.Optional;
+
+@Repository
+public interface SaleRequestRepository extends JpaRepository<SaleRequest, Long> {
+    Optional<SaleRequest> findByOrganizationIdAndIdempotencyKey(Long organizationId, String idempotencyKey);
+
+    // One statement, rather than deleteBy...'s load and delete per row
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SaleRequest r WHERE r.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") OffsetDateTime cutoff);
+}
@@ -0,0 +1,61 @@
+package com.borsibaar.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Write side of the sales rollups. Uses a PostgreSQL upsert so concurrent sales
+ * landing in the same bucket increment the row instead of racing on insert. A
+ * batch upserts its rows in product order, so two sales sharing rows never lock
+ * them crosswise.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SalesRollupJdbcRepository {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO sales_rollups
+                (organization_id, user_id, bar_station_id, product_id, bucket_start, sale_count, quantity_sold)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (organization_id, user_id, bar_station_id, product_id, bucket_start)
+            DO UPDATE SET sale_count = sales_rollups.sale_count + EXCLUDED.sale_count,
+                          quantity_sold = sales_rollups.quantity_sold + EXCLUDED.quantity_sold
+            """;
+
+    private static final int[] UPSERT_TYPES = {
+            Types.BIGINT, Types.OTHER, Types.BIGINT, Types.BIGINT,
+            Types.TIMESTAMP_WITH_TIMEZONE, Types.BIGINT, Types.NUMERIC };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void upsert(List<RollupDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = deltas.stream()
+                .sorted(Comparator.comparing(RollupDelta::productId).thenComparing(RollupDelta::bucketStart))
+                .map(d -> new Object[] {
+                        d.organizationId(), d.userId(), d.barStationId(), d.productId(),
+                        d.bucketStart(), d.saleCount(), d.quantitySold() })
+                .toList();
+        jdbcTemplate.batchUpdate(UPSERT_SQL, args, UPSERT_TYPES);
+    }
+
+    public record RollupDelta(
+            Long organizationId,
+            UUID userId,
+            Long barStationId,
+            Long productId,
+            OffsetDateTime bucketStart,
+            long saleCount,
+            BigDecimal quantitySold) {
+    }
+}
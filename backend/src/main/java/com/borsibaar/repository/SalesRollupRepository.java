@@ -0,0 +1,62 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.SalesRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, Long> {
+
+    /**
+     * Sales totals per user and bar station. Revenue is valued at the product's
+     * base price, same as the per-transaction calculation it replaces.
+     */
+    @Query("""
+            SELECT r.userId AS userId,
+                   r.barStationId AS barStationId,
+                   SUM(r.saleCount) AS salesCount,
+                   SUM(r.quantitySold * p.basePrice) AS totalRevenue
+            FROM SalesRollup r
+            JOIN Product p ON p.id = r.productId
+            WHERE r.organizationId = :organizationId
+            AND r.userId IS NOT NULL
+            GROUP BY r.userId, r.barStationId
+            """)
+    List<UserStationSalesTotals> sumByUserAndStation(@Param("organizationId") Long organizationId);
+
+    @Query("""
+            SELECT r.barStationId AS barStationId,
+                   SUM(r.saleCount) AS salesCount,
+                   SUM(r.quantitySold * p.basePrice) AS totalRevenue
+            FROM SalesRollup r
+            JOIN Product p ON p.id = r.productId
+            WHERE r.organizationId = :organizationId
+            AND r.barStationId IS NOT NULL
+            GROUP BY r.barStationId
+            """)
+    List<StationSalesTotals> sumByStation(@Param("organizationId") Long organizationId);
+
+    interface UserStationSalesTotals {
+        UUID getUserId();
+
+        Long getBarStationId();
+
+        Long getSalesCount();
+
+        BigDecimal getTotalRevenue();
+    }
+
+    interface StationSalesTotals {
+        Long getBarStationId();
+
+        Long getSalesCount();
+
+        BigDecimal getTotalRevenue();
+    }
+}
@@ -1,30 +1,42 @@
 package com.borsibaar.service;
 
+import com.borsibaar.config.CacheConfig;
 import com.borsibaar.entity.Role;
 import com.borsibaar.entity.User;
 import com.borsibaar.dto.UserDTO;
 import com.borsibaar.mapper.UserMapper;
 import com.borsibaar.repository.RoleRepository;
 import com.borsibaar.repository.UserRepository;
+import com.borsibaar.service.OrganizationVersions.Resource;
+import org.springframework.cache.CacheManager;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.stereotype.Service;
 
+import java.util.Objects;
+
 @Service
 public class AuthService {
     private final UserRepository userRepository;
     private final JwtService jwtService;
     private final UserMapper userMapper;
     private final RoleRepository roleRepository;
+    private final PrincipalCache principalCache;
+    private final OrganizationVersions organizationVersions;
+    private final CacheManager cacheManager;
 
     public record AuthResult(UserDTO dto, boolean needsOnboarding) {
     }
 
     public AuthService(UserRepository userRepository, JwtService jwtService, UserMapper userMapper,
-            RoleRepository roleRepository) {
+            RoleRepository roleRepository, PrincipalCache principalCache, OrganizationVersions organizationVersions,
+            CacheManager cacheManager) {
         this.userRepository = userRepository;
         this.jwtService = jwtService;
         this.userMapper = userMapper;
         this.roleRepository = roleRepository;
+        this.principalCache = principalCache;
+        this.organizationVersions = organizationVersions;
+        this.cacheManager = cacheManager;
     }
 
     public AuthResult processOAuthLogin(OAuth2AuthenticationToken auth) {
@@ -45,8 +57,17 @@ public class AuthService {
             user.setRole(defaultRole);
         }
 
+        // Members' names show up on station and sales lists
+        boolean renamed = user.getOrganizationId() != null && !Objects.equals(user.getName(), name);
+        if (renamed) {
+            organizationVersions.bumpAfterCommit(user.getOrganizationId(), Resource.USERS);
+        }
         user.setName(name); // update name in case it changed
         userRepository.save(user);
+        principalCache.evict(user.getEmail());
+        if (renamed) {
+            cacheManager.getCache(CacheConfig.BAR_STATIONS).evict(user.getOrganizationId());
+        }
 
         // Issue JWT
         String token = jwtService.generateToken(user.getEmail());
@@ -1,5 +1,6 @@
 package com.borsibaar.service;
 
+import com.borsibaar.config.CacheConfig;
 import com.borsibaar.dto.BarStationRequestDto;
 import com.borsibaar.dto.BarStationResponseDto;
 import com.borsibaar.entity.BarStation;
@@ -10,8 +11,11 @@ import com.borsibaar.exception.NotFoundException;
 import com.borsibaar.mapper.BarStationMapper;
 import com.borsibaar.repository.BarStationRepository;
 import com.borsibaar.repository.UserRepository;
+import com.borsibaar.service.OrganizationVersions.Resource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -28,7 +32,10 @@ public class BarStationService {
     private final BarStationRepository barStationRepository;
     private final UserRepository userRepository;
     private final BarStationMapper barStationMapper;
+    private final OrganizationVersions organizationVersions;
 
+    // Includes the assigned users' names, so AuthService evicts on a rename too
+    @Cacheable(cacheNames = CacheConfig.BAR_STATIONS, key = "#organizationId")
     @Transactional(readOnly = true)
     public List<BarStationResponseDto> getAllStations(Long organizationId) {
         List<BarStation> stations = barStationRepository.findByOrganizationId(organizationId);
@@ -42,6 +49,7 @@ public class BarStationService {
         return barStationMapper.toResponseDto(station);
     }
 
+    @CacheEvict(cacheNames = CacheConfig.BAR_STATIONS, key = "#organizationId")
     @Transactional
     public BarStationResponseDto createStation(Long organizationId, BarStationRequestDto request) {
         // Check for duplicate name
@@ -66,9 +74,11 @@ public class BarStationService {
         }
 
         BarStation savedStation = barStationRepository.save(station);
+        organizationVersions.bumpAfterCommit(organizationId, Resource.BAR_STATIONS);
         return barStationMapper.toResponseDto(savedStation);
     }
 
+    @CacheEvict(cacheNames = CacheConfig.BAR_STATIONS, key = "#organizationId")
     @Transactional
     public BarStationResponseDto updateStation(Long organizationId, Long stationId, BarStationRequestDto request) {
         BarStation station = barStationRepository.findByOrganizationIdAndId(organizationId, stationId)
@@ -104,14 +114,17 @@ public class BarStationService {
         }
 
         BarStation updatedStation = barStationRepository.save(station);
+        organizationVersions.bumpAfterCommit(organizationId, Resource.BAR_STATIONS);
         return barStationMapper.toResponseDto(updatedStation);
     }
 
+    @CacheEvict(cacheNames = CacheConfig.BAR_STATIONS, key = "#organizationId")
     @Transactional
     public void deleteStation(Long organizationId, Long stationId) {
         BarStation station = barStationRepository.findByOrganizationIdAndId(organizationId, stationId)
                 .orElseThrow(() -> new NotFoundException("Bar station not found"));
         barStationRepository.delete(station);
+        organizationVersions.bumpAfterCommit(organizationId, Resource.BAR_STATIONS);
     }
 
     @Transactional(readOnly = true)
@@ -1,5 +1,6 @@
 package com.borsibaar.service;
 
+import com.borsibaar.config.CacheConfig;
 import com.borsibaar.dto.CategoryRequestDto;
 import com.borsibaar.dto.CategoryResponseDto;
 import com.borsibaar.entity.Category;
@@ -8,6 +9,9 @@ import com.borsibaar.exception.DuplicateResourceException;
 import com.borsibaar.exception.NotFoundException;
 import com.borsibaar.mapper.CategoryMapper;
 import com.borsibaar.repository.CategoryRepository;
+import com.borsibaar.service.OrganizationVersions.Resource;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,12 +22,16 @@ import java.util.List;
 public class CategoryService {
     private final CategoryRepository categoryRepository;
     private final CategoryMapper categoryMapper;
+    private final OrganizationVersions organizationVersions;
 
-    public CategoryService(CategoryRepository categoryRepository, CategoryMapper categoryMapper) {
+    public CategoryService(CategoryRepository categoryRepository, CategoryMapper categoryMapper,
+            OrganizationVersions organizationVersions) {
         this.categoryRepository = categoryRepository;
         this.categoryMapper = categoryMapper;
+        this.organizationVersions = organizationVersions;
     }
 
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, key = "#organizationId")
     @Transactional
     public CategoryResponseDto create(CategoryRequestDto request, Long organizationId) {
         Category category = categoryMapper.toEntity(request);
@@ -44,9 +52,11 @@ public class CategoryService {
         }
 
         Category saved = categoryRepository.save(category);
+        organizationVersions.bumpAfterCommit(organizationId, Resource.CATEGORIES);
         return categoryMapper.toResponse(saved);
     }
 
+    @Cacheable(cacheNames = CacheConfig.CATEGORIES, key = "#organizationId")
     @Transactional
     public List<CategoryResponseDto> getAllByOrg(Long organizationId) {
         Iterable<Category> categories = categoryRepository.findAllByOrganizationId(organizationId);
@@ -70,12 +80,14 @@ public class CategoryService {
                 .orElseThrow(() -> new NotFoundException("Category not found: " + id));
     }
 
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, key = "#organizationId")
     @Transactional
     public CategoryResponseDto deleteReturningDto(Long id, Long organizationId) {
         return categoryRepository.findByIdAndOrganizationId(id, organizationId)
                 .map(category -> {
                     CategoryResponseDto dto = categoryMapper.toResponse(category);
                     categoryRepository.delete(category);
+                    organizationVersions.bumpAfterCommit(organizationId, Resource.CATEGORIES);
                     return dto;
                 })
                 .orElseThrow(() -> new NotFoundException("Category not found: " + id));
@@ -4,22 +4,37 @@ import com.borsibaar.dto.*;
 import com.borsibaar.entity.BarStation;
 import com.borsibaar.entity.Inventory;
 import com.borsibaar.entity.InventoryTransaction;
-import com.borsibaar.entity.Product;
 import com.borsibaar.entity.User;
+import com.borsibaar.event.InventoryChangedEvent;
 import com.borsibaar.mapper.InventoryMapper;
 import com.borsibaar.repository.BarStationRepository;
 import com.borsibaar.repository.InventoryRepository;
-import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.InventoryTransactionJdbcRepository;
+import com.borsibaar.repository.InventoryTransactionJdbcRepository.Cursor;
+import com.borsibaar.repository.InventoryTransactionJdbcRepository.TransactionRow;
 import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.repository.SalesRollupRepository;
 import com.borsibaar.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -28,12 +43,22 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class InventoryService {
 
+    // History page sizes; the board chart reads one page per product it shows
+    private static final int DEFAULT_HISTORY_PAGE_SIZE = 100;
+    private static final int MAX_HISTORY_PAGE_SIZE = 500;
+
     private final InventoryRepository inventoryRepository;
-    private final InventoryTransactionRepository inventoryTransactionRepository;
+    private final LedgerAppender ledgerAppender;
+    private final InventoryTransactionJdbcRepository inventoryTransactionJdbcRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final BarStationRepository barStationRepository;
+    private final SalesRollupRepository salesRollupRepository;
     private final InventoryMapper inventoryMapper;
+    private final PriceEngine priceEngine;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
 
     @Transactional(readOnly = true)
     public List<InventoryResponseDto> getByOrganization(Long organizationId) {
@@ -42,46 +67,30 @@ public class InventoryService {
 
     @Transactional(readOnly = true)
     public List<InventoryResponseDto> getByOrganization(Long organizationId, Long categoryId) {
-        List<Inventory> inventories;
-
         if (categoryId != null) {
-            inventories = inventoryRepository.findByOrganizationIdAndCategoryId(organizationId, categoryId);
-        } else {
-            inventories = inventoryRepository.findByOrganizationId(organizationId);
+            return inventoryRepository.findActiveViewsByOrganizationIdAndCategoryId(organizationId, categoryId);
         }
+        return inventoryRepository.findActiveViewsByOrganizationId(organizationId);
+    }
 
-        return inventories.stream()
-                .map(inv -> {
-                    InventoryResponseDto base = inventoryMapper.toResponse(inv);
-                    Product product = productRepository.findById(inv.getProductId())
-                            .orElse(null);
-
-                    if (product == null)
-                        return null;
-                    if (!product.isActive()) {
-                        return null;
-                    }
-
-                    String productName = product.getName();
-                    BigDecimal unitPrice = Optional.ofNullable(inv.getAdjustedPrice())
-                            .orElse(product.getBasePrice());
-
-                    return new InventoryResponseDto(
-                            base.id(),
-                            base.organizationId(),
-                            base.productId(),
-                            productName,
-                            base.quantity(),
-                            unitPrice,
-                            product.getDescription(),
-                            product.getBasePrice(),
-                            product.getMinPrice(),
-                            product.getMaxPrice(),
-                            base.updatedAt());
-                })
-                .filter(Objects::nonNull)
-                .sorted(Comparator.comparing(InventoryResponseDto::productName))
-                .toList();
+    /**
+     * Active products of the organization grouped by category, categories and
+     * products sorted by name. Categories without active products are left out.
+     */
+    @Transactional(readOnly = true)
+    public List<BoardCategoryDto> getBoard(Long organizationId) {
+        List<BoardCategoryDto> board = new ArrayList<>();
+        List<InventoryResponseDto> products = null;
+        Long categoryId = null;
+        for (BoardEntryDto entry : inventoryRepository.findBoardEntriesByOrganizationId(organizationId)) {
+            if (products == null || !entry.categoryId().equals(categoryId)) {
+                categoryId = entry.categoryId();
+                products = new ArrayList<>();
+                board.add(new BoardCategoryDto(categoryId, entry.categoryName(), products));
+            }
+            products.add(entry.product());
+        }
+        return board;
     }
 
     @Transactional(readOnly = true)
@@ -92,17 +101,17 @@ public class InventoryService {
                         HttpStatus.NOT_FOUND, "No inventory found for this product"));
 
         InventoryResponseDto base = inventoryMapper.toResponse(inventory);
-        Product product = productRepository.findById(productId)
+        ProductReferenceDto product = productRepository.findReferenceById(productId)
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "No product found"));
-        if (!product.isActive()) {
+        if (!product.active()) {
             throw new ResponseStatusException(HttpStatus.GONE, "Product is deleted");
         }
 
-        String productName = product.getName();
+        String productName = product.name();
         BigDecimal unitPrice = Optional.ofNullable(inventory.getAdjustedPrice())
-                .orElse(product.getBasePrice());
-        BigDecimal basePrice = product.getBasePrice();
+                .orElse(product.basePrice());
+        BigDecimal basePrice = product.basePrice();
 
         return new InventoryResponseDto(
                 base.id(),
@@ -111,26 +120,30 @@ public class InventoryService {
                 productName,
                 base.quantity(),
                 unitPrice,
-                product.getDescription(), basePrice,
-                product.getMinPrice(),
-                product.getMaxPrice(),
+                product.description(), basePrice,
+                product.minPrice(),
+                product.maxPrice(),
                 base.updatedAt());
     }
 
     @Transactional
     public InventoryResponseDto addStock(AddStockRequestDto request, UUID userId, Long organizationId) {
         Long productId = request.productId();
-        Product product = getOrganizationProduct(organizationId, productId);
+        // Write out buffered sales first so the row read below is current
+        priceEngine.invalidate(productId);
+        // Lock the row before loading the product, which would load it unlocked
+        Optional<Inventory> existing = inventoryRepository
+                .findForUpdateByOrganizationIdAndProductId(organizationId, productId);
+        ProductReferenceDto product = getOrganizationProduct(organizationId, productId);
 
         // Get or create inventory
-        Inventory inventory = inventoryRepository
-                .findByOrganizationIdAndProductId(organizationId, request.productId())
+        Inventory inventory = existing
                 .orElseGet(() -> {
                     Inventory newInv = new Inventory();
                     newInv.setOrganizationId(organizationId);
-                    newInv.setProduct(product);
+                    newInv.setProduct(productRepository.getReferenceById(productId));
                     newInv.setQuantity(BigDecimal.ZERO);
-                    newInv.setAdjustedPrice(product.getBasePrice());
+                    newInv.setAdjustedPrice(product.basePrice());
                     newInv.setCreatedAt(OffsetDateTime.now());
                     newInv.setUpdatedAt(OffsetDateTime.now());
                     return inventoryRepository.save(newInv);
@@ -144,32 +157,36 @@ public class InventoryService {
         inventory = inventoryRepository.save(inventory);
 
         BigDecimal currentPrice = Optional.ofNullable(inventory.getAdjustedPrice())
-                .orElse(product.getBasePrice());
+                .orElse(product.basePrice());
 
         // Create transaction record
         createTransaction(inventory, "PURCHASE", request.quantity(),
                 oldQuantity, newQuantity, currentPrice, currentPrice, null, request.notes(), userId);
+        publishChange(organizationId, inventory, product, currentPrice);
 
         InventoryResponseDto base = inventoryMapper.toResponse(inventory);
         return new InventoryResponseDto(
                 base.id(),
                 base.organizationId(),
                 base.productId(),
-                product.getName(),
+                product.name(),
                 base.quantity(),
                 currentPrice,
-                product.getDescription(), null,
-                product.getMinPrice(),
-                product.getMaxPrice(),
+                product.description(), null,
+                product.minPrice(),
+                product.maxPrice(),
                 base.updatedAt());
     }
 
     @Transactional
     public InventoryResponseDto removeStock(RemoveStockRequestDto request, UUID userId, Long organizationId) {
-        Product product = getOrganizationProduct(organizationId, request.productId());
+        priceEngine.invalidate(request.productId());
+        // Lock the row before loading the product, which would load it unlocked
+        Optional<Inventory> existing = inventoryRepository
+                .findForUpdateByOrganizationIdAndProductId(organizationId, request.productId());
+        ProductReferenceDto product = getOrganizationProduct(organizationId, request.productId());
 
-        Inventory inventory = inventoryRepository
-                .findByOrganizationIdAndProductId(organizationId, request.productId())
+        Inventory inventory = existing
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "No inventory found for this product"));
 
@@ -188,33 +205,37 @@ public class InventoryService {
         inventory = inventoryRepository.save(inventory);
 
         BigDecimal currentPrice = Optional.ofNullable(inventory.getAdjustedPrice())
-                .orElse(product.getBasePrice());
+                .orElse(product.basePrice());
 
         // Create transaction record (negative quantity change)
         createTransaction(inventory, "ADJUSTMENT", request.quantity().negate(),
                 oldQuantity, newQuantity, currentPrice, currentPrice, request.referenceId(),
                 request.notes(), userId);
+        publishChange(organizationId, inventory, product, currentPrice);
 
         InventoryResponseDto base = inventoryMapper.toResponse(inventory);
         return new InventoryResponseDto(
                 base.id(),
                 base.organizationId(),
                 base.productId(),
-                product.getName(),
+                product.name(),
                 base.quantity(),
                 currentPrice,
-                product.getDescription(), null,
-                product.getMinPrice(),
-                product.getMaxPrice(),
+                product.description(), null,
+                product.minPrice(),
+                product.maxPrice(),
                 base.updatedAt());
     }
 
     @Transactional
     public InventoryResponseDto adjustStock(AdjustStockRequestDto request, UUID userId, Long organizationId) {
-        Product product = getOrganizationProduct(organizationId, request.productId());
+        priceEngine.invalidate(request.productId());
+        // Lock the row before loading the product, which would load it unlocked
+        Optional<Inventory> existing = inventoryRepository
+                .findForUpdateByOrganizationIdAndProductId(organizationId, request.productId());
+        ProductReferenceDto product = getOrganizationProduct(organizationId, request.productId());
 
-        Inventory inventory = inventoryRepository
-                .findByOrganizationIdAndProductId(organizationId, request.productId())
+        Inventory inventory = existing
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "No inventory found for this product"));
 
@@ -226,99 +247,134 @@ public class InventoryService {
         inventory = inventoryRepository.save(inventory);
 
         BigDecimal currentPrice = Optional.ofNullable(inventory.getAdjustedPrice())
-                .orElse(product.getBasePrice());
+                .orElse(product.basePrice());
 
         // Create transaction record
         createTransaction(inventory, "ADJUSTMENT", quantityChange,
                 oldQuantity, request.newQuantity(), currentPrice, currentPrice, null, request.notes(),
                 userId);
+        publishChange(organizationId, inventory, product, currentPrice);
 
         InventoryResponseDto base = inventoryMapper.toResponse(inventory);
         return new InventoryResponseDto(
                 base.id(),
                 base.organizationId(),
                 base.productId(),
-                product.getName(),
+                product.name(),
                 base.quantity(),
                 currentPrice,
-                product.getDescription(), null,
-                product.getMinPrice(),
-                product.getMaxPrice(),
+                product.description(), null,
+                product.minPrice(),
+                product.maxPrice(),
                 base.updatedAt());
     }
 
+    /**
+     * One page of a product's history, newest first. Pass the previous page's
+     * {@code nextCursor} to continue; it is null on the last page.
+     */
     @Transactional(readOnly = true)
-    public List<InventoryTransactionResponseDto> getTransactionHistory(Long productId, Long organizationId) {
-        Inventory inventory = inventoryRepository
-                .findByOrganizationIdAndProductId(organizationId, productId)
+    public InventoryTransactionPageDto getTransactionHistoryPage(Long productId, Long organizationId,
+            OffsetDateTime from, OffsetDateTime to, String cursor, Integer limit) {
+        Long inventoryId = getInventoryId(productId, organizationId);
+        int pageSize = limit == null ? DEFAULT_HISTORY_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_HISTORY_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Limit must be between 1 and " + MAX_HISTORY_PAGE_SIZE);
+        }
+
+        // One extra row tells whether another page follows
+        List<TransactionRow> rows = inventoryTransactionJdbcRepository
+                .findPage(inventoryId, from, to, decodeCursor(cursor), pageSize + 1);
+        List<TransactionRow> page = rows.size() > pageSize ? rows.subList(0, pageSize) : rows;
+        String nextCursor = rows.size() > pageSize ? encodeCursor(page.get(page.size() - 1)) : null;
+        return new InventoryTransactionPageDto(page.stream().map(this::toResponse).toList(), nextCursor);
+    }
+
+    /**
+     * A product's whole history (optionally limited to a time range) as one JSON
+     * array, written row by row as the database returns it. The inventory is
+     * looked up before the body is written, so an unknown product is still a 404.
+     */
+    public StreamingResponseBody streamTransactionHistory(Long productId, Long organizationId,
+            OffsetDateTime from, OffsetDateTime to) {
+        Long inventoryId = getInventoryId(productId, organizationId);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return out -> {
+            try (JsonGenerator json = objectMapper.createGenerator(out)) {
+                json.writeStartArray();
+                readOnly.executeWithoutResult(status -> inventoryTransactionJdbcRepository
+                        .stream(inventoryId, from, to, row -> writeRow(json, row)));
+                json.writeEndArray();
+            }
+        };
+    }
+
+    private Long getInventoryId(Long productId, Long organizationId) {
+        return inventoryRepository.findIdByOrganizationIdAndProductId(organizationId, productId)
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "No inventory found for this product"));
+    }
 
-        List<InventoryTransaction> transactions = inventoryTransactionRepository
-                .findByInventoryIdOrderByCreatedAtDesc(inventory.getId());
+    private void writeRow(JsonGenerator json, TransactionRow row) {
+        try {
+            json.writeObject(toResponse(row));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        // Get all unique user IDs (filter out nulls)
-        List<UUID> userIds = transactions.stream()
-                .map(InventoryTransaction::getCreatedBy)
-                .filter(Objects::nonNull)
-                .distinct()
-                .toList();
+    private InventoryTransactionResponseDto toResponse(TransactionRow row) {
+        return new InventoryTransactionResponseDto(
+                row.id(),
+                row.inventoryId(),
+                row.transactionType(),
+                row.quantityChange(),
+                row.quantityBefore(),
+                row.quantityAfter(),
+                row.priceBefore(),
+                row.priceAfter(),
+                row.referenceId(),
+                row.notes(),
+                row.createdBy() != null ? row.createdBy().toString() : null,
+                row.createdByName(),
+                row.createdByEmail(),
+                row.createdAt() != null ? row.createdAt().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME) : null);
+    }
 
-        // Fetch all users at once
-        Map<UUID, User> userMap = userRepository.findAllById(userIds).stream()
-                .collect(Collectors.toMap(User::getId, user -> user));
+    // Opaque to clients: base64 of the last row's instant and id
+    private static String encodeCursor(TransactionRow row) {
+        String position = row.createdAt().toInstant() + "," + row.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
 
-        // Map transactions with user information
-        return transactions.stream()
-                .map(transaction -> {
-                    User user = userMap.get(transaction.getCreatedBy());
-                    return new InventoryTransactionResponseDto(
-                            transaction.getId(),
-                            transaction.getInventoryId(),
-                            transaction.getTransactionType(),
-                            transaction.getQuantityChange(),
-                            transaction.getQuantityBefore(),
-                            transaction.getQuantityAfter(),
-                            transaction.getPriceBefore(),
-                            transaction.getPriceAfter(),
-                            transaction.getReferenceId(),
-                            transaction.getNotes(),
-                            transaction.getCreatedBy() != null
-                                    ? transaction.getCreatedBy().toString()
-                                    : null,
-                            user != null ? user.getName() : null,
-                            user != null ? user.getEmail() : null,
-                            transaction.getCreatedAt() != null ? transaction.getCreatedAt()
-                                    .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)
-                                    : null);
-                })
-                .toList();
+    private static Cursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",");
+            return new Cursor(OffsetDateTime.ofInstant(Instant.parse(position[0]), ZoneOffset.UTC),
+                    Long.valueOf(position[1]));
+        } catch (IllegalArgumentException | DateTimeException | ArrayIndexOutOfBoundsException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
     }
 
     @Transactional(readOnly = true)
     public List<UserSalesStatsResponseDto> getUserSalesStats(Long organizationId) {
-        // Get all sale transactions for the organization
-        List<InventoryTransaction> saleTransactions = inventoryTransactionRepository
-                .findSaleTransactionsByOrganizationId(organizationId);
-
-        // Group transactions by user and station
-        Map<String, List<InventoryTransaction>> transactionsByUserAndStation = saleTransactions.stream()
-                .filter(t -> t.getCreatedBy() != null)
-                .collect(Collectors.groupingBy(transaction -> {
-                    UUID userId = transaction.getCreatedBy();
-                    Long stationId = transaction.getBarStationId();
-                    return userId.toString() + "|"
-                            + (stationId != null ? stationId.toString() : "null");
-                }));
+        // Totals per user and station come pre-aggregated from the rollup buckets
+        List<SalesRollupRepository.UserStationSalesTotals> totals = salesRollupRepository
+                .sumByUserAndStation(organizationId);
 
         // Get all unique user IDs and station IDs
-        Set<UUID> userIds = saleTransactions.stream()
-                .map(InventoryTransaction::getCreatedBy)
-                .filter(Objects::nonNull)
+        Set<UUID> userIds = totals.stream()
+                .map(SalesRollupRepository.UserStationSalesTotals::getUserId)
                 .collect(Collectors.toSet());
 
-        Set<Long> stationIds = saleTransactions.stream()
-                .map(InventoryTransaction::getBarStationId)
+        Set<Long> stationIds = totals.stream()
+                .map(SalesRollupRepository.UserStationSalesTotals::getBarStationId)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
 
@@ -330,40 +386,18 @@ public class InventoryService {
                 .stream()
                 .collect(Collectors.toMap(BarStation::getId, station -> station));
 
-        // Calculate statistics for each user-station combination
-        return transactionsByUserAndStation.entrySet().stream()
-                .map(entry -> {
-                    String[] parts = entry.getKey().split("\\|");
-                    UUID userId = UUID.fromString(parts[0]);
-                    Long stationId = null;
-                    if (parts.length > 1 && !parts[1].equals("null")) {
-                        try {
-                            stationId = Long.parseLong(parts[1]);
-                        } catch (NumberFormatException e) {
-                            stationId = null;
-                        }
-                    }
-
-                    List<InventoryTransaction> userStationTransactions = entry.getValue();
-                    User user = userMap.get(userId);
+        return totals.stream()
+                .map(total -> {
+                    User user = userMap.get(total.getUserId());
+                    Long stationId = total.getBarStationId();
                     BarStation station = stationId != null ? stationMap.get(stationId) : null;
 
-                    // Count unique sales (by referenceId)
-                    long salesCount = userStationTransactions.stream()
-                            .map(InventoryTransaction::getReferenceId)
-                            .filter(Objects::nonNull)
-                            .distinct()
-                            .count();
-
-                    // Calculate total revenue by getting all products and their prices
-                    BigDecimal totalRevenue = calculateTotalRevenue(userStationTransactions);
-
                     return new UserSalesStatsResponseDto(
-                            userId.toString(),
+                            total.getUserId().toString(),
                             user != null ? user.getName() : "Unknown User",
                             user != null ? user.getEmail() : "unknown@email.com",
-                            salesCount,
-                            totalRevenue,
+                            total.getSalesCount(),
+                            Optional.ofNullable(total.getTotalRevenue()).orElse(BigDecimal.ZERO),
                             stationId,
                             station != null ? station.getName() : null);
                 })
@@ -374,45 +408,26 @@ public class InventoryService {
 
     @Transactional(readOnly = true)
     public List<StationSalesStatsResponseDto> getStationSalesStats(Long organizationId) {
-        // Get all sale transactions for the organization
-        List<InventoryTransaction> saleTransactions = inventoryTransactionRepository
-                .findSaleTransactionsByOrganizationId(organizationId);
-
-        // Group transactions by station
-        Map<Long, List<InventoryTransaction>> transactionsByStation = saleTransactions.stream()
-                .filter(t -> t.getBarStationId() != null)
-                .collect(Collectors.groupingBy(InventoryTransaction::getBarStationId));
+        List<SalesRollupRepository.StationSalesTotals> totals = salesRollupRepository
+                .sumByStation(organizationId);
 
-        // Get all unique station IDs
-        Set<Long> stationIds = transactionsByStation.keySet();
+        Set<Long> stationIds = totals.stream()
+                .map(SalesRollupRepository.StationSalesTotals::getBarStationId)
+                .collect(Collectors.toSet());
 
         // Fetch all stations at once
         Map<Long, BarStation> stationMap = barStationRepository.findAllById(new ArrayList<>(stationIds))
                 .stream()
                 .collect(Collectors.toMap(BarStation::getId, station -> station));
 
-        // Calculate statistics for each station
-        return transactionsByStation.entrySet().stream()
-                .map(entry -> {
-                    Long stationId = entry.getKey();
-                    List<InventoryTransaction> stationTransactions = entry.getValue();
-                    BarStation station = stationMap.get(stationId);
-
-                    // Count unique sales (by referenceId)
-                    long salesCount = stationTransactions.stream()
-                            .map(InventoryTransaction::getReferenceId)
-                            .filter(Objects::nonNull)
-                            .distinct()
-                            .count();
-
-                    // Calculate total revenue by getting all products and their prices
-                    BigDecimal totalRevenue = calculateTotalRevenue(stationTransactions);
-
+        return totals.stream()
+                .map(total -> {
+                    BarStation station = stationMap.get(total.getBarStationId());
                     return new StationSalesStatsResponseDto(
-                            stationId,
+                            total.getBarStationId(),
                             station != null ? station.getName() : null,
-                            salesCount,
-                            totalRevenue);
+                            total.getSalesCount(),
+                            Optional.ofNullable(total.getTotalRevenue()).orElse(BigDecimal.ZERO));
                 })
                 .sorted((a, b) -> Long.compare(b.salesCount(), a.salesCount())) // Sort by sales count
                 // desc
@@ -435,46 +450,29 @@ public class InventoryService {
         transaction.setNotes(notes);
         transaction.setCreatedBy(userId);
         transaction.setCreatedAt(OffsetDateTime.now());
-        inventoryTransactionRepository.save(transaction);
+        ledgerAppender.append(transaction);
     }
 
-    private Product getOrganizationProduct(Long organizationId, Long productId) {
+    private void publishChange(Long organizationId, Inventory inventory, ProductReferenceDto product,
+            BigDecimal unitPrice) {
+        eventPublisher.publishEvent(new InventoryChangedEvent(organizationId, List.of(
+                new InventoryUpdateDto(inventory.getId(), product.id(), inventory.getQuantity(), unitPrice,
+                        inventory.getUpdatedAt()))));
+    }
+
+    private ProductReferenceDto getOrganizationProduct(Long organizationId, Long productId) {
         // Verify product exists and belongs to organization
-        Product product = productRepository.findById(productId)
+        ProductReferenceDto product = productRepository.findReferenceById(productId)
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "Product not found"));
 
-        if (!product.getOrganizationId().equals(organizationId)) {
+        if (!product.organizationId().equals(organizationId)) {
             throw new ResponseStatusException(
                     HttpStatus.FORBIDDEN, "Product does not belong to your organization");
         }
-        if (!product.isActive()) {
+        if (!product.active()) {
             throw new ResponseStatusException(HttpStatus.GONE, "Product is deleted");
         }
         return product;
     }
-
-
-    private BigDecimal calculateTotalRevenue(List<InventoryTransaction> userStationTransactions) {
-        return userStationTransactions.stream()
-                .map(transaction -> {
-                    // Get inventory to find product
-                    return inventoryRepository
-                            .findById(transaction.getInventoryId())
-                            .flatMap(inventory -> productRepository
-                                    .findById(inventory
-                                            .getProductId()))
-                            .map(product -> {
-                                // Calculate revenue for this
-                                // transaction
-                                BigDecimal quantitySold = transaction
-                                        .getQuantityChange()
-                                        .abs();
-                                return product.getBasePrice()
-                                        .multiply(quantitySold);
-                            })
-                            .orElse(BigDecimal.ZERO);
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
 }
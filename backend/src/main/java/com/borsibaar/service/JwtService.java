@@ -1,34 +1,64 @@
 package com.borsibaar.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Date;
 
 @Service
 public class JwtService {
-    @Value("${jwt.secret}")
-    private String secretKey;
+    // Recently verified tokens; a browser sends the same cookie on every request
+    private static final int VERIFIED_TOKEN_CACHE_SIZE = 10_000;
+
     private final long expirationMs = 86400000; // 24h
 
+    private final SecretKey key;
+    private final JwtParser parser;
+    private final Cache<String, Claims> verified = Caffeine.newBuilder()
+            .maximumSize(VERIFIED_TOKEN_CACHE_SIZE)
+            .expireAfter(Expiry.creating((String token, Claims claims) -> untilExpiry(claims)))
+            .build();
+
+    public JwtService(@Value("${jwt.secret}") String secretKey) {
+        this.key = Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser().verifyWith(key).build();
+    }
+
     public String generateToken(String subject) {
         return Jwts.builder()
                 .subject(subject)
                 .issuedAt(new Date())
                 .expiration(new Date(System.currentTimeMillis() + expirationMs))
-                .signWith(SignatureAlgorithm.HS256, secretKey.getBytes(StandardCharsets.UTF_8))
+                .signWith(key, Jwts.SIG.HS256)
                 .compact();
     }
 
+    /**
+     * Verifies the token and returns its claims. A token that was verified
+     * before is served from memory until it expires, skipping the HMAC check.
+     */
     public Claims parseToken(String token) {
-        return Jwts.parser()
-                .setSigningKey(secretKey.getBytes(StandardCharsets.UTF_8))
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        if (token == null) {
+            throw new IllegalArgumentException("JWT must not be null");
+        }
+        return verified.get(token, unverified -> parser.parseSignedClaims(unverified).getPayload());
+    }
+
+    private static Duration untilExpiry(Claims claims) {
+        if (claims.getExpiration() == null) {
+            return Duration.ZERO;
+        }
+        long remaining = claims.getExpiration().getTime() - System.currentTimeMillis();
+        return Duration.ofMillis(Math.max(0, remaining));
     }
 }
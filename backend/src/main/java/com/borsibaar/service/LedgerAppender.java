@@ -0,0 +1,464 @@
+package com.borsibaar.service;
+
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.LedgerJdbcRepository;
+import com.borsibaar.repository.LedgerJdbcRepository.LedgerEntry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes the transaction ledger. By default every entry is saved in the
+ * caller's transaction.
+ *
+ * <p>With {@code app.ledger.write-behind} enabled an entry is appended once the
+ * caller's transaction commits, so before the request is answered: first to a
+ * local journal, fsync'd, then to a bounded ring buffer that a single writer
+ * thread drains into the ledger in multi-row INSERTs. The writer stores the
+ * journal sequence of the last entry along with the rows, and on startup the
+ * journal is replayed from there before anything reads the ledger (the price
+ * engine repairs inventory from it). A crash between the commit and the fsync
+ * loses those entries; their request was never answered. Like the price engine
+ * this assumes a single backend instance, and the journal directory has to
+ * survive a restart.
+ *
+ * <p>Appends are serialised by the journal write, so the ring buffer only sits
+ * between that one appender and the writer and needs no lock. When it is full
+ * the appender waits for the writer ({@code ledger.appender.backpressure});
+ * {@code ledger.appender.queued} is the current depth. On shutdown the writer
+ * drains the buffer for up to {@code app.ledger.drain-timeout}; anything left
+ * is replayed from the journal on the next start.
+ *
+ * <p>Ledger reads (history, the price correction job's sale window) see an
+ * entry once the writer has written it, usually within milliseconds.
+ */
+@Slf4j
+@Service
+public class LedgerAppender {
+
+    private static final String JOURNAL_FILE = "ledger.journal";
+    // Compacted once everything in it is written and it has grown past this
+    private static final long COMPACT_AFTER_BYTES = 1 << 20;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long RETRY_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final InventoryTransactionRepository inventoryTransactionRepository;
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final boolean writeBehind;
+    private final Path journalFile;
+    private final int batchSize;
+    private final Duration drainTimeout;
+
+    private final RingBuffer buffer;
+    private final ReentrantLock journalLock = new ReentrantLock();
+    // Guarded by journalLock; null before start and after shutdown
+    private FileChannel journal;
+    private long lastSequence;
+    private volatile boolean running;
+    private Thread writer;
+
+    public LedgerAppender(InventoryTransactionRepository inventoryTransactionRepository,
+            LedgerJdbcRepository ledgerJdbcRepository,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.ledger.write-behind:false}") boolean writeBehind,
+            @Value("${app.ledger.journal-dir:ledger-journal}") String journalDirectory,
+            @Value("${app.ledger.buffer-size:8192}") int bufferSize,
+            @Value("${app.ledger.batch-size:500}") int batchSize,
+            @Value("${app.ledger.drain-timeout:30s}") Duration drainTimeout) {
+        this.inventoryTransactionRepository = inventoryTransactionRepository;
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.writeBehind = writeBehind;
+        this.journalFile = Path.of(journalDirectory).resolve(JOURNAL_FILE);
+        this.batchSize = batchSize;
+        this.drainTimeout = drainTimeout;
+        this.buffer = new RingBuffer(bufferSize);
+    }
+
+    public void append(InventoryTransaction transaction) {
+        if (!writeBehind) {
+            inventoryTransactionRepository.save(transaction);
+            return;
+        }
+        appendAfterCommit(List.of(toEntry(transaction)));
+    }
+
+    /**
+     * Appends the entries in order; without write-behind they are inserted as
+     * one JDBC batch at flush.
+     */
+    public void appendAll(List<InventoryTransaction> transactions) {
+        if (!writeBehind) {
+            inventoryTransactionRepository.saveAll(transactions);
+            return;
+        }
+        appendAfterCommit(transactions.stream().map(LedgerAppender::toEntry).toList());
+    }
+
+    /**
+     * Replays what the journal holds beyond the checkpoint, then starts the
+     * writer. Runs before the web server takes requests and before the price
+     * engine's ledger repair; a journal that cannot be replayed fails startup.
+     */
+    @PostConstruct
+    void start() {
+        if (!writeBehind) {
+            return;
+        }
+        Gauge.builder("ledger.appender.queued", buffer, RingBuffer::size)
+                .description("Ledger entries waiting for the writer")
+                .register(meterRegistry);
+        try {
+            Files.createDirectories(journalFile.getParent());
+            long checkpoint = ledgerJdbcRepository.findCheckpoint();
+            List<Sequenced> pending = readJournal(checkpoint);
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                write(pending.subList(from, Math.min(from + batchSize, pending.size())));
+            }
+            if (!pending.isEmpty()) {
+                log.warn("Replayed {} ledger entries from {}", pending.size(), journalFile);
+            }
+            journalLock.lock();
+            try {
+                lastSequence = pending.isEmpty() ? checkpoint : pending.getLast().sequence();
+                journal = FileChannel.open(journalFile,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                journal.truncate(0);
+                journal.force(true);
+            } finally {
+                journalLock.unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the ledger journal " + journalFile, e);
+        }
+        running = true;
+        writer = new Thread(this::drain, "ledger-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(drainTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("Ledger writer did not drain within {}, {} entries stay in the journal",
+                    drainTimeout, buffer.size());
+        }
+        journalLock.lock();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("Could not close the ledger journal", e);
+        } finally {
+            journal = null;
+            journalLock.unlock();
+        }
+    }
+
+    private void appendAfterCommit(List<LedgerEntry> entries) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(entries);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(entries);
+            }
+        });
+    }
+
+    private void enqueue(List<LedgerEntry> entries) {
+        boolean queued = false;
+        journalLock.lock();
+        try {
+            if (journal != null) {
+                List<Sequenced> sequenced = journal(entries);
+                queued = true;
+                for (Sequenced entry : sequenced) {
+                    offer(entry);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            log.error("Could not journal {} ledger entries, writing them directly", entries.size(), e);
+        } finally {
+            journalLock.unlock();
+        }
+        if (queued) {
+            LockSupport.unpark(writer);
+        } else {
+            // No writer (not started, shut down) or no journal to rely on
+            ledgerJdbcRepository.insertAll(entries);
+        }
+    }
+
+    /**
+     * Appends the entries to the journal and syncs it. Caller holds the journal
+     * lock.
+     */
+    private List<Sequenced> journal(List<LedgerEntry> entries) {
+        List<Sequenced> sequenced = new ArrayList<>(entries.size());
+        StringBuilder lines = new StringBuilder();
+        for (LedgerEntry entry : entries) {
+            Sequenced line = new Sequenced(lastSequence + sequenced.size() + 1, entry);
+            sequenced.add(line);
+            lines.append(toJson(line)).append('\n');
+        }
+        long position = -1;
+        try {
+            position = journal.size();
+            ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                journal.write(bytes);
+            }
+            Timer.Sample sample = Timer.start(meterRegistry);
+            journal.force(false);
+            sample.stop(meterRegistry.timer("ledger.appender.journal.sync"));
+        } catch (IOException e) {
+            truncate(position);
+            throw new UncheckedIOException(e);
+        }
+        lastSequence += sequenced.size();
+        return sequenced;
+    }
+
+    private void truncate(long position) {
+        if (position < 0) {
+            return;
+        }
+        try {
+            journal.truncate(position);
+        } catch (IOException e) {
+            log.warn("Could not roll back a partial ledger journal write", e);
+        }
+    }
+
+    /**
+     * Waits for room while the buffer is full. Caller holds the journal lock. On
+     * shutdown the entry is left to the journal instead.
+     */
+    private void offer(Sequenced entry) {
+        if (buffer.offer(entry)) {
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        while (!buffer.offer(entry) && running) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, FULL_PARK_NANOS);
+        }
+        sample.stop(Timer.builder("ledger.appender.backpressure")
+                .description("Time appenders waited for room in the ledger buffer")
+                .register(meterRegistry));
+    }
+
+    private void drain() {
+        while (true) {
+            List<Sequenced> batch = buffer.peek(batchSize);
+            if (batch.isEmpty()) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                meterRegistry.counter("ledger.appender.failures").increment();
+                if (!running) {
+                    log.error("Could not write {} ledger entries on shutdown, they stay in the journal",
+                            buffer.size(), e);
+                    return;
+                }
+                log.error("Could not write {} ledger entries, will retry", batch.size(), e);
+                LockSupport.parkNanos(this, RETRY_PARK_NANOS);
+                continue;
+            }
+            buffer.advance(batch.size());
+            compactJournal();
+        }
+    }
+
+    private void write(List<Sequenced> batch) {
+        ledgerJdbcRepository.insertAll(batch.stream().map(Sequenced::entry).toList(),
+                batch.getLast().sequence());
+        DistributionSummary.builder("ledger.appender.batch")
+                .description("Ledger entries per INSERT batch")
+                .register(meterRegistry)
+                .record(batch.size());
+    }
+
+    /**
+     * Empties the journal once everything in it is written. Skipped while an
+     * appender holds the lock; it may be waiting for this thread.
+     */
+    private void compactJournal() {
+        if (!journalLock.tryLock()) {
+            return;
+        }
+        try {
+            if (journal != null && buffer.size() == 0 && journal.size() >= COMPACT_AFTER_BYTES) {
+                journal.truncate(0);
+            }
+        } catch (IOException e) {
+            log.warn("Could not compact the ledger journal", e);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    /**
+     * Entries after the checkpoint, in journal order. A last line cut short by a
+     * crash was never synced, so never acknowledged, and is skipped.
+     */
+    private List<Sequenced> readJournal(long checkpoint) throws IOException {
+        List<Sequenced> pending = new ArrayList<>();
+        if (!Files.exists(journalFile)) {
+            return pending;
+        }
+        List<String> lines = Files.readAllLines(journalFile, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).isBlank()) {
+                continue;
+            }
+            Sequenced entry;
+            try {
+                entry = objectMapper.readValue(lines.get(i), Sequenced.class);
+            } catch (JsonProcessingException e) {
+                if (i == lines.size() - 1) {
+                    log.warn("Skipping the incomplete last line of {}", journalFile);
+                    break;
+                }
+                throw new IllegalStateException("Ledger journal " + journalFile + " is corrupt at line " + (i + 1), e);
+            }
+            if (entry.sequence() > checkpoint) {
+                pending.add(entry);
+            }
+        }
+        return pending;
+    }
+
+    private String toJson(Sequenced entry) {
+        try {
+            return objectMapper.writeValueAsString(entry);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize ledger entry", e);
+        }
+    }
+
+    private static LedgerEntry toEntry(InventoryTransaction transaction) {
+        return new LedgerEntry(
+                transaction.getInventory().getId(),
+                transaction.getTransactionType(),
+                transaction.getQuantityChange(),
+                transaction.getQuantityBefore(),
+                transaction.getQuantityAfter(),
+                transaction.getPriceBefore(),
+                transaction.getPriceAfter(),
+                transaction.getReferenceId(),
+                transaction.getNotes(),
+                transaction.getCreatedBy(),
+                transaction.getBarStationId(),
+                transaction.getCreatedAt());
+    }
+
+    record Sequenced(long sequence, LedgerEntry entry) {
+    }
+
+    /**
+     * Bounded ring between the appender holding the journal lock and the writer.
+     * Capacity is rounded up to a power of two.
+     */
+    private static final class RingBuffer {
+
+        private final Sequenced[] slots;
+        private final int mask;
+        // Next entry to write out; only the writer moves it
+        private final AtomicLong head = new AtomicLong();
+        // Next free slot; only the appender moves it
+        private final AtomicLong tail = new AtomicLong();
+
+        RingBuffer(int capacity) {
+            int size = 1;
+            while (size < capacity) {
+                size <<= 1;
+            }
+            this.slots = new Sequenced[size];
+            this.mask = size - 1;
+        }
+
+        boolean offer(Sequenced entry) {
+            long t = tail.get();
+            if (t - head.get() == slots.length) {
+                return false;
+            }
+            slots[(int) (t & mask)] = entry;
+            tail.set(t + 1);
+            return true;
+        }
+
+        /** Up to {@code max} entries from the head, left in place until {@link #advance}. */
+        List<Sequenced> peek(int max) {
+            long h = head.get();
+            int count = (int) Math.min(tail.get() - h, max);
+            List<Sequenced> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(slots[(int) ((h + i) & mask)]);
+            }
+            return entries;
+        }
+
+        void advance(int count) {
+            long h = head.get();
+            for (int i = 0; i < count; i++) {
+                slots[(int) ((h + i) & mask)] = null;
+            }
+            head.set(h + count);
+        }
+
+        int size() {
+            return (int) (tail.get() - head.get());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.borsibaar.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs a transactional service call again when it lost an optimistic locking
+ * race on an inventory row. Must be called outside a transaction, so every
+ * attempt gets a fresh one; once attempts run out the failure propagates and is
+ * answered with 409 Conflict.
+ */
+@Slf4j
+@Component
+public class OptimisticRetry {
+
+    private final int maxAttempts;
+
+    public OptimisticRetry(@Value("${app.optimistic-retry.max-attempts:5}") int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public <T> T run(Supplier<T> call) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("OptimisticRetry must not run inside a transaction");
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                log.debug("Optimistic locking conflict, retrying (attempt {} of {})", attempt + 1, maxAttempts);
+            }
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.borsibaar.service;
 
+import com.borsibaar.config.CacheConfig;
 import com.borsibaar.dto.OrganizationRequestDto;
 import com.borsibaar.dto.OrganizationResponseDto;
 import com.borsibaar.entity.Organization;
 import com.borsibaar.mapper.OrganizationMapper;
 import com.borsibaar.repository.OrganizationRepository;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,10 +21,13 @@ public class OrganizationService {
 
     private final OrganizationRepository organizationRepository;
     private final OrganizationMapper organizationMapper;
+    private final PriceEngine priceEngine;
 
-    public OrganizationService(OrganizationRepository organizationRepository, OrganizationMapper organizationMapper) {
+    public OrganizationService(OrganizationRepository organizationRepository, OrganizationMapper organizationMapper,
+            PriceEngine priceEngine) {
         this.organizationRepository = organizationRepository;
         this.organizationMapper = organizationMapper;
+        this.priceEngine = priceEngine;
     }
 
     @Transactional
@@ -33,6 +39,7 @@ public class OrganizationService {
         return organizationMapper.toResponse(saved);
     }
 
+    @Cacheable(cacheNames = CacheConfig.ORGANIZATIONS, key = "#id")
     @Transactional(readOnly = true)
     public OrganizationResponseDto getById(Long id) {
         Organization organization = organizationRepository.findById(id)
@@ -49,6 +56,7 @@ public class OrganizationService {
                 .toList();
     }
 
+    @CacheEvict(cacheNames = CacheConfig.ORGANIZATIONS, key = "#id")
     @Transactional
     public OrganizationResponseDto update(Long id, OrganizationRequestDto request) {
         Organization organization = organizationRepository.findById(id)
@@ -56,6 +64,8 @@ public class OrganizationService {
         organizationMapper.updateEntity(organization, request);
         organization.setUpdatedAt(OffsetDateTime.now());
         Organization saved = organizationRepository.save(organization);
+        // Price steps are cached by the price engine
+        priceEngine.invalidateOrganization(id);
         return organizationMapper.toResponse(saved);
     }
 }
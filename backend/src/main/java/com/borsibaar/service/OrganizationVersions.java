@@ -0,0 +1,108 @@
+package com.borsibaar.service;
+
+import com.borsibaar.event.InventoryChangedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version of each kind of data an organization's list endpoints serve, bumped
+ * after every committed write, so a client's ETag can be checked without
+ * touching the database. Bumps happen after commit and readers take the tag
+ * before loading, so a tag never labels data older than it. Rows the price
+ * engine writes behind a sale's commit bump INVENTORY again once they are
+ * written (see {@link PriceEngine}). Kept in memory:
+ * tags include the process start time, so none survives a restart, and each
+ * instance only sees its own writes.
+ */
+@Service
+public class OrganizationVersions {
+
+    public enum Resource {
+        /**
+         * Stock, prices and the product list; bumped by every
+         * {@link InventoryChangedEvent} and every write of buffered sales.
+         */
+        INVENTORY,
+        CATEGORIES,
+        BAR_STATIONS,
+        /** Sales totals behind the stats endpoints. */
+        SALES,
+        /** Names and emails of members, shown on stations and in stats. */
+        USERS
+    }
+
+    private static final int RESOURCE_COUNT = Resource.values().length;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Long, AtomicLongArray> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Tag for a response built from the given kinds of data; it changes when any
+     * of them does.
+     */
+    public String etag(Long organizationId, Resource... resources) {
+        return tag(organizationId, resources).append('"').toString();
+    }
+
+    /**
+     * Tag for a response that differs per user, such as the user's own
+     * stations; a browser shared by two users must not revalidate one's list
+     * with the other's tag.
+     */
+    public String userEtag(Long organizationId, UUID userId, Resource... resources) {
+        return tag(organizationId, resources).append('-').append(userId).append('"').toString();
+    }
+
+    /**
+     * Bumps the versions once the surrounding transaction commits, or right away
+     * outside of one.
+     */
+    public void bumpAfterCommit(Long organizationId, Resource... resources) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump(organizationId, resources);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                bump(organizationId, resources);
+            }
+        });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onInventoryChanged(InventoryChangedEvent event) {
+        bump(event.organizationId(), Resource.INVENTORY);
+    }
+
+    /**
+     * Bumps the versions right away, for writes that committed on their own.
+     */
+    public void bump(Long organizationId, Resource... resources) {
+        AtomicLongArray counters = counters(organizationId);
+        for (Resource resource : resources) {
+            counters.incrementAndGet(resource.ordinal());
+        }
+    }
+
+    private StringBuilder tag(Long organizationId, Resource... resources) {
+        AtomicLongArray counters = counters(organizationId);
+        StringBuilder tag = new StringBuilder("\"").append(epoch).append('-').append(organizationId);
+        for (Resource resource : resources) {
+            tag.append('-').append(counters.get(resource.ordinal()));
+        }
+        return tag;
+    }
+
+    private AtomicLongArray counters(Long organizationId) {
+        return versions.computeIfAbsent(organizationId, id -> new AtomicLongArray(RESOURCE_COUNT));
+    }
+}
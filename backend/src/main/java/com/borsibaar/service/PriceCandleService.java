@@ -0,0 +1,187 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.PriceCandleDto;
+import com.borsibaar.dto.PriceSeriesDto;
+import com.borsibaar.entity.PriceCandle;
+import com.borsibaar.repository.PriceCandleJdbcRepository;
+import com.borsibaar.repository.PriceCandleJdbcRepository.CandleTick;
+import com.borsibaar.repository.PriceCandleRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PriceCandleService {
+
+    // Candles are stored at the shortest interval and merged into longer ones when read
+    private static final long STORED_INTERVAL_SECONDS = 10;
+
+    private static final Map<String, Long> INTERVAL_SECONDS = Map.of("10s", 10L, "1m", 60L, "5m", 300L);
+    private static final Duration DEFAULT_RANGE = Duration.ofHours(1);
+    private static final Duration MAX_RANGE = Duration.ofDays(1);
+    private static final int MAX_PRODUCTS = 100;
+
+    private final PriceCandleJdbcRepository priceCandleJdbcRepository;
+    private final PriceCandleRepository priceCandleRepository;
+
+    // Committed ticks by candle, merged until the next flush writes them
+    private final Map<CandleKey, CandleTick> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Adds price moves made at one instant to their products' candles. Moves of
+     * the same product are taken in list order. Nothing is written in the
+     * caller's transaction: once it commits, the moves are merged into the
+     * pending candles and {@link #flush} writes them. Every terminal selling a
+     * product would otherwise wait on its candle row until the sale before it
+     * commits. A rolled back sale leaves its candles alone.
+     */
+    public void record(Long organizationId, OffsetDateTime at, List<PriceMove> moves) {
+        OffsetDateTime bucketStart = bucketStart(at.toInstant(), STORED_INTERVAL_SECONDS);
+
+        Map<Long, CandleTick> ticks = new LinkedHashMap<>();
+        for (PriceMove move : moves) {
+            BigDecimal high = move.priceBefore().max(move.priceAfter());
+            BigDecimal low = move.priceBefore().min(move.priceAfter());
+            ticks.merge(move.productId(),
+                    new CandleTick(organizationId, move.productId(), bucketStart, move.priceBefore(), high, low,
+                            move.priceAfter(), move.quantity(), at, at),
+                    CandleTick::merge);
+        }
+        afterCommit(() -> ticks.values().forEach(this::buffer));
+    }
+
+    /**
+     * Writes the pending candles in one batch. A failed batch stays pending for
+     * the next flush.
+     */
+    @Scheduled(fixedDelayString = "${app.price-candles.flush-interval-ms:500}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<CandleTick> ticks = new ArrayList<>(pending.size());
+        for (CandleKey key : pending.keySet()) {
+            CandleTick tick = pending.remove(key);
+            if (tick != null) {
+                ticks.add(tick);
+            }
+        }
+        try {
+            priceCandleJdbcRepository.upsert(ticks);
+        } catch (DataAccessException e) {
+            ticks.forEach(this::buffer);
+            log.error("Failed to write {} price candles, will retry", ticks.size(), e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    /**
+     * Candles of each product in {@code [from, to)} at the given interval (10s,
+     * 1m or 5m), oldest first. Buckets without a price change are left out; the
+     * price carries over from the previous candle's close.
+     */
+    @Transactional(readOnly = true)
+    public List<PriceSeriesDto> getSeries(Long organizationId, List<Long> productIds, String interval,
+            OffsetDateTime from, OffsetDateTime to) {
+        Long intervalSeconds = INTERVAL_SECONDS.get(interval);
+        if (intervalSeconds == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Interval must be one of 10s, 1m or 5m");
+        }
+        if (productIds == null || productIds.isEmpty() || productIds.size() > MAX_PRODUCTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Between 1 and " + MAX_PRODUCTS + " product IDs are required");
+        }
+        OffsetDateTime end = to != null ? to : OffsetDateTime.now();
+        OffsetDateTime start = from != null ? from : end.minus(DEFAULT_RANGE);
+        if (!start.isBefore(end) || Duration.between(start, end).compareTo(MAX_RANGE) > 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Range must be positive and at most " + MAX_RANGE.toHours() + " hours");
+        }
+
+        LinkedHashSet<Long> requested = new LinkedHashSet<>(productIds);
+        Map<Long, List<PriceCandle>> candlesByProduct = priceCandleRepository
+                .findRange(organizationId, requested, start, end).stream()
+                .collect(Collectors.groupingBy(PriceCandle::getProductId));
+
+        return requested.stream()
+                .map(productId -> new PriceSeriesDto(productId,
+                        merge(candlesByProduct.getOrDefault(productId, List.of()), intervalSeconds)))
+                .toList();
+    }
+
+    // Folds consecutive stored candles into buckets of the requested interval
+    private static List<PriceCandleDto> merge(List<PriceCandle> candles, long intervalSeconds) {
+        List<PriceCandleDto> merged = new ArrayList<>();
+        PriceCandleDto current = null;
+        for (PriceCandle candle : candles) {
+            OffsetDateTime bucketStart = bucketStart(candle.getBucketStart().toInstant(), intervalSeconds);
+            if (current != null && current.bucketStart().isEqual(bucketStart)) {
+                current = new PriceCandleDto(bucketStart, current.open(),
+                        current.high().max(candle.getHighPrice()), current.low().min(candle.getLowPrice()),
+                        candle.getClosePrice(), current.volume().add(candle.getVolume()));
+                merged.set(merged.size() - 1, current);
+            } else {
+                current = new PriceCandleDto(bucketStart, candle.getOpenPrice(), candle.getHighPrice(),
+                        candle.getLowPrice(), candle.getClosePrice(), candle.getVolume());
+                merged.add(current);
+            }
+        }
+        return merged;
+    }
+
+    private void buffer(CandleTick tick) {
+        pending.merge(new CandleKey(tick.productId(), tick.bucketStart()), tick, CandleTick::merge);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static OffsetDateTime bucketStart(Instant instant, long intervalSeconds) {
+        long seconds = Math.floorDiv(instant.getEpochSecond(), intervalSeconds) * intervalSeconds;
+        return OffsetDateTime.ofInstant(Instant.ofEpochSecond(seconds), ZoneOffset.UTC);
+    }
+
+    /** One price change of a product; {@code quantity} is what was sold with it, if anything. */
+    public record PriceMove(Long productId, BigDecimal priceBefore, BigDecimal priceAfter, BigDecimal quantity) {
+    }
+
+    private record CandleKey(Long productId, OffsetDateTime bucketStart) {
+    }
+}
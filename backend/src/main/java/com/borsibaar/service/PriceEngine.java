@@ -0,0 +1,836 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.InventoryJdbcRepository;
+import com.borsibaar.repository.InventoryJdbcRepository.InventoryChange;
+import com.borsibaar.repository.InventoryJdbcRepository.Stock;
+import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.service.OrganizationVersions.Resource;
+import com.borsibaar.util.FixedPoint;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Live price and stock of the products being sold, kept in memory so a sale no
+ * longer loads the product graph or waits on inventory row locks. State is per
+ * JVM, which assumes a single backend instance.
+ *
+ * <p>Updates are serialised per product through lock striping. A sale takes the
+ * stripes of all its products in index order, so two sales cannot deadlock, and
+ * either every line is applied or none is. Lines of the same product are merged
+ * first, and products not in memory yet are loaded for the whole basket at once.
+ *
+ * <p>With {@code app.price-engine.write-behind} enabled the inventory rows are
+ * written in batches every flush interval instead of inside each sale. The sale
+ * ledger is still written in the sale transaction (or journaled as it commits,
+ * see {@link LedgerAppender}) and is used to repair the rows after an unclean
+ * shutdown. Anything else that writes inventory must call
+ * {@link #invalidate(Long)} first, which waits for the product's sales that
+ * have not committed yet, so a rollback is never written out. The sale bumps its organization's
+ * {@link Resource#INVENTORY} version when it commits, before its rows are
+ * written, so every write of buffered changes bumps it again; a list or board
+ * read in between is never served as current afterwards.
+ *
+ * <p>Every inventory write bumps {@code inventory.version}. Entity updates (the
+ * stock endpoints, row-mode price correction) are therefore optimistic and get
+ * retried through {@link OptimisticRetry}. Without write-behind a sale locks its
+ * rows in id order and catches up with them before it writes, and keeps its
+ * stripes locked until its transaction completes (the row lock serializes those
+ * sales anyway), so a state is never loaded underneath an uncommitted sale.
+ */
+@Slf4j
+@Service
+public class PriceEngine {
+
+    private static final int STRIPE_COUNT = 64;
+    // How long a retire waits for the product's open sales to complete
+    private static final long SETTLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final ProductRepository productRepository;
+    private final InventoryJdbcRepository inventoryJdbcRepository;
+    private final OrganizationVersions organizationVersions;
+    private final TransactionTemplate flushTransaction;
+    private final boolean writeBehind;
+
+    private final Map<Long, ProductState> states = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    // Bumped before a state is dropped, so a load that raced with it can tell
+    private final AtomicLong retirements = new AtomicLong();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPE_COUNT];
+    // Signalled when the last open sale of a product on the stripe completes
+    private final Condition[] settled = new Condition[STRIPE_COUNT];
+
+    public PriceEngine(ProductRepository productRepository,
+            InventoryJdbcRepository inventoryJdbcRepository,
+            OrganizationVersions organizationVersions,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.price-engine.write-behind:true}") boolean writeBehind) {
+        this.productRepository = productRepository;
+        this.inventoryJdbcRepository = inventoryJdbcRepository;
+        this.organizationVersions = organizationVersions;
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.writeBehind = writeBehind;
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new ReentrantLock();
+            settled[i] = stripes[i].newCondition();
+        }
+    }
+
+    /**
+     * Validates and applies all lines of a sale, after merging lines of the same
+     * product into the first of them. Each line is priced at the price before it,
+     * and dynamic-pricing products go up one step per line.
+     *
+     * <p>The sale is stamped under the stripe locks: the clock's time to the
+     * microsecond (what PostgreSQL keeps), or just after the latest change of a
+     * product in the basket if that is not earlier. A product's changes thus
+     * carry increasing times in the order they were applied, which the repair
+     * from the ledger and the price candles rely on.
+     */
+    public Sale sell(Long organizationId, List<SaleItemRequestDto> requestedItems, Supplier<OffsetDateTime> clock) {
+        List<SaleItemRequestDto> items = merge(requestedItems);
+        List<Long> productIds = items.stream().map(SaleItemRequestDto::productId).toList();
+        CountDownLatch retiring = null;
+        while (true) {
+            if (retiring != null) {
+                awaitRetire(retiring);
+                retiring = null;
+            }
+            List<ProductState> lineStates = statesFor(productIds);
+
+            List<ReentrantLock> locks = lockStripes(lineStates);
+            boolean heldUntilCompletion = false;
+            try {
+                if (lineStates.stream().anyMatch(state -> state.retired)) {
+                    // Invalidated while we were loading; pick up the fresh state
+                    continue;
+                }
+                retiring = lineStates.stream()
+                        .map(state -> state.retiring)
+                        .filter(Objects::nonNull)
+                        .findFirst()
+                        .orElse(null);
+                if (retiring != null) {
+                    // Being written out; wait outside the stripes, then reload
+                    continue;
+                }
+                if (!writeBehind) {
+                    lockRows(lineStates);
+                }
+                OffsetDateTime soldAt = stamp(lineStates, clock.get());
+                List<PricedLine> lines = applyAll(organizationId, items, lineStates, soldAt);
+                if (!writeBehind) {
+                    writeThrough(lines, lineStates, soldAt);
+                }
+                compensateOnRollback(lines, lineStates);
+                if (!writeBehind) {
+                    heldUntilCompletion = unlockOnCompletion(locks);
+                }
+                return new Sale(soldAt, lines);
+            } finally {
+                if (!heldUntilCompletion) {
+                    locks.forEach(ReentrantLock::unlock);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes out any buffered change for the product and drops its cached state,
+     * then drops it again once the caller's transaction commits so the next sale
+     * sees the committed row.
+     */
+    public void invalidate(Long productId) {
+        retire(productId);
+        afterCommit(() -> retire(productId));
+    }
+
+    public void invalidateOrganization(Long organizationId) {
+        Runnable retireAll = () -> states.values().stream()
+                .filter(state -> state.organizationId.equals(organizationId))
+                .map(state -> state.productId)
+                .toList()
+                .forEach(this::retire);
+        retireAll.run();
+        afterCommit(retireAll);
+    }
+
+    /**
+     * Like {@link #invalidate(Long)}, for the products of the given inventory
+     * rows that are in memory; for writers that know the rows but not the
+     * products.
+     */
+    public void invalidateInventories(Collection<Long> inventoryIds) {
+        Set<Long> ids = new HashSet<>(inventoryIds);
+        Runnable retireAll = () -> states.values().stream()
+                .filter(state -> state.inventoryId != null && ids.contains(state.inventoryId))
+                .map(state -> state.productId)
+                .toList()
+                .forEach(this::retire);
+        retireAll.run();
+        afterCommit(retireAll);
+    }
+
+    @Scheduled(fixedDelayString = "${app.price-engine.flush-interval-ms:500}")
+    public void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<ProductState> toFlush = new ArrayList<>();
+        for (Long productId : dirty) {
+            ProductState state = states.get(productId);
+            if (state != null) {
+                toFlush.add(state);
+            }
+        }
+        toFlush.forEach(state -> dirty.remove(state.productId));
+
+        List<ProductState> flushed = new ArrayList<>(toFlush.size());
+        List<InventoryChange> changes = new ArrayList<>(toFlush.size());
+        for (ProductState state : toFlush) {
+            ReentrantLock lock = stripeFor(state.productId);
+            lock.lock();
+            try {
+                InventoryChange change = state.drain();
+                if (change != null) {
+                    flushed.add(state);
+                    changes.add(change);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        write(flushed, changes);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void repairInventory() {
+        if (!writeBehind) {
+            return;
+        }
+        try {
+            int repaired = inventoryJdbcRepository.repairFromLedger();
+            if (repaired > 0) {
+                log.warn("Repaired {} inventory rows from the transaction ledger", repaired);
+            }
+        } catch (DataAccessException e) {
+            log.error("Could not repair inventory from the transaction ledger", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    int cachedProductCount() {
+        return states.size();
+    }
+
+    private static List<SaleItemRequestDto> merge(List<SaleItemRequestDto> items) {
+        Map<Long, BigDecimal> quantities = new LinkedHashMap<>();
+        items.forEach(item -> quantities.merge(item.productId(), item.quantity(), BigDecimal::add));
+        if (quantities.size() == items.size()) {
+            return items;
+        }
+        return quantities.entrySet().stream()
+                .map(entry -> new SaleItemRequestDto(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    private List<ProductState> statesFor(List<Long> productIds) {
+        List<ProductState> lineStates = new ArrayList<>(productIds.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long productId : productIds) {
+            ProductState state = states.get(productId);
+            lineStates.add(state);
+            if (state == null) {
+                missing.add(productId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<Long, ProductState> loaded = load(missing);
+            for (int i = 0; i < lineStates.size(); i++) {
+                if (lineStates.get(i) == null) {
+                    lineStates.set(i, loaded.get(productIds.get(i)));
+                }
+            }
+        }
+        return lineStates;
+    }
+
+    /**
+     * Loads the products with their category, organization and inventory in one
+     * query and their stock in another.
+     */
+    private Map<Long, ProductState> load(List<Long> productIds) {
+        while (true) {
+            long retiredBefore = retirements.get();
+            Map<Long, Product> products = new HashMap<>();
+            productRepository.findAllForSale(productIds).forEach(product -> products.put(product.getId(), product));
+            for (Long productId : productIds) {
+                if (!products.containsKey(productId)) {
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found: " + productId);
+                }
+            }
+            Map<Long, Stock> stocks = inventoryJdbcRepository.findStocks(products.values().stream()
+                    .filter(product -> product.getInventory() != null)
+                    .map(product -> product.getInventory().getId())
+                    .toList());
+
+            Map<Long, ProductState> loaded = new HashMap<>();
+            List<ProductState> added = new ArrayList<>();
+            for (Product product : products.values()) {
+                Stock stock = product.getInventory() == null ? null : stocks.get(product.getInventory().getId());
+                ProductState state = ProductState.of(product, stock);
+                ProductState existing = states.putIfAbsent(product.getId(), state);
+                if (existing != null) {
+                    loaded.put(product.getId(), existing);
+                } else {
+                    loaded.put(product.getId(), state);
+                    added.add(state);
+                }
+            }
+            if (retirements.get() == retiredBefore) {
+                return loaded;
+            }
+            // A state was dropped while we were reading; the rows may have moved on since
+            for (ProductState state : added) {
+                state.retired = true;
+                states.remove(state.productId, state);
+            }
+        }
+    }
+
+    private static OffsetDateTime stamp(List<ProductState> lineStates, OffsetDateTime now) {
+        OffsetDateTime soldAt = now.truncatedTo(ChronoUnit.MICROS);
+        for (ProductState state : lineStates) {
+            if (state.updatedAt != null && !soldAt.isAfter(state.updatedAt)) {
+                soldAt = state.updatedAt.truncatedTo(ChronoUnit.MICROS).plus(1, ChronoUnit.MICROS);
+            }
+        }
+        return soldAt;
+    }
+
+    private List<PricedLine> applyAll(Long organizationId, List<SaleItemRequestDto> items,
+            List<ProductState> lineStates, OffsetDateTime soldAt) {
+        Map<ProductState, ProductState.Snapshot> snapshots = new HashMap<>();
+        List<PricedLine> lines = new ArrayList<>(items.size());
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                ProductState state = lineStates.get(i);
+                snapshots.computeIfAbsent(state, ProductState::snapshot);
+                lines.add(state.sell(organizationId, items.get(i).quantity(), soldAt, writeBehind));
+            }
+        } catch (RuntimeException e) {
+            snapshots.forEach(ProductState::restore);
+            throw e;
+        }
+        if (writeBehind) {
+            lineStates.forEach(state -> dirty.add(state.productId));
+        }
+        return lines;
+    }
+
+    /**
+     * Write-through only: locks the basket's rows in id order for the rest of the
+     * sale transaction and catches the states up with anything committed since
+     * they were loaded, such as a restock or a price decay. A sale racing a stock
+     * edit therefore waits for it instead of losing the version check below.
+     */
+    private void lockRows(List<ProductState> lineStates) {
+        List<Long> inventoryIds = lineStates.stream()
+                .map(state -> state.inventoryId)
+                .filter(Objects::nonNull)
+                .toList();
+        Map<Long, Stock> stocks = inventoryJdbcRepository.lockStocks(inventoryIds);
+        for (ProductState state : lineStates) {
+            Stock stock = state.inventoryId == null ? null : stocks.get(state.inventoryId);
+            if (stock != null) {
+                state.catchUp(stock);
+            }
+        }
+    }
+
+    /**
+     * Joins the sale transaction, which already holds the row locks. Each write
+     * still expects the row version the state was caught up to, so a writer that
+     * skipped the lock fails the sale instead of being overwritten; the state is
+     * dropped and the caller can retry.
+     */
+    private void writeThrough(List<PricedLine> lines, List<ProductState> lineStates, OffsetDateTime soldAt) {
+        List<InventoryChange> changes = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            PricedLine line = lines.get(i);
+            ProductState state = lineStates.get(i);
+            changes.add(new InventoryChange(line.inventoryId(), line.quantity().negate(),
+                    line.priceAfter(), soldAt, state.version++));
+        }
+        try {
+            inventoryJdbcRepository.applyVersioned(changes);
+        } catch (RuntimeException e) {
+            // In memory is now ahead of the row; reload on the next sale
+            lineStates.forEach(this::discard);
+            throw e;
+        }
+    }
+
+    /**
+     * Drops a state without writing it. Caller holds the stripe lock.
+     */
+    private void discard(ProductState state) {
+        retirements.incrementAndGet();
+        state.retired = true;
+        states.remove(state.productId, state);
+        dirty.remove(state.productId);
+    }
+
+    /**
+     * Reverts the lines if the sale transaction rolls back. With write-behind
+     * the basket's states also count the sale as open until then, so a retire
+     * waits for it instead of writing out a change that may yet be reverted.
+     * Caller holds the stripe locks.
+     */
+    private void compensateOnRollback(List<PricedLine> lines, List<ProductState> lineStates) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Set<ProductState> open = writeBehind ? new HashSet<>(lineStates) : Set.of();
+        open.forEach(state -> state.uncommitted++);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    revert(lines, lineStates);
+                }
+                open.forEach(PriceEngine.this::settle);
+            }
+        });
+    }
+
+    private void settle(ProductState state) {
+        int index = stripeIndex(state.productId);
+        stripes[index].lock();
+        try {
+            if (--state.uncommitted == 0) {
+                settled[index].signalAll();
+            }
+        } finally {
+            stripes[index].unlock();
+        }
+    }
+
+    /**
+     * Registered after {@link #compensateOnRollback}, so a rollback is reverted
+     * before the next sale can see the state.
+     */
+    private boolean unlockOnCompletion(List<ReentrantLock> locks) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                locks.forEach(ReentrantLock::unlock);
+            }
+        });
+        return true;
+    }
+
+    private void revert(List<PricedLine> lines, List<ProductState> lineStates) {
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            PricedLine line = lines.get(i);
+            ProductState state = lineStates.get(i);
+            ReentrantLock lock = stripeFor(line.productId());
+            lock.lock();
+            try {
+                // Only a failed write-through discards a state with open sales
+                if (!state.retired) {
+                    state.revert(line, writeBehind);
+                    if (writeBehind) {
+                        dirty.add(state.productId);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits for the product's open sales, then writes out its buffered change
+     * and drops the state. Sales arriving meanwhile wait for the retire.
+     */
+    private void retire(Long productId) {
+        int index = stripeIndex(productId);
+        ReentrantLock lock = stripes[index];
+        lock.lock();
+        try {
+            ProductState state = states.get(productId);
+            if (state == null) {
+                return;
+            }
+            CountDownLatch retiring = state.retiring != null ? state.retiring : new CountDownLatch(1);
+            state.retiring = retiring;
+            try {
+                awaitSettled(state, index);
+                if (!state.retired) {
+                    writeOutAndRetire(state);
+                }
+            } finally {
+                if (state.retiring == retiring) {
+                    state.retiring = null;
+                }
+                retiring.countDown();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Caller holds the stripe lock, which the wait releases.
+     */
+    private void awaitSettled(ProductState state, int index) {
+        long nanos = SETTLE_TIMEOUT_NANOS;
+        try {
+            while (state.uncommitted > 0 && !state.retired) {
+                if (nanos <= 0) {
+                    throw new CannotAcquireLockException("Timed out waiting for open sales of " + state.name);
+                }
+                nanos = settled[index].awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("Interrupted waiting for open sales of " + state.name, e);
+        }
+    }
+
+    private static void awaitRetire(CountDownLatch retiring) {
+        try {
+            // The retire gives up on its own after SETTLE_TIMEOUT_NANOS
+            retiring.await(2 * SETTLE_TIMEOUT_NANOS, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("Interrupted waiting for a product to be written out", e);
+        }
+    }
+
+    /**
+     * Caller holds the stripe lock.
+     */
+    private void writeOutAndRetire(ProductState state) {
+        Long productId = state.productId;
+        // Written under the lock: invalidation is rare, and a failed write must
+        // leave the state (and its buffered change) in place
+        InventoryChange change = state.drain();
+        if (change != null) {
+            try {
+                flushTransaction.executeWithoutResult(status -> inventoryJdbcRepository.apply(List.of(change)));
+            } catch (RuntimeException e) {
+                state.requeue(change);
+                throw e;
+            }
+            organizationVersions.bump(state.organizationId, Resource.INVENTORY);
+        }
+        retirements.incrementAndGet();
+        state.retired = true;
+        states.remove(productId);
+        dirty.remove(productId);
+    }
+
+    private void write(List<ProductState> flushed, List<InventoryChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        try {
+            flushTransaction.executeWithoutResult(status -> inventoryJdbcRepository.apply(changes));
+            flushed.stream()
+                    .map(state -> state.organizationId)
+                    .distinct()
+                    .forEach(organizationId -> organizationVersions.bump(organizationId, Resource.INVENTORY));
+        } catch (RuntimeException e) {
+            // Keep the changes so the next flush retries them
+            for (int i = 0; i < flushed.size(); i++) {
+                ProductState state = flushed.get(i);
+                ReentrantLock lock = stripeFor(state.productId);
+                lock.lock();
+                try {
+                    state.requeue(changes.get(i));
+                    dirty.add(state.productId);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            log.error("Failed to write {} inventory changes, will retry", changes.size(), e);
+        }
+    }
+
+    private List<ReentrantLock> lockStripes(List<ProductState> lineStates) {
+        Set<Integer> indexes = new TreeSet<>();
+        lineStates.forEach(state -> indexes.add(stripeIndex(state.productId)));
+        List<ReentrantLock> locks = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            stripes[index].lock();
+            locks.add(stripes[index]);
+        }
+        return locks;
+    }
+
+    private ReentrantLock stripeFor(Long productId) {
+        return stripes[stripeIndex(productId)];
+    }
+
+    private static int stripeIndex(Long productId) {
+        return Math.floorMod(Long.hashCode(productId), STRIPE_COUNT);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * The lines of a sale and the time it was stamped with.
+     */
+    public record Sale(OffsetDateTime soldAt, List<PricedLine> lines) {
+    }
+
+    /**
+     * A priced sale line. Amounts are computed in fixed point and come out at
+     * scale 4; {@code quantity} is the requested quantity as given.
+     *
+     * @param totalUnits     {@code priceBefore} times {@code quantity} in
+     *                       {@link FixedPoint} units, for the caller to sum
+     * @param dynamicPricing whether the product's price moves with sales
+     */
+    public record PricedLine(
+            Long productId,
+            Long inventoryId,
+            String productName,
+            BigDecimal quantity,
+            BigDecimal quantityBefore,
+            BigDecimal quantityAfter,
+            BigDecimal priceBefore,
+            BigDecimal priceAfter,
+            long totalUnits,
+            boolean dynamicPricing) {
+    }
+
+    /**
+     * Cached pricing rules plus the mutable price and stock of one product, in
+     * {@link FixedPoint} units. Mutable fields are guarded by the product's
+     * stripe lock.
+     */
+    private static final class ProductState {
+
+        private static final long NO_MAX_PRICE = Long.MAX_VALUE;
+
+        private final Long productId;
+        private final Long organizationId;
+        private final String name;
+        private final boolean active;
+        private final long maxPrice;
+        private final boolean dynamicPricing;
+        private final long priceIncreaseStep;
+        private final Long inventoryId;
+
+        private long quantity;
+        private long price;
+        private OffsetDateTime updatedAt;
+        // Row version expected by the next write-through update
+        private long version;
+        private long pendingQuantityDelta;
+        private boolean dirtyPrice;
+        private volatile boolean retired;
+        // Sales not committed or rolled back yet (write-behind only)
+        private int uncommitted;
+        // Set while a retire waits for those sales; sales wait for it in turn
+        private CountDownLatch retiring;
+
+        private ProductState(Product product, Stock stock, BigDecimal priceIncreaseStep) {
+            this.productId = product.getId();
+            this.organizationId = product.getOrganizationId();
+            this.name = product.getName();
+            this.active = product.isActive();
+            this.maxPrice = product.getMaxPrice() != null ? FixedPoint.of(product.getMaxPrice()) : NO_MAX_PRICE;
+            this.dynamicPricing = priceIncreaseStep != null;
+            this.priceIncreaseStep = dynamicPricing ? FixedPoint.of(priceIncreaseStep) : 0L;
+            this.inventoryId = stock != null ? product.getInventory().getId() : null;
+            if (stock != null) {
+                this.quantity = FixedPoint.of(stock.quantity());
+                this.price = FixedPoint.of(Optional.ofNullable(stock.adjustedPrice()).orElse(product.getBasePrice()));
+                this.updatedAt = stock.updatedAt();
+                this.version = stock.version();
+            }
+        }
+
+        static ProductState of(Product product, Stock stock) {
+            Category category = product.getCategory();
+            BigDecimal step = null;
+            if (category != null && category.isDynamicPricing()) {
+                step = Optional.ofNullable(product.getOrganization())
+                        .map(organization -> organization.getPriceIncreaseStep())
+                        .orElse(BigDecimal.ZERO);
+            }
+            return new ProductState(product, stock, step);
+        }
+
+        PricedLine sell(Long saleOrganizationId, BigDecimal requestedQuantity, OffsetDateTime soldAt,
+                boolean buffered) {
+            if (!organizationId.equals(saleOrganizationId)) {
+                throw new ResponseStatusException(
+                        HttpStatus.FORBIDDEN, "Product does not belong to your organization");
+            }
+            if (!active) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, "Product is not active: " + name);
+            }
+            if (inventoryId == null) {
+                throw new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "No inventory found for product: " + name);
+            }
+
+            long soldQuantity = FixedPoint.of(requestedQuantity);
+            long quantityBefore = quantity;
+            long quantityAfter = FixedPoint.subtract(quantityBefore, soldQuantity);
+            if (quantityAfter < 0) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST,
+                        "Insufficient stock for " + name +
+                                ". Available: " + FixedPoint.toBigDecimal(quantityBefore) +
+                                ", Requested: " + requestedQuantity);
+            }
+
+            long priceBefore = price;
+            long priceAfter = priceBefore;
+            if (dynamicPricing) {
+                priceAfter = Math.min(FixedPoint.add(priceBefore, priceIncreaseStep), maxPrice);
+            }
+
+            quantity = quantityAfter;
+            price = priceAfter;
+            updatedAt = soldAt;
+            if (buffered) {
+                pendingQuantityDelta = FixedPoint.subtract(pendingQuantityDelta, soldQuantity);
+                dirtyPrice = true;
+            }
+
+            return new PricedLine(productId, inventoryId, name, requestedQuantity,
+                    FixedPoint.toBigDecimal(quantityBefore), FixedPoint.toBigDecimal(quantityAfter),
+                    FixedPoint.toBigDecimal(priceBefore), FixedPoint.toBigDecimal(priceAfter),
+                    FixedPoint.multiply(priceBefore, soldQuantity), dynamicPricing);
+        }
+
+        void revert(PricedLine line, boolean buffered) {
+            long soldQuantity = FixedPoint.of(line.quantity());
+            quantity = FixedPoint.add(quantity, soldQuantity);
+            price = FixedPoint.subtract(price,
+                    FixedPoint.subtract(FixedPoint.of(line.priceAfter()), FixedPoint.of(line.priceBefore())));
+            if (buffered) {
+                pendingQuantityDelta = FixedPoint.add(pendingQuantityDelta, soldQuantity);
+                dirtyPrice = true;
+            } else {
+                // The rolled back update's version bump is gone too
+                version--;
+            }
+        }
+
+        /**
+         * Takes over the row as read under its lock, if it changed since the state
+         * last saw it. Only used without write-behind, where nothing is buffered.
+         */
+        void catchUp(Stock stock) {
+            if (stock.version() == version) {
+                return;
+            }
+            quantity = FixedPoint.of(stock.quantity());
+            if (stock.adjustedPrice() != null) {
+                price = FixedPoint.of(stock.adjustedPrice());
+            }
+            updatedAt = stock.updatedAt();
+            version = stock.version();
+        }
+
+        /**
+         * Takes the buffered change, if any, and resets the buffer.
+         */
+        InventoryChange drain() {
+            if (!dirtyPrice && pendingQuantityDelta == 0) {
+                return null;
+            }
+            InventoryChange change = new InventoryChange(inventoryId, FixedPoint.toBigDecimal(pendingQuantityDelta),
+                    FixedPoint.toBigDecimal(price), updatedAt);
+            pendingQuantityDelta = 0;
+            dirtyPrice = false;
+            return change;
+        }
+
+        void requeue(InventoryChange change) {
+            pendingQuantityDelta = FixedPoint.add(pendingQuantityDelta, FixedPoint.of(change.quantityDelta()));
+            dirtyPrice = true;
+        }
+
+        Snapshot snapshot() {
+            return new Snapshot(quantity, price, updatedAt, pendingQuantityDelta, dirtyPrice);
+        }
+
+        void restore(Snapshot snapshot) {
+            quantity = snapshot.quantity();
+            price = snapshot.price();
+            updatedAt = snapshot.updatedAt();
+            pendingQuantityDelta = snapshot.pendingQuantityDelta();
+            dirtyPrice = snapshot.dirtyPrice();
+        }
+
+        record Snapshot(long quantity, long price, OffsetDateTime updatedAt, long pendingQuantityDelta,
+                boolean dirtyPrice) {
+        }
+    }
+}
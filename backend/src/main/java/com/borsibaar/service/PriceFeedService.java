@@ -0,0 +1,181 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.InventoryUpdateDto;
+import com.borsibaar.event.InventoryChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Server-sent event channel per organization. Clients (the price board, POS
+ * screens) subscribe once and receive price/quantity deltas after every
+ * committed inventory change instead of polling the inventory list.
+ *
+ * <p>Each subscriber has a bounded queue of its own, drained on a virtual
+ * thread, so a slow or stalled client only holds up itself. A client whose
+ * queue fills up has fallen too far behind: it is dropped and its connection
+ * completed, and EventSource reconnects and reloads.
+ */
+@Slf4j
+@Service
+public class PriceFeedService {
+
+    // Clients reconnect automatically (EventSource), so connections are recycled
+    // periodically instead of living forever
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L;
+    // Events a subscriber may have outstanding before it is dropped
+    static final int SUBSCRIBER_QUEUE_SIZE = 256;
+
+    private final Map<Long, Set<Subscriber>> subscribersByOrganization = new ConcurrentHashMap<>();
+
+    // Sends happen off the request thread so a slow client cannot stall a sale
+    private final ExecutorService sender = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("price-feed-", 0).factory());
+
+    public SseEmitter subscribe(Long organizationId) {
+        return subscribe(organizationId, new SseEmitter(EMITTER_TIMEOUT_MS));
+    }
+
+    SseEmitter subscribe(Long organizationId, SseEmitter emitter) {
+        Set<Subscriber> subscribers = subscribersByOrganization
+                .computeIfAbsent(organizationId, id -> ConcurrentHashMap.newKeySet());
+        Subscriber subscriber = new Subscriber(emitter, subscribers);
+        subscribers.add(subscriber);
+
+        Runnable remove = () -> subscribers.remove(subscriber);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        log.debug("Price feed subscriber added for organization {} ({} connected)", organizationId,
+                subscribers.size());
+        return emitter;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onInventoryChanged(InventoryChangedEvent event) {
+        if (event.updates().isEmpty()) {
+            return;
+        }
+        Set<Subscriber> subscribers = subscribersByOrganization.get(event.organizationId());
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+        List<InventoryUpdateDto> updates = List.copyOf(event.updates());
+        for (Subscriber subscriber : subscribers) {
+            subscriber.enqueue(SseEmitter.event()
+                    .name("inventory")
+                    .data(updates, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    /**
+     * Keeps idle connections open through proxies (nginx closes after 60 s of
+     * silence by default) and weeds out clients that went away.
+     */
+    @Scheduled(fixedRate = 25_000)
+    public void heartbeat() {
+        subscribersByOrganization.values().forEach(subscribers -> subscribers
+                .forEach(subscriber -> subscriber.enqueue(SseEmitter.event().comment("ping"))));
+    }
+
+    int subscriberCount(Long organizationId) {
+        Set<Subscriber> subscribers = subscribersByOrganization.get(organizationId);
+        return subscribers != null ? subscribers.size() : 0;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sender.shutdownNow();
+        subscribersByOrganization.values()
+                .forEach(subscribers -> subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    /**
+     * One connection and the events queued for it. At most one drain runs at a
+     * time, so events go out in order.
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Set<Subscriber> subscribers;
+        private final Queue<SseEmitter.SseEventBuilder> pending = new ArrayBlockingQueue<>(SUBSCRIBER_QUEUE_SIZE);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+        private volatile boolean fellBehind;
+
+        private Subscriber(SseEmitter emitter, Set<Subscriber> subscribers) {
+            this.emitter = emitter;
+            this.subscribers = subscribers;
+        }
+
+        private void enqueue(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            if (!pending.offer(event)) {
+                // Completed by the drain, which may still be stuck in a send
+                fellBehind = true;
+                close("fell behind");
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                for (SseEmitter.SseEventBuilder event; !closed && (event = pending.poll()) != null; ) {
+                    try {
+                        emitter.send(event);
+                    } catch (IOException | IllegalStateException e) {
+                        close(e.getMessage());
+                    }
+                }
+                if (fellBehind) {
+                    pending.clear();
+                    emitter.complete();
+                    return;
+                }
+            } finally {
+                draining.set(false);
+            }
+            // Queued after the last poll but before the flag was cleared
+            if (!closed && !pending.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void close(String reason) {
+            closed = true;
+            subscribers.remove(this);
+            log.debug("Dropping price feed subscriber: {}", reason);
+        }
+    }
+}
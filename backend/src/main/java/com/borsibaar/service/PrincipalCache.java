@@ -0,0 +1,60 @@
+package com.borsibaar.service;
+
+import com.borsibaar.entity.User;
+import com.borsibaar.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Users resolved by the JWT filter, keyed by email (the token subject), so
+ * authenticated requests don't each load the user and role from the database.
+ * Entries expire after a short TTL; code that changes a user evicts it so the
+ * next request sees the change right away.
+ */
+@Service
+public class PrincipalCache {
+
+    private final UserRepository userRepository;
+    private final Cache<String, User> users;
+
+    public PrincipalCache(UserRepository userRepository,
+            @Value("${app.principal-cache.ttl:60s}") Duration ttl,
+            @Value("${app.principal-cache.max-size:10000}") long maxSize) {
+        this.userRepository = userRepository;
+        this.users = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    /**
+     * Returns the user with the role loaded. Unknown emails are not cached, so a
+     * user created at login is found on the next request.
+     */
+    public Optional<User> findByEmail(String email) {
+        return Optional.ofNullable(users.get(email, key -> userRepository.findByEmailWithRole(key).orElse(null)));
+    }
+
+    /**
+     * Evicts the user now and again once the surrounding transaction commits, so
+     * a request racing the commit can't put the old row back.
+     */
+    public void evict(String email) {
+        users.invalidate(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    users.invalidate(email);
+                }
+            });
+        }
+    }
+}
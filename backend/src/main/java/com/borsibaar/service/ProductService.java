@@ -1,5 +1,6 @@
 package com.borsibaar.service;
 
+import com.borsibaar.config.CacheConfig;
 import com.borsibaar.dto.ProductRequestDto;
 import com.borsibaar.dto.ProductResponseDto;
 import com.borsibaar.entity.Category;
@@ -9,10 +10,11 @@ import com.borsibaar.entity.Product;
 import com.borsibaar.mapper.ProductMapper;
 import com.borsibaar.repository.CategoryRepository;
 import com.borsibaar.repository.InventoryRepository;
-import com.borsibaar.repository.InventoryTransactionRepository;
 import com.borsibaar.repository.ProductRepository;
 import com.borsibaar.repository.UserRepository;
+import com.borsibaar.service.OrganizationVersions.Resource;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -30,7 +32,9 @@ public class ProductService {
     private final ProductMapper productMapper;
     private final UserRepository userRepository;
     private final InventoryRepository inventoryRepository;
-    private final InventoryTransactionRepository inventoryTransactionRepository;
+    private final LedgerAppender ledgerAppender;
+    private final PriceEngine priceEngine;
+    private final OrganizationVersions organizationVersions;
 
     @Transactional
     public ProductResponseDto create(ProductRequestDto request, Long orgId) {
@@ -63,6 +67,7 @@ public class ProductService {
 
         // Automatically create inventory record with 0 quantity
         createInitialInventory(saved, orgId);
+        organizationVersions.bumpAfterCommit(orgId, Resource.INVENTORY);
 
         ProductResponseDto base = productMapper.toResponse(saved);
         return new ProductResponseDto(
@@ -90,7 +95,7 @@ public class ProductService {
         transaction.setPriceAfter(Optional.ofNullable(product.getBasePrice()).orElse(BigDecimal.ZERO));
         transaction.setNotes("Product created - initial inventory");
         transaction.setCreatedAt(OffsetDateTime.now());
-        inventoryTransactionRepository.save(transaction);
+        ledgerAppender.append(transaction);
     }
 
     @Transactional(readOnly = true)
@@ -115,6 +120,7 @@ public class ProductService {
                 categoryName);
     }
 
+    @CacheEvict(cacheNames = CacheConfig.PRODUCTS, key = "#id")
     @Transactional
     public void delete(Long id) {
         Product product = productRepository.findById(id)
@@ -125,5 +131,7 @@ public class ProductService {
         product.setActive(false);
         product.setUpdatedAt(OffsetDateTime.now());
         productRepository.save(product);
+        priceEngine.invalidate(id);
+        organizationVersions.bumpAfterCommit(product.getOrganizationId(), Resource.INVENTORY);
     }
 }
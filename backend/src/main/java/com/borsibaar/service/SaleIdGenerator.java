@@ -0,0 +1,32 @@
+package com.borsibaar.service;
+
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sale reference IDs that are unique and ordered by time. The counter is the
+ * current millisecond shifted left, so up to 4096 IDs per millisecond stay in
+ * time order; beyond that (or if the clock steps back) it simply keeps counting.
+ * A random per-process suffix keeps IDs from different instances apart.
+ */
+@Component
+public class SaleIdGenerator {
+
+    private static final int SEQUENCE_BITS = 12;
+
+    private final AtomicLong last = new AtomicLong();
+    private final String instance;
+
+    public SaleIdGenerator() {
+        this.instance = String.format("%04x", new SecureRandom().nextInt(0x10000));
+    }
+
+    public String next() {
+        long now = System.currentTimeMillis() << SEQUENCE_BITS;
+        long value = last.updateAndGet(previous -> Math.max(now, previous + 1));
+        // Fixed width, so the IDs also sort correctly as strings
+        return String.format("SALE-%019d-%s", value, instance);
+    }
+}
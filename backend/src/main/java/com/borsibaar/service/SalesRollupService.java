@@ -0,0 +1,47 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.SaleItemResponseDto;
+import com.borsibaar.repository.SalesRollupJdbcRepository;
+import com.borsibaar.repository.SalesRollupJdbcRepository.RollupDelta;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+public class SalesRollupService {
+
+    private final SalesRollupJdbcRepository salesRollupJdbcRepository;
+
+    /**
+     * Adds a completed sale to the per-minute rollup buckets. Runs inside the sale
+     * transaction so the rollups never disagree with the ledger.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordSale(Long organizationId, UUID userId, Long barStationId, OffsetDateTime soldAt,
+                           List<SaleItemResponseDto> items) {
+        OffsetDateTime bucketStart = soldAt.truncatedTo(ChronoUnit.MINUTES);
+
+        List<RollupDelta> deltas = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            SaleItemResponseDto item = items.get(i);
+            // Count the sale once, on its first line
+            deltas.add(new RollupDelta(
+                    organizationId,
+                    userId,
+                    barStationId,
+                    item.productId(),
+                    bucketStart,
+                    i == 0 ? 1 : 0,
+                    item.quantity()));
+        }
+        salesRollupJdbcRepository.upsert(deltas);
+    }
+}
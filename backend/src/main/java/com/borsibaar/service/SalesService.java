@@ -1,22 +1,39 @@
 package com.borsibaar.service;
 
 import com.borsibaar.dto.*;
-import com.borsibaar.entity.Category;
-import com.borsibaar.entity.Inventory;
 import com.borsibaar.entity.InventoryTransaction;
-import com.borsibaar.entity.Product;
+import com.borsibaar.entity.SaleRequest;
+import com.borsibaar.event.InventoryChangedEvent;
+import com.borsibaar.event.ProductsSoldEvent;
 import com.borsibaar.repository.InventoryRepository;
-import com.borsibaar.repository.InventoryTransactionRepository;
-import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.repository.SaleRequestRepository;
+import com.borsibaar.service.OrganizationVersions.Resource;
+import com.borsibaar.service.PriceCandleService.PriceMove;
+import com.borsibaar.service.PriceEngine.PricedLine;
+import com.borsibaar.service.PriceEngine.Sale;
+import com.borsibaar.util.FixedPoint;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -26,127 +43,248 @@ import java.util.UUID;
 public class SalesService {
 
         private final InventoryRepository inventoryRepository;
-        private final InventoryTransactionRepository inventoryTransactionRepository;
-        private final ProductRepository productRepository;
+        private final LedgerAppender ledgerAppender;
+        private final PriceEngine priceEngine;
+        private final SalesRollupService salesRollupService;
+        private final PriceCandleService priceCandleService;
+        private final OrganizationVersions organizationVersions;
+        private final ApplicationEventPublisher eventPublisher;
+        private final SaleRequestRepository saleRequestRepository;
+        private final SaleIdGenerator saleIdGenerator;
+        private final ObjectMapper objectMapper;
+        private final MeterRegistry meterRegistry;
+
+        // Responses of recent idempotent sales, so a retry usually doesn't need the database
+        private final Cache<String, PreviousSale> recentSales = Caffeine.newBuilder()
+                        .expireAfterWrite(Duration.ofMinutes(10))
+                        .maximumSize(10_000)
+                        .build();
 
         @Transactional
         public SaleResponseDto processSale(SaleRequestDto request, UUID userId, Long organizationId) {
-                // Generate unique sale reference ID
-                String saleId = "SALE-" + System.currentTimeMillis();
-
-                List<SaleItemResponseDto> saleItems = new ArrayList<>();
-                BigDecimal totalAmount = BigDecimal.ZERO;
-
-                // Process each item in the sale
-                for (SaleItemRequestDto item : request.items()) {
-                        SaleItemResponseDto saleItem = processSaleItem(item, userId, organizationId, saleId,
-                                        request.barStationId());
-                        saleItems.add(saleItem);
-                        totalAmount = totalAmount.add(saleItem.totalPrice());
+                return processSale(request, userId, organizationId, null);
+        }
+
+        /**
+         * Processes a sale. With an idempotency key, a sale already made under the
+         * same key returns its original response and leaves inventory alone; the
+         * key reused for a different request is rejected with 422. A concurrent
+         * request with the same key fails on the unique index once this one
+         * commits; see {@link #findPreviousSale}.
+         */
+        @Transactional
+        public SaleResponseDto processSale(SaleRequestDto request, UUID userId, Long organizationId,
+                        String idempotencyKey) {
+                timeUntilCompletion(request.items().size());
+                String requestHash = null;
+                if (idempotencyKey != null) {
+                        requestHash = requestHash(request);
+                        Optional<SaleResponseDto> previous = findPreviousSale(organizationId, idempotencyKey,
+                                        requestHash);
+                        if (previous.isPresent()) {
+                                return previous.get();
+                        }
+                }
+
+                String saleId = saleIdGenerator.next();
+
+                // Claim the key before any stock moves
+                SaleRequest claim = idempotencyKey != null
+                                ? claimIdempotencyKey(organizationId, idempotencyKey, requestHash, saleId)
+                                : null;
+
+                // Price and stock are validated and applied in memory, and the sale stamped; see PriceEngine
+                Sale sale = priceEngine.sell(organizationId, request.items(), OffsetDateTime::now);
+                List<PricedLine> lines = sale.lines();
+                OffsetDateTime soldAt = sale.soldAt();
+
+                List<SaleItemResponseDto> saleItems = new ArrayList<>(lines.size());
+                List<InventoryUpdateDto> inventoryUpdates = new ArrayList<>(lines.size());
+                List<InventoryTransaction> transactions = new ArrayList<>(lines.size());
+                long totalUnits = 0;
+
+                for (PricedLine line : lines) {
+                        transactions.add(createSaleTransaction(line, saleId, userId, request.barStationId(), soldAt));
+
+                        saleItems.add(new SaleItemResponseDto(
+                                        line.productId(),
+                                        line.productName(),
+                                        line.quantity(),
+                                        line.priceBefore(),
+                                        FixedPoint.toBigDecimal(line.totalUnits())));
+                        inventoryUpdates.add(new InventoryUpdateDto(line.inventoryId(), line.productId(),
+                                        line.quantityAfter(), line.priceAfter(), soldAt));
+                        totalUnits = FixedPoint.add(totalUnits, line.totalUnits());
                 }
+                ledgerAppender.appendAll(transactions);
 
-                return new SaleResponseDto(
+                salesRollupService.recordSale(organizationId, userId, request.barStationId(), soldAt, saleItems);
+                organizationVersions.bumpAfterCommit(organizationId, Resource.SALES);
+                priceCandleService.record(organizationId, soldAt, lines.stream()
+                                .map(line -> new PriceMove(line.productId(), line.priceBefore(), line.priceAfter(),
+                                                line.quantity()))
+                                .toList());
+                eventPublisher.publishEvent(new InventoryChangedEvent(organizationId, inventoryUpdates));
+                eventPublisher.publishEvent(new ProductsSoldEvent(organizationId, soldAt, lines.stream()
+                                .filter(PricedLine::dynamicPricing)
+                                .map(PricedLine::inventoryId)
+                                .toList()));
+
+                SaleResponseDto response = new SaleResponseDto(
                                 saleId,
                                 saleItems,
-                                totalAmount,
+                                FixedPoint.toBigDecimal(totalUnits),
                                 request.notes(),
-                                OffsetDateTime.now());
+                                soldAt);
+
+                if (claim != null) {
+                        claim.setResponse(toJson(response));
+                        String cacheKey = cacheKey(organizationId, idempotencyKey);
+                        PreviousSale made = new PreviousSale(requestHash, response);
+                        afterCommit(() -> recentSales.put(cacheKey, made));
+                }
+                return response;
         }
 
-        private SaleItemResponseDto processSaleItem(SaleItemRequestDto item, UUID userId, Long organizationId,
-                        String saleId, Long barStationId) {
-                // Verify product exists and belongs to organization
-                Product product = productRepository.findById(item.productId())
-                                .orElseThrow(() -> new ResponseStatusException(
-                                                HttpStatus.NOT_FOUND, "Product not found: " + item.productId()));
+        /**
+         * Response of the sale made earlier under this idempotency key, if any.
+         * Throws 422 if that sale was made for a different request.
+         */
+        @Transactional(readOnly = true)
+        public Optional<SaleResponseDto> findPreviousSale(Long organizationId, String idempotencyKey,
+                        SaleRequestDto request) {
+                return findPreviousSale(organizationId, idempotencyKey, requestHash(request));
+        }
 
-                if (!product.getOrganizationId().equals(organizationId)) {
-                        throw new ResponseStatusException(
-                                        HttpStatus.FORBIDDEN, "Product does not belong to your organization");
+        private Optional<SaleResponseDto> findPreviousSale(Long organizationId, String idempotencyKey,
+                        String requestHash) {
+                String cacheKey = cacheKey(organizationId, idempotencyKey);
+                PreviousSale previous = recentSales.getIfPresent(cacheKey);
+                if (previous == null) {
+                        previous = saleRequestRepository
+                                        .findByOrganizationIdAndIdempotencyKey(organizationId, idempotencyKey)
+                                        .filter(saleRequest -> saleRequest.getResponse() != null)
+                                        .map(saleRequest -> new PreviousSale(saleRequest.getRequestHash(),
+                                                        fromJson(saleRequest.getResponse())))
+                                        .orElse(null);
+                        if (previous == null) {
+                                return Optional.empty();
+                        }
+                        recentSales.put(cacheKey, previous);
                 }
-
-                if (!product.isActive()) {
-                        throw new ResponseStatusException(
-                                        HttpStatus.BAD_REQUEST, "Product is not active: " + product.getName());
+                // Rows claimed before the hash was stored can't be checked
+                if (previous.requestHash() != null && !previous.requestHash().equals(requestHash)) {
+                        throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                                        "Idempotency-Key was already used for a different sale");
                 }
+                return Optional.of(previous.response());
+        }
 
-                // Get inventory for this product
-                /*
-                 * Inventory inventory = inventoryRepository
-                 * .findByOrganizationIdAndProductId(organizationId, item.productId())
-                 * .orElseThrow(() -> new ResponseStatusException(
-                 * HttpStatus.NOT_FOUND, "No inventory found for product: " +
-                 * product.getName()));
-                 */
-                Inventory inventory = Optional.ofNullable(product.getInventory())
-                                .orElseThrow(() -> new ResponseStatusException(
-                                                HttpStatus.NOT_FOUND,
-                                                "No inventory found for product: " + product.getName()));
-
-                // Check stock availability
-                BigDecimal oldQuantity = inventory.getQuantity();
-                BigDecimal newQuantity = oldQuantity.subtract(item.quantity());
-
-                if (newQuantity.compareTo(BigDecimal.ZERO) < 0) {
-                        throw new ResponseStatusException(
-                                        HttpStatus.BAD_REQUEST,
-                                        "Insufficient stock for " + product.getName() +
-                                                        ". Available: " + oldQuantity + ", Requested: "
-                                                        + item.quantity());
-                }
+        private SaleRequest claimIdempotencyKey(Long organizationId, String idempotencyKey, String requestHash,
+                        String saleId) {
+                SaleRequest claim = new SaleRequest();
+                claim.setOrganizationId(organizationId);
+                claim.setIdempotencyKey(idempotencyKey);
+                claim.setRequestHash(requestHash);
+                claim.setSaleId(saleId);
+                claim.setCreatedAt(OffsetDateTime.now());
+                // Flushed now so a duplicate waits on the unique index here
+                return saleRequestRepository.saveAndFlush(claim);
+        }
 
-                // Calculate pricing
-                BigDecimal priceBeforeSale = Optional.ofNullable(inventory.getAdjustedPrice())
-                                .orElse(product.getBasePrice());
-                BigDecimal totalPrice = priceBeforeSale.multiply(item.quantity());
-
-                BigDecimal priceAfterSale = priceBeforeSale;
-                Category category = product.getCategory();
-                if (category != null && category.isDynamicPricing()) {
-                        priceAfterSale = priceBeforeSale.add(product.getOrganization().getPriceIncreaseStep());
-                        if (product.getMaxPrice() != null && priceAfterSale.compareTo(product.getMaxPrice()) > 0) {
-                                priceAfterSale = product.getMaxPrice();
-                        }
+        /**
+         * SHA-256 of the request as JSON, quantities without trailing zeros so
+         * that 1 and 1.0 are the same sale.
+         */
+        private String requestHash(SaleRequestDto request) {
+                SaleRequestDto canonical = new SaleRequestDto(request.items().stream()
+                                .map(item -> new SaleItemRequestDto(item.productId(),
+                                                item.quantity() != null ? item.quantity().stripTrailingZeros() : null))
+                                .toList(), request.notes(), request.barStationId());
+                try {
+                        byte[] json = objectMapper.writeValueAsString(canonical).getBytes(StandardCharsets.UTF_8);
+                        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+                } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+                        throw new IllegalStateException("Could not hash sale request", e);
                 }
+        }
 
+        private String toJson(SaleResponseDto response) {
+                try {
+                        return objectMapper.writeValueAsString(response);
+                } catch (JsonProcessingException e) {
+                        throw new IllegalStateException("Could not serialize sale response", e);
+                }
+        }
 
-                // Update inventory
-                inventory.setQuantity(newQuantity);
-                inventory.setUpdatedAt(OffsetDateTime.now());
-                inventory.setAdjustedPrice(priceAfterSale);
+        private SaleResponseDto fromJson(String json) {
+                try {
+                        return objectMapper.readValue(json, SaleResponseDto.class);
+                } catch (JsonProcessingException e) {
+                        throw new IllegalStateException("Could not read stored sale response", e);
+                }
+        }
 
-                inventory = inventoryRepository.save(inventory);
+        private static String cacheKey(Long organizationId, String idempotencyKey) {
+                return organizationId + ":" + idempotencyKey;
+        }
 
-                // Create sale transaction
-                createSaleTransaction(inventory, item.quantity(),
-                                oldQuantity, newQuantity, priceBeforeSale, priceAfterSale,
-                                saleId, userId, barStationId);
+        /**
+         * Times the sale until its transaction ends, commit included, as
+         * {@code sales.process} tagged with the number of lines (10 and up share a
+         * tag) and whether it committed.
+         */
+        private void timeUntilCompletion(int itemCount) {
+                if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                        return;
+                }
+                Timer.Sample sample = Timer.start(meterRegistry);
+                String items = itemCount >= 10 ? "10+" : String.valueOf(itemCount);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void afterCompletion(int status) {
+                                sample.stop(Timer.builder("sales.process")
+                                                .description("Sales from request to end of transaction")
+                                                .tag("items", items)
+                                                .tag("outcome", status == STATUS_COMMITTED ? "committed" : "rolled_back")
+                                                .publishPercentileHistogram()
+                                                .register(meterRegistry));
+                        }
+                });
+        }
 
-                return new SaleItemResponseDto(
-                                item.productId(),
-                                product.getName(),
-                                item.quantity(),
-                                priceBeforeSale,
-                                totalPrice);
+        private static void afterCommit(Runnable action) {
+                if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                        action.run();
+                        return;
+                }
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                                action.run();
+                        }
+                });
         }
 
-        private void createSaleTransaction(Inventory inventory, BigDecimal quantity,
-                        BigDecimal quantityBefore, BigDecimal quantityAfter,
-                        BigDecimal priceBefore, BigDecimal priceAfter,
-                        String saleId, UUID userId, Long barStationId) {
+        private InventoryTransaction createSaleTransaction(PricedLine line, String saleId, UUID userId, Long barStationId,
+                        OffsetDateTime soldAt) {
                 InventoryTransaction transaction = new InventoryTransaction();
-                transaction.setInventory(inventory);
+                // Reference only, the inventory row itself is written by the price engine
+                transaction.setInventory(inventoryRepository.getReferenceById(line.inventoryId()));
                 transaction.setTransactionType("SALE");
-                transaction.setQuantityChange(quantity.negate()); // Negative for sales
-                transaction.setQuantityBefore(quantityBefore);
-                transaction.setQuantityAfter(quantityAfter);
-                transaction.setPriceBefore(priceBefore);
-                transaction.setPriceAfter(priceAfter);
+                transaction.setQuantityChange(line.quantity().negate()); // Negative for sales
+                transaction.setQuantityBefore(line.quantityBefore());
+                transaction.setQuantityAfter(line.quantityAfter());
+                transaction.setPriceBefore(line.priceBefore());
+                transaction.setPriceAfter(line.priceAfter());
                 transaction.setReferenceId(saleId);
                 transaction.setNotes("POS Sale");
                 transaction.setCreatedBy(userId);
                 transaction.setBarStationId(barStationId);
-                transaction.setCreatedAt(OffsetDateTime.now());
-                inventoryTransactionRepository.save(transaction);
+                transaction.setCreatedAt(soldAt);
+                return transaction;
+        }
+
+        private record PreviousSale(String requestHash, SaleResponseDto response) {
         }
-}
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+package com.borsibaar.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money and quantities as a {@code long} count of 1/10000 units, the scale of
+ * every price and quantity column. Arithmetic on these allocates nothing, so
+ * in-memory price and stock computation uses them; values are converted from
+ * and to {@link BigDecimal} only where they enter or leave (entities, JDBC,
+ * request and response DTOs). Overflow throws {@link ArithmeticException}
+ * instead of wrapping.
+ */
+public final class FixedPoint {
+
+    public static final int SCALE = 4;
+    public static final long ONE = 10_000L;
+
+    private FixedPoint() {
+    }
+
+    /** Rounds half up to four decimals. */
+    public static long of(BigDecimal value) {
+        return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /** Always at scale 4, like the columns. */
+    public static BigDecimal toBigDecimal(long units) {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /** Product rounded half up to four decimals, e.g. unit price times quantity. */
+    public static long multiply(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        // Fits in a long when the high word is only the sign extension of the low one
+        if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+            long quotient = low / ONE;
+            long remainder = low % ONE;
+            if (Math.abs(remainder) * 2 >= ONE) {
+                quotient += Long.signum(low);
+            }
+            return quotient;
+        }
+        return of(toBigDecimal(a).multiply(toBigDecimal(b)));
+    }
+}
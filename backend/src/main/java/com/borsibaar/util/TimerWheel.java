@@ -0,0 +1,126 @@
+package com.borsibaar.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel (Varghese and Lauck): four levels of 64 slots, each
+ * slot of a level spanning a full turn of the level below. Scheduling is O(1),
+ * and a timer is moved down a level at most three times before it expires, so
+ * advancing costs one step per tick plus the timers that actually move, however
+ * many are pending. With 100 ms ticks the wheels cover about 19 days; anything
+ * further out waits in an overflow list.
+ *
+ * <p>Not thread-safe: one thread schedules and advances it. There is no cancel;
+ * callers that re-arm a timer check on expiry whether its deadline moved and
+ * schedule it again.
+ */
+public final class TimerWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final List<List<Scheduled<T>>> slots = new ArrayList<>(LEVELS * SLOTS);
+    private final List<Scheduled<T>> overflow = new ArrayList<>();
+    // Scheduled at or before the current tick; handed out on the next advance
+    private final List<Scheduled<T>> due = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    public TimerWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /** Rounded up to the tick, so a timer never fires before its deadline. */
+    public void schedule(T item, long deadlineMillis) {
+        place(new Scheduled<>(item, Math.ceilDiv(deadlineMillis, tickMillis)));
+        size++;
+    }
+
+    /**
+     * Moves the wheel forward to {@code nowMillis} and hands every timer due by
+     * then to {@code expired}, earlier ticks first. A clock that went backwards
+     * expires nothing.
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        long target = nowMillis / tickMillis;
+        expire(due, expired);
+        while (currentTick < target) {
+            currentTick++;
+            cascade();
+            expire(due, expired);
+            expire(slots.get((int) (currentTick & MASK)), expired);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Level 0 holds timers that differ from the current tick only in the lowest
+     * six bits, level 1 only in the lowest twelve, and so on.
+     */
+    private void place(Scheduled<T> timer) {
+        long tick = timer.tick();
+        if (tick <= currentTick) {
+            due.add(timer);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = BITS * (level + 1);
+            if (tick >>> shift == currentTick >>> shift) {
+                int slot = (int) (tick >>> (BITS * level)) & MASK;
+                slots.get(level * SLOTS + slot).add(timer);
+                return;
+            }
+        }
+        overflow.add(timer);
+    }
+
+    // Top down, so a timer moved from level 2 into the current level 1 slot moves on again
+    private void cascade() {
+        if ((currentTick & ((1L << (BITS * LEVELS)) - 1)) == 0) {
+            replace(overflow);
+        }
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+                int slot = (int) (currentTick >>> (BITS * level)) & MASK;
+                replace(slots.get(level * SLOTS + slot));
+            }
+        }
+    }
+
+    private void replace(List<Scheduled<T>> timers) {
+        if (timers.isEmpty()) {
+            return;
+        }
+        List<Scheduled<T>> moving = new ArrayList<>(timers);
+        timers.clear();
+        moving.forEach(this::place);
+    }
+
+    private void expire(List<Scheduled<T>> timers, Consumer<T> expired) {
+        if (timers.isEmpty()) {
+            return;
+        }
+        List<Scheduled<T>> expiring = new ArrayList<>(timers);
+        timers.clear();
+        size -= expiring.size();
+        expiring.forEach(timer -> expired.accept(timer.item()));
+    }
+
+    private record Scheduled<T>(T item, long tick) {
+    }
+}
@@ -0,0 +1,104 @@
+package com.borsibaar.config;
+
+import com.borsibaar.dto.CategoryRequestDto;
+import com.borsibaar.dto.CategoryResponseDto;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.CategoryRepository;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.service.CategoryService;
+import com.borsibaar.service.ProductService;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cache;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class CacheConfigTest {
+
+    @Autowired private CacheManager cacheManager;
+    @Autowired private CategoryService categoryService;
+    @Autowired private ProductService productService;
+    @Autowired private OrganizationRepository organizationRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private ProductRepository productRepository;
+
+    @MockitoBean private ClientRegistrationRepository clientRegistrationRepository;
+
+    @Test
+    void categories_SecondReadHits_CreateEvicts() {
+        Long organizationId = organization("Categories");
+        CacheStats before = stats(CacheConfig.CATEGORIES);
+
+        assertEquals(List.of(), categoryService.getAllByOrg(organizationId));
+        assertEquals(List.of(), categoryService.getAllByOrg(organizationId));
+
+        CacheStats reads = stats(CacheConfig.CATEGORIES).minus(before);
+        assertEquals(1, reads.missCount());
+        assertEquals(1, reads.hitCount());
+
+        categoryService.create(new CategoryRequestDto("Beer", true), organizationId);
+
+        assertEquals(List.of("Beer"),
+                categoryService.getAllByOrg(organizationId).stream().map(CategoryResponseDto::name).toList());
+    }
+
+    @Test
+    void products_DeleteEvictsReference() {
+        Long organizationId = organization("Products");
+        Category category = new Category();
+        category.setOrganizationId(organizationId);
+        category.setName("Beer");
+        category.setDynamicPricing(true);
+        Long categoryId = categoryRepository.save(category).getId();
+        Product product = new Product();
+        product.setOrganizationId(organizationId);
+        product.setCategoryId(categoryId);
+        product.setName("Lager");
+        product.setBasePrice(new BigDecimal("3.00"));
+        product.setMinPrice(new BigDecimal("2.00"));
+        product.setMaxPrice(new BigDecimal("5.00"));
+        product.setActive(true);
+        Long productId = productRepository.save(product).getId();
+
+        assertTrue(productRepository.findReferenceById(productId).orElseThrow().active());
+        assertNotNull(caffeine(CacheConfig.PRODUCTS).getIfPresent(productId));
+
+        productService.delete(productId);
+
+        assertNull(caffeine(CacheConfig.PRODUCTS).getIfPresent(productId));
+        assertFalse(productRepository.findReferenceById(productId).orElseThrow().active());
+    }
+
+    private Long organization(String name) {
+        Organization organization = new Organization();
+        organization.setName(name);
+        organization.setPriceIncreaseStep(new BigDecimal("0.10"));
+        organization.setPriceDecreaseStep(new BigDecimal("0.10"));
+        return organizationRepository.save(organization).getId();
+    }
+
+    private CacheStats stats(String name) {
+        return caffeine(name).stats();
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> caffeine(String name) {
+        TransactionAwareCacheDecorator cache = (TransactionAwareCacheDecorator) cacheManager.getCache(name);
+        return ((CaffeineCache) cache.getTargetCache()).getNativeCache();
+    }
+}
@@ -4,7 +4,9 @@ import com.borsibaar.entity.Role;
 import com.borsibaar.entity.User;
 import com.borsibaar.repository.UserRepository;
 import com.borsibaar.service.JwtService;
+import com.borsibaar.service.PrincipalCache;
 import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -14,13 +16,14 @@ import org.springframework.security.oauth2.client.registration.ClientRegistratio
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
-import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -41,13 +44,18 @@ class JwtAuthenticationFilterTest {
     @MockitoBean
     private ClientRegistrationRepository clientRegistrationRepository;
 
-    private final String testSecret = "test-secret-key-for-jwt-testing-purposes-at-least-256-bits";
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @BeforeEach
+    void setUp() {
+        // The context (and so the cache) is shared between tests
+        principalCache.evict("admin@example.com");
+        principalCache.evict("test@example.com");
+    }
 
     @Test
     void testFilter_WithValidJwtCookie_AuthenticatesUser() throws Exception {
-        // Arrange: Set test secret
-        ReflectionTestUtils.setField(jwtService, "secretKey", testSecret);
-
         // Arrange: Create ADMIN user (required for /api/users endpoint)
         Role adminRole = Role.builder()
                 .id(2L)
@@ -77,9 +85,6 @@ class JwtAuthenticationFilterTest {
 
     @Test
     void testFilter_WithInvalidJwtCookie_DoesNotAuthenticate() throws Exception {
-        // Arrange: Set test secret
-        ReflectionTestUtils.setField(jwtService, "secretKey", testSecret);
-
         String invalidToken = "invalid.jwt.token";
 
         // Act & Assert: Request with invalid JWT should redirect to OAuth2 login (302)
@@ -99,9 +104,6 @@ class JwtAuthenticationFilterTest {
 
     @Test
     void testFilter_WithValidTokenButUserNotFound_DoesNotAuthenticate() throws Exception {
-        // Arrange: Set test secret
-        ReflectionTestUtils.setField(jwtService, "secretKey", testSecret);
-
         // Arrange: Mock repository to return empty
         when(userRepository.findByEmailWithRole(anyString()))
                 .thenReturn(Optional.empty());
@@ -141,9 +143,6 @@ class JwtAuthenticationFilterTest {
 
     @Test
     void testFilter_WithExpiredToken_DoesNotAuthenticate() throws Exception {
-        // Arrange: Set test secret
-        ReflectionTestUtils.setField(jwtService, "secretKey", testSecret);
-
         // Arrange: Create an expired token using JwtService's secret
         String email = "test@example.com";
 
@@ -159,9 +158,6 @@ class JwtAuthenticationFilterTest {
 
     @Test
     void testFilter_WithValidTokenAndAdminRole_SetsCorrectAuthorities() throws Exception {
-        // Arrange: Set test secret
-        ReflectionTestUtils.setField(jwtService, "secretKey", testSecret);
-
         // Arrange: Create admin user
         Role adminRole = Role.builder()
                 .id(2L)
@@ -202,9 +198,6 @@ class JwtAuthenticationFilterTest {
 
     @Test
     void testFilter_WithMultipleCookies_ExtractsCorrectJwt() throws Exception {
-        // Arrange: Set test secret
-        ReflectionTestUtils.setField(jwtService, "secretKey", testSecret);
-
         // Arrange: Create ADMIN user (required for /api/users endpoint)
         Role adminRole = Role.builder()
                 .id(2L)
@@ -236,9 +229,6 @@ class JwtAuthenticationFilterTest {
 
     @Test
     void testFilter_AllowsAuthLogoutWithJwt() throws Exception {
-        // Arrange: Set test secret
-        ReflectionTestUtils.setField(jwtService, "secretKey", testSecret);
-
         // Arrange: Create test user
         Role userRole = Role.builder()
                 .id(1L)
@@ -268,4 +258,39 @@ class JwtAuthenticationFilterTest {
                 .cookie(new Cookie("jwt", token)))
                 .andExpect(status().is5xxServerError()); // 500 because endpoint implementation issue
     }
+
+    @Test
+    void testFilter_RepeatedRequests_LoadUserOnceUntilEvicted() throws Exception {
+        Role adminRole = Role.builder()
+                .id(2L)
+                .name("ADMIN")
+                .build();
+
+        User adminUser = User.builder()
+                .id(UUID.randomUUID())
+                .email("admin@example.com")
+                .name("Admin User")
+                .organizationId(1L)
+                .role(adminRole)
+                .build();
+
+        when(userRepository.findByEmailWithRole("admin@example.com"))
+                .thenReturn(Optional.of(adminUser));
+
+        String token = jwtService.generateToken("admin@example.com");
+
+        // Act: Three requests, then an eviction (as after onboarding) and one more
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/users")
+                    .cookie(new Cookie("jwt", token)))
+                    .andExpect(status().isOk());
+        }
+        principalCache.evict("admin@example.com");
+        mockMvc.perform(get("/api/users")
+                .cookie(new Cookie("jwt", token)))
+                .andExpect(status().isOk());
+
+        // Assert: Only the first request and the one after eviction hit the database
+        verify(userRepository, times(2)).findByEmailWithRole("admin@example.com");
+    }
 }
@@ -0,0 +1,47 @@
+package com.borsibaar.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The scrape endpoint on the management port, open without a login, with the
+ * per-request statement count of an API call.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:metrics;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "management.server.port=0",
+        "management.endpoints.web.exposure.include=health,prometheus"
+})
+// Tests run without metrics export otherwise
+@AutoConfigureObservability(tracing = false)
+class MetricsEndpointTest {
+
+    @Autowired private TestRestTemplate restTemplate;
+    @LocalManagementPort private int managementPort;
+
+    @MockitoBean private ClientRegistrationRepository clientRegistrationRepository;
+
+    @Test
+    void prometheus_CountsStatementsPerRequest() {
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/api/organizations", String.class).getStatusCode());
+
+        ResponseEntity<String> scrape = restTemplate.getForEntity(
+                "http://localhost:" + managementPort + "/actuator/prometheus", String.class);
+
+        assertEquals(HttpStatus.OK, scrape.getStatusCode());
+        assertTrue(scrape.getBody().contains("hibernate_statements_count{method=\"GET\",uri=\"/api/organizations\"} 1"),
+                scrape.getBody());
+        assertTrue(scrape.getBody().contains("http_server_requests_seconds_count{"));
+    }
+}
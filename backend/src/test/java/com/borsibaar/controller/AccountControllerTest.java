@@ -21,6 +21,8 @@ import java.util.Collections;
 import java.util.Optional;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -70,6 +72,9 @@ class AccountControllerTest {
     void onboarding_WithValidPayload_SetsOrganizationAndReturns204() throws Exception {
         User user = userWithOrgAndRole(null, "USER");
         setAuth(user);
+        User stored = userWithOrgAndRole(null, "USER");
+        stored.setId(user.getId());
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(stored));
 
         Role adminRole = Role.builder().id(1L).name("ADMIN").build();
         when(roleRepository.findByName("ADMIN")).thenReturn(Optional.of(adminRole));
@@ -81,7 +86,12 @@ class AccountControllerTest {
                         .content(payload))
                 .andExpect(status().isNoContent());
 
-        verify(userRepository).save(any(User.class));
+        verify(userRepository).save(stored);
+        assertEquals(1L, stored.getOrganizationId());
+        assertEquals("ADMIN", stored.getRole().getName());
+        // The principal, possibly cached and shared, is left alone
+        assertNull(user.getOrganizationId());
+        assertEquals("USER", user.getRole().getName());
     }
 
     @Test
@@ -8,6 +8,8 @@ import com.borsibaar.entity.User;
 import com.borsibaar.exception.DuplicateResourceException;
 import com.borsibaar.exception.NotFoundException;
 import com.borsibaar.service.BarStationService;
+import com.borsibaar.service.OrganizationVersions;
+import com.borsibaar.service.OrganizationVersions.Resource;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -30,6 +32,7 @@ import java.util.UUID;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -43,6 +46,9 @@ class BarStationControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private OrganizationVersions organizationVersions;
+
     @MockitoBean
     private BarStationService barStationService;
 
@@ -154,6 +160,44 @@ class BarStationControllerTest {
         verify(barStationService).getUserStations(userId, 1L);
     }
 
+    @Test
+    void testGetUserStations_UnchangedSinceETag_ReturnsNotModified() throws Exception {
+        // Arrange: Client already holds the current list
+        UUID userId = UUID.randomUUID();
+        User user = createMockUserWithId(userId, 41L, "USER");
+        setupSecurityContextWithUser(user);
+        String etag = organizationVersions.userEtag(41L, userId, Resource.BAR_STATIONS, Resource.USERS);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/bar-stations/user").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+
+        // Verify service was NOT called
+        verify(barStationService, never()).getUserStations(any(), anyLong());
+    }
+
+    @Test
+    void testGetUserStations_ETagOfAnotherUserInOrganization_ReturnsOwnStations() throws Exception {
+        // Arrange: First user loads their stations, then a second user logs in on the same browser
+        UUID firstUserId = UUID.randomUUID();
+        setupSecurityContextWithUser(createMockUserWithId(firstUserId, 42L, "USER"));
+        when(barStationService.getUserStations(firstUserId, 42L)).thenReturn(List.of());
+        String etag = mockMvc.perform(get("/api/bar-stations/user"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        UUID secondUserId = UUID.randomUUID();
+        setupSecurityContextWithUser(createMockUserWithId(secondUserId, 42L, "USER"));
+        BarStationResponseDto station = createMockStationResponse(7L, 42L, "Terrace", true);
+        when(barStationService.getUserStations(secondUserId, 42L)).thenReturn(List.of(station));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/bar-stations/user").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Terrace"));
+    }
+
     @Test
     void testGetStationById_Success() throws Exception {
         // Arrange: Create user
@@ -5,6 +5,8 @@ import com.borsibaar.dto.CategoryResponseDto;
 import com.borsibaar.entity.Role;
 import com.borsibaar.entity.User;
 import com.borsibaar.service.CategoryService;
+import com.borsibaar.service.OrganizationVersions;
+import com.borsibaar.service.OrganizationVersions.Resource;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -40,6 +42,9 @@ class CategoryControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private OrganizationVersions organizationVersions;
+
     @MockitoBean
     private CategoryService categoryService;
 
@@ -82,6 +87,22 @@ class CategoryControllerTest {
         verify(categoryService).getAllByOrg(5L);
     }
 
+    @Test
+    void getAll_CategoryCreatedSinceETag_ReloadsUnderNewETag() throws Exception {
+        String etag = organizationVersions.etag(42L, Resource.CATEGORIES);
+        mockMvc.perform(get("/api/categories").param("organizationId", "42").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        organizationVersions.bumpAfterCommit(42L, Resource.CATEGORIES);
+        when(categoryService.getAllByOrg(42L)).thenReturn(List.of(new CategoryResponseDto(1L, "Beer", true)));
+        mockMvc.perform(get("/api/categories").param("organizationId", "42").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", organizationVersions.etag(42L, Resource.CATEGORIES)))
+                .andExpect(jsonPath("$[0].name").value("Beer"));
+
+        verify(categoryService).getAllByOrg(42L);
+    }
+
     @Test
     void getById_ReturnsDto() throws Exception {
         User user = userWithOrg(2L, "USER");
@@ -3,7 +3,12 @@ package com.borsibaar.controller;
 import com.borsibaar.dto.*;
 import com.borsibaar.entity.Role;
 import com.borsibaar.entity.User;
+import com.borsibaar.event.InventoryChangedEvent;
 import com.borsibaar.service.InventoryService;
+import com.borsibaar.service.OrganizationVersions;
+import com.borsibaar.service.OrganizationVersions.Resource;
+import com.borsibaar.service.PriceCandleService;
+import com.borsibaar.service.PriceFeedService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -17,8 +22,11 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.util.Collections;
 import java.util.List;
@@ -26,6 +34,7 @@ import java.util.UUID;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -41,9 +50,18 @@ class InventoryControllerTest {
         @Autowired
         private ObjectMapper objectMapper;
 
+        @Autowired
+        private OrganizationVersions organizationVersions;
+
         @MockitoBean
         private InventoryService inventoryService;
 
+        @MockitoBean
+        private PriceFeedService priceFeedService;
+
+        @MockitoBean
+        private PriceCandleService priceCandleService;
+
         @MockitoBean
         private ClientRegistrationRepository clientRegistrationRepository;
 
@@ -64,6 +82,55 @@ class InventoryControllerTest {
                 verify(inventoryService).getByOrganization(42L, null);
         }
 
+        @Test
+        void getBoard_ReturnsCategoriesWithETag() throws Exception {
+                when(inventoryService.getBoard(31L)).thenReturn(List.of(new BoardCategoryDto(7L, "Beer", List.of(
+                                new InventoryResponseDto(1L, 31L, 10L, "Pilsner", BigDecimal.ONE, BigDecimal.TEN,
+                                                null, BigDecimal.TEN, null, null, "2025-01-01T20:00:00Z")))));
+
+                mockMvc.perform(get("/api/inventory/board").param("organizationId", "31"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", organizationVersions.etag(31L, Resource.INVENTORY)))
+                                .andExpect(jsonPath("$[0].categoryName").value("Beer"))
+                                .andExpect(jsonPath("$[0].products[0].productName").value("Pilsner"));
+        }
+
+        @Test
+        void getBoard_UnchangedSinceETag_NotModifiedWithoutLoading() throws Exception {
+                String etag = organizationVersions.etag(32L, Resource.INVENTORY);
+
+                mockMvc.perform(get("/api/inventory/board").param("organizationId", "32")
+                                .header("If-None-Match", etag))
+                                .andExpect(status().isNotModified())
+                                .andExpect(content().string(""));
+
+                verify(inventoryService, never()).getBoard(anyLong());
+        }
+
+        @Test
+        void getBoard_InventoryChanged_ReloadsUnderNewETag() throws Exception {
+                String etag = organizationVersions.etag(33L, Resource.INVENTORY);
+                organizationVersions.onInventoryChanged(new InventoryChangedEvent(33L, List.of()));
+                when(inventoryService.getBoard(33L)).thenReturn(List.of());
+
+                mockMvc.perform(get("/api/inventory/board").param("organizationId", "33")
+                                .header("If-None-Match", etag))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", organizationVersions.etag(33L, Resource.INVENTORY)));
+
+                verify(inventoryService).getBoard(33L);
+        }
+
+        @Test
+        void streamInventoryUpdates_PublicOrgParam_Subscribes() throws Exception {
+                when(priceFeedService.subscribe(7L)).thenReturn(new SseEmitter());
+                mockMvc.perform(get("/api/inventory/stream").param("organizationId", "7")
+                                .accept(MediaType.TEXT_EVENT_STREAM))
+                                .andExpect(request().asyncStarted());
+
+                verify(priceFeedService).subscribe(7L);
+        }
+
         @Test
         void addStock_ReturnsCreated() throws Exception {
                 User user = userWithOrg(1L, "USER");
@@ -165,20 +232,59 @@ class InventoryControllerTest {
         }
 
         @Test
-        void getTransactionHistory_ReturnsList() throws Exception {
+        void getTransactionHistory_StreamsList() throws Exception {
                 User user = userWithOrg(4L, "USER");
                 setAuth(user);
-                when(inventoryService.getTransactionHistory(40L, 4L)).thenReturn(List.of(
+                String body = objectMapper.writeValueAsString(List.of(
                                 new InventoryTransactionResponseDto(1L, 99L, "SALE", BigDecimal.ONE.negate(),
                                                 BigDecimal.TEN, new BigDecimal("9"), BigDecimal.TEN, BigDecimal.TEN,
                                                 "ref", "n", UUID.randomUUID().toString(), "Alice", "a@b.c",
                                                 OffsetDateTime.now().toString())));
-
-                mockMvc.perform(get("/api/inventory/product/{productId}/history", 40L))
+                OffsetDateTime from = OffsetDateTime.parse("2025-01-01T00:00:00Z");
+                when(inventoryService.streamTransactionHistory(eq(40L), eq(4L), any(), isNull()))
+                                .thenReturn(out -> out.write(body.getBytes(StandardCharsets.UTF_8)));
+
+                MvcResult result = mockMvc.perform(get("/api/inventory/product/{productId}/history", 40L)
+                                .param("from", from.toString()))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                mockMvc.perform(asyncDispatch(result))
                                 .andExpect(status().isOk())
                                 .andExpect(jsonPath("$", hasSize(1)));
 
-                verify(inventoryService).getTransactionHistory(40L, 4L);
+                verify(inventoryService).streamTransactionHistory(eq(40L), eq(4L),
+                                argThat(value -> value.isEqual(from)), isNull());
+        }
+
+        @Test
+        void getTransactionHistoryPage_ReturnsPage() throws Exception {
+                User user = userWithOrg(4L, "USER");
+                setAuth(user);
+                when(inventoryService.getTransactionHistoryPage(40L, 4L, null, null, "abc", 20))
+                                .thenReturn(new InventoryTransactionPageDto(List.of(), "def"));
+
+                mockMvc.perform(get("/api/inventory/product/{productId}/history/page", 40L)
+                                .param("cursor", "abc")
+                                .param("limit", "20"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.items", hasSize(0)))
+                                .andExpect(jsonPath("$.nextCursor").value("def"));
+        }
+
+        @Test
+        void getPriceCandles_PublicWithOrganizationId() throws Exception {
+                OffsetDateTime bucket = OffsetDateTime.parse("2025-01-01T20:00:00Z");
+                when(priceCandleService.getSeries(7L, List.of(40L, 41L), "5m", null, null)).thenReturn(List.of(
+                                new PriceSeriesDto(40L, List.of(new PriceCandleDto(bucket, BigDecimal.ONE,
+                                                BigDecimal.TEN, BigDecimal.ONE, BigDecimal.TEN, new BigDecimal("3"))))));
+
+                mockMvc.perform(get("/api/inventory/price-candles")
+                                .param("organizationId", "7")
+                                .param("productIds", "40,41")
+                                .param("interval", "5m"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$[0].productId").value(40))
+                                .andExpect(jsonPath("$[0].candles[0].close").value(10));
         }
 
         @Test
@@ -0,0 +1,125 @@
+package com.borsibaar.controller;
+
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.dto.SaleRequestDto;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.CategoryRepository;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.service.PriceCandleService;
+import com.borsibaar.service.PriceEngine;
+import com.borsibaar.service.SalesRollupService;
+import com.borsibaar.service.SalesService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Conditional GETs of the list and board with write-behind on: a sale commits
+ * before the engine writes its rows, so a client can load the old rows under
+ * the tag of the committed sale. Once the rows are written, that tag must no
+ * longer match.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:writebehindetag;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "app.price-engine.write-behind=true",
+        // Flushed by the test only
+        "app.price-engine.flush-interval-ms=3600000"
+})
+@AutoConfigureMockMvc(addFilters = false)
+class InventoryWriteBehindETagTest {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private SalesService salesService;
+    @Autowired private PriceEngine priceEngine;
+    @Autowired private OrganizationRepository organizationRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private ProductRepository productRepository;
+    @Autowired private InventoryRepository inventoryRepository;
+
+    // Rollup and candle upserts use PostgreSQL-only SQL
+    @MockitoBean private SalesRollupService salesRollupService;
+    @MockitoBean private PriceCandleService priceCandleService;
+
+    @MockitoBean private ClientRegistrationRepository clientRegistrationRepository;
+
+    private Long organizationId;
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        Organization organization = new Organization();
+        organization.setName("Bar " + UUID.randomUUID());
+        organizationId = organizationRepository.save(organization).getId();
+
+        Category category = new Category();
+        category.setOrganizationId(organizationId);
+        category.setName("Beer");
+        Long categoryId = categoryRepository.save(category).getId();
+
+        Product product = new Product();
+        product.setOrganizationId(organizationId);
+        product.setCategoryId(categoryId);
+        product.setName("Beer " + UUID.randomUUID());
+        product.setBasePrice(new BigDecimal("3.00"));
+        product.setActive(true);
+        product = productRepository.save(product);
+        inventoryRepository.save(new Inventory(organizationId, product, new BigDecimal("100"),
+                new BigDecimal("3.00")));
+        productId = product.getId();
+    }
+
+    @Test
+    void getBoard_LoadedBeforeBufferedSaleWritten_ReloadsAfterFlush() throws Exception {
+        sellOne();
+        String etag = mockMvc.perform(get("/api/inventory/board").param("organizationId", organizationId.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].products[0].quantity").value(100.0))
+                .andReturn().getResponse().getHeader("ETag");
+
+        priceEngine.flush();
+
+        mockMvc.perform(get("/api/inventory/board").param("organizationId", organizationId.toString())
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].products[0].quantity").value(99.0));
+    }
+
+    @Test
+    void getInventory_LoadedBeforeBufferedSaleWritten_ReloadsAfterFlush() throws Exception {
+        sellOne();
+        String etag = mockMvc.perform(get("/api/inventory").param("organizationId", organizationId.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].quantity").value(100.0))
+                .andReturn().getResponse().getHeader("ETag");
+
+        priceEngine.flush();
+
+        mockMvc.perform(get("/api/inventory").param("organizationId", organizationId.toString())
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].quantity").value(99.0));
+    }
+
+    private void sellOne() {
+        salesService.processSale(new SaleRequestDto(List.of(new SaleItemRequestDto(productId, BigDecimal.ONE)),
+                null, null), UUID.randomUUID(), organizationId);
+    }
+}
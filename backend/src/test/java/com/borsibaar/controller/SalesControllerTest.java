@@ -13,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -25,10 +26,13 @@ import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -63,7 +67,7 @@ class SalesControllerTest {
         SaleRequestDto req = new SaleRequestDto(List.of(new SaleItemRequestDto(10L, new BigDecimal("2"))), "note", 5L);
         SaleItemResponseDto itemResp = new SaleItemResponseDto(10L, "Cola", new BigDecimal("2"), new BigDecimal("3.00"), new BigDecimal("6.00"));
         SaleResponseDto resp = new SaleResponseDto("SALE-1", List.of(itemResp), new BigDecimal("6.00"), "note", OffsetDateTime.now());
-        when(salesService.processSale(any(SaleRequestDto.class), any(UUID.class), anyLong())).thenReturn(resp);
+        when(salesService.processSale(any(SaleRequestDto.class), any(UUID.class), anyLong(), isNull())).thenReturn(resp);
 
         mockMvc.perform(post("/api/sales")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -73,7 +77,38 @@ class SalesControllerTest {
                 .andExpect(jsonPath("$.items[0].productName").value("Cola"))
                 .andExpect(jsonPath("$.totalAmount").value(6.00));
 
-        verify(salesService).processSale(any(SaleRequestDto.class), any(UUID.class), anyLong());
+        verify(salesService).processSale(any(SaleRequestDto.class), any(UUID.class), anyLong(), isNull());
+    }
+
+    @Test
+    void processSale_ConcurrentRetryWithSameKey_ReturnsOriginalSale() throws Exception {
+        User user = userWithOrg(1L, "USER");
+        setAuth(user);
+
+        SaleRequestDto req = new SaleRequestDto(List.of(new SaleItemRequestDto(10L, new BigDecimal("2"))), "note", 5L);
+        SaleResponseDto original = new SaleResponseDto("SALE-1", List.of(), new BigDecimal("6.00"), "note", OffsetDateTime.now());
+        when(salesService.processSale(any(SaleRequestDto.class), any(UUID.class), eq(1L), eq("key-1")))
+                .thenThrow(new DataIntegrityViolationException("uk_sale_requests_org_key"));
+        when(salesService.findPreviousSale(1L, "key-1", req)).thenReturn(Optional.of(original));
+
+        mockMvc.perform(post("/api/sales")
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.saleId").value("SALE-1"));
+    }
+
+    @Test
+    void processSale_TooLongIdempotencyKey_BadRequest() throws Exception {
+        setAuth(userWithOrg(1L, "USER"));
+        SaleRequestDto req = new SaleRequestDto(List.of(new SaleItemRequestDto(10L, new BigDecimal("2"))), "note", 5L);
+
+        mockMvc.perform(post("/api/sales")
+                        .header("Idempotency-Key", "k".repeat(101))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isBadRequest());
     }
 
     private static User userWithOrg(Long orgId, String roleName) {
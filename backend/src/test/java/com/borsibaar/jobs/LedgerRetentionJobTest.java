@@ -0,0 +1,64 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.repository.LedgerPartitionJdbcRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerRetentionJobTest {
+
+    private static final YearMonth CURRENT = YearMonth.of(2025, 10);
+
+    @Mock private LedgerPartitionJdbcRepository ledgerPartitionJdbcRepository;
+
+    @Test
+    void maintainPartitions_CreatesComingMonthsAndArchivesExpiredOldestFirst() {
+        when(ledgerPartitionJdbcRepository.findMonths()).thenReturn(List.of(
+                YearMonth.of(2025, 10), YearMonth.of(2024, 9), YearMonth.of(2024, 8), YearMonth.of(2024, 10)));
+
+        new LedgerRetentionJob(ledgerPartitionJdbcRepository, true, 13).maintainPartitions(CURRENT);
+
+        verify(ledgerPartitionJdbcRepository).createMonth(YearMonth.of(2025, 10));
+        verify(ledgerPartitionJdbcRepository).createMonth(YearMonth.of(2025, 11));
+        verify(ledgerPartitionJdbcRepository).createMonth(YearMonth.of(2025, 12));
+        InOrder inOrder = inOrder(ledgerPartitionJdbcRepository);
+        inOrder.verify(ledgerPartitionJdbcRepository).archiveMonth(YearMonth.of(2024, 8));
+        inOrder.verify(ledgerPartitionJdbcRepository).archiveMonth(YearMonth.of(2024, 9));
+        verify(ledgerPartitionJdbcRepository, never()).archiveMonth(YearMonth.of(2024, 10));
+    }
+
+    @Test
+    void maintainPartitions_NoRetention_KeepsEverything() {
+        new LedgerRetentionJob(ledgerPartitionJdbcRepository, true, 0).maintainPartitions(CURRENT);
+
+        verify(ledgerPartitionJdbcRepository, times(3)).createMonth(any());
+        verify(ledgerPartitionJdbcRepository, never()).findMonths();
+        verify(ledgerPartitionJdbcRepository, never()).archiveMonth(any());
+    }
+
+    @Test
+    void maintainPartitions_DatabaseError_Swallowed() {
+        doThrow(new QueryTimeoutException("locked")).when(ledgerPartitionJdbcRepository).createMonth(any());
+
+        new LedgerRetentionJob(ledgerPartitionJdbcRepository, true, 13).maintainPartitions(CURRENT);
+
+        verify(ledgerPartitionJdbcRepository, never()).archiveMonth(any());
+    }
+
+    @Test
+    void maintainPartitions_Disabled_DoesNothing() {
+        new LedgerRetentionJob(ledgerPartitionJdbcRepository, false, 13).maintainPartitions(CURRENT);
+
+        verifyNoInteractions(ledgerPartitionJdbcRepository);
+    }
+}
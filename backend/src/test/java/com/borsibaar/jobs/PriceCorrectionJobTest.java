@@ -0,0 +1,313 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.event.InventoryChangedEvent;
+import com.borsibaar.repository.InventoryJdbcRepository;
+import com.borsibaar.repository.InventoryJdbcRepository.InventoryChange;
+import com.borsibaar.repository.InventoryJdbcRepository.Stock;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.PriceCorrectionJdbcRepository;
+import com.borsibaar.repository.PriceCorrectionJdbcRepository.PriceDecay;
+import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.service.LedgerAppender;
+import com.borsibaar.service.OrganizationVersions;
+import com.borsibaar.service.PriceCandleService;
+import com.borsibaar.service.PriceCandleService.PriceMove;
+import com.borsibaar.service.PriceEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PriceCorrectionJobTest {
+
+    @Mock private InventoryRepository inventoryRepository;
+    @Mock private InventoryJdbcRepository inventoryJdbcRepository;
+    @Mock private LedgerAppender ledgerAppender;
+    @Mock private ProductRepository productRepository;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private PriceEngine priceEngine;
+    @Mock private PriceCorrectionJdbcRepository priceCorrectionJdbcRepository;
+    @Mock private PriceCandleService priceCandleService;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<PriceCorrectionJob> jobs = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        jobs.forEach(PriceCorrectionJob::shutdown);
+    }
+
+    @Test
+    void adjustPrices_Bulk_DecaysPerOrganizationAndPublishes() {
+        PriceDecay decay = new PriceDecay(9L, 5L, BigDecimal.TEN, new BigDecimal("3.00"), new BigDecimal("2.50"));
+        when(priceCorrectionJdbcRepository.findOrganizationsWithSalesSince(any())).thenReturn(List.of(1L, 2L));
+        when(priceCorrectionJdbcRepository.decayIdlePrices(eq(1L), any(), any())).thenReturn(List.of(decay));
+        when(priceCorrectionJdbcRepository.decayIdlePrices(eq(2L), any(), any())).thenReturn(List.of());
+
+        job("bulk").adjustPrices();
+
+        verify(priceEngine).flush();
+        // Buffered sales go out before the decay, not on top of it
+        InOrder order = inOrder(priceEngine, priceCorrectionJdbcRepository);
+        order.verify(priceEngine).invalidateOrganization(1L);
+        order.verify(priceCorrectionJdbcRepository).decayIdlePrices(eq(1L), any(), any());
+        verify(priceCorrectionJdbcRepository).insertAdjustments(eq(List.of(decay)), startsWith("REDUCE-"),
+                eq("PriceCorrectionJob"), any());
+        verify(priceCandleService).record(eq(1L), any(),
+                eq(List.of(new PriceMove(5L, new BigDecimal("3.00"), new BigDecimal("2.50"), BigDecimal.ZERO))));
+
+        ArgumentCaptor<InventoryChangedEvent> event = ArgumentCaptor.forClass(InventoryChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(1L, event.getValue().organizationId());
+        assertEquals(new BigDecimal("2.50"), event.getValue().updates().get(0).unitPrice());
+        verifyNoInteractions(productRepository, inventoryRepository, ledgerAppender);
+    }
+
+    @Test
+    void adjustPrices_Bulk_OrganizationFailure_ContinuesWithOthers() {
+        PriceDecay decay = new PriceDecay(9L, 5L, BigDecimal.TEN, new BigDecimal("3.00"), new BigDecimal("2.50"));
+        when(priceCorrectionJdbcRepository.findOrganizationsWithSalesSince(any())).thenReturn(List.of(1L, 2L));
+        when(priceCorrectionJdbcRepository.decayIdlePrices(eq(1L), any(), any()))
+                .thenThrow(new QueryTimeoutException("timeout"));
+        when(priceCorrectionJdbcRepository.decayIdlePrices(eq(2L), any(), any())).thenReturn(List.of(decay));
+
+        job("bulk").adjustPrices();
+
+        verify(transactionManager).rollback(any());
+        verify(priceEngine).invalidateOrganization(2L);
+        verify(eventPublisher).publishEvent(any(InventoryChangedEvent.class));
+    }
+
+    @Test
+    void adjustPrices_Bulk_SlowOrganization_TimesOutWithoutHoldingUpOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PriceDecay decay = new PriceDecay(9L, 5L, BigDecimal.TEN, new BigDecimal("3.00"), new BigDecimal("2.50"));
+        when(priceCorrectionJdbcRepository.findOrganizationsWithSalesSince(any())).thenReturn(List.of(1L, 2L));
+        when(priceCorrectionJdbcRepository.decayIdlePrices(eq(1L), any(), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+        when(priceCorrectionJdbcRepository.decayIdlePrices(eq(2L), any(), any())).thenReturn(List.of(decay));
+
+        try {
+            job("bulk", false, Duration.ofMillis(200)).adjustPrices();
+        } finally {
+            release.countDown();
+        }
+
+        ArgumentCaptor<InventoryChangedEvent> event = ArgumentCaptor.forClass(InventoryChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(2L, event.getValue().organizationId());
+        assertEquals(1.0, meterRegistry.get("price.correction.timeouts").counter().count());
+        assertEquals(1.0, meterRegistry.get("price.correction.products").tag("mode", "bulk").summary().totalAmount());
+    }
+
+    @Test
+    void adjustPrices_PreviousRunStillGoing_Skips() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(priceCorrectionJdbcRepository.findOrganizationsWithSalesSince(any())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+        PriceCorrectionJob job = job("bulk");
+        Thread running = new Thread(job::adjustPrices);
+        running.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        job.adjustPrices();
+        release.countDown();
+        running.join(5000);
+
+        verify(priceCorrectionJdbcRepository, times(1)).findOrganizationsWithSalesSince(any());
+        assertEquals(1.0, meterRegistry.get("price.correction.skipped").counter().count());
+        assertEquals(1, meterRegistry.get("price.correction").tag("mode", "bulk").timer().count());
+    }
+
+    @Test
+    void adjustPrices_Row_DecreasesAndClampsToMinPrice() {
+        Product product = rowProduct(5L, 9L);
+        Inventory locked = product.getInventory();
+        when(productRepository.findByActiveOrgAndInactiveSalesLastMinute()).thenReturn(List.of(product));
+        when(inventoryRepository.findForUpdateByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(locked));
+        when(inventoryRepository.save(locked)).thenReturn(locked);
+
+        job("row").adjustPrices();
+
+        assertEquals(new BigDecimal("2.50"), locked.getAdjustedPrice());
+        // Buffered sales go out before the row is locked and priced
+        InOrder order = inOrder(priceEngine, inventoryRepository, transactionManager);
+        order.verify(priceEngine).invalidate(5L);
+        order.verify(inventoryRepository).findForUpdateByOrganizationIdAndProductId(1L, 5L);
+        order.verify(inventoryRepository).save(locked);
+        order.verify(transactionManager).commit(any());
+        verify(ledgerAppender).append(any(InventoryTransaction.class));
+        verify(priceCandleService).record(eq(1L), any(),
+                eq(List.of(new PriceMove(5L, new BigDecimal("3.00"), new BigDecimal("2.50"), BigDecimal.ZERO))));
+        verify(eventPublisher).publishEvent(any(InventoryChangedEvent.class));
+        verifyNoInteractions(priceCorrectionJdbcRepository);
+        assertEquals(1.0, meterRegistry.get("price.correction.products").tag("mode", "row").summary().totalAmount());
+    }
+
+    @Test
+    void adjustPrices_Row_LaterProductFails_RollsBackTheWholeOrganization() {
+        Product first = rowProduct(5L, 9L);
+        Product second = rowProduct(6L, 8L);
+        when(productRepository.findByActiveOrgAndInactiveSalesLastMinute()).thenReturn(List.of(first, second));
+        when(inventoryRepository.findForUpdateByOrganizationIdAndProductId(eq(1L), anyLong()))
+                .thenAnswer(invocation -> Optional.of((invocation.<Long>getArgument(1) == 5L ? first : second)
+                        .getInventory()));
+        when(inventoryRepository.save(any(Inventory.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        doNothing().doThrow(new QueryTimeoutException("timeout")).when(ledgerAppender).append(any());
+
+        job("row").adjustPrices();
+
+        // Locked in inventory id order, whatever order the products came in, and only
+        // once every product is invalidated, so no stripe is awaited under a row lock
+        InOrder order = inOrder(priceEngine, inventoryRepository);
+        order.verify(priceEngine).invalidate(6L);
+        order.verify(priceEngine).invalidate(5L);
+        order.verify(inventoryRepository).findForUpdateByOrganizationIdAndProductId(1L, 6L);
+        order.verify(inventoryRepository).findForUpdateByOrganizationIdAndProductId(1L, 5L);
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        verifyNoInteractions(eventPublisher);
+        assertEquals(0.0, meterRegistry.get("price.correction.products").tag("mode", "row").summary().totalAmount());
+    }
+
+    @Test
+    void adjustPrices_DecayTimers_LeavesItToTheTimers() {
+        job("bulk", true).adjustPrices();
+
+        verifyNoInteractions(priceEngine, priceCorrectionJdbcRepository, productRepository, eventPublisher);
+    }
+
+    @Test
+    void decayExpired_DecaysOnlyTheGivenRowsPerOrganization() {
+        OffsetDateTime now = OffsetDateTime.parse("2025-10-17T21:01:00.001Z");
+        PriceDecay decay = new PriceDecay(9L, 5L, BigDecimal.TEN, new BigDecimal("3.00"), new BigDecimal("2.50"));
+        when(priceCorrectionJdbcRepository.decayIdlePrices(1L, List.of(9L, 10L), now.minusSeconds(60), now))
+                .thenReturn(List.of(decay));
+        when(priceCorrectionJdbcRepository.decayIdlePrices(eq(2L), anyCollection(), any(), any()))
+                .thenThrow(new QueryTimeoutException("timeout"));
+
+        Map<Long, List<PriceDecay>> decays = job("bulk", true)
+                .decayExpired(Map.of(1L, List.of(9L, 10L), 2L, List.of(11L)), now, Duration.ofSeconds(60));
+
+        // The failed organization is left out so its timers try again
+        assertEquals(Map.of(1L, List.of(decay)), decays);
+        verify(priceEngine).flush();
+        verify(priceCorrectionJdbcRepository).insertAdjustments(eq(List.of(decay)), startsWith("REDUCE-"),
+                eq("PriceCorrectionJob"), eq(now));
+        verify(priceEngine).invalidateInventories(List.of(9L, 10L));
+        verify(eventPublisher).publishEvent(any(InventoryChangedEvent.class));
+        verify(priceCorrectionJdbcRepository, never()).findOrganizationsWithSalesSince(any());
+        assertEquals(1.0, meterRegistry.get("price.correction.products").tag("mode", "timers").summary().totalAmount());
+    }
+
+    @Test
+    void decayExpired_SaleBufferedAfterTheFlush_WrittenBeforeTheDecay() {
+        PriceEngine engine = new PriceEngine(productRepository, inventoryJdbcRepository, new OrganizationVersions(),
+                transactionManager, true);
+        OffsetDateTime now = OffsetDateTime.parse("2025-10-17T21:01:00.001Z");
+        Product product = rowProduct(5L, 9L);
+        product.setName("Cider");
+        product.setActive(true);
+        product.getOrganization().setPriceIncreaseStep(new BigDecimal("0.50"));
+        when(productRepository.findAllForSale(List.of(5L))).thenReturn(List.of(product));
+        when(inventoryJdbcRepository.findStocks(List.of(9L))).thenReturn(
+                Map.of(9L, new Stock(BigDecimal.TEN, new BigDecimal("3.00"), now.minusMinutes(5), 0L)));
+        // A sale lands between the run's flush and its decay transaction
+        AtomicBoolean sold = new AtomicBoolean();
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            if (sold.compareAndSet(false, true)) {
+                engine.sell(1L, List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), () -> now);
+            }
+            return null;
+        });
+        PriceDecay decay = new PriceDecay(9L, 5L, new BigDecimal("9"), new BigDecimal("3.50"), new BigDecimal("2.50"));
+        when(priceCorrectionJdbcRepository.decayIdlePrices(1L, List.of(9L), now.minusSeconds(60), now))
+                .thenReturn(List.of(decay));
+
+        PriceCorrectionJob job = new PriceCorrectionJob(inventoryRepository, ledgerAppender, productRepository,
+                eventPublisher, engine, priceCorrectionJdbcRepository, priceCandleService, transactionManager,
+                meterRegistry, "bulk", true, 2, Duration.ofSeconds(10));
+        jobs.add(job);
+        job.decayExpired(Map.of(1L, List.of(9L)), now, Duration.ofSeconds(60));
+        engine.flush();
+
+        InventoryChange sale = new InventoryChange(9L, new BigDecimal("-1.0000"), new BigDecimal("3.5000"), now);
+        InOrder order = inOrder(inventoryJdbcRepository, priceCorrectionJdbcRepository);
+        order.verify(inventoryJdbcRepository).apply(List.of(sale));
+        order.verify(priceCorrectionJdbcRepository).decayIdlePrices(1L, List.of(9L), now.minusSeconds(60), now);
+        // Nothing left buffered to overwrite the decayed price
+        verify(inventoryJdbcRepository).apply(anyList());
+    }
+
+    private static Product rowProduct(Long productId, Long inventoryId) {
+        Organization organization = new Organization();
+        organization.setPriceDecreaseStep(new BigDecimal("1.00"));
+        Category category = new Category();
+        category.setDynamicPricing(true);
+        Product product = new Product();
+        product.setId(productId);
+        product.setOrganizationId(1L);
+        product.setBasePrice(new BigDecimal("3.00"));
+        product.setMinPrice(new BigDecimal("2.50"));
+        product.setOrganization(organization);
+        product.setCategory(category);
+        Inventory inventory = new Inventory();
+        inventory.setId(inventoryId);
+        inventory.setQuantity(BigDecimal.TEN);
+        inventory.setAdjustedPrice(new BigDecimal("3.00"));
+        product.setInventory(inventory);
+        return product;
+    }
+
+    private PriceCorrectionJob job(String mode) {
+        return job(mode, false);
+    }
+
+    private PriceCorrectionJob job(String mode, boolean decayTimers) {
+        return job(mode, decayTimers, Duration.ofSeconds(10));
+    }
+
+    private PriceCorrectionJob job(String mode, boolean decayTimers, Duration partitionTimeout) {
+        PriceCorrectionJob job = new PriceCorrectionJob(inventoryRepository, ledgerAppender, productRepository,
+                eventPublisher, priceEngine, priceCorrectionJdbcRepository, priceCandleService, transactionManager,
+                meterRegistry, mode, decayTimers, 2, partitionTimeout);
+        jobs.add(job);
+        return job;
+    }
+}
@@ -0,0 +1,147 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.event.ProductsSoldEvent;
+import com.borsibaar.repository.PriceCorrectionJdbcRepository;
+import com.borsibaar.repository.PriceCorrectionJdbcRepository.LatestSale;
+import com.borsibaar.repository.PriceCorrectionJdbcRepository.PriceDecay;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PriceDecaySchedulerTest {
+
+    private static final long T0 = 1_760_734_800_000L;
+    private static final Duration IDLE = Duration.ofSeconds(60);
+
+    @Mock private PriceCorrectionJob priceCorrectionJob;
+    @Mock private PriceCorrectionJdbcRepository priceCorrectionJdbcRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void tick_IdleForTheFullPeriod_DecaysOnTheMarkAndRearms() {
+        PriceDecayScheduler scheduler = scheduler();
+        scheduler.rebuild(T0);
+        scheduler.onProductsSold(sold(1L, T0, 9L));
+        // Another product keeps the bar open
+        scheduler.onProductsSold(sold(1L, T0 + 30_000, 10L));
+        decayAll();
+
+        scheduler.tick(T0 + 60_000);
+        verifyNoInteractions(priceCorrectionJob);
+        scheduler.tick(T0 + 60_100);
+        verify(priceCorrectionJob).decayExpired(Map.of(1L, List.of(9L)), at(T0 + 60_100), IDLE);
+
+        // Next step a period later, but by then nothing sold for a minute: both wait for the next sale
+        scheduler.tick(T0 + 120_200);
+        verifyNoMoreInteractions(priceCorrectionJob);
+        assertEquals(2, scheduler.timerCount());
+        assertEquals(2.0, meterRegistry.get("price.decay.timers").gauge().value());
+    }
+
+    @Test
+    void tick_SoldAgainWhileWaiting_PushesTheDecayBack() {
+        PriceDecayScheduler scheduler = scheduler();
+        scheduler.rebuild(T0);
+        scheduler.onProductsSold(sold(1L, T0, 9L));
+        scheduler.onProductsSold(sold(1L, T0 + 40_000, 9L));
+        scheduler.onProductsSold(sold(1L, T0 + 50_000, 10L));
+        decayAll();
+
+        scheduler.tick(T0 + 60_100);
+        verifyNoInteractions(priceCorrectionJob);
+        scheduler.tick(T0 + 100_100);
+        verify(priceCorrectionJob).decayExpired(Map.of(1L, List.of(9L)), at(T0 + 100_100), IDLE);
+    }
+
+    @Test
+    void tick_AtMinimumPrice_DropsTheTimer() {
+        PriceDecayScheduler scheduler = scheduler();
+        scheduler.rebuild(T0);
+        scheduler.onProductsSold(sold(1L, T0, 9L));
+        scheduler.onProductsSold(sold(1L, T0 + 30_000));
+        when(priceCorrectionJob.decayExpired(anyMap(), any(), any())).thenReturn(Map.of(1L, List.of()));
+
+        scheduler.tick(T0 + 60_100);
+
+        verify(priceCorrectionJob).decayExpired(Map.of(1L, List.of(9L)), at(T0 + 60_100), IDLE);
+        assertEquals(0, scheduler.timerCount());
+    }
+
+    @Test
+    void rebuild_FromLatestSales_ArmsSoldRowsAndParksTheRest() {
+        when(priceCorrectionJdbcRepository.findLatestSales()).thenReturn(List.of(
+                new LatestSale(9L, 1L, at(T0 - 30_000)),
+                new LatestSale(12L, 1L, at(T0 - 5_000)),
+                new LatestSale(10L, 1L, null),
+                new LatestSale(11L, 2L, at(T0 - 7_200_000))));
+        decayAll();
+        PriceDecayScheduler scheduler = scheduler();
+        scheduler.rebuild(T0);
+
+        // Row 10 never sold and its bar is open; organization 2 closed hours ago, so row 11 parks
+        scheduler.tick(T0 + 100);
+        verify(priceCorrectionJob).decayExpired(Map.of(1L, List.of(10L)), at(T0 + 100), IDLE);
+        scheduler.tick(T0 + 30_100);
+        verify(priceCorrectionJob).decayExpired(Map.of(1L, List.of(9L)), at(T0 + 30_100), IDLE);
+
+        // The next sale of organization 2 finds row 11 long idle
+        scheduler.onProductsSold(sold(2L, T0 + 40_000));
+        scheduler.tick(T0 + 40_100);
+        verify(priceCorrectionJob).decayExpired(Map.of(2L, List.of(11L)), at(T0 + 40_100), IDLE);
+        assertEquals(4, scheduler.timerCount());
+    }
+
+    @Test
+    void onProductsSold_Disabled_ArmsNothing() {
+        PriceDecayScheduler scheduler = new PriceDecayScheduler(priceCorrectionJob, priceCorrectionJdbcRepository,
+                meterRegistry, false, IDLE, Duration.ofMillis(100));
+
+        scheduler.onProductsSold(sold(1L, T0, 9L));
+
+        assertEquals(0, scheduler.timerCount());
+    }
+
+    private PriceDecayScheduler scheduler() {
+        return new PriceDecayScheduler(priceCorrectionJob, priceCorrectionJdbcRepository, meterRegistry,
+                true, IDLE, Duration.ofMillis(100));
+    }
+
+    // Every expired row drops a step
+    private void decayAll() {
+        when(priceCorrectionJob.decayExpired(anyMap(), any(), any())).thenAnswer(invocation -> {
+            Map<Long, List<Long>> inventoryIdsByOrganization = invocation.getArgument(0);
+            return inventoryIdsByOrganization.entrySet().stream()
+                    .collect(Collectors.toMap(Map.Entry::getKey,
+                            entry -> entry.getValue().stream().map(PriceDecaySchedulerTest::decay).toList()));
+        });
+    }
+
+    private static ProductsSoldEvent sold(Long organizationId, long soldAtMillis, Long... inventoryIds) {
+        return new ProductsSoldEvent(organizationId, at(soldAtMillis), List.of(inventoryIds));
+    }
+
+    private static OffsetDateTime at(long millis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static PriceDecay decay(Long inventoryId) {
+        return new PriceDecay(inventoryId, 5L, BigDecimal.TEN, new BigDecimal("3.00"), new BigDecimal("2.50"));
+    }
+}
@@ -0,0 +1,38 @@
+package com.borsibaar.jobs;
+
+import com.borsibaar.repository.SaleRequestRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SaleRequestRetentionJobTest {
+
+    private static final OffsetDateTime NOW = OffsetDateTime.parse("2025-10-17T12:00:00Z");
+
+    @Mock private SaleRequestRepository saleRequestRepository;
+
+    @Test
+    void deleteExpired_DeletesKeysOlderThanRetention() {
+        new SaleRequestRetentionJob(saleRequestRepository, Duration.ofHours(24)).deleteExpired(NOW);
+
+        verify(saleRequestRepository).deleteCreatedBefore(OffsetDateTime.parse("2025-10-16T12:00:00Z"));
+    }
+
+    @Test
+    void deleteExpired_DatabaseError_IsLoggedNotThrown() {
+        when(saleRequestRepository.deleteCreatedBefore(any())).thenThrow(new QueryTimeoutException("timeout"));
+
+        assertDoesNotThrow(() -> new SaleRequestRetentionJob(saleRequestRepository, Duration.ofHours(24))
+                .deleteExpired(NOW));
+    }
+}
@@ -0,0 +1,97 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.dto.BoardEntryDto;
+import com.borsibaar.dto.InventoryResponseDto;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+class InventoryRepositoryTest {
+
+    @Autowired private OrganizationRepository organizationRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private ProductRepository productRepository;
+    @Autowired private InventoryRepository inventoryRepository;
+
+    private Long organizationId;
+    private Long beerId;
+    private Long wineId;
+
+    @BeforeEach
+    void setUp() {
+        Organization organization = new Organization();
+        organization.setName("Bar");
+        organizationId = organizationRepository.save(organization).getId();
+
+        beerId = category("Beer");
+        wineId = category("Wine");
+
+        inventory(product("Pilsner", beerId, true), new BigDecimal("2.50"));
+        inventory(product("Ale", beerId, true), null);
+        inventory(product("Stout", beerId, false), null);
+        inventory(product("Merlot", wineId, true), null);
+    }
+
+    @Test
+    void findActiveViews_SkipsInactiveAndSortsByName() {
+        List<InventoryResponseDto> rows = inventoryRepository.findActiveViewsByOrganizationId(organizationId);
+
+        assertEquals(List.of("Ale", "Merlot", "Pilsner"), rows.stream().map(InventoryResponseDto::productName).toList());
+        InventoryResponseDto ale = rows.get(0);
+        assertEquals(0, new BigDecimal("3.00").compareTo(ale.unitPrice()), "falls back to base price");
+        assertEquals(0, new BigDecimal("2.50").compareTo(rows.get(2).unitPrice()), "uses adjusted price");
+        assertEquals(organizationId, ale.organizationId());
+        assertNotNull(ale.updatedAt());
+    }
+
+    @Test
+    void findActiveViews_ByCategory_OnlyThatCategory() {
+        List<InventoryResponseDto> rows =
+                inventoryRepository.findActiveViewsByOrganizationIdAndCategoryId(organizationId, beerId);
+
+        assertEquals(List.of("Ale", "Pilsner"), rows.stream().map(InventoryResponseDto::productName).toList());
+    }
+
+    @Test
+    void findBoardEntries_GroupsByCategoryThenName() {
+        List<BoardEntryDto> rows = inventoryRepository.findBoardEntriesByOrganizationId(organizationId);
+
+        assertEquals(List.of("Ale", "Pilsner", "Merlot"),
+                rows.stream().map(row -> row.product().productName()).toList());
+        assertEquals(List.of(beerId, beerId, wineId), rows.stream().map(BoardEntryDto::categoryId).toList());
+        assertEquals("Wine", rows.get(2).categoryName());
+        assertEquals(0, new BigDecimal("2.50").compareTo(rows.get(1).product().unitPrice()));
+    }
+
+    private Long category(String name) {
+        Category category = new Category();
+        category.setOrganizationId(organizationId);
+        category.setName(name);
+        return categoryRepository.save(category).getId();
+    }
+
+    private Product product(String name, Long categoryId, boolean active) {
+        Product product = new Product();
+        product.setOrganizationId(organizationId);
+        product.setCategoryId(categoryId);
+        product.setName(name);
+        product.setBasePrice(new BigDecimal("3.00"));
+        product.setActive(active);
+        return productRepository.save(product);
+    }
+
+    private void inventory(Product product, BigDecimal adjustedPrice) {
+        inventoryRepository.saveAndFlush(new Inventory(organizationId, product, BigDecimal.TEN, adjustedPrice));
+    }
+}
@@ -0,0 +1,117 @@
+package com.borsibaar.repository;
+
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.entity.User;
+import com.borsibaar.repository.InventoryTransactionJdbcRepository.Cursor;
+import com.borsibaar.repository.InventoryTransactionJdbcRepository.TransactionRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@Import(InventoryTransactionJdbcRepository.class)
+class InventoryTransactionJdbcRepositoryTest {
+
+    private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 1, 20, 0, 0, 0, ZoneOffset.UTC);
+
+    @Autowired private OrganizationRepository organizationRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private ProductRepository productRepository;
+    @Autowired private InventoryRepository inventoryRepository;
+    @Autowired private InventoryTransactionRepository inventoryTransactionRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private InventoryTransactionJdbcRepository inventoryTransactionJdbcRepository;
+
+    private Inventory inventory;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        Organization organization = new Organization();
+        organization.setName("Bar");
+        Long organizationId = organizationRepository.save(organization).getId();
+
+        Category category = new Category();
+        category.setOrganizationId(organizationId);
+        category.setName("Beer");
+
+        Product product = new Product();
+        product.setOrganizationId(organizationId);
+        product.setCategoryId(categoryRepository.save(category).getId());
+        product.setName("Pilsner");
+        product.setBasePrice(new BigDecimal("3.00"));
+        product.setActive(true);
+        inventory = inventoryRepository.save(
+                new Inventory(organizationId, productRepository.save(product), BigDecimal.TEN, null));
+        user = userRepository.save(User.builder().name("Alice").email("alice@bar.test").build());
+
+        // Two rows share each timestamp, so pages must break ties on id
+        for (int minute = 0; minute < 3; minute++) {
+            transaction(START.plusMinutes(minute));
+            transaction(START.plusMinutes(minute));
+        }
+        inventoryTransactionRepository.flush();
+    }
+
+    @Test
+    void findPage_WalksNewestFirstWithoutGapsOrRepeats() {
+        List<TransactionRow> all = new ArrayList<>();
+        Cursor after = null;
+        List<TransactionRow> page;
+        do {
+            page = inventoryTransactionJdbcRepository.findPage(inventory.getId(), null, null, after, 4);
+            all.addAll(page);
+            TransactionRow last = page.isEmpty() ? null : page.get(page.size() - 1);
+            after = last == null ? null : new Cursor(last.createdAt(), last.id());
+        } while (page.size() == 4);
+
+        assertEquals(6, all.size());
+        assertEquals(6, all.stream().map(TransactionRow::id).distinct().count());
+        for (int i = 1; i < all.size(); i++) {
+            TransactionRow newer = all.get(i - 1);
+            TransactionRow older = all.get(i);
+            assertTrue(newer.createdAt().isAfter(older.createdAt())
+                    || newer.createdAt().isEqual(older.createdAt()) && newer.id() > older.id());
+        }
+        assertEquals("Alice", all.get(0).createdByName());
+        assertEquals(user.getId(), all.get(0).createdBy());
+    }
+
+    @Test
+    void stream_RangeIsFromInclusiveToExclusive() {
+        List<TransactionRow> rows = new ArrayList<>();
+        inventoryTransactionJdbcRepository.stream(inventory.getId(), START.plusMinutes(1), START.plusMinutes(2),
+                rows::add);
+
+        assertEquals(2, rows.size());
+        rows.forEach(row -> assertTrue(row.createdAt().isEqual(START.plusMinutes(1))));
+    }
+
+    private void transaction(OffsetDateTime createdAt) {
+        InventoryTransaction transaction = new InventoryTransaction();
+        transaction.setInventory(inventory);
+        transaction.setTransactionType("SALE");
+        transaction.setQuantityChange(BigDecimal.ONE.negate());
+        transaction.setQuantityBefore(BigDecimal.TEN);
+        transaction.setQuantityAfter(new BigDecimal("9"));
+        transaction.setPriceBefore(new BigDecimal("3.00"));
+        transaction.setPriceAfter(new BigDecimal("3.00"));
+        transaction.setCreatedBy(user.getId());
+        transaction.setCreatedAt(createdAt);
+        inventoryTransactionRepository.save(transaction);
+    }
+}
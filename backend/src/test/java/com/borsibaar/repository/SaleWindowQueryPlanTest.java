@@ -0,0 +1,216 @@
+package com.borsibaar.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Plans of the price job's sale-window queries on PostgreSQL with the Liquibase
+ * schema and a ledger where last minute's sales are a small slice of the rows.
+ * Fails when one of them reads inventory_transactions sequentially, e.g. after
+ * the partial SALE indexes are dropped or no longer match the queries, or reads
+ * a monthly partition outside the window.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class SaleWindowQueryPlanTest {
+
+    private static final int ORGANIZATIONS = 4;
+    private static final int PRODUCTS_PER_ORGANIZATION = 50;
+    // A few weeks of ledger, one row every 10 seconds
+    private static final int TRANSACTIONS = 200_000;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:17");
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        DataSource dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(),
+                POSTGRES.getPassword());
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.yaml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        seed();
+    }
+
+    @Test
+    void activeOrganizations_UsesIndex() {
+        OffsetDateTime since = OffsetDateTime.now().minusMinutes(1);
+        assertWindowReadThroughSaleIndexes(since, PriceCorrectionJdbcRepository.ACTIVE_ORGANIZATIONS_SQL, since);
+    }
+
+    @Test
+    void activeOrganizations_SkipsOlderPartitions() {
+        OffsetDateTime since = OffsetDateTime.now().minusMinutes(1);
+        String lastMonth = LedgerPartitionJdbcRepository.partitionName(monthOf(since).minusMonths(1));
+
+        List<Scan> scans = ledgerScans(PriceCorrectionJdbcRepository.ACTIVE_ORGANIZATIONS_SQL, since);
+
+        assertTrue(scans.stream().noneMatch(scan -> scan.relation().equals(lastMonth)), scans::toString);
+    }
+
+    @Test
+    void bulkDecay_UsesIndex() {
+        Long organizationId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM organizations", Long.class);
+        OffsetDateTime now = OffsetDateTime.now();
+        OffsetDateTime since = now.minusMinutes(1);
+        assertWindowReadThroughSaleIndexes(since, PriceCorrectionJdbcRepository.DECAY_SQL, organizationId, since, now);
+    }
+
+    @Test
+    void latestSales_UsesIndex() {
+        // The decay timers' startup query probes every partition that holds sales, newest first
+        assertWindowReadThroughSaleIndexes(OffsetDateTime.now().minusMonths(1),
+                PriceCorrectionJdbcRepository.LATEST_SALES_SQL);
+    }
+
+    @Test
+    void rowModeIdleProducts_UsesIndex() throws NoSuchMethodException {
+        String sql = ProductRepository.class.getMethod("findByActiveOrgAndInactiveSalesLastMinute")
+                .getAnnotation(Query.class).value();
+        assertWindowReadThroughSaleIndexes(OffsetDateTime.now().minusMinutes(1), sql);
+    }
+
+    private static void seed() {
+        // The changelog's seed rows carry explicit ids; move the sequences past them
+        for (String table : List.of("organizations", "categories", "products", "inventory")) {
+            jdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence(?, 'id'), "
+                    + "(SELECT COALESCE(MAX(id), 0) + 1 FROM " + table + "), false)", Long.class, table);
+        }
+        for (int o = 0; o < ORGANIZATIONS; o++) {
+            Long organizationId = jdbcTemplate.queryForObject(
+                    "INSERT INTO organizations (name) VALUES (?) RETURNING id", Long.class, "Plan bar " + o);
+            Long categoryId = jdbcTemplate.queryForObject(
+                    "INSERT INTO categories (organization_id, name, dynamic_pricing) VALUES (?, 'Beer', TRUE) "
+                            + "RETURNING id",
+                    Long.class, organizationId);
+            jdbcTemplate.update("""
+                    INSERT INTO products (organization_id, category_id, name, base_price, is_active)
+                    SELECT ?, ?, 'Beer ' || g, 3.00, TRUE FROM generate_series(1, ?) g
+                    """, organizationId, categoryId, PRODUCTS_PER_ORGANIZATION);
+        }
+        jdbcTemplate.update("""
+                INSERT INTO inventory (organization_id, product_id, quantity, adjusted_price)
+                SELECT p.organization_id, p.id, 1000, p.base_price FROM products p
+                WHERE NOT EXISTS (SELECT 1 FROM inventory i WHERE i.product_id = p.id)
+                """);
+        // The ledger reaches back into last month
+        new LedgerPartitionJdbcRepository(jdbcTemplate).createMonth(YearMonth.now(ZoneOffset.UTC).minusMonths(1));
+        // Mostly sales, newest first; only the first handful fall into the last minute
+        jdbcTemplate.update("""
+                WITH rows AS (SELECT id, row_number() OVER (ORDER BY id) - 1 AS n FROM inventory),
+                     total AS (SELECT COUNT(*) AS c FROM inventory)
+                INSERT INTO inventory_transactions
+                    (inventory_id, transaction_type, quantity_change, quantity_before, quantity_after,
+                     price_before, price_after, created_at)
+                SELECT r.id, CASE WHEN g % 10 = 0 THEN 'PURCHASE' ELSE 'SALE' END, -1, 1000, 999, 3.00, 3.00,
+                       CURRENT_TIMESTAMP - g * INTERVAL '10 seconds'
+                FROM generate_series(1, ?) g
+                CROSS JOIN total t
+                JOIN rows r ON r.n = g % t.c
+                """, TRANSACTIONS);
+        jdbcTemplate.execute("VACUUM ANALYZE");
+    }
+
+    /**
+     * The partitions holding the window (since until now) must be read through the
+     * SALE indexes. Later months and the default partition are empty and may be
+     * scanned in any way.
+     */
+    private static void assertWindowReadThroughSaleIndexes(OffsetDateTime since, String sql, Object... args) {
+        Set<String> window = Stream.of(since, OffsetDateTime.now())
+                .map(time -> LedgerPartitionJdbcRepository.partitionName(monthOf(time)))
+                .collect(Collectors.toSet());
+        List<Scan> scans = ledgerScans(sql, args);
+        List<Scan> windowScans = scans.stream().filter(scan -> window.contains(scan.relation())).toList();
+
+        assertFalse(windowScans.isEmpty(), scans::toString);
+        // Older indexes avoid a full scan too, but read every transaction type in the window
+        windowScans.forEach(scan -> assertTrue(
+                scan.indexes().stream().allMatch(index -> index.startsWith("idx_inventory_trans_sale_"))
+                        && !scan.indexes().isEmpty(),
+                scans::toString));
+    }
+
+    private static List<Scan> ledgerScans(String sql, Object... args) {
+        String json = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class, args);
+        List<Scan> scans = new ArrayList<>();
+        try {
+            collectScans(OBJECT_MAPPER.readTree(json).get(0).get("Plan"), scans);
+        } catch (Exception e) {
+            throw new AssertionError("Unreadable plan: " + json, e);
+        }
+        return scans.stream().filter(scan -> scan.relation().startsWith("inventory_transactions")).toList();
+    }
+
+    private static void collectScans(JsonNode node, List<Scan> scans) {
+        if (node.has("Relation Name")) {
+            scans.add(new Scan(node.get("Node Type").asText(), node.get("Relation Name").asText(),
+                    indexNames(node, new ArrayList<>())));
+        }
+        if (node.has("Plans")) {
+            node.get("Plans").forEach(child -> collectScans(child, scans));
+        }
+    }
+
+    // A bitmap heap scan names its indexes on the bitmap index scans below it
+    private static List<String> indexNames(JsonNode node, List<String> names) {
+        if (node.has("Index Name")) {
+            names.add(ledgerIndex(node.get("Index Name").asText()));
+        }
+        if (node.get("Node Type").asText().startsWith("Bitmap") && node.has("Plans")) {
+            node.get("Plans").forEach(child -> indexNames(child, names));
+        }
+        return names;
+    }
+
+    // A partition's index is named after the partition; report the ledger index it belongs to
+    private static String ledgerIndex(String index) {
+        List<String> parents = jdbcTemplate.queryForList("""
+                SELECT p.relname FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                JOIN pg_class p ON p.oid = i.inhparent
+                WHERE c.relname = ?
+                """, String.class, index);
+        return parents.isEmpty() ? index : parents.get(0);
+    }
+
+    private static YearMonth monthOf(OffsetDateTime time) {
+        return YearMonth.from(time.withOffsetSameInstant(ZoneOffset.UTC));
+    }
+
+    private record Scan(String nodeType, String relation, List<String> indexes) {
+        @Override
+        public String toString() {
+            return nodeType + " on " + relation + (indexes.isEmpty() ? "" : " using " + String.join(", ", indexes));
+        }
+    }
+}
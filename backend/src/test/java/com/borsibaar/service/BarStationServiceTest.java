@@ -10,6 +10,7 @@ import com.borsibaar.exception.NotFoundException;
 import com.borsibaar.mapper.BarStationMapper;
 import com.borsibaar.repository.BarStationRepository;
 import com.borsibaar.repository.UserRepository;
+import com.borsibaar.service.OrganizationVersions.Resource;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -28,6 +29,7 @@ class BarStationServiceTest {
     @Mock private BarStationRepository barStationRepository;
     @Mock private UserRepository userRepository;
     @Mock private BarStationMapper barStationMapper;
+    @Mock private OrganizationVersions organizationVersions;
 
     @InjectMocks private BarStationService barStationService;
 
@@ -138,6 +140,7 @@ class BarStationServiceTest {
         when(barStationRepository.findByOrganizationIdAndId(1L, 5L)).thenReturn(Optional.of(station));
         barStationService.deleteStation(1L, 5L);
         verify(barStationRepository).delete(station);
+        verify(organizationVersions).bumpAfterCommit(1L, Resource.BAR_STATIONS);
     }
 
     @Test
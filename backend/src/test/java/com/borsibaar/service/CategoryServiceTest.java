@@ -8,6 +8,7 @@ import com.borsibaar.exception.DuplicateResourceException;
 import com.borsibaar.exception.NotFoundException;
 import com.borsibaar.mapper.CategoryMapper;
 import com.borsibaar.repository.CategoryRepository;
+import com.borsibaar.service.OrganizationVersions.Resource;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -29,6 +30,8 @@ class CategoryServiceTest {
     private CategoryRepository categoryRepository;
     @Mock
     private CategoryMapper categoryMapper;
+    @Mock
+    private OrganizationVersions organizationVersions;
 
     @InjectMocks
     private CategoryService categoryService;
@@ -103,5 +106,6 @@ class CategoryServiceTest {
         CategoryResponseDto dto = categoryService.deleteReturningDto(5L, 1L);
         assertEquals(5L, dto.id());
         verify(categoryRepository).delete(cat);
+        verify(organizationVersions).bumpAfterCommit(1L, Resource.CATEGORIES);
     }
 }
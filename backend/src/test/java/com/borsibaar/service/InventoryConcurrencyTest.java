@@ -0,0 +1,235 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.AddStockRequestDto;
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.dto.SaleRequestDto;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.CategoryRepository;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Parallel POS sales and restocks against one inventory row. Stock, price and
+ * ledger must add up exactly, and no sale may fail: a sale waits for the row
+ * lock a restock holds and catches up with it, rather than losing a version
+ * check to it.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:concurrency;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;LOCK_TIMEOUT=10000",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "app.price-engine.write-behind=false"
+})
+class InventoryConcurrencyTest {
+
+    private static final int SALE_THREADS = 8;
+    private static final int SALES_PER_THREAD = 150;
+    private static final int RESTOCK_THREADS = 2;
+    private static final int RESTOCKS_PER_THREAD = 25;
+    private static final BigDecimal INITIAL_QUANTITY = new BigDecimal("100000");
+    private static final BigDecimal RESTOCK_QUANTITY = BigDecimal.TEN;
+    private static final long RESTOCK_PAUSE_MS = 10;
+
+    @Autowired private SalesService salesService;
+    @Autowired private InventoryService inventoryService;
+    @Autowired private OptimisticRetry optimisticRetry;
+    @Autowired private PriceEngine priceEngine;
+    @Autowired private OrganizationRepository organizationRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private ProductRepository productRepository;
+    @Autowired private InventoryRepository inventoryRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    // Rollup and candle upserts use PostgreSQL-only SQL
+    @MockitoBean private SalesRollupService salesRollupService;
+    @MockitoBean private PriceCandleService priceCandleService;
+
+    @MockitoBean private ClientRegistrationRepository clientRegistrationRepository;
+
+    @Test
+    void parallelSalesAndRestocks_NoLostUpdates() throws Exception {
+        Organization organization = new Organization();
+        organization.setName("Bar");
+        organization.setPriceIncreaseStep(new BigDecimal("0.10"));
+        organization.setPriceDecreaseStep(new BigDecimal("0.10"));
+        Long organizationId = organizationRepository.save(organization).getId();
+
+        Category category = new Category();
+        category.setOrganizationId(organizationId);
+        category.setName("Beer");
+        category.setDynamicPricing(true);
+        Long categoryId = categoryRepository.save(category).getId();
+
+        Product product = new Product();
+        product.setOrganizationId(organizationId);
+        product.setCategoryId(categoryId);
+        product.setName("Beer " + UUID.randomUUID());
+        product.setBasePrice(new BigDecimal("3.00"));
+        product.setMaxPrice(new BigDecimal("1000.00"));
+        product.setActive(true);
+        product = productRepository.save(product);
+        Long inventoryId = inventoryRepository.save(new Inventory(organizationId, product, INITIAL_QUANTITY,
+                new BigDecimal("3.00"))).getId();
+        Long productId = product.getId();
+
+        SaleRequestDto sale = new SaleRequestDto(List.of(new SaleItemRequestDto(productId, BigDecimal.ONE)), null,
+                null);
+        AddStockRequestDto restock = new AddStockRequestDto(productId, RESTOCK_QUANTITY, null);
+        UUID userId = UUID.randomUUID();
+
+        ExecutorService pool = Executors.newFixedThreadPool(SALE_THREADS + RESTOCK_THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < SALE_THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < SALES_PER_THREAD; i++) {
+                        salesService.processSale(sale, userId, organizationId);
+                    }
+                    return null;
+                }));
+            }
+            for (int t = 0; t < RESTOCK_THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < RESTOCKS_PER_THREAD; i++) {
+                        optimisticRetry.run(() -> inventoryService.addStock(restock, userId, organizationId));
+                        // Back to back restocks would hold the row for most of the run
+                        Thread.sleep(RESTOCK_PAUSE_MS);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(120, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        priceEngine.flush();
+
+        int sales = SALE_THREADS * SALES_PER_THREAD;
+        BigDecimal restocked = RESTOCK_QUANTITY.multiply(BigDecimal.valueOf(RESTOCK_THREADS * RESTOCKS_PER_THREAD));
+        Inventory inventory = inventoryRepository.findById(inventoryId).orElseThrow();
+        assertEquals(0, INITIAL_QUANTITY.subtract(BigDecimal.valueOf(sales)).add(restocked)
+                .compareTo(inventory.getQuantity()), "quantity " + inventory.getQuantity());
+        // Every sale stepped the price once, none was overwritten by a stale writer
+        assertEquals(0, new BigDecimal("3.00").add(new BigDecimal("0.10").multiply(BigDecimal.valueOf(sales)))
+                .compareTo(inventory.getAdjustedPrice()), "price " + inventory.getAdjustedPrice());
+
+        BigDecimal ledgerTotal = jdbcTemplate.queryForObject(
+                "SELECT SUM(quantity_change) FROM inventory_transactions WHERE inventory_id = ?",
+                BigDecimal.class, inventoryId);
+        assertEquals(0, inventory.getQuantity().subtract(INITIAL_QUANTITY).compareTo(ledgerTotal),
+                "ledger total " + ledgerTotal);
+        assertEquals(sales, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM inventory_transactions WHERE inventory_id = ? AND transaction_type = 'SALE'",
+                Integer.class, inventoryId));
+    }
+
+    /**
+     * Terminals selling the same two products in opposite line order, one with a
+     * duplicate line. Locks are taken in one order whatever the basket, so every
+     * sale goes through on its first attempt, well within the lock timeout.
+     */
+    @Test
+    void parallelSalesInOppositeOrder_NoDeadlock() throws Exception {
+        Organization organization = new Organization();
+        organization.setName("Bar");
+        organization.setPriceIncreaseStep(new BigDecimal("0.10"));
+        organization.setPriceDecreaseStep(new BigDecimal("0.10"));
+        Long organizationId = organizationRepository.save(organization).getId();
+
+        Category category = new Category();
+        category.setOrganizationId(organizationId);
+        category.setName("Cider");
+        category.setDynamicPricing(true);
+        Long categoryId = categoryRepository.save(category).getId();
+
+        Product first = stockedProduct(organizationId, categoryId);
+        Product second = stockedProduct(organizationId, categoryId);
+        SaleRequestDto forward = new SaleRequestDto(List.of(
+                new SaleItemRequestDto(first.getId(), BigDecimal.ONE),
+                new SaleItemRequestDto(second.getId(), BigDecimal.ONE)), null, null);
+        SaleRequestDto backward = new SaleRequestDto(List.of(
+                new SaleItemRequestDto(second.getId(), BigDecimal.ONE),
+                new SaleItemRequestDto(first.getId(), BigDecimal.ONE),
+                new SaleItemRequestDto(first.getId(), BigDecimal.ONE)), null, null);
+        UUID userId = UUID.randomUUID();
+
+        ExecutorService pool = Executors.newFixedThreadPool(SALE_THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < SALE_THREADS; t++) {
+                SaleRequestDto sale = t % 2 == 0 ? forward : backward;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < SALES_PER_THREAD; i++) {
+                        salesService.processSale(sale, userId, organizationId);
+                    }
+                    return null;
+                }));
+            }
+            // Every terminal starts with a cold engine and loads the basket at once
+            priceEngine.invalidateOrganization(organizationId);
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(120, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        priceEngine.flush();
+
+        int salesPerDirection = SALE_THREADS / 2 * SALES_PER_THREAD;
+        Inventory firstInventory = inventoryRepository.findById(first.getInventory().getId()).orElseThrow();
+        Inventory secondInventory = inventoryRepository.findById(second.getInventory().getId()).orElseThrow();
+        assertEquals(0, INITIAL_QUANTITY.subtract(BigDecimal.valueOf(3L * salesPerDirection))
+                .compareTo(firstInventory.getQuantity()), "first quantity " + firstInventory.getQuantity());
+        assertEquals(0, INITIAL_QUANTITY.subtract(BigDecimal.valueOf(2L * salesPerDirection))
+                .compareTo(secondInventory.getQuantity()), "second quantity " + secondInventory.getQuantity());
+        // Duplicate lines were merged, so every sale stepped each price once
+        BigDecimal price = new BigDecimal("3.00").add(new BigDecimal("0.10")
+                .multiply(BigDecimal.valueOf(2L * salesPerDirection)));
+        assertEquals(0, price.compareTo(firstInventory.getAdjustedPrice()), "first price " + firstInventory.getAdjustedPrice());
+        assertEquals(0, price.compareTo(secondInventory.getAdjustedPrice()), "second price " + secondInventory.getAdjustedPrice());
+    }
+
+    private Product stockedProduct(Long organizationId, Long categoryId) {
+        Product product = new Product();
+        product.setOrganizationId(organizationId);
+        product.setCategoryId(categoryId);
+        product.setName("Cider " + UUID.randomUUID());
+        product.setBasePrice(new BigDecimal("3.00"));
+        product.setMaxPrice(new BigDecimal("1000.00"));
+        product.setActive(true);
+        product = productRepository.save(product);
+        product.setInventory(inventoryRepository.save(new Inventory(organizationId, product, INITIAL_QUANTITY,
+                new BigDecimal("3.00"))));
+        return product;
+    }
+}
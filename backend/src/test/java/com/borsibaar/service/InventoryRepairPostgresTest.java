@@ -0,0 +1,120 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.repository.InventoryJdbcRepository;
+import com.borsibaar.service.PriceEngine.PricedLine;
+import com.borsibaar.service.PriceEngine.Sale;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Repair of buffered sales from the ledger on PostgreSQL, after two sales of
+ * one product reached the engine in the opposite order of their clock
+ * readings. The repair takes the newest ledger entry per row, so it must be
+ * the sale applied last.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(properties = {
+        "spring.datasource.driverClassName=org.postgresql.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.PostgreSQLDialect",
+        "spring.liquibase.enabled=true",
+        "app.price-engine.write-behind=true",
+        // Never flushed, as if the application stopped before writing the rows
+        "app.price-engine.flush-interval-ms=3600000"
+})
+class InventoryRepairPostgresTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:17");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Autowired private PriceEngine priceEngine;
+    @Autowired private InventoryJdbcRepository inventoryJdbcRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean private ClientRegistrationRepository clientRegistrationRepository;
+
+    private Long organizationId;
+    private Long productId;
+    private Long inventoryId;
+
+    @BeforeEach
+    void seed() {
+        // The changelog's seed rows carry explicit ids; move the sequences past them
+        for (String table : List.of("organizations", "categories", "products", "inventory")) {
+            jdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence(?, 'id'), "
+                    + "(SELECT COALESCE(MAX(id), 0) + 1 FROM " + table + "), false)", Long.class, table);
+        }
+        organizationId = jdbcTemplate.queryForObject(
+                "INSERT INTO organizations (name, price_increase_step, price_decrease_step) "
+                        + "VALUES (?, 0.10, 0.10) RETURNING id",
+                Long.class, "Repair bar " + UUID.randomUUID());
+        Long categoryId = jdbcTemplate.queryForObject(
+                "INSERT INTO categories (organization_id, name, dynamic_pricing) VALUES (?, 'Cider', TRUE) "
+                        + "RETURNING id",
+                Long.class, organizationId);
+        productId = jdbcTemplate.queryForObject("""
+                INSERT INTO products (organization_id, category_id, name, base_price, max_price, is_active)
+                VALUES (?, ?, 'Cider', 3.00, 1000.00, TRUE) RETURNING id
+                """, Long.class, organizationId, categoryId);
+        inventoryId = jdbcTemplate.queryForObject("""
+                INSERT INTO inventory (organization_id, product_id, quantity, adjusted_price, updated_at)
+                VALUES (?, ?, 100, 3.00, ?) RETURNING id
+                """, Long.class, organizationId, productId, OffsetDateTime.now().minusMinutes(5));
+    }
+
+    @Test
+    void repairFromLedger_SalesAppliedAgainstTheirClockOrder_RestoresTheLastApplied() {
+        OffsetDateTime now = OffsetDateTime.now();
+        Sale applied = priceEngine.sell(organizationId, List.of(new SaleItemRequestDto(productId, BigDecimal.ONE)),
+                () -> now.plusSeconds(1));
+        Sale appliedLast = priceEngine.sell(organizationId,
+                List.of(new SaleItemRequestDto(productId, BigDecimal.TWO)), () -> now);
+        // Ledger ids need not follow either order
+        appendToLedger(appliedLast);
+        appendToLedger(applied);
+
+        assertEquals(1, inventoryJdbcRepository.repairFromLedger());
+
+        PricedLine last = appliedLast.lines().get(0);
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT quantity, adjusted_price FROM inventory WHERE id = ?", inventoryId);
+        assertEquals(0, new BigDecimal("97").compareTo((BigDecimal) row.get("quantity")));
+        assertEquals(0, last.quantityAfter().compareTo((BigDecimal) row.get("quantity")));
+        assertEquals(0, last.priceAfter().compareTo((BigDecimal) row.get("adjusted_price")));
+    }
+
+    private void appendToLedger(Sale sale) {
+        PricedLine line = sale.lines().get(0);
+        jdbcTemplate.update("""
+                INSERT INTO inventory_transactions (inventory_id, transaction_type, quantity_change, quantity_before,
+                    quantity_after, price_before, price_after, reference_id, created_at)
+                VALUES (?, 'SALE', ?, ?, ?, ?, ?, ?, ?)
+                """, line.inventoryId(), line.quantity().negate(), line.quantityBefore(), line.quantityAfter(),
+                line.priceBefore(), line.priceAfter(), "SALE-" + UUID.randomUUID(), sale.soldAt());
+    }
+}
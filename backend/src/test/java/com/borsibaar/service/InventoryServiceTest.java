@@ -1,8 +1,12 @@
 package com.borsibaar.service;
 
 import com.borsibaar.dto.AddStockRequestDto;
+import com.borsibaar.dto.BoardCategoryDto;
+import com.borsibaar.dto.BoardEntryDto;
 import com.borsibaar.dto.InventoryResponseDto;
+import com.borsibaar.dto.InventoryTransactionPageDto;
 import com.borsibaar.dto.InventoryTransactionResponseDto;
+import com.borsibaar.dto.ProductReferenceDto;
 import com.borsibaar.dto.RemoveStockRequestDto;
 import com.borsibaar.dto.AdjustStockRequestDto;
 import com.borsibaar.dto.StationSalesStatsResponseDto;
@@ -12,27 +16,37 @@ import com.borsibaar.entity.Inventory;
 import com.borsibaar.entity.InventoryTransaction;
 import com.borsibaar.entity.Product;
 import com.borsibaar.entity.User;
+import com.borsibaar.event.InventoryChangedEvent;
 import com.borsibaar.mapper.InventoryMapper;
 import com.borsibaar.repository.BarStationRepository;
 import com.borsibaar.repository.InventoryRepository;
-import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.InventoryTransactionJdbcRepository;
+import com.borsibaar.repository.InventoryTransactionJdbcRepository.Cursor;
+import com.borsibaar.repository.InventoryTransactionJdbcRepository.TransactionRow;
 import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.repository.SalesRollupRepository;
 import com.borsibaar.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -44,7 +58,7 @@ class InventoryServiceTest {
     private InventoryRepository inventoryRepository;
 
     @Mock
-    private InventoryTransactionRepository inventoryTransactionRepository;
+    private LedgerAppender ledgerAppender;
 
     @Mock
     private ProductRepository productRepository;
@@ -55,21 +69,52 @@ class InventoryServiceTest {
     @Mock
     private BarStationRepository barStationRepository;
 
+    @Mock
+    private SalesRollupRepository salesRollupRepository;
+
     @Mock
     private InventoryMapper inventoryMapper;
 
     @Mock
     private ClientRegistrationRepository clientRegistrationRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PriceEngine priceEngine;
+
+    @Mock
+    private InventoryTransactionJdbcRepository inventoryTransactionJdbcRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     @InjectMocks private InventoryService inventoryService;
 
     private final UUID userId = UUID.randomUUID();
 
+    @Test
+    void getBoard_GroupsConsecutiveRowsByCategory() {
+        when(inventoryRepository.findBoardEntriesByOrganizationId(1L)).thenReturn(List.of(
+                boardEntry(7L, "Beer", "Ale"), boardEntry(7L, "Beer", "Pilsner"), boardEntry(8L, "Wine", "Merlot")));
+
+        List<BoardCategoryDto> board = inventoryService.getBoard(1L);
+
+        assertEquals(List.of("Beer", "Wine"), board.stream().map(BoardCategoryDto::categoryName).toList());
+        assertEquals(List.of("Ale", "Pilsner"),
+                board.get(0).products().stream().map(InventoryResponseDto::productName).toList());
+        assertEquals(1, board.get(1).products().size());
+    }
+
     @Test
     void addStock_CreatesInventoryIfMissing() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.valueOf(2));
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
-        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.empty());
+        when(productRepository.findReferenceById(5L)).thenReturn(Optional.of(reference(product)));
+        when(inventoryRepository.findForUpdateByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.empty());
         when(inventoryRepository.save(any(Inventory.class))).thenAnswer(inv -> { Inventory i = inv.getArgument(0); i.setId(77L); return i; });
         when(inventoryMapper.toResponse(any())).thenAnswer(inv -> {
             Inventory i = inv.getArgument(0); return new InventoryResponseDto(i.getId(), i.getOrganizationId(), i.getProductId(), "P", i.getQuantity(), i.getAdjustedPrice(), product.getDescription(), null, null, null, i.getUpdatedAt().toString()); });
@@ -77,13 +122,13 @@ class InventoryServiceTest {
         AddStockRequestDto request = new AddStockRequestDto(5L, BigDecimal.valueOf(10), "Notes");
         InventoryResponseDto dto = inventoryService.addStock(request, userId, 1L);
         assertEquals(BigDecimal.valueOf(10), dto.quantity());
-        verify(inventoryTransactionRepository).save(any(InventoryTransaction.class));
+        verify(ledgerAppender).append(any(InventoryTransaction.class));
     }
 
     @Test
     void addStock_ProductInactive_ThrowsGone() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(false);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productRepository.findReferenceById(5L)).thenReturn(Optional.of(reference(product)));
         AddStockRequestDto request = new AddStockRequestDto(5L, BigDecimal.ONE, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> inventoryService.addStock(request, userId, 1L));
         assertEquals(HttpStatus.GONE, ex.getStatusCode());
@@ -93,8 +138,8 @@ class InventoryServiceTest {
     void removeStock_Insufficient_ThrowsBadRequest() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.ONE);
         Inventory inv = new Inventory(); inv.setId(9L); inv.setOrganizationId(1L); inv.setProduct(product); inv.setProductId(5L); inv.setQuantity(BigDecimal.valueOf(2)); inv.setAdjustedPrice(BigDecimal.ONE); inv.setUpdatedAt(OffsetDateTime.now());
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
-        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
+        when(productRepository.findReferenceById(5L)).thenReturn(Optional.of(reference(product)));
+        when(inventoryRepository.findForUpdateByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
         RemoveStockRequestDto request = new RemoveStockRequestDto(5L, BigDecimal.valueOf(5), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> inventoryService.removeStock(request, userId, 1L));
         assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
@@ -104,8 +149,8 @@ class InventoryServiceTest {
     void adjustStock_Success_CreatesTransaction() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.valueOf(2));
         Inventory inv = new Inventory(); inv.setId(9L); inv.setOrganizationId(1L); inv.setProduct(product); inv.setProductId(5L); inv.setQuantity(BigDecimal.valueOf(5)); inv.setAdjustedPrice(BigDecimal.valueOf(2)); inv.setUpdatedAt(OffsetDateTime.now());
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
-        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
+        when(productRepository.findReferenceById(5L)).thenReturn(Optional.of(reference(product)));
+        when(inventoryRepository.findForUpdateByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
         when(inventoryRepository.save(any(Inventory.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
         when(inventoryMapper.toResponse(any())).thenAnswer(a -> {
@@ -114,21 +159,23 @@ class InventoryServiceTest {
         AdjustStockRequestDto request = new AdjustStockRequestDto(5L, BigDecimal.valueOf(8), "Adj");
         InventoryResponseDto dto = inventoryService.adjustStock(request, userId, 1L);
         assertEquals(BigDecimal.valueOf(8), dto.quantity());
-        verify(inventoryTransactionRepository).save(any(InventoryTransaction.class));
+        verify(ledgerAppender).append(any(InventoryTransaction.class));
+
+        ArgumentCaptor<InventoryChangedEvent> event = ArgumentCaptor.forClass(InventoryChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(1L, event.getValue().organizationId());
+        assertEquals(BigDecimal.valueOf(8), event.getValue().updates().get(0).quantity());
+        verify(priceEngine).invalidate(5L);
     }
 
     @Test
-    void getByOrganization_FiltersInactiveProducts() {
-        Inventory inv1 = new Inventory(); inv1.setId(1L); inv1.setOrganizationId(1L); inv1.setProductId(10L); inv1.setQuantity(BigDecimal.ONE); inv1.setUpdatedAt(OffsetDateTime.now());
-        Inventory inv2 = new Inventory(); inv2.setId(2L); inv2.setOrganizationId(1L); inv2.setProductId(11L); inv2.setQuantity(BigDecimal.ONE); inv2.setUpdatedAt(OffsetDateTime.now());
-        when(inventoryRepository.findByOrganizationId(1L)).thenReturn(List.of(inv1, inv2));
-        Product p1 = new Product(); p1.setId(10L); p1.setActive(true); p1.setBasePrice(BigDecimal.ONE); p1.setName("A");
-        Product p2 = new Product(); p2.setId(11L); p2.setActive(false); p2.setBasePrice(BigDecimal.ONE); p2.setName("B");
-        when(productRepository.findById(10L)).thenReturn(Optional.of(p1));
-        when(productRepository.findById(11L)).thenReturn(Optional.of(p2));
-        when(inventoryMapper.toResponse(inv1)).thenReturn(new InventoryResponseDto(1L,1L,10L,"A",BigDecimal.ONE,BigDecimal.ONE, "abc", null,null,null,OffsetDateTime.now().toString()));
-        List<InventoryResponseDto> result = inventoryService.getByOrganization(1L);
-        assertEquals(1, result.size());
+    void getByOrganization_UsesProjectionQueries() {
+        InventoryResponseDto row = new InventoryResponseDto(1L,1L,10L,"A",BigDecimal.ONE,BigDecimal.ONE, "abc", null,null,null,OffsetDateTime.now().toString());
+        when(inventoryRepository.findActiveViewsByOrganizationId(1L)).thenReturn(List.of(row));
+        when(inventoryRepository.findActiveViewsByOrganizationIdAndCategoryId(1L, 3L)).thenReturn(List.of());
+        assertEquals(List.of(row), inventoryService.getByOrganization(1L));
+        assertEquals(List.of(), inventoryService.getByOrganization(1L, 3L));
+        verifyNoInteractions(productRepository, inventoryMapper);
     }
 
     @Test
@@ -136,7 +183,7 @@ class InventoryServiceTest {
         Inventory inv = new Inventory(); inv.setId(1L); inv.setOrganizationId(1L); inv.setProductId(10L); inv.setQuantity(BigDecimal.ONE); inv.setUpdatedAt(OffsetDateTime.now());
         when(inventoryRepository.findByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.of(inv));
         Product p = new Product(); p.setId(10L); p.setActive(false); p.setBasePrice(BigDecimal.ONE); p.setName("A");
-        when(productRepository.findById(10L)).thenReturn(Optional.of(p));
+        when(productRepository.findReferenceById(10L)).thenReturn(Optional.of(reference(p)));
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> inventoryService.getByProductAndOrganization(10L, 1L));
         assertEquals(HttpStatus.GONE, ex.getStatusCode());
     }
@@ -144,7 +191,7 @@ class InventoryServiceTest {
     @Test
     void addStock_ProductWrongOrg_Forbidden() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(2L); product.setActive(true);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productRepository.findReferenceById(5L)).thenReturn(Optional.of(reference(product)));
         AddStockRequestDto request = new AddStockRequestDto(5L, BigDecimal.ONE, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> inventoryService.addStock(request, userId, 1L));
         assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
@@ -154,8 +201,8 @@ class InventoryServiceTest {
     void removeStock_Success_CreatesNegativeTransaction() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(new BigDecimal("2.00"));
         Inventory inv = new Inventory(); inv.setId(10L); inv.setOrganizationId(1L); inv.setProduct(product); inv.setProductId(5L); inv.setQuantity(new BigDecimal("10")); inv.setAdjustedPrice(new BigDecimal("2.00")); inv.setUpdatedAt(OffsetDateTime.now());
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
-        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
+        when(productRepository.findReferenceById(5L)).thenReturn(Optional.of(reference(product)));
+        when(inventoryRepository.findForUpdateByOrganizationIdAndProductId(1L, 5L)).thenReturn(Optional.of(inv));
         when(inventoryRepository.save(any(Inventory.class))).thenAnswer(a -> a.getArgument(0));
         when(inventoryMapper.toResponse(any())).thenAnswer(a -> { Inventory i = a.getArgument(0); return new InventoryResponseDto(i.getId(), i.getOrganizationId(), i.getProductId(), "Prod", i.getQuantity(), i.getAdjustedPrice(), product.getDescription(), null, null, null, i.getUpdatedAt().toString());});
 
@@ -163,29 +210,73 @@ class InventoryServiceTest {
         InventoryResponseDto dto = inventoryService.removeStock(request, userId, 1L);
         assertEquals(new BigDecimal("7"), dto.quantity());
         ArgumentCaptor<InventoryTransaction> txCap = ArgumentCaptor.forClass(InventoryTransaction.class);
-        verify(inventoryTransactionRepository).save(txCap.capture());
+        verify(ledgerAppender).append(txCap.capture());
         assertEquals(new BigDecimal("-3"), txCap.getValue().getQuantityChange());
         assertEquals("sale-1", txCap.getValue().getReferenceId());
     }
 
     @Test
-    void getTransactionHistory_MapsUserInfo() {
-        Inventory inv = new Inventory(); inv.setId(100L); inv.setOrganizationId(1L); inv.setProductId(10L);
-        when(inventoryRepository.findByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.of(inv));
+    void getTransactionHistoryPage_MapsUserInfoAndContinuesAfterLastRow() {
+        when(inventoryRepository.findIdByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.of(100L));
         UUID uid = UUID.randomUUID();
-        InventoryTransaction tx = new InventoryTransaction();
-        tx.setId(1L); tx.setInventory(inv); tx.setInventoryId(inv.getId()); tx.setTransactionType("SALE");
-        tx.setQuantityChange(new BigDecimal("-1")); tx.setQuantityBefore(BigDecimal.TEN); tx.setQuantityAfter(new BigDecimal("9"));
-        tx.setPriceBefore(BigDecimal.ONE); tx.setPriceAfter(BigDecimal.ONE); tx.setReferenceId("ref"); tx.setNotes("n");
-        tx.setCreatedBy(uid); tx.setCreatedAt(OffsetDateTime.now());
-        when(inventoryTransactionRepository.findByInventoryIdOrderByCreatedAtDesc(100L)).thenReturn(List.of(tx));
-        User user = new User(); user.setId(uid); user.setName("Alice"); user.setEmail("a@b.c");
-        when(userRepository.findAllById(anyList())).thenReturn(List.of(user));
+        OffsetDateTime now = OffsetDateTime.now();
+        when(inventoryTransactionJdbcRepository.findPage(100L, null, null, null, 3)).thenReturn(List.of(
+                transactionRow(3L, uid, now), transactionRow(2L, uid, now.minusSeconds(1)),
+                transactionRow(1L, null, now.minusSeconds(2))));
+
+        InventoryTransactionPageDto page = inventoryService.getTransactionHistoryPage(10L, 1L, null, null, null, 2);
+        assertEquals(List.of(3L, 2L), page.items().stream().map(InventoryTransactionResponseDto::id).toList());
+        assertEquals(uid.toString(), page.items().get(0).createdBy());
+        assertEquals("Alice", page.items().get(0).createdByName());
+        assertNotNull(page.nextCursor());
+
+        when(inventoryTransactionJdbcRepository.findPage(eq(100L), isNull(), isNull(), notNull(), eq(3)))
+                .thenReturn(List.of(transactionRow(1L, null, now.minusSeconds(2))));
+        InventoryTransactionPageDto last = inventoryService.getTransactionHistoryPage(10L, 1L, null, null,
+                page.nextCursor(), 2);
+        assertNull(last.nextCursor());
+        ArgumentCaptor<Cursor> cursor = ArgumentCaptor.forClass(Cursor.class);
+        verify(inventoryTransactionJdbcRepository, times(2))
+                .findPage(eq(100L), isNull(), isNull(), cursor.capture(), eq(3));
+        assertEquals(2L, cursor.getValue().id());
+        assertTrue(now.minusSeconds(1).isEqual(cursor.getValue().createdAt()));
+    }
+
+    @Test
+    void getTransactionHistoryPage_BadCursor_ThrowsBadRequest() {
+        when(inventoryRepository.findIdByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.of(100L));
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> inventoryService.getTransactionHistoryPage(10L, 1L, null, null, "not-a-cursor", null));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+    }
 
-        List<InventoryTransactionResponseDto> result = inventoryService.getTransactionHistory(10L, 1L);
-        assertEquals(1, result.size());
-        assertEquals(uid.toString(), result.get(0).createdBy());
-        assertEquals("Alice", result.get(0).createdByName());
+    @Test
+    void streamTransactionHistory_WritesRowsAsJsonArray() throws Exception {
+        when(inventoryRepository.findIdByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.of(100L));
+        OffsetDateTime now = OffsetDateTime.now();
+        doAnswer(inv -> {
+            Consumer<TransactionRow> action = inv.getArgument(3);
+            action.accept(transactionRow(2L, null, now));
+            action.accept(transactionRow(1L, null, now.minusSeconds(1)));
+            return null;
+        }).when(inventoryTransactionJdbcRepository).stream(eq(100L), isNull(), isNull(), any());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        inventoryService.streamTransactionHistory(10L, 1L, null, null).writeTo(out);
+
+        InventoryTransactionResponseDto[] rows = objectMapper.readValue(out.toByteArray(),
+                InventoryTransactionResponseDto[].class);
+        assertEquals(2, rows.length);
+        assertEquals(1L, rows[1].id());
+    }
+
+    @Test
+    void streamTransactionHistory_UnknownProduct_ThrowsBeforeWriting() {
+        when(inventoryRepository.findIdByOrganizationIdAndProductId(1L, 10L)).thenReturn(Optional.empty());
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> inventoryService.streamTransactionHistory(10L, 1L, null, null));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+        verifyNoInteractions(inventoryTransactionJdbcRepository);
     }
 
     @Test
@@ -193,20 +284,9 @@ class InventoryServiceTest {
         Long orgId = 1L;
         UUID uid = UUID.randomUUID();
         Long stationId = 7L;
-        // two transactions for same user/station, different inventories
-        InventoryTransaction t1 = new InventoryTransaction(); t1.setInventoryId(11L); t1.setTransactionType("SALE"); t1.setReferenceId("o1"); t1.setQuantityChange(new BigDecimal("-2")); t1.setCreatedBy(uid); t1.setBarStationId(stationId);
-        InventoryTransaction t2 = new InventoryTransaction(); t2.setInventoryId(12L); t2.setTransactionType("SALE"); t2.setReferenceId("o2"); t2.setQuantityChange(new BigDecimal("-1")); t2.setCreatedBy(uid); t2.setBarStationId(stationId);
-        when(inventoryTransactionRepository.findSaleTransactionsByOrganizationId(orgId)).thenReturn(List.of(t1, t2));
-
-        // inventories map to products with base prices
-        Inventory inv1 = new Inventory(); inv1.setId(11L); inv1.setProductId(101L);
-        Inventory inv2 = new Inventory(); inv2.setId(12L); inv2.setProductId(102L);
-        when(inventoryRepository.findById(11L)).thenReturn(Optional.of(inv1));
-        when(inventoryRepository.findById(12L)).thenReturn(Optional.of(inv2));
-        Product p1 = new Product(); p1.setId(101L); p1.setBasePrice(new BigDecimal("3.00"));
-        Product p2 = new Product(); p2.setId(102L); p2.setBasePrice(new BigDecimal("5.00"));
-        when(productRepository.findById(101L)).thenReturn(Optional.of(p1));
-        when(productRepository.findById(102L)).thenReturn(Optional.of(p2));
+        // rollups already hold the per user/station totals: 2 sales, revenue = 2*3 + 1*5
+        when(salesRollupRepository.sumByUserAndStation(orgId))
+                .thenReturn(List.of(userStationTotals(uid, stationId, 2L, new BigDecimal("11.00"))));
 
         User user = new User(); user.setId(uid); user.setName("Bob"); user.setEmail("b@c.d");
         when(userRepository.findAllById(anyList())).thenReturn(List.of(user));
@@ -217,27 +297,34 @@ class InventoryServiceTest {
         assertEquals(1, stats.size());
         UserSalesStatsResponseDto s = stats.get(0);
         assertEquals(2L, s.salesCount());
-        // revenue = 2*3 + 1*5 = 11
         assertEquals(new BigDecimal("11.00"), s.totalRevenue());
         assertEquals("Bob", s.userName());
+        assertEquals("Main", s.barStationName());
+        verifyNoInteractions(ledgerAppender, productRepository);
+    }
+
+    @Test
+    void getUserSalesStats_SortsBySalesCountDesc() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        when(salesRollupRepository.sumByUserAndStation(1L)).thenReturn(List.of(
+                userStationTotals(first, null, 1L, BigDecimal.ONE),
+                userStationTotals(second, null, 5L, BigDecimal.TEN)));
+        when(userRepository.findAllById(anyList())).thenReturn(List.of());
+        when(barStationRepository.findAllById(anyList())).thenReturn(List.of());
+
+        List<UserSalesStatsResponseDto> stats = inventoryService.getUserSalesStats(1L);
+        assertEquals(second.toString(), stats.get(0).userId());
+        assertEquals("Unknown User", stats.get(0).userName());
+        assertNull(stats.get(0).barStationId());
     }
 
     @Test
     void getStationSalesStats_ComputesCountsAndRevenue() {
         Long orgId = 1L;
         Long stationId = 7L;
-        InventoryTransaction t1 = new InventoryTransaction(); t1.setInventoryId(11L); t1.setTransactionType("SALE"); t1.setReferenceId("o1"); t1.setQuantityChange(new BigDecimal("-2")); t1.setBarStationId(stationId);
-        InventoryTransaction t2 = new InventoryTransaction(); t2.setInventoryId(12L); t2.setTransactionType("SALE"); t2.setReferenceId("o2"); t2.setQuantityChange(new BigDecimal("-1")); t2.setBarStationId(stationId);
-        when(inventoryTransactionRepository.findSaleTransactionsByOrganizationId(orgId)).thenReturn(List.of(t1, t2));
-
-        Inventory inv1 = new Inventory(); inv1.setId(11L); inv1.setProductId(101L);
-        Inventory inv2 = new Inventory(); inv2.setId(12L); inv2.setProductId(102L);
-        when(inventoryRepository.findById(11L)).thenReturn(Optional.of(inv1));
-        when(inventoryRepository.findById(12L)).thenReturn(Optional.of(inv2));
-        Product p1 = new Product(); p1.setId(101L); p1.setBasePrice(new BigDecimal("3.00"));
-        Product p2 = new Product(); p2.setId(102L); p2.setBasePrice(new BigDecimal("5.00"));
-        when(productRepository.findById(101L)).thenReturn(Optional.of(p1));
-        when(productRepository.findById(102L)).thenReturn(Optional.of(p2));
+        when(salesRollupRepository.sumByStation(orgId))
+                .thenReturn(List.of(stationTotals(stationId, 2L, new BigDecimal("11.00"))));
 
         BarStation station = new BarStation(); station.setId(stationId); station.setName("Main");
         when(barStationRepository.findAllById(anyList())).thenReturn(List.of(station));
@@ -249,4 +336,40 @@ class InventoryServiceTest {
         assertEquals(new BigDecimal("11.00"), s.totalRevenue());
         assertEquals("Main", s.barStationName());
     }
+
+    private static TransactionRow transactionRow(Long id, UUID createdBy, OffsetDateTime createdAt) {
+        return new TransactionRow(id, 100L, "SALE", new BigDecimal("-1"), BigDecimal.TEN, new BigDecimal("9"),
+                BigDecimal.ONE, BigDecimal.ONE, "ref", "n", createdBy, createdBy != null ? "Alice" : null,
+                createdBy != null ? "a@b.c" : null, createdAt);
+    }
+
+    private static SalesRollupRepository.UserStationSalesTotals userStationTotals(
+            UUID userId, Long stationId, Long salesCount, BigDecimal revenue) {
+        return new SalesRollupRepository.UserStationSalesTotals() {
+            @Override public UUID getUserId() { return userId; }
+            @Override public Long getBarStationId() { return stationId; }
+            @Override public Long getSalesCount() { return salesCount; }
+            @Override public BigDecimal getTotalRevenue() { return revenue; }
+        };
+    }
+
+    private static SalesRollupRepository.StationSalesTotals stationTotals(
+            Long stationId, Long salesCount, BigDecimal revenue) {
+        return new SalesRollupRepository.StationSalesTotals() {
+            @Override public Long getBarStationId() { return stationId; }
+            @Override public Long getSalesCount() { return salesCount; }
+            @Override public BigDecimal getTotalRevenue() { return revenue; }
+        };
+    }
+
+    private static BoardEntryDto boardEntry(Long categoryId, String categoryName, String productName) {
+        return new BoardEntryDto(categoryId, categoryName, new InventoryResponseDto(1L, 1L, 10L, productName,
+                BigDecimal.ONE, BigDecimal.TEN, null, BigDecimal.TEN, null, null, "2025-01-01T20:00:00Z"));
+    }
+
+    private static ProductReferenceDto reference(Product product) {
+        return new ProductReferenceDto(product.getId(), product.getOrganizationId(), product.getName(),
+                product.getDescription(), product.getBasePrice(), product.getMinPrice(), product.getMaxPrice(),
+                product.isActive());
+    }
 }
@@ -4,35 +4,19 @@ import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
-import org.springframework.test.context.bean.override.mockito.MockitoBean;
-import org.springframework.test.util.ReflectionTestUtils;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest
 class JwtServiceTest {
 
-    @Autowired
-    private JwtService jwtService;
-
-    @MockitoBean
-    private ClientRegistrationRepository clientRegistrationRepository;
-
     private final String testSecret = "test-secret-key-for-jwt-testing-purposes-at-least-256-bits";
 
-    @BeforeEach
-    void setUp() {
-        // Set test secret key using reflection to avoid environment variable dependency
-        ReflectionTestUtils.setField(jwtService, "secretKey", testSecret);
-    }
+    // Built here rather than from the context, so the test controls the secret
+    private final JwtService jwtService = new JwtService(testSecret);
 
     @Test
     void testGenerateToken_Success() {
@@ -192,8 +176,40 @@ class JwtServiceTest {
     }
 
     @Test
-    void testParseToken_NullToken_ThrowsException() {
+    void testParseToken_NullToken_ThrowsIllegalArgumentException() {
         // Act & Assert
-        assertThrows(Exception.class, () -> jwtService.parseToken(null));
+        assertThrows(IllegalArgumentException.class, () -> jwtService.parseToken(null));
+    }
+
+    @Test
+    void testParseToken_CachedToken_StillExpires() throws InterruptedException {
+        // Arrange: Token that expires shortly, verified once while still valid
+        String email = "test@example.com";
+        String token = Jwts.builder()
+                .subject(email)
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + 1500))
+                .signWith(SignatureAlgorithm.HS256, testSecret.getBytes(StandardCharsets.UTF_8))
+                .compact();
+        assertEquals(email, jwtService.parseToken(token).getSubject());
+
+        // Act
+        Thread.sleep(2000);
+
+        // Assert
+        assertThrows(ExpiredJwtException.class, () -> jwtService.parseToken(token));
+    }
+
+    @Test
+    void testParseToken_TokenCachedByAnotherSecret_Rejected() {
+        // Arrange
+        String token = jwtService.generateToken("test@example.com");
+        jwtService.parseToken(token);
+
+        // Act
+        JwtService rotated = new JwtService("different-secret-key-should-fail-validation-here-too");
+
+        // Assert
+        assertThrows(Exception.class, () -> rotated.parseToken(token));
     }
 }
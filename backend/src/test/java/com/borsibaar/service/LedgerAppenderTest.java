@@ -0,0 +1,195 @@
+package com.borsibaar.service;
+
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.InventoryTransaction;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.LedgerJdbcRepository;
+import com.borsibaar.repository.LedgerJdbcRepository.LedgerEntry;
+import com.borsibaar.service.LedgerAppender.Sequenced;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerAppenderTest {
+
+    private static final OffsetDateTime SOLD_AT = OffsetDateTime.parse("2025-10-17T21:00:00Z");
+
+    @Mock private InventoryTransactionRepository inventoryTransactionRepository;
+    @Mock private LedgerJdbcRepository ledgerJdbcRepository;
+
+    @TempDir private Path journalDirectory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LedgerAppender appender;
+
+    @AfterEach
+    void tearDown() {
+        if (appender != null) {
+            appender.shutdown();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void appendAll_WriteBehindOff_SavesInCallersTransaction() {
+        appender = appender(false, 16);
+        appender.start();
+        List<InventoryTransaction> transactions = List.of(sale(9L), sale(10L));
+
+        appender.appendAll(transactions);
+
+        verify(inventoryTransactionRepository).saveAll(transactions);
+        verifyNoInteractions(ledgerJdbcRepository);
+        assertFalse(Files.exists(journalDirectory.resolve("ledger.journal")));
+    }
+
+    @Test
+    void appendAll_Committed_JournaledThenWrittenInOneBatch() throws Exception {
+        appender = appender(true, 16);
+        appender.start();
+        TransactionSynchronizationManager.initSynchronization();
+
+        appender.appendAll(List.of(sale(9L), sale(10L)));
+
+        // Nothing before the commit
+        assertEquals(List.of(), Files.readAllLines(journal()));
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        List<String> lines = Files.readAllLines(journal());
+        assertEquals(2, lines.size());
+        assertEquals(1L, objectMapper.readValue(lines.get(0), Sequenced.class).sequence());
+        verify(ledgerJdbcRepository, timeout(2000)).insertAll(
+                argThat(entries -> entries.stream().map(LedgerEntry::inventoryId).toList().equals(List.of(9L, 10L))),
+                eq(2L));
+        verifyNoInteractions(inventoryTransactionRepository);
+    }
+
+    @Test
+    void appendAll_RolledBack_NeitherJournaledNorWritten() throws Exception {
+        appender = appender(true, 16);
+        appender.start();
+        TransactionSynchronizationManager.initSynchronization();
+
+        appender.appendAll(List.of(sale(9L)));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        appender.shutdown();
+        appender = null;
+
+        assertEquals(List.of(), Files.readAllLines(journal()));
+        verify(ledgerJdbcRepository, never()).insertAll(anyList(), anyLong());
+    }
+
+    @Test
+    void start_ReplaysJournalAfterCheckpointAndSkipsTornLine() throws Exception {
+        Files.write(journal(), List.of(
+                objectMapper.writeValueAsString(new Sequenced(4, entry(9L))),
+                objectMapper.writeValueAsString(new Sequenced(5, entry(10L))),
+                objectMapper.writeValueAsString(new Sequenced(6, entry(11L))),
+                "{\"sequence\":7,\"entry\":{\"inventoryId\""));
+        when(ledgerJdbcRepository.findCheckpoint()).thenReturn(4L);
+
+        appender = appender(true, 16);
+        appender.start();
+
+        verify(ledgerJdbcRepository).insertAll(
+                argThat(entries -> entries.stream().map(LedgerEntry::inventoryId).toList().equals(List.of(10L, 11L))),
+                eq(6L));
+        assertEquals(0, Files.size(journal()));
+
+        // Sequences carry on after the replayed ones
+        appender.append(sale(12L));
+        assertEquals(7L, objectMapper.readValue(Files.readAllLines(journal()).get(0), Sequenced.class).sequence());
+    }
+
+    @Test
+    void append_BufferFull_WaitsForWriterAndDrainsOnShutdown() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> written = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            List<LedgerEntry> entries = invocation.getArgument(0);
+            entries.forEach(entry -> written.add(entry.inventoryId()));
+            return null;
+        }).when(ledgerJdbcRepository).insertAll(anyList(), anyLong());
+        appender = appender(true, 2);
+        appender.start();
+
+        Thread appending = new Thread(() -> {
+            for (long inventoryId = 1; inventoryId <= 6; inventoryId++) {
+                appender.append(sale(inventoryId));
+            }
+        });
+        appending.start();
+        // Writer stuck on its first batch, buffer full, appender parked waiting for room
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((meterRegistry.get("ledger.appender.queued").gauge().value() < 2
+                || appending.getState() != Thread.State.TIMED_WAITING) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+        appending.join(5000);
+        appender.shutdown();
+        appender = null;
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), written);
+        assertTrue(meterRegistry.get("ledger.appender.backpressure").timer().count() > 0);
+        assertEquals(0.0, meterRegistry.get("ledger.appender.queued").gauge().value());
+    }
+
+    private LedgerAppender appender(boolean writeBehind, int bufferSize) {
+        return new LedgerAppender(inventoryTransactionRepository, ledgerJdbcRepository, objectMapper, meterRegistry,
+                writeBehind, journalDirectory.toString(), bufferSize, 500, Duration.ofSeconds(5));
+    }
+
+    private Path journal() {
+        return journalDirectory.resolve("ledger.journal");
+    }
+
+    private static InventoryTransaction sale(Long inventoryId) {
+        Inventory inventory = new Inventory();
+        inventory.setId(inventoryId);
+        InventoryTransaction transaction = new InventoryTransaction();
+        transaction.setInventory(inventory);
+        transaction.setTransactionType("SALE");
+        transaction.setQuantityChange(BigDecimal.ONE.negate());
+        transaction.setQuantityBefore(BigDecimal.TEN);
+        transaction.setQuantityAfter(new BigDecimal("9"));
+        transaction.setPriceBefore(new BigDecimal("3.00"));
+        transaction.setPriceAfter(new BigDecimal("3.10"));
+        transaction.setReferenceId("SALE-1");
+        transaction.setNotes("POS Sale");
+        transaction.setCreatedAt(SOLD_AT);
+        return transaction;
+    }
+
+    private static LedgerEntry entry(Long inventoryId) {
+        return new LedgerEntry(inventoryId, "SALE", BigDecimal.ONE.negate(), BigDecimal.TEN, new BigDecimal("9"),
+                new BigDecimal("3.00"), new BigDecimal("3.10"), "SALE-1", "POS Sale", null, null, SOLD_AT);
+    }
+}
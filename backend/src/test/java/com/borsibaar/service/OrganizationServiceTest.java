@@ -28,6 +28,8 @@ class OrganizationServiceTest {
     private OrganizationRepository organizationRepository;
     @Mock
     private OrganizationMapper organizationMapper;
+    @Mock
+    private PriceEngine priceEngine;
 
     @InjectMocks
     private OrganizationService organizationService;
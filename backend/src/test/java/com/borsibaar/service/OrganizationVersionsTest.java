@@ -0,0 +1,66 @@
+package com.borsibaar.service;
+
+import com.borsibaar.event.InventoryChangedEvent;
+import com.borsibaar.service.OrganizationVersions.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrganizationVersionsTest {
+
+    private final OrganizationVersions organizationVersions = new OrganizationVersions();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void onInventoryChanged_ChangesOnlyThatOrganizationsInventoryTag() {
+        String inventory = organizationVersions.etag(1L, Resource.INVENTORY);
+        String categories = organizationVersions.etag(1L, Resource.CATEGORIES);
+        String other = organizationVersions.etag(2L, Resource.INVENTORY);
+
+        organizationVersions.onInventoryChanged(new InventoryChangedEvent(1L, List.of()));
+
+        assertNotEquals(inventory, organizationVersions.etag(1L, Resource.INVENTORY));
+        assertEquals(categories, organizationVersions.etag(1L, Resource.CATEGORIES));
+        assertEquals(other, organizationVersions.etag(2L, Resource.INVENTORY));
+    }
+
+    @Test
+    void etag_SeveralResources_ChangesWhenAnyOfThemDoes() {
+        String before = organizationVersions.etag(1L, Resource.SALES, Resource.BAR_STATIONS);
+
+        organizationVersions.bumpAfterCommit(1L, Resource.BAR_STATIONS);
+
+        assertNotEquals(before, organizationVersions.etag(1L, Resource.SALES, Resource.BAR_STATIONS));
+    }
+
+    @Test
+    void bumpAfterCommit_InTransaction_WaitsForCommit() {
+        String before = organizationVersions.etag(1L, Resource.SALES);
+
+        TransactionSynchronizationManager.initSynchronization();
+        organizationVersions.bumpAfterCommit(1L, Resource.SALES);
+        assertEquals(before, organizationVersions.etag(1L, Resource.SALES));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertNotEquals(before, organizationVersions.etag(1L, Resource.SALES));
+    }
+
+    @Test
+    void etag_NewInstance_DoesNotReuseTags() throws InterruptedException {
+        String before = organizationVersions.etag(1L, Resource.INVENTORY);
+        Thread.sleep(2);
+
+        assertNotEquals(before, new OrganizationVersions().etag(1L, Resource.INVENTORY));
+    }
+}
@@ -0,0 +1,153 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.PriceCandleDto;
+import com.borsibaar.dto.PriceSeriesDto;
+import com.borsibaar.entity.PriceCandle;
+import com.borsibaar.repository.PriceCandleJdbcRepository;
+import com.borsibaar.repository.PriceCandleJdbcRepository.CandleTick;
+import com.borsibaar.repository.PriceCandleRepository;
+import com.borsibaar.service.PriceCandleService.PriceMove;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PriceCandleServiceTest {
+
+    private static final OffsetDateTime BASE = OffsetDateTime.of(2025, 11, 7, 22, 15, 0, 0, ZoneOffset.UTC);
+
+    @Mock private PriceCandleJdbcRepository priceCandleJdbcRepository;
+    @Mock private PriceCandleRepository priceCandleRepository;
+
+    @InjectMocks private PriceCandleService priceCandleService;
+
+    @Test
+    void record_SameProductTwice_OneTickInTenSecondBucket() {
+        OffsetDateTime soldAt = BASE.plusSeconds(17).plusNanos(123_000_000);
+
+        priceCandleService.record(1L, soldAt, List.of(
+                new PriceMove(10L, new BigDecimal("2.00"), new BigDecimal("2.50"), BigDecimal.ONE),
+                new PriceMove(11L, new BigDecimal("4.00"), new BigDecimal("4.50"), BigDecimal.ONE),
+                new PriceMove(10L, new BigDecimal("2.50"), new BigDecimal("3.00"), new BigDecimal("2"))));
+        priceCandleService.flush();
+
+        OffsetDateTime bucket = BASE.plusSeconds(10);
+        verify(priceCandleJdbcRepository).upsert(argThat(ticks -> Set.copyOf(ticks).equals(Set.of(
+                new CandleTick(1L, 10L, bucket, new BigDecimal("2.00"), new BigDecimal("3.00"),
+                        new BigDecimal("2.00"), new BigDecimal("3.00"), new BigDecimal("3"), soldAt, soldAt),
+                new CandleTick(1L, 11L, bucket, new BigDecimal("4.00"), new BigDecimal("4.50"),
+                        new BigDecimal("4.00"), new BigDecimal("4.50"), BigDecimal.ONE, soldAt, soldAt)))));
+    }
+
+    @Test
+    void flush_SalesCommittedOutOfOrder_MergedIntoOneTickByTime() {
+        OffsetDateTime first = BASE.plusSeconds(11);
+        OffsetDateTime second = BASE.plusSeconds(12);
+
+        priceCandleService.record(1L, second, List.of(
+                new PriceMove(10L, new BigDecimal("2.50"), new BigDecimal("3.00"), BigDecimal.ONE)));
+        priceCandleService.record(1L, first, List.of(
+                new PriceMove(10L, new BigDecimal("2.00"), new BigDecimal("2.50"), BigDecimal.ONE)));
+        priceCandleService.flush();
+        priceCandleService.flush();
+
+        verify(priceCandleJdbcRepository).upsert(List.of(new CandleTick(1L, 10L, BASE.plusSeconds(10),
+                new BigDecimal("2.00"), new BigDecimal("3.00"), new BigDecimal("2.00"), new BigDecimal("3.00"),
+                new BigDecimal("2"), first, second)));
+    }
+
+    @Test
+    void record_TransactionRolledBack_NothingWritten() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            priceCandleService.record(1L, BASE, List.of(
+                    new PriceMove(10L, new BigDecimal("2.00"), new BigDecimal("2.50"), BigDecimal.ONE)));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        priceCandleService.flush();
+
+        verifyNoInteractions(priceCandleJdbcRepository);
+    }
+
+    @Test
+    void flush_WriteFails_RetriesOnNextFlush() {
+        priceCandleService.record(1L, BASE, List.of(
+                new PriceMove(10L, new BigDecimal("2.00"), new BigDecimal("2.50"), BigDecimal.ONE)));
+        doThrow(new QueryTimeoutException("timeout")).doNothing().when(priceCandleJdbcRepository).upsert(anyList());
+
+        priceCandleService.flush();
+        priceCandleService.flush();
+        priceCandleService.flush();
+
+        verify(priceCandleJdbcRepository, times(2)).upsert(List.of(new CandleTick(1L, 10L, BASE,
+                new BigDecimal("2.00"), new BigDecimal("2.50"), new BigDecimal("2.00"), new BigDecimal("2.50"),
+                BigDecimal.ONE, BASE, BASE)));
+    }
+
+    @Test
+    void getSeries_OneMinute_MergesStoredCandlesAndKeepsRequestOrder() {
+        when(priceCandleRepository.findRange(eq(1L), eq(Set.of(10L, 11L)), any(), any())).thenReturn(List.of(
+                candle(10L, BASE.plusSeconds(10), "2.00", "2.50", "1.50", "2.50", "1"),
+                candle(10L, BASE.plusSeconds(50), "2.50", "3.50", "2.50", "3.00", "2"),
+                candle(10L, BASE.plusSeconds(60), "3.00", "3.00", "2.80", "2.80", "0")));
+
+        List<PriceSeriesDto> series = priceCandleService.getSeries(1L, List.of(11L, 10L), "1m", BASE,
+                BASE.plusMinutes(5));
+
+        assertEquals(List.of(11L, 10L), series.stream().map(PriceSeriesDto::productId).toList());
+        assertEquals(List.of(), series.get(0).candles());
+        assertEquals(List.of(
+                new PriceCandleDto(BASE, new BigDecimal("2.00"), new BigDecimal("3.50"), new BigDecimal("1.50"),
+                        new BigDecimal("3.00"), new BigDecimal("3")),
+                new PriceCandleDto(BASE.plusMinutes(1), new BigDecimal("3.00"), new BigDecimal("3.00"),
+                        new BigDecimal("2.80"), new BigDecimal("2.80"), new BigDecimal("0"))),
+                series.get(1).candles());
+    }
+
+    @Test
+    void getSeries_UnknownInterval_ThrowsBadRequest() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> priceCandleService.getSeries(1L, List.of(10L), "2m", null, null));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(priceCandleRepository);
+    }
+
+    @Test
+    void getSeries_RangeTooLong_ThrowsBadRequest() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> priceCandleService.getSeries(1L, List.of(10L), "5m", BASE.minusDays(2), BASE));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+    }
+
+    private static PriceCandle candle(Long productId, OffsetDateTime bucketStart, String open, String high,
+            String low, String close, String volume) {
+        PriceCandle candle = new PriceCandle();
+        candle.setProductId(productId);
+        candle.setBucketStart(bucketStart);
+        candle.setOpenPrice(new BigDecimal(open));
+        candle.setHighPrice(new BigDecimal(high));
+        candle.setLowPrice(new BigDecimal(low));
+        candle.setClosePrice(new BigDecimal(close));
+        candle.setVolume(new BigDecimal(volume));
+        return candle;
+    }
+}
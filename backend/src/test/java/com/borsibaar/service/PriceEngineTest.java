@@ -0,0 +1,400 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.InventoryJdbcRepository;
+import com.borsibaar.repository.InventoryJdbcRepository.InventoryChange;
+import com.borsibaar.repository.InventoryJdbcRepository.Stock;
+import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.service.OrganizationVersions.Resource;
+import com.borsibaar.service.PriceEngine.PricedLine;
+import com.borsibaar.service.PriceEngine.Sale;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PriceEngineTest {
+
+    @Mock private ProductRepository productRepository;
+    @Mock private InventoryJdbcRepository inventoryJdbcRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final OrganizationVersions organizationVersions = new OrganizationVersions();
+    // As stamped by the engine; the rows were last changed a minute earlier
+    private final OffsetDateTime now = OffsetDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    private final Supplier<OffsetDateTime> clock = () -> now;
+    private final Map<Long, Product> products = new HashMap<>();
+    private final Map<Long, Stock> stocks = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        // Stubbed per basket, like the single queries they stand for
+        lenient().when(productRepository.findAllForSale(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(products::get).filter(Objects::nonNull).toList();
+        });
+        Answer<Map<Long, Stock>> currentStocks = invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            Map<Long, Stock> found = new HashMap<>();
+            ids.stream().filter(stocks::containsKey).forEach(id -> found.put(id, stocks.get(id)));
+            return found;
+        };
+        lenient().when(inventoryJdbcRepository.findStocks(anyCollection())).thenAnswer(currentStocks);
+        lenient().when(inventoryJdbcRepository.lockStocks(anyCollection())).thenAnswer(currentStocks);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void sell_SameProductTwice_MergedIntoFirstLine() {
+        PriceEngine engine = engine(true);
+        stubProduct(5L, 9L, "10", "2.00", "3.00", true);
+        stubProduct(6L, 10L, "10", "3.00", null, false);
+
+        List<PricedLine> lines = engine.sell(1L, List.of(item(5L, "1"), item(6L, "1"), item(5L, "2")), clock).lines();
+
+        assertEquals(List.of(5L, 6L), lines.stream().map(PricedLine::productId).toList());
+        assertEquals(new BigDecimal("3"), lines.get(0).quantity());
+        assertEquals(new BigDecimal("7.0000"), lines.get(0).quantityAfter());
+        assertEquals(new BigDecimal("2.0000"), lines.get(0).priceBefore());
+        assertEquals(new BigDecimal("2.5000"), lines.get(0).priceAfter());
+        verify(productRepository).findAllForSale(List.of(5L, 6L));
+    }
+
+    @Test
+    void sell_DynamicPricing_StepsPricePerSaleUpToMax() {
+        PriceEngine engine = engine(true);
+        stubProduct(5L, 9L, "10", "2.00", "2.80", true);
+
+        assertEquals(new BigDecimal("2.5000"), engine.sell(1L, List.of(item(5L, "1")), clock).lines().get(0).priceAfter());
+        assertEquals(new BigDecimal("2.8000"), engine.sell(1L, List.of(item(5L, "1")), clock).lines().get(0).priceAfter());
+        assertEquals(new BigDecimal("2.8000"), engine.sell(1L, List.of(item(5L, "1")), clock).lines().get(0).priceAfter());
+    }
+
+    @Test
+    void sell_ColdBasket_LoadsMissingProductsTogether() {
+        PriceEngine engine = engine(true);
+        stubProduct(5L, 9L, "10", "2.00", null, false);
+        stubProduct(6L, 10L, "10", "3.00", null, false);
+        stubProduct(7L, 11L, "10", "4.00", null, false);
+        engine.sell(1L, List.of(item(6L, "1")), clock);
+
+        engine.sell(1L, List.of(item(7L, "1"), item(6L, "1"), item(5L, "1")), clock);
+
+        verify(productRepository).findAllForSale(List.of(6L));
+        verify(productRepository).findAllForSale(List.of(7L, 5L));
+        verify(inventoryJdbcRepository).findStocks(argThat(ids -> Set.copyOf(ids).equals(Set.of(11L, 9L))));
+        verifyNoMoreInteractions(productRepository);
+    }
+
+    @Test
+    void sell_LaterLineFails_NothingApplied() {
+        PriceEngine engine = engine(true);
+        stubProduct(5L, 9L, "10", "2.00", null, false);
+        stubProduct(6L, 10L, "1", "3.00", null, false);
+
+        assertThrows(ResponseStatusException.class,
+                () -> engine.sell(1L, List.of(item(5L, "2"), item(6L, "5")), clock));
+
+        PricedLine line = engine.sell(1L, List.of(item(5L, "1")), clock).lines().get(0);
+        assertEquals(new BigDecimal("10.0000"), line.quantityBefore());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_WriteBehind_BatchesBufferedSalesIntoOneChange() {
+        PriceEngine engine = engine(true);
+        stubProduct(5L, 9L, "10", "2.00", "5.00", true);
+
+        engine.sell(1L, List.of(item(5L, "1")), clock);
+        engine.sell(1L, List.of(item(5L, "2")), clock);
+        verify(inventoryJdbcRepository, never()).apply(anyList());
+
+        engine.flush();
+
+        ArgumentCaptor<List<InventoryChange>> changes = ArgumentCaptor.forClass(List.class);
+        verify(inventoryJdbcRepository).apply(changes.capture());
+        // The second sale read the same clock, so it was stamped a microsecond later
+        assertEquals(List.of(new InventoryChange(9L, new BigDecimal("-3.0000"), new BigDecimal("3.0000"),
+                now.plus(1, ChronoUnit.MICROS))), changes.getValue());
+
+        engine.flush();
+        verify(inventoryJdbcRepository).apply(anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sell_ClockReadBeforeAnEarlierAppliedSale_StampedAfterIt() {
+        PriceEngine engine = engine(true);
+        stubProduct(5L, 9L, "10", "2.00", null, true);
+
+        // The second sale read the clock first but reached the product last
+        Sale first = engine.sell(1L, List.of(item(5L, "1")), () -> now.plusSeconds(1));
+        Sale second = engine.sell(1L, List.of(item(5L, "2")), clock);
+        engine.flush();
+
+        assertEquals(now.plusSeconds(1), first.soldAt());
+        assertEquals(now.plusSeconds(1).plus(1, ChronoUnit.MICROS), second.soldAt());
+        // The row, and the newest ledger entry a repair would pick, end with the sale applied last
+        ArgumentCaptor<List<InventoryChange>> changes = ArgumentCaptor.forClass(List.class);
+        verify(inventoryJdbcRepository).apply(changes.capture());
+        assertEquals(List.of(new InventoryChange(9L, new BigDecimal("-3.0000"), new BigDecimal("3.0000"),
+                second.soldAt())), changes.getValue());
+        assertEquals(new BigDecimal("7.0000"), second.lines().get(0).quantityAfter());
+    }
+
+    @Test
+    void flush_WriteFails_RetriesOnNextFlush() {
+        PriceEngine engine = engine(true);
+        stubProduct(5L, 9L, "10", "2.00", null, false);
+        engine.sell(1L, List.of(item(5L, "1")), clock);
+
+        doThrow(new RuntimeException("db down")).doNothing().when(inventoryJdbcRepository).apply(anyList());
+        engine.flush();
+        engine.flush();
+
+        verify(inventoryJdbcRepository, times(2))
+                .apply(List.of(new InventoryChange(9L, new BigDecimal("-1.0000"), new BigDecimal("2.0000"), now)));
+    }
+
+    @Test
+    void flush_WriteBehind_BumpsInventoryVersionOnceRowsAreWritten() {
+        PriceEngine engine = engine(true);
+        stubProduct(5L, 9L, "10", "2.00", null, false);
+        engine.sell(1L, List.of(item(5L, "1")), clock);
+        // Taken by a client that loaded the list after the sale committed, before the flush
+        String servedWithOldRows = organizationVersions.etag(1L, Resource.INVENTORY);
+
+        doThrow(new RuntimeException("db down")).doNothing().when(inventoryJdbcRepository).apply(anyList());
+        engine.flush();
+        assertEquals(servedWithOldRows, organizationVersions.etag(1L, Resource.INVENTORY));
+
+        engine.flush();
+        assertNotEquals(servedWithOldRows, organizationVersions.etag(1L, Resource.INVENTORY));
+    }
+
+    @Test
+    void invalidate_WritesBufferedChangeAndReloads() {
+        PriceEngine engine = engine(true);
+        stubProduct(5L, 9L, "10", "2.00", null, false);
+        engine.sell(1L, List.of(item(5L, "1")), clock);
+
+        engine.invalidate(5L);
+
+        verify(inventoryJdbcRepository)
+                .apply(List.of(new InventoryChange(9L, new BigDecimal("-1.0000"), new BigDecimal("2.0000"), now)));
+        assertEquals(0, engine.cachedProductCount());
+
+        engine.sell(1L, List.of(item(5L, "1")), clock);
+        verify(productRepository, times(2)).findAllForSale(List.of(5L));
+    }
+
+    @Test
+    void sell_TransactionRolledBack_RestoresStockAndPrice() {
+        PriceEngine engine = engine(true);
+        stubProduct(5L, 9L, "10", "2.00", null, true);
+
+        TransactionSynchronizationManager.initSynchronization();
+        engine.sell(1L, List.of(item(5L, "3")), clock);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        PricedLine line = engine.sell(1L, List.of(item(5L, "1")), clock).lines().get(0);
+        assertEquals(new BigDecimal("10.0000"), line.quantityBefore());
+        assertEquals(new BigDecimal("2.0000"), line.priceBefore());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void invalidate_SaleStillOpen_WaitsAndWritesNothingOnceItRollsBack() throws Exception {
+        PriceEngine engine = engine(true);
+        stubProduct(5L, 9L, "10", "2.00", null, false);
+
+        TransactionSynchronizationManager.initSynchronization();
+        engine.sell(1L, List.of(item(5L, "3")), clock);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> invalidated = pool.submit(() -> engine.invalidate(5L));
+            assertThrows(TimeoutException.class, () -> invalidated.get(200, TimeUnit.MILLISECONDS));
+            verify(inventoryJdbcRepository, never()).apply(anyList());
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            TransactionSynchronizationManager.clearSynchronization();
+            invalidated.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        ArgumentCaptor<List<InventoryChange>> changes = ArgumentCaptor.forClass(List.class);
+        verify(inventoryJdbcRepository).apply(changes.capture());
+        assertEquals(0, BigDecimal.ZERO.compareTo(changes.getValue().get(0).quantityDelta()));
+        assertEquals(0, engine.cachedProductCount());
+    }
+
+    @Test
+    void sell_WriteThroughVersionConflict_DropsStateAndReloads() {
+        PriceEngine engine = engine(false);
+        stubProduct(5L, 9L, "10", "2.00", null, true);
+        InventoryChange expected = new InventoryChange(9L, new BigDecimal("-1"), new BigDecimal("2.5000"), now, 0L);
+        doThrow(new OptimisticLockingFailureException("stale")).doNothing()
+                .when(inventoryJdbcRepository).applyVersioned(List.of(expected));
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> engine.sell(1L, List.of(item(5L, "1")), clock));
+        assertEquals(0, engine.cachedProductCount());
+
+        PricedLine line = engine.sell(1L, List.of(item(5L, "1")), clock).lines().get(0);
+        assertEquals(new BigDecimal("10.0000"), line.quantityBefore());
+        assertEquals(new BigDecimal("2.0000"), line.priceBefore());
+        verify(productRepository, times(2)).findAllForSale(List.of(5L));
+        verify(inventoryJdbcRepository, times(2)).applyVersioned(List.of(expected));
+    }
+
+    @Test
+    void sell_WriteThroughRowChangedSinceLoad_CatchesUpUnderTheLock() {
+        PriceEngine engine = engine(false);
+        stubProduct(5L, 9L, "10", "2.00", null, true);
+        engine.sell(1L, List.of(item(5L, "1")), clock);
+
+        // Restocked and decayed in between, behind the cached state's back
+        stocks.put(9L, new Stock(new BigDecimal("30"), new BigDecimal("2.00"), now, 7L));
+        PricedLine line = engine.sell(1L, List.of(item(5L, "1")), clock).lines().get(0);
+
+        assertEquals(new BigDecimal("30.0000"), line.quantityBefore());
+        assertEquals(new BigDecimal("2.0000"), line.priceBefore());
+        verify(inventoryJdbcRepository).applyVersioned(List.of(
+                new InventoryChange(9L, new BigDecimal("-1"), new BigDecimal("2.5000"), now.plus(1, ChronoUnit.MICROS),
+                        7L)));
+        verify(productRepository).findAllForSale(List.of(5L));
+    }
+
+    @Test
+    void sell_ProductNotFound_NotCached() {
+        PriceEngine engine = engine(true);
+
+        assertThrows(ResponseStatusException.class, () -> engine.sell(1L, List.of(item(5L, "1")), clock));
+        assertEquals(0, engine.cachedProductCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sell_ConcurrentSales_NoLostUpdates() throws Exception {
+        PriceEngine engine = engine(true);
+        stubProduct(5L, 9L, "1000", "2.00", null, false);
+        stubProduct(6L, 10L, "1000", "3.00", null, false);
+
+        int threads = 8;
+        int salesPerThread = 100;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                // Opposite line order on alternate threads would deadlock without ordered stripes
+                List<SaleItemRequestDto> items = t % 2 == 0
+                        ? List.of(item(5L, "1"), item(6L, "1"))
+                        : List.of(item(6L, "1"), item(5L, "1"));
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < salesPerThread; i++) {
+                        engine.sell(1L, items, clock);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        engine.flush();
+        ArgumentCaptor<List<InventoryChange>> changes = ArgumentCaptor.forClass(List.class);
+        verify(inventoryJdbcRepository).apply(changes.capture());
+        assertEquals(2, changes.getValue().size());
+        changes.getValue().forEach(change -> assertEquals(new BigDecimal("-800.0000"), change.quantityDelta()));
+    }
+
+    private PriceEngine engine(boolean writeBehind) {
+        return new PriceEngine(productRepository, inventoryJdbcRepository, organizationVersions, transactionManager,
+                writeBehind);
+    }
+
+    private void stubProduct(Long productId, Long inventoryId, String quantity, String price, String maxPrice,
+            boolean dynamicPricing) {
+        Organization organization = new Organization();
+        organization.setPriceIncreaseStep(new BigDecimal("0.50"));
+        Category category = new Category();
+        category.setDynamicPricing(dynamicPricing);
+
+        Product product = new Product();
+        product.setId(productId);
+        product.setOrganizationId(1L);
+        product.setName("Product " + productId);
+        product.setActive(true);
+        product.setBasePrice(new BigDecimal(price));
+        product.setMaxPrice(maxPrice != null ? new BigDecimal(maxPrice) : null);
+        product.setCategory(category);
+        product.setOrganization(organization);
+
+        Inventory inventory = new Inventory();
+        inventory.setId(inventoryId);
+        inventory.setProductId(productId);
+        inventory.setOrganizationId(1L);
+        inventory.setQuantity(new BigDecimal(quantity));
+        inventory.setAdjustedPrice(new BigDecimal(price));
+        inventory.setUpdatedAt(now.minusMinutes(1));
+        product.setInventory(inventory);
+
+        products.put(productId, product);
+        stocks.put(inventoryId, new Stock(new BigDecimal(quantity), new BigDecimal(price), now.minusMinutes(1), 0L));
+    }
+
+    private static SaleItemRequestDto item(Long productId, String quantity) {
+        return new SaleItemRequestDto(productId, new BigDecimal(quantity));
+    }
+}
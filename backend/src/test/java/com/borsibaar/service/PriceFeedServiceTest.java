@@ -0,0 +1,100 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.InventoryUpdateDto;
+import com.borsibaar.event.InventoryChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceFeedServiceTest {
+
+    private final PriceFeedService priceFeedService = new PriceFeedService();
+
+    @AfterEach
+    void tearDown() {
+        priceFeedService.shutdown();
+    }
+
+    @Test
+    void subscribe_TracksSubscribersPerOrganization() {
+        priceFeedService.subscribe(1L);
+        priceFeedService.subscribe(1L);
+        priceFeedService.subscribe(2L);
+
+        assertEquals(2, priceFeedService.subscriberCount(1L));
+        assertEquals(1, priceFeedService.subscriberCount(2L));
+        assertEquals(0, priceFeedService.subscriberCount(3L));
+    }
+
+    @Test
+    void onInventoryChanged_NoSubscribers_DoesNothing() {
+        InventoryUpdateDto update = new InventoryUpdateDto(9L, 5L, BigDecimal.TEN, BigDecimal.ONE, OffsetDateTime.now());
+        assertDoesNotThrow(() -> priceFeedService.onInventoryChanged(new InventoryChangedEvent(1L, List.of(update))));
+        assertEquals(0, priceFeedService.subscriberCount(1L));
+    }
+
+    @Test
+    void completedEmitter_IsDroppedOnNextSend() throws Exception {
+        SseEmitter emitter = priceFeedService.subscribe(1L);
+        emitter.complete();
+
+        InventoryUpdateDto update = new InventoryUpdateDto(9L, 5L, BigDecimal.TEN, BigDecimal.ONE, OffsetDateTime.now());
+        priceFeedService.onInventoryChanged(new InventoryChangedEvent(1L, List.of(update)));
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (priceFeedService.subscriberCount(1L) > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, priceFeedService.subscriberCount(1L));
+    }
+
+    @Test
+    void stalledSubscriber_DoesNotHoldUpOthersAndIsDroppedOnceBehind() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        SseEmitter stalled = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        AtomicInteger received = new AtomicInteger();
+        SseEmitter healthy = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                received.incrementAndGet();
+            }
+        };
+        priceFeedService.subscribe(1L, stalled);
+        priceFeedService.subscribe(1L, healthy);
+
+        InventoryUpdateDto update = new InventoryUpdateDto(9L, 5L, BigDecimal.TEN, BigDecimal.ONE, OffsetDateTime.now());
+        int events = PriceFeedService.SUBSCRIBER_QUEUE_SIZE + 10;
+        long deadline = System.currentTimeMillis() + 5000;
+        for (int i = 1; i <= events; i++) {
+            priceFeedService.onInventoryChanged(new InventoryChangedEvent(1L, List.of(update)));
+            // Paced by the healthy client, which could otherwise fall behind on a single core
+            while (received.get() < i && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+        try {
+            assertEquals(events, received.get());
+            assertEquals(1, priceFeedService.subscriberCount(1L));
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -9,9 +9,9 @@ import com.borsibaar.entity.Product;
 import com.borsibaar.mapper.ProductMapper;
 import com.borsibaar.repository.CategoryRepository;
 import com.borsibaar.repository.InventoryRepository;
-import com.borsibaar.repository.InventoryTransactionRepository;
 import com.borsibaar.repository.ProductRepository;
 import com.borsibaar.repository.UserRepository;
+import com.borsibaar.service.OrganizationVersions.Resource;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -35,7 +35,9 @@ class ProductServiceTest {
     @Mock private ProductMapper productMapper;
     @Mock private UserRepository userRepository;
     @Mock private InventoryRepository inventoryRepository;
-    @Mock private InventoryTransactionRepository inventoryTransactionRepository;
+    @Mock private LedgerAppender ledgerAppender;
+    @Mock private PriceEngine priceEngine;
+    @Mock private OrganizationVersions organizationVersions;
 
     @InjectMocks private ProductService productService;
 
@@ -52,12 +54,12 @@ class ProductServiceTest {
         when(productMapper.toResponse(saved)).thenReturn(new ProductResponseDto(11L, "Beer", "Desc", BigDecimal.valueOf(5), BigDecimal.valueOf(3), BigDecimal.valueOf(10), 7L, "Cat"));
         when(inventoryRepository.save(any(Inventory.class))).thenAnswer(inv -> {
             Inventory i = inv.getArgument(0); i.setId(100L); return i; });
-        when(inventoryTransactionRepository.save(any(InventoryTransaction.class))).thenAnswer(inv -> inv.getArgument(0));
 
         ProductResponseDto dto = productService.create(request, 1L);
         assertEquals("Beer", dto.name());
         verify(inventoryRepository).save(any(Inventory.class));
-        verify(inventoryTransactionRepository).save(any(InventoryTransaction.class));
+        verify(ledgerAppender).append(any(InventoryTransaction.class));
+        verify(organizationVersions).bumpAfterCommit(1L, Resource.INVENTORY);
     }
 
     @Test
@@ -104,11 +106,13 @@ class ProductServiceTest {
 
     @Test
     void delete_MarksInactive() {
-        Product product = new Product(); product.setId(44L); product.setActive(true);
+        Product product = new Product(); product.setId(44L); product.setOrganizationId(1L); product.setActive(true);
         when(productRepository.findById(44L)).thenReturn(Optional.of(product));
         productService.delete(44L);
         assertFalse(product.isActive());
         verify(productRepository).save(product);
+        verify(priceEngine).invalidate(product.getId());
+        verify(organizationVersions).bumpAfterCommit(1L, Resource.INVENTORY);
     }
 
     @Test
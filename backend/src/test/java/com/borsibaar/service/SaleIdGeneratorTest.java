@@ -0,0 +1,53 @@
+package com.borsibaar.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SaleIdGeneratorTest {
+
+    private final SaleIdGenerator generator = new SaleIdGenerator();
+
+    @Test
+    void next_SameMillisecond_StaysOrdered() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(generator.next());
+        }
+
+        assertEquals(ids.stream().sorted().toList(), ids);
+        assertEquals(ids.size(), Set.copyOf(ids).size());
+        assertTrue(ids.get(0).matches("SALE-\\d{19}-[0-9a-f]{4}"), ids.get(0));
+    }
+
+    @Test
+    void next_ConcurrentCallers_NeverCollide() throws Exception {
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        ids.add(generator.next());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(40_000, ids.size());
+    }
+}
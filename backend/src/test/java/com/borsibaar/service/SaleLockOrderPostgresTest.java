@@ -0,0 +1,148 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.dto.SaleRequestDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Terminals selling the same two products in opposite line order on PostgreSQL,
+ * with the Liquibase schema and write-behind on as in production. With the
+ * inventory rows and candles written after commit, the rollup upsert is the
+ * row lock a sale holds; taken in basket order, PostgreSQL would abort one of
+ * two crossing sales as a deadlock, which is not retried.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(properties = {
+        "spring.datasource.driverClassName=org.postgresql.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.PostgreSQLDialect",
+        "spring.liquibase.enabled=true",
+        "app.price-engine.write-behind=true"
+})
+class SaleLockOrderPostgresTest {
+
+    private static final int THREADS = 8;
+    private static final int SALES_PER_THREAD = 100;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:17");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Autowired private SalesService salesService;
+    @Autowired private PriceEngine priceEngine;
+    @Autowired private PriceCandleService priceCandleService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean private ClientRegistrationRepository clientRegistrationRepository;
+
+    private Long organizationId;
+    private Long firstProductId;
+    private Long secondProductId;
+
+    @BeforeEach
+    void seed() {
+        // The changelog's seed rows carry explicit ids; move the sequences past them
+        for (String table : List.of("organizations", "categories", "products", "inventory")) {
+            jdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence(?, 'id'), "
+                    + "(SELECT COALESCE(MAX(id), 0) + 1 FROM " + table + "), false)", Long.class, table);
+        }
+        organizationId = jdbcTemplate.queryForObject(
+                "INSERT INTO organizations (name, price_increase_step, price_decrease_step) "
+                        + "VALUES (?, 0.10, 0.10) RETURNING id",
+                Long.class, "Lock order bar " + UUID.randomUUID());
+        Long categoryId = jdbcTemplate.queryForObject(
+                "INSERT INTO categories (organization_id, name, dynamic_pricing) VALUES (?, 'Cider', TRUE) "
+                        + "RETURNING id",
+                Long.class, organizationId);
+        firstProductId = stockedProduct(categoryId, "Cider A");
+        secondProductId = stockedProduct(categoryId, "Cider B");
+    }
+
+    @Test
+    void parallelSalesInOppositeOrder_SameBuckets_NoDeadlock() throws Exception {
+        SaleRequestDto forward = new SaleRequestDto(List.of(
+                new SaleItemRequestDto(firstProductId, BigDecimal.ONE),
+                new SaleItemRequestDto(secondProductId, BigDecimal.ONE)), null, null);
+        SaleRequestDto backward = new SaleRequestDto(List.of(
+                new SaleItemRequestDto(secondProductId, BigDecimal.ONE),
+                new SaleItemRequestDto(firstProductId, BigDecimal.ONE)), null, null);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                SaleRequestDto sale = t % 2 == 0 ? forward : backward;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < SALES_PER_THREAD; i++) {
+                        // No user or station, so every sale shares the rollup rows too
+                        salesService.processSale(sale, null, organizationId);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(120, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        priceEngine.flush();
+        priceCandleService.flush();
+
+        BigDecimal sold = BigDecimal.valueOf((long) THREADS * SALES_PER_THREAD);
+        for (Long productId : List.of(firstProductId, secondProductId)) {
+            assertEquals(0, sold.compareTo(jdbcTemplate.queryForObject(
+                    "SELECT SUM(volume) FROM price_candles WHERE product_id = ?", BigDecimal.class, productId)),
+                    "candle volume of " + productId);
+            assertEquals(0, sold.compareTo(jdbcTemplate.queryForObject(
+                    "SELECT SUM(quantity_sold) FROM sales_rollups WHERE product_id = ?", BigDecimal.class,
+                    productId)), "rollup quantity of " + productId);
+            assertEquals(0, new BigDecimal("100000").subtract(sold).compareTo(jdbcTemplate.queryForObject(
+                    "SELECT i.quantity FROM inventory i WHERE i.product_id = ?", BigDecimal.class, productId)),
+                    "stock of " + productId);
+        }
+    }
+
+    private Long stockedProduct(Long categoryId, String name) {
+        Long productId = jdbcTemplate.queryForObject("""
+                INSERT INTO products (organization_id, category_id, name, base_price, max_price, is_active)
+                VALUES (?, ?, ?, 3.00, 1000.00, TRUE) RETURNING id
+                """, Long.class, organizationId, categoryId, name);
+        jdbcTemplate.update("""
+                INSERT INTO inventory (organization_id, product_id, quantity, adjusted_price)
+                VALUES (?, ?, 100000, 3.00)
+                """, organizationId, productId);
+        return productId;
+    }
+}
@@ -0,0 +1,193 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.SaleItemRequestDto;
+import com.borsibaar.dto.SaleRequestDto;
+import com.borsibaar.entity.Category;
+import com.borsibaar.entity.Inventory;
+import com.borsibaar.entity.Organization;
+import com.borsibaar.entity.Product;
+import com.borsibaar.repository.CategoryRepository;
+import com.borsibaar.repository.InventoryRepository;
+import com.borsibaar.repository.InventoryTransactionRepository;
+import com.borsibaar.repository.OrganizationRepository;
+import com.borsibaar.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts JDBC round trips (statement executions, a batch counting once) for a
+ * 10-item sale, with ledger batching on and off.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:roundtrips;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class SaleRoundTripsTest {
+
+    private static final int ITEMS = 10;
+    private static final AtomicInteger ROUND_TRIPS = new AtomicInteger();
+
+    @Autowired private SalesService salesService;
+    @Autowired private PriceEngine priceEngine;
+    @Autowired private OrganizationRepository organizationRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private ProductRepository productRepository;
+    @Autowired private InventoryRepository inventoryRepository;
+    @Autowired private InventoryTransactionRepository inventoryTransactionRepository;
+    @Autowired private EntityManager entityManager;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    // Rollup and candle upserts use PostgreSQL-only SQL
+    @MockitoBean private SalesRollupService salesRollupService;
+    @MockitoBean private PriceCandleService priceCandleService;
+
+    @MockitoBean private ClientRegistrationRepository clientRegistrationRepository;
+
+    private Long organizationId;
+    private List<SaleItemRequestDto> items;
+
+    @BeforeEach
+    void setUp() {
+        inventoryTransactionRepository.deleteAllInBatch();
+        inventoryRepository.deleteAllInBatch();
+        productRepository.deleteAllInBatch();
+        categoryRepository.deleteAllInBatch();
+        organizationRepository.deleteAllInBatch();
+
+        Organization organization = new Organization();
+        organization.setName("Bar");
+        organization.setPriceIncreaseStep(new BigDecimal("0.10"));
+        organization.setPriceDecreaseStep(new BigDecimal("0.10"));
+        organizationId = organizationRepository.save(organization).getId();
+
+        Category category = new Category();
+        category.setOrganizationId(organizationId);
+        category.setName("Beer");
+        category.setDynamicPricing(true);
+        Long categoryId = categoryRepository.save(category).getId();
+
+        items = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            Product product = new Product();
+            product.setOrganizationId(organizationId);
+            product.setCategoryId(categoryId);
+            product.setName("Beer " + i + " " + UUID.randomUUID());
+            product.setBasePrice(new BigDecimal("3.00"));
+            product.setActive(true);
+            product = productRepository.save(product);
+            inventoryRepository.save(new Inventory(organizationId, product, new BigDecimal("1000"),
+                    new BigDecimal("3.00")));
+            items.add(new SaleItemRequestDto(product.getId(), BigDecimal.ONE));
+        }
+
+        // First sale loads the products into the price engine
+        salesService.processSale(new SaleRequestDto(items, null, null), UUID.randomUUID(), organizationId);
+    }
+
+    @Test
+    void tenItemSale_Batched_TakesAFewRoundTrips() {
+        int batched = roundTripsOfSale(null);
+        int unbatched = roundTripsOfSale(1);
+        System.out.printf("Round trips per %d-item sale: %d batched, %d unbatched%n", ITEMS, batched, unbatched);
+
+        // Inventory write, sequence fetch (at most one per 50 rows) and one ledger batch
+        assertTrue(batched <= 3, "batched sale took " + batched + " round trips");
+        assertTrue(unbatched >= ITEMS, "unbatched sale took " + unbatched + " round trips");
+        assertEquals(3L * ITEMS, inventoryTransactionRepository.count());
+    }
+
+    @Test
+    void tenItemSale_ColdEngine_LoadsBasketInTwoQueries() {
+        priceEngine.invalidateOrganization(organizationId);
+
+        int cold = roundTripsOfSale(null);
+
+        // Products with inventory, category and organization, then their stock, then the sale itself
+        assertTrue(cold <= 5, "cold sale took " + cold + " round trips");
+    }
+
+    private int roundTripsOfSale(Integer jdbcBatchSize) {
+        return transactionTemplate.execute(status -> {
+            if (jdbcBatchSize != null) {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+            }
+            int before = ROUND_TRIPS.get();
+            salesService.processSale(new SaleRequestDto(items, null, null), UUID.randomUUID(), organizationId);
+            entityManager.flush();
+            return ROUND_TRIPS.get() - before;
+        });
+    }
+
+    @TestConfiguration
+    static class CountingDataSourceConfig {
+
+        private static final Set<String> EXECUTE_METHODS = Set.of(
+                "execute", "executeQuery", "executeUpdate", "executeLargeUpdate",
+                "executeBatch", "executeLargeBatch");
+
+        @Bean
+        static BeanPostProcessor countingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource && !(bean instanceof DelegatingDataSource)) {
+                        return new DelegatingDataSource(dataSource) {
+                            @Override
+                            public Connection getConnection() throws SQLException {
+                                return countingProxy(super.getConnection(), Connection.class);
+                            }
+                        };
+                    }
+                    return bean;
+                }
+            };
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T countingProxy(T target, Class<T> type) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+                if (result instanceof Statement statement && !(result instanceof Proxy)) {
+                    Class<? extends Statement> statementType = (Class<? extends Statement>) method.getReturnType();
+                    return countingProxy(statement, (Class<Statement>) statementType);
+                }
+                if (target instanceof Statement && EXECUTE_METHODS.contains(method.getName())) {
+                    ROUND_TRIPS.incrementAndGet();
+                }
+                return result;
+            });
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.borsibaar.service;
+
+import com.borsibaar.dto.SaleItemResponseDto;
+import com.borsibaar.repository.SalesRollupJdbcRepository;
+import com.borsibaar.repository.SalesRollupJdbcRepository.RollupDelta;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SalesRollupServiceTest {
+
+    @Mock private SalesRollupJdbcRepository salesRollupJdbcRepository;
+
+    @InjectMocks private SalesRollupService salesRollupService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordSale_BucketsByMinute_CountsSaleOnce() {
+        UUID userId = UUID.randomUUID();
+        OffsetDateTime soldAt = OffsetDateTime.of(2025, 11, 7, 22, 15, 42, 123_000_000, ZoneOffset.UTC);
+        List<SaleItemResponseDto> items = List.of(
+                new SaleItemResponseDto(10L, "Beer", new BigDecimal("2"), new BigDecimal("3.00"), new BigDecimal("6.00")),
+                new SaleItemResponseDto(11L, "Cider", BigDecimal.ONE, new BigDecimal("4.00"), new BigDecimal("4.00")));
+
+        salesRollupService.recordSale(1L, userId, 7L, soldAt, items);
+
+        ArgumentCaptor<List<RollupDelta>> captor = ArgumentCaptor.forClass(List.class);
+        verify(salesRollupJdbcRepository).upsert(captor.capture());
+        List<RollupDelta> deltas = captor.getValue();
+        assertEquals(2, deltas.size());
+
+        OffsetDateTime bucket = OffsetDateTime.of(2025, 11, 7, 22, 15, 0, 0, ZoneOffset.UTC);
+        assertEquals(new RollupDelta(1L, userId, 7L, 10L, bucket, 1, new BigDecimal("2")), deltas.get(0));
+        assertEquals(new RollupDelta(1L, userId, 7L, 11L, bucket, 0, BigDecimal.ONE), deltas.get(1));
+        assertEquals(1, deltas.stream().mapToLong(RollupDelta::saleCount).sum());
+    }
+}
@@ -6,20 +6,37 @@ import com.borsibaar.dto.SaleResponseDto;
 import com.borsibaar.entity.Inventory;
 import com.borsibaar.entity.InventoryTransaction;
 import com.borsibaar.entity.Product;
+import com.borsibaar.entity.SaleRequest;
+import com.borsibaar.event.InventoryChangedEvent;
+import com.borsibaar.event.ProductsSoldEvent;
+import com.borsibaar.repository.InventoryJdbcRepository;
+import com.borsibaar.repository.InventoryJdbcRepository.InventoryChange;
+import com.borsibaar.repository.InventoryJdbcRepository.Stock;
 import com.borsibaar.repository.InventoryRepository;
-import com.borsibaar.repository.InventoryTransactionRepository;
 import com.borsibaar.repository.ProductRepository;
+import com.borsibaar.repository.SaleRequestRepository;
+import com.borsibaar.service.OrganizationVersions.Resource;
+import com.borsibaar.service.PriceCandleService.PriceMove;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -30,30 +47,96 @@ import static org.mockito.Mockito.*;
 class SalesServiceTest {
 
     @Mock private InventoryRepository inventoryRepository;
-    @Mock private InventoryTransactionRepository inventoryTransactionRepository;
+    @Mock private LedgerAppender ledgerAppender;
     @Mock private ProductRepository productRepository;
+    @Mock private SalesRollupService salesRollupService;
+    @Mock private PriceCandleService priceCandleService;
+    @Mock private OrganizationVersions organizationVersions;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private InventoryJdbcRepository inventoryJdbcRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private SaleRequestRepository saleRequestRepository;
 
-    @InjectMocks private SalesService salesService;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SalesService salesService;
+
+    @BeforeEach
+    void setUp() {
+        // Real engine in write-through mode, so pricing and validation run as in production
+        PriceEngine priceEngine = new PriceEngine(productRepository, inventoryJdbcRepository,
+                organizationVersions, transactionManager, false);
+        salesService = new SalesService(inventoryRepository, ledgerAppender, priceEngine,
+                salesRollupService, priceCandleService, organizationVersions, eventPublisher, saleRequestRepository, new SaleIdGenerator(),
+                new ObjectMapper().findAndRegisterModules(), meterRegistry);
+    }
 
     private final UUID userId = UUID.randomUUID();
 
     @Test
+    @SuppressWarnings("unchecked")
     void processSale_SingleItem_SuccessPriceIncreaseCapped() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.valueOf(10)); product.setMaxPrice(BigDecimal.valueOf(10)); product.setName("Beer");
         Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(1L); inventory.setQuantity(BigDecimal.valueOf(20)); inventory.setAdjustedPrice(BigDecimal.valueOf(10)); inventory.setUpdatedAt(OffsetDateTime.now());
         product.setInventory(inventory);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
-        when(inventoryRepository.save(inventory)).thenReturn(inventory);
-        when(inventoryTransactionRepository.save(any(InventoryTransaction.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(productRepository.findAllForSale(List.of(5L))).thenReturn(List.of(product));
+        when(inventoryJdbcRepository.findStocks(List.of(9L))).thenReturn(Map.of(9L,
+                new Stock(BigDecimal.valueOf(20), BigDecimal.valueOf(10), inventory.getUpdatedAt(), 0L)));
+        when(inventoryRepository.getReferenceById(9L)).thenReturn(inventory);
 
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.valueOf(2));
         SaleRequestDto request = new SaleRequestDto(List.of(item), "note", 1L);
         SaleResponseDto response = salesService.processSale(request, userId, 1L);
         assertEquals(1, response.items().size());
-        assertEquals(BigDecimal.valueOf(20), response.totalAmount());
-        // Price capped at max (10)
-        assertEquals(BigDecimal.valueOf(10), inventory.getAdjustedPrice());
-        verify(inventoryTransactionRepository).save(any(InventoryTransaction.class));
+        assertEquals(new BigDecimal("20.0000"), response.totalAmount());
+        // Price capped at max (10), stock written as a delta against the loaded version
+        ArgumentCaptor<List<InventoryChange>> changes = ArgumentCaptor.forClass(List.class);
+        verify(inventoryJdbcRepository).applyVersioned(changes.capture());
+        assertEquals(new InventoryChange(9L, BigDecimal.valueOf(-2), new BigDecimal("10.0000"), response.timestamp(), 0L),
+                changes.getValue().get(0));
+        ArgumentCaptor<List<InventoryTransaction>> transactions = ArgumentCaptor.forClass(List.class);
+        verify(ledgerAppender).appendAll(transactions.capture());
+        assertEquals(1, transactions.getValue().size());
+        assertEquals(BigDecimal.valueOf(-2), transactions.getValue().get(0).getQuantityChange());
+        verify(salesRollupService).recordSale(eq(1L), eq(userId), eq(1L), eq(response.timestamp()), eq(response.items()));
+        verify(priceCandleService).record(1L, response.timestamp(),
+                List.of(new PriceMove(5L, new BigDecimal("10.0000"), new BigDecimal("10.0000"), BigDecimal.valueOf(2))));
+        verify(organizationVersions).bumpAfterCommit(1L, Resource.SALES);
+
+        ArgumentCaptor<InventoryChangedEvent> event = ArgumentCaptor.forClass(InventoryChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(1L, event.getValue().organizationId());
+        assertEquals(1, event.getValue().updates().size());
+        assertEquals(5L, event.getValue().updates().get(0).productId());
+        assertEquals(new BigDecimal("18.0000"), event.getValue().updates().get(0).quantity());
+        assertEquals(new BigDecimal("10.0000"), event.getValue().updates().get(0).unitPrice());
+        // No category, so no dynamic pricing and no decay timer to arm
+        verify(eventPublisher).publishEvent(new ProductsSoldEvent(1L, response.timestamp(), List.of()));
+    }
+
+    @Test
+    void processSale_Failure_DoesNotRecordRollup() {
+        when(productRepository.findAllForSale(List.of(5L))).thenReturn(List.of());
+        SaleRequestDto request = new SaleRequestDto(List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), null, null);
+        assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
+        verifyNoInteractions(salesRollupService, priceCandleService, eventPublisher, inventoryJdbcRepository);
+    }
+
+    @Test
+    void processSale_InTransaction_TimedUntilCompletion() {
+        when(productRepository.findAllForSale(List.of(5L))).thenReturn(List.of());
+        SaleRequestDto request = new SaleRequestDto(List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), null, null);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
+            assertNull(meterRegistry.find("sales.process").timer());
+
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(1, meterRegistry.get("sales.process").tags("items", "1", "outcome", "rolled_back").timer().count());
     }
 
     @Test
@@ -61,7 +144,9 @@ class SalesServiceTest {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.ONE); product.setName("Beer");
         Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(1L); inventory.setQuantity(BigDecimal.ONE); inventory.setAdjustedPrice(BigDecimal.ONE);
         product.setInventory(inventory);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productRepository.findAllForSale(List.of(5L))).thenReturn(List.of(product));
+        when(inventoryJdbcRepository.findStocks(List.of(9L))).thenReturn(Map.of(9L,
+                new Stock(BigDecimal.ONE, BigDecimal.ONE, inventory.getUpdatedAt(), 0L)));
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.valueOf(5));
         SaleRequestDto request = new SaleRequestDto(List.of(item), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
@@ -73,7 +158,7 @@ class SalesServiceTest {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(false); product.setBasePrice(BigDecimal.ONE); product.setName("Beer");
         Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(1L); inventory.setQuantity(BigDecimal.ONE); inventory.setAdjustedPrice(BigDecimal.ONE);
         product.setInventory(inventory);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productRepository.findAllForSale(List.of(5L))).thenReturn(List.of(product));
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.ONE);
         SaleRequestDto request = new SaleRequestDto(List.of(item), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
@@ -85,7 +170,7 @@ class SalesServiceTest {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(2L); product.setActive(true); product.setBasePrice(BigDecimal.ONE); product.setName("Beer");
         Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(2L); inventory.setQuantity(BigDecimal.ONE); inventory.setAdjustedPrice(BigDecimal.ONE);
         product.setInventory(inventory);
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productRepository.findAllForSale(List.of(5L))).thenReturn(List.of(product));
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.ONE);
         SaleRequestDto request = new SaleRequestDto(List.of(item), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
@@ -95,10 +180,81 @@ class SalesServiceTest {
     @Test
     void processSale_ProductInventoryMissing_Throws() {
         Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.ONE); product.setName("Beer");
-        when(productRepository.findById(5L)).thenReturn(Optional.of(product));
+        when(productRepository.findAllForSale(List.of(5L))).thenReturn(List.of(product));
         SaleItemRequestDto item = new SaleItemRequestDto(5L, BigDecimal.ONE);
         SaleRequestDto request = new SaleRequestDto(List.of(item), null, null);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> salesService.processSale(request, userId, 1L));
         assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
     }
+
+    @Test
+    void processSale_RetriedWithSameKey_ReturnsOriginalWithoutSellingAgain() {
+        Product product = new Product(); product.setId(5L); product.setOrganizationId(1L); product.setActive(true); product.setBasePrice(BigDecimal.valueOf(3)); product.setName("Beer");
+        Inventory inventory = new Inventory(); inventory.setId(9L); inventory.setProduct(product); inventory.setProductId(5L); inventory.setOrganizationId(1L); inventory.setQuantity(BigDecimal.valueOf(20)); inventory.setAdjustedPrice(BigDecimal.valueOf(3)); inventory.setUpdatedAt(OffsetDateTime.now());
+        product.setInventory(inventory);
+        when(productRepository.findAllForSale(List.of(5L))).thenReturn(List.of(product));
+        when(inventoryJdbcRepository.findStocks(List.of(9L))).thenReturn(Map.of(9L,
+                new Stock(BigDecimal.valueOf(20), BigDecimal.valueOf(3), inventory.getUpdatedAt(), 0L)));
+        when(inventoryRepository.getReferenceById(9L)).thenReturn(inventory);
+        when(saleRequestRepository.findByOrganizationIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.empty());
+        when(saleRequestRepository.saveAndFlush(any(SaleRequest.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        SaleRequestDto request = new SaleRequestDto(List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), null, 1L);
+        SaleResponseDto first = salesService.processSale(request, userId, 1L, "key-1");
+        SaleResponseDto retry = salesService.processSale(request, userId, 1L, "key-1");
+
+        assertSame(first, retry);
+        assertTrue(first.saleId().startsWith("SALE-"));
+        ArgumentCaptor<SaleRequest> claim = ArgumentCaptor.forClass(SaleRequest.class);
+        verify(saleRequestRepository).saveAndFlush(claim.capture());
+        assertEquals(first.saleId(), claim.getValue().getSaleId());
+        assertNotNull(claim.getValue().getResponse());
+        assertEquals(64, claim.getValue().getRequestHash().length());
+        verify(inventoryJdbcRepository, times(1)).applyVersioned(any());
+        verify(ledgerAppender, times(1)).appendAll(any());
+
+        // Same basket with the quantity written differently is the same sale
+        SaleRequestDto sameBasket = new SaleRequestDto(List.of(new SaleItemRequestDto(5L, new BigDecimal("1.00"))),
+                null, 1L);
+        assertSame(first, salesService.processSale(sameBasket, userId, 1L, "key-1"));
+
+        // Another basket under the same key is refused
+        SaleRequestDto otherBasket = new SaleRequestDto(List.of(new SaleItemRequestDto(5L, BigDecimal.TWO)), null, 1L);
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> salesService.processSale(otherBasket, userId, 1L, "key-1"));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ex.getStatusCode());
+        verify(inventoryJdbcRepository, times(1)).applyVersioned(any());
+    }
+
+    @Test
+    void findPreviousSale_StoredResponse_IsReadBack() {
+        SaleRequest stored = new SaleRequest();
+        stored.setResponse("""
+                {"saleId":"SALE-1","items":[],"totalAmount":6.00,"notes":null,"timestamp":"2025-01-01T12:00:00Z"}
+                """);
+        when(saleRequestRepository.findByOrganizationIdAndIdempotencyKey(1L, "key-2")).thenReturn(Optional.of(stored));
+
+        SaleRequestDto request = new SaleRequestDto(List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), null, 1L);
+        SaleResponseDto previous = salesService.findPreviousSale(1L, "key-2", request).orElseThrow();
+
+        assertEquals("SALE-1", previous.saleId());
+        assertEquals(new BigDecimal("6.00"), previous.totalAmount());
+        verifyNoInteractions(productRepository, inventoryJdbcRepository);
+    }
+
+    @Test
+    void findPreviousSale_StoredForAnotherRequest_Unprocessable() {
+        SaleRequest stored = new SaleRequest();
+        stored.setRequestHash("0".repeat(64));
+        stored.setResponse("""
+                {"saleId":"SALE-1","items":[],"totalAmount":6.00,"notes":null,"timestamp":"2025-01-01T12:00:00Z"}
+                """);
+        when(saleRequestRepository.findByOrganizationIdAndIdempotencyKey(1L, "key-3")).thenReturn(Optional.of(stored));
+
+        SaleRequestDto request = new SaleRequestDto(List.of(new SaleItemRequestDto(5L, BigDecimal.ONE)), null, 1L);
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> salesService.findPreviousSale(1L, "key-3", request));
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ex.getStatusCode());
+    }
 }
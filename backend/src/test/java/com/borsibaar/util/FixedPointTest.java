@@ -0,0 +1,43 @@
+package com.borsibaar.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixedPointTest {
+
+    @Test
+    void of_RoundsHalfUpToFourDecimals() {
+        assertEquals(25_000L, FixedPoint.of(new BigDecimal("2.50")));
+        assertEquals(3_334L, FixedPoint.of(new BigDecimal("0.33335")));
+        assertEquals(-3_334L, FixedPoint.of(new BigDecimal("-0.33335")));
+        assertEquals(new BigDecimal("2.5000"), FixedPoint.toBigDecimal(25_000L));
+    }
+
+    @Test
+    void multiply_RoundsHalfUpLikeBigDecimal() {
+        long price = FixedPoint.of(new BigDecimal("2.3333"));
+        long quantity = FixedPoint.of(new BigDecimal("1.5"));
+
+        assertEquals(FixedPoint.of(new BigDecimal("2.3333").multiply(new BigDecimal("1.5"))),
+                FixedPoint.multiply(price, quantity));
+        assertEquals(-FixedPoint.multiply(price, quantity), FixedPoint.multiply(-price, quantity));
+    }
+
+    @Test
+    void multiply_IntermediateOverflow_StillExact() {
+        // 10^12 * 10^8 units before rescaling does not fit in a long, the result does
+        long large = FixedPoint.of(new BigDecimal("100000000"));
+        long factor = FixedPoint.of(new BigDecimal("10000"));
+
+        assertEquals(FixedPoint.of(new BigDecimal("1000000000000")), FixedPoint.multiply(large, factor));
+    }
+
+    @Test
+    void add_Overflow_Throws() {
+        assertThrows(ArithmeticException.class, () -> FixedPoint.add(Long.MAX_VALUE, FixedPoint.ONE));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.of(new BigDecimal("1e20")));
+    }
+}
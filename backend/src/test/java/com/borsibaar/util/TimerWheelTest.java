@@ -0,0 +1,77 @@
+package com.borsibaar.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTest {
+
+    private static final long START = 1_760_734_800_000L;
+
+    @Test
+    void advance_FiresAtDeadlineRoundedUpToTick() {
+        TimerWheel<String> wheel = new TimerWheel<>(100, START);
+        wheel.schedule("a", START + 60_001);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(START + 60_000, expired::add);
+        assertEquals(List.of(), expired);
+        wheel.advance(START + 60_099, expired::add);
+        assertEquals(List.of(), expired);
+        wheel.advance(START + 60_100, expired::add);
+        assertEquals(List.of("a"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_TimersOnEveryLevelAndBeyond_FireInOrderAndOnTime() {
+        TimerWheel<Long> wheel = new TimerWheel<>(10, START);
+        Random random = new Random(7);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            // Up to 64^4 ticks and a bit past them, into the overflow list
+            long deadline = START + 10L * random.nextLong(1, 20_000_000);
+            deadlines.add(deadline);
+            wheel.schedule(deadline, deadline);
+        }
+        List<Long> expired = new ArrayList<>();
+
+        long now = START;
+        while (wheel.size() > 0) {
+            long previous = now;
+            now += 10L * random.nextInt(1, 50_000);
+            long current = now;
+            wheel.advance(now, deadline -> {
+                // Neither early nor held back past an earlier advance
+                assertTrue(deadline <= current && deadline > previous, () -> deadline + " at " + current);
+                expired.add(deadline);
+            });
+        }
+
+        assertEquals(deadlines.stream().sorted().toList(), expired);
+    }
+
+    @Test
+    void schedule_PastDeadlineOrFromCallback_FiresOnNextAdvance() {
+        TimerWheel<String> wheel = new TimerWheel<>(100, START);
+        wheel.schedule("late", START - 5_000);
+        wheel.schedule("first", START + 200);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(START + 200, item -> {
+            expired.add(item);
+            if (item.equals("first")) {
+                wheel.schedule("again", START + 200);
+            }
+        });
+        assertEquals(List.of("late", "first"), expired);
+        assertEquals(1, wheel.size());
+
+        wheel.advance(START + 200, expired::add);
+        assertEquals(List.of("late", "first", "again"), expired);
+    }
+}
@@ -1,6 +1,6 @@
 "use client";
 
-import { useState, useEffect, useCallback } from "react";
+import { useState, useEffect, useCallback, useRef } from "react";
 import { useParams, useRouter } from "next/navigation";
 import { AlertCircle, ArrowLeft } from "lucide-react";
 import { Button } from "@/components/ui/button";
@@ -27,6 +27,8 @@ export default function POSStation() {
   const [selectedCategory, setSelectedCategory] = useState<number | null>(null);
   const [cart, setCart] = useState<CartItem[]>([]);
   const [isProcessingSale, setIsProcessingSale] = useState(false);
+  // One idempotency key per cart, so retrying a failed submit never sells twice
+  const saleAttempt = useRef<{ cart: CartItem[]; key: string } | null>(null);
   const [currentUser, setCurrentUser] = useState<CurrentUser | null>(null);
 
   // Fetch station and validate access
@@ -186,6 +188,10 @@ export default function POSStation() {
     if (cart.length === 0) return;
 
     setIsProcessingSale(true);
+    if (saleAttempt.current?.cart !== cart) {
+      saleAttempt.current = { cart, key: crypto.randomUUID() };
+    }
+    const idempotencyKey = saleAttempt.current.key;
     try {
       const saleRequest = {
         items: cart.map((item) => ({
@@ -200,6 +206,7 @@ export default function POSStation() {
         method: "POST",
         headers: {
           "Content-Type": "application/json",
+          "Idempotency-Key": idempotencyKey,
         },
         body: JSON.stringify(saleRequest),
       });
@@ -209,6 +216,7 @@ export default function POSStation() {
         throw new Error(errorText || "Failed to process sale");
       }
 
+      saleAttempt.current = null;
       clearCart();
       fetchProducts();
     } catch (err) {
@@ -47,14 +47,27 @@ const tallinnTicks = (cutoff: Date, now: Date, stepMin: number) => {
   return out;
 };
 
+// Hours of price history shown on the board
+const HOURS_WINDOW = 1;
+
 // ---------- Types ----------
 type HistoryDto = {
-  id: number;
-  inventoryId: number;
   priceBefore: number;
   priceAfter: number;
   createdAt: string;
 };
+type CandleDto = {
+  bucketStart: string;
+  open: number;
+  high: number;
+  low: number;
+  close: number;
+  volume: number;
+};
+type SeriesDto = {
+  productId: number;
+  candles: CandleDto[];
+};
 type CurrentHistory = {
   productInv: InvDto;
   priceHistory: HistoryDto[];
@@ -87,15 +100,25 @@ export default function PriceHistoryGraphFancy({
     if (!productInv) return;
     try {
       setError(null);
-      const res = await fetch(
-        `/api/backend/inventory/product/${productInv.productId}/history`,
-        {
-          cache: "no-store",
-          credentials: "include",
-        },
-      );
+      const params = new URLSearchParams({
+        productIds: String(productInv.productId),
+        interval: "10s",
+        from: new Date(Date.now() - HOURS_WINDOW * 3600_000).toISOString(),
+      });
+      const res = await fetch(`/api/backend/inventory/price-candles?${params}`, {
+        cache: "no-store",
+        credentials: "include",
+      });
       if (!res.ok) throw new Error(`HTTP ${res.status}`);
-      const historyJson: HistoryDto[] = await res.json();
+      const seriesJson: SeriesDto[] = await res.json();
+      // Each candle steps from its open to its close; the first open seeds the line
+      const historyJson: HistoryDto[] = (seriesJson[0]?.candles ?? []).map(
+        (c) => ({
+          priceBefore: c.open,
+          priceAfter: c.close,
+          createdAt: c.bucketStart,
+        }),
+      );
       setCurrent({ productInv, priceHistory: historyJson });
     } catch (e) {
       setError(e?.message || "Failed to fetch history");
@@ -180,7 +203,6 @@ export default function PriceHistoryGraphFancy({
   }, [current]);
 
   // ---- WINDOW: last 1 hour + delta ----
-  const HOURS_WINDOW = 1;
   const { data: windowed, cutoff, now, delta } = useMemo(() => {
     const _now = new Date();
     const _cutoff = new Date(_now.getTime() - HOURS_WINDOW * 3600_000);
@@ -18,6 +18,26 @@ export type InvDto = {
   updatedAt: string;
 };
 
+type BoardCategory = {
+  categoryId: number;
+  categoryName: string;
+  products: InvDto[];
+};
+
+type InvUpdate = {
+  inventoryId: number;
+  productId: number;
+  quantity: number;
+  unitPrice: number;
+  updatedAt: string;
+};
+
+const ORGANIZATION_ID = 2;
+// Polling is only a fallback while the live stream is down
+const FALLBACK_POLL_MS = 1000 * 15;
+// Full reload picks up new/removed products, which the stream does not carry
+const FULL_RELOAD_MS = 1000 * 60 * 5;
+
 const money = (n: number) =>
   new Intl.NumberFormat("et-EE", {
     style: "currency",
@@ -41,51 +61,33 @@ export default function ClientProductsByCategory() {
   useEffect(() => {
     let alive = true;
 
+    // Tag of the board we hold; the backend answers 304 while it is current
+    let boardEtag: string | null = null;
+
     const load = async () => {
       setLoading(true);
       try {
-        const organizationId = 2;
-
-        const cRes = await fetch(
-          `/api/backend/categories?organizationId=${organizationId}`,
+        const res = await fetch(
+          `/api/backend/inventory/board?organizationId=${ORGANIZATION_ID}`,
           {
             cache: "no-store",
             credentials: "include",
+            headers: boardEtag ? { "If-None-Match": boardEtag } : undefined,
           }
         );
-        if (!cRes.ok) throw new Error(`Categories HTTP ${cRes.status}`);
-        const cJson = await cRes.json();
-        const categoryList: Category[] = Array.isArray(cJson)
-          ? cJson
-          : cJson?.items ?? cJson?.content ?? [];
-
+        if (res.status === 304) {
+          if (alive) setErr(null);
+          return;
+        }
+        if (!res.ok) throw new Error(`Board HTTP ${res.status}`);
+        const board: BoardCategory[] = await res.json();
         if (!alive) return;
-        setCats(categoryList);
 
-        const fetches = categoryList.map(async (c) => {
-          const res = await fetch(
-            `/api/backend/inventory?categoryId=${c.id}&organizationId=${organizationId}`,
-            {
-              cache: "no-store",
-              credentials: "include",
-            }
-          );
-          if (!res.ok)
-            throw new Error(`Inventory HTTP ${res.status} (cat ${c.id})`);
-          const j = await res.json();
-          const arr: InvDto[] = Array.isArray(j)
-            ? j
-            : j?.items ?? j?.content ?? [];
-          return [c.name, arr] as const;
-        });
-
-        const results = await Promise.all(fetches);
-        if (!alive) return;
-
-        const grouped = Object.fromEntries(
-          results.filter(([, arr]) => arr.length > 0)
+        boardEtag = res.headers.get("etag");
+        setCats(board.map((c) => ({ id: c.categoryId, name: c.categoryName })));
+        setGroups(
+          Object.fromEntries(board.map((c) => [c.categoryName, c.products]))
         );
-        setGroups(grouped);
         setErr(null);
       } catch (e) {
         if (!alive) return;
@@ -95,11 +97,68 @@ export default function ClientProductsByCategory() {
       }
     };
 
+    const applyUpdates = (updates: InvUpdate[]) => {
+      const byProduct = new Map(updates.map((u) => [u.productId, u]));
+      setGroups((prev) => {
+        const next: Record<string, InvDto[]> = {};
+        for (const [name, items] of Object.entries(prev)) {
+          next[name] = items.map((p) => {
+            const u = byProduct.get(p.productId);
+            return u
+              ? {
+                  ...p,
+                  quantity: Number(u.quantity),
+                  unitPrice: Number(u.unitPrice),
+                  updatedAt: u.updatedAt,
+                }
+              : p;
+          });
+        }
+        return next;
+      });
+    };
+
+    let pollInterval: ReturnType<typeof setInterval> | null = null;
+    const startPolling = () => {
+      if (!pollInterval) pollInterval = setInterval(load, FALLBACK_POLL_MS);
+    };
+    const stopPolling = () => {
+      if (pollInterval) clearInterval(pollInterval);
+      pollInterval = null;
+    };
+
     load();
-    const refreshInterval = setInterval(load, 1000 * 15);
+    const reloadInterval = setInterval(load, FULL_RELOAD_MS);
+
+    let source: EventSource | null = null;
+    if (typeof EventSource !== "undefined") {
+      source = new EventSource(
+        `/api/backend/inventory/stream?organizationId=${ORGANIZATION_ID}`
+      );
+      source.onopen = () => {
+        stopPolling();
+        // Catch up on anything missed while disconnected
+        load();
+      };
+      source.addEventListener("inventory", (e) => {
+        if (!alive) return;
+        try {
+          applyUpdates(JSON.parse((e as MessageEvent).data));
+        } catch {
+          // Ignore malformed frames; the next full reload corrects state
+        }
+      });
+      // EventSource reconnects on its own; poll until it does
+      source.onerror = () => startPolling();
+    } else {
+      startPolling();
+    }
+
     return () => {
-      clearInterval(refreshInterval);
       alive = false;
+      source?.close();
+      stopPolling();
+      clearInterval(reloadInterval);
     };
   }, []);
 
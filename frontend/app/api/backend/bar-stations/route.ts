@@ -1,5 +1,6 @@
 import { NextRequest, NextResponse } from "next/server";
 import { backendUrl } from "@/utils/constants";
+import { etagHeaders, ifNoneMatch, notModified } from "@/utils/conditional";
 
 export const runtime = 'edge';
 
@@ -8,10 +9,14 @@ export async function GET(request: NextRequest) {
     const response = await fetch(`${backendUrl}/api/bar-stations`, {
       headers: {
         Cookie: request.headers.get("cookie") || "",
+        ...ifNoneMatch(request),
       },
       cache: "no-store",
     });
 
+    const unchanged = notModified(response);
+    if (unchanged) return unchanged;
+
     if (!response.ok) {
       const errorText = await response.text();
       return NextResponse.json(
@@ -21,7 +26,7 @@ export async function GET(request: NextRequest) {
     }
 
     const data = await response.json();
-    return NextResponse.json(data);
+    return NextResponse.json(data, { headers: etagHeaders(response) });
   } catch (error) {
     console.error("Error fetching bar stations:", error);
     return NextResponse.json(
@@ -0,0 +1,42 @@
+import { NextRequest, NextResponse } from "next/server";
+import { backendUrl } from "@/utils/constants";
+import { etagHeaders, ifNoneMatch, notModified } from "@/utils/conditional";
+
+export const runtime = 'edge';
+
+export async function GET(request: NextRequest) {
+    try {
+        const response = await fetch(
+            `${backendUrl}/api/inventory/board${request.nextUrl.search}`,
+            {
+                method: "GET",
+                headers: {
+                    Cookie: request.headers.get("cookie") || "",
+                    ...ifNoneMatch(request),
+                },
+                credentials: "include",
+            }
+        );
+
+        // Unchanged board: pass the 304 on so the client keeps what it has
+        const unchanged = notModified(response);
+        if (unchanged) return unchanged;
+
+        if (!response.ok) {
+            const text = await response.text();
+            return new NextResponse(text, { status: response.status });
+        }
+
+        const data = await response.json();
+        return NextResponse.json(data, {
+            status: response.status,
+            headers: etagHeaders(response),
+        });
+    } catch (error) {
+        console.error("Proxy error:", error);
+        return NextResponse.json(
+            { error: "Failed to fetch price board" },
+            { status: 500 }
+        );
+    }
+}
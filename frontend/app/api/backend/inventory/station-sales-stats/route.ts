@@ -1,5 +1,6 @@
 import { NextRequest, NextResponse } from "next/server";
 import { backendUrl } from "@/utils/constants";
+import { etagHeaders, ifNoneMatch, notModified } from "@/utils/conditional";
 
 export const runtime = 'edge';
 
@@ -9,17 +10,24 @@ export async function GET(request: NextRequest) {
             method: "GET",
             headers: {
                 Cookie: request.headers.get("cookie") || "",
+                ...ifNoneMatch(request),
             },
             credentials: "include",
         });
 
+        const unchanged = notModified(response);
+        if (unchanged) return unchanged;
+
         if (!response.ok) {
             const text = await response.text();
             return new NextResponse(text, { status: response.status });
         }
 
         const data = await response.json();
-        return NextResponse.json(data, { status: response.status });
+        return NextResponse.json(data, {
+            status: response.status,
+            headers: etagHeaders(response),
+        });
     } catch (error) {
         console.error("Proxy error:", error);
         return NextResponse.json(
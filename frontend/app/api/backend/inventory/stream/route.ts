@@ -0,0 +1,48 @@
+import { NextRequest, NextResponse } from "next/server";
+import { backendUrl } from "@/utils/constants";
+
+export const runtime = 'edge';
+
+export async function GET(request: NextRequest) {
+    try {
+        const { searchParams } = new URL(request.url);
+        const organizationId = searchParams.get("organizationId");
+
+        const url = new URL(`${backendUrl}/api/inventory/stream`);
+        if (organizationId) {
+            url.searchParams.append("organizationId", organizationId);
+        }
+
+        const response = await fetch(url.toString(), {
+            method: "GET",
+            headers: {
+                Cookie: request.headers.get("cookie") || "",
+                Accept: "text/event-stream",
+            },
+            credentials: "include",
+            // Abort the upstream connection when the browser goes away
+            signal: request.signal,
+        });
+
+        if (!response.ok || !response.body) {
+            const text = await response.text();
+            return new NextResponse(text, { status: response.status });
+        }
+
+        // Pass the event stream through untouched
+        return new NextResponse(response.body, {
+            status: 200,
+            headers: {
+                "Content-Type": "text/event-stream",
+                "Cache-Control": "no-cache, no-transform",
+                Connection: "keep-alive",
+            },
+        });
+    } catch (error) {
+        console.error("Proxy error:", error);
+        return NextResponse.json(
+            { error: "Failed to open inventory stream" },
+            { status: 500 }
+        );
+    }
+}
@@ -7,12 +7,18 @@ export async function POST(request: NextRequest) {
     try {
         const body = await request.json();
 
+        const headers: Record<string, string> = {
+            "Content-Type": "application/json",
+            Cookie: request.headers.get("cookie") || "",
+        };
+        const idempotencyKey = request.headers.get("idempotency-key");
+        if (idempotencyKey) {
+            headers["Idempotency-Key"] = idempotencyKey;
+        }
+
         const response = await fetch(`${backendUrl}/api/sales`, {
             method: "POST",
-            headers: {
-                "Content-Type": "application/json",
-                Cookie: request.headers.get("cookie") || "",
-            },
+            headers,
             credentials: "include",
             body: JSON.stringify(body),
         });
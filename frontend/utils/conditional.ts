@@ -0,0 +1,25 @@
+import { NextRequest, NextResponse } from "next/server";
+
+/**
+ * Conditional GET through the proxy routes
+ *
+ * List endpoints answer with an ETag and return 304 when the client's
+ * If-None-Match is still current. The proxy forwards the header both ways,
+ * so the browser cache revalidates instead of downloading the list again.
+ */
+export function ifNoneMatch(request: NextRequest): Record<string, string> {
+    const tag = request.headers.get("if-none-match");
+    return tag ? { "If-None-Match": tag } : {};
+}
+
+export function etagHeaders(response: Response): Record<string, string> {
+    const tag = response.headers.get("etag");
+    return tag ? { ETag: tag } : {};
+}
+
+// A 304 must not carry a body, so it cannot go through the usual error branch
+export function notModified(response: Response): NextResponse | null {
+    return response.status === 304
+        ? new NextResponse(null, { status: 304, headers: etagHeaders(response) })
+        : null;
+}